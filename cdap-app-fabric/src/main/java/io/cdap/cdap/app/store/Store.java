@@ -26,6 +26,7 @@ import io.cdap.cdap.api.workflow.WorkflowToken;
 import io.cdap.cdap.app.program.Program;
 import io.cdap.cdap.app.program.ProgramDescriptor;
 import io.cdap.cdap.common.ApplicationNotFoundException;
+import io.cdap.cdap.common.BadRequestException;
 import io.cdap.cdap.common.NotFoundException;
 import io.cdap.cdap.common.ProgramNotFoundException;
 import io.cdap.cdap.internal.app.store.RunRecordDetail;
@@ -174,6 +175,24 @@ public interface Store {
   Map<ProgramRunId, RunRecordDetail> getRuns(ProgramId id, ProgramRunStatus status,
                                              long startTime, long endTime, int limit);
 
+  /**
+   * Scans a page of run records of the given program. Runs are ordered by start time, with the newest run first,
+   * and active runs are returned before completed runs.
+   *
+   * @param id        id of the program
+   * @param status    status of the program running/completed/failed or all
+   * @param startTime fetch run history that has started after the startTime in seconds
+   * @param endTime   fetch run history that has started before the endTime in seconds
+   * @param pageToken the token to resume the scan from, which is obtained from the consumer of some previous scan,
+   *                  or {@code null} to scan from the beginning
+   * @param limit     max number of entries to scan
+   * @param consumer  a {@link BiConsumer} to consume each run record, together with the page token to resume
+   *                  the scan after that run record
+   * @throws BadRequestException if the page token is invalid
+   */
+  void scanRuns(ProgramId id, ProgramRunStatus status, long startTime, long endTime, @Nullable String pageToken,
+                int limit, BiConsumer<String, RunRecordDetail> consumer) throws BadRequestException;
+
   /**
    * Fetches the run records for the particular status. Same as calling
    * {@link #getRuns(ProgramRunStatus, long, long, int, Predicate)
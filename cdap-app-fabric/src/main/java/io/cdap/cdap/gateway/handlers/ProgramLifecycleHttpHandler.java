@@ -30,6 +30,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.cdap.cdap.api.ProgramSpecification;
@@ -98,18 +99,26 @@ import io.cdap.cdap.proto.id.ProgramRunId;
 import io.cdap.cdap.proto.id.ScheduleId;
 import io.cdap.cdap.scheduler.ProgramScheduleService;
 import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
+import io.cdap.http.ChunkResponder;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -403,15 +412,21 @@ public class ProgramLifecycleHttpHandler extends AbstractAppFabricHttpHandler {
                              @QueryParam("status") String status,
                              @QueryParam("start") String startTs,
                              @QueryParam("end") String endTs,
-                             @QueryParam("limit") @DefaultValue("100") final int resultLimit)
+                             @QueryParam("limit") @DefaultValue("100") final int resultLimit,
+                             @QueryParam("pageToken") String pageToken)
     throws Exception {
     programHistory(request, responder, namespaceId, appName, ApplicationId.DEFAULT_VERSION, type,
-                   programName, status, startTs, endTs, resultLimit);
+                   programName, status, startTs, endTs, resultLimit, pageToken);
   }
 
   /**
    * Returns program runs of an app version based on options it returns either currently running or completed or failed.
    * Default it returns all.
+   *
+   * If the {@code pageToken} query parameter is present, the response is a JSON object with the {@code runs} array
+   * and the {@code nextPageToken}, which is only present if there can be more runs. The {@code nextPageToken} value
+   * can be used as the {@code pageToken} to fetch the next page, while an empty {@code pageToken} fetches the
+   * first page. Otherwise, the response is the JSON array of runs.
    */
   @GET
   @Path("/apps/{app-name}/versions/{app-version}/{program-type}/{program-name}/runs")
@@ -424,7 +439,8 @@ public class ProgramLifecycleHttpHandler extends AbstractAppFabricHttpHandler {
                              @QueryParam("status") String status,
                              @QueryParam("start") String startTs,
                              @QueryParam("end") String endTs,
-                             @QueryParam("limit") @DefaultValue("100") final int resultLimit) throws Exception {
+                             @QueryParam("limit") @DefaultValue("100") final int resultLimit,
+                             @QueryParam("pageToken") String pageToken) throws Exception {
     ProgramType programType = getProgramType(type);
 
     long start = (startTs == null || startTs.isEmpty()) ? 0 : Long.parseLong(startTs);
@@ -434,9 +450,17 @@ public class ProgramLifecycleHttpHandler extends AbstractAppFabricHttpHandler {
     ProgramRunStatus runStatus = (status == null) ? ProgramRunStatus.ALL :
       ProgramRunStatus.valueOf(status.toUpperCase());
 
-    List<RunRecord> records = lifecycleService.getRunRecords(program, runStatus, start, end, resultLimit);
+    if (pageToken == null) {
+      List<RunRecord> records = lifecycleService.getRunRecords(program, runStatus, start, end, resultLimit);
+      responder.sendJson(HttpResponseStatus.OK, GSON.toJson(records));
+      return;
+    }
 
-    responder.sendJson(HttpResponseStatus.OK, GSON.toJson(records));
+    try (RunRecordsPageWriter writer = new RunRecordsPageWriter(responder)) {
+      lifecycleService.scanRunRecords(program, runStatus, start, end, pageToken.isEmpty() ? null : pageToken,
+                                      resultLimit, writer::write);
+      writer.finish(resultLimit);
+    }
   }
 
   /**
@@ -1995,4 +2019,80 @@ public class ProgramLifecycleHttpHandler extends AbstractAppFabricHttpHandler {
       throw new BadRequestException(String.format("Invalid program type '%s'", programType), e);
     }
   }
+
+  /**
+   * Writes a page of run records as a JSON object with the {@code runs} array and the optional
+   * {@code nextPageToken}. Run records are sent in chunks, so that only a small amount of data is buffered.
+   * The chunked response is only started when the first chunk is ready, so that failure before that
+   * can still be responded with an error status.
+   */
+  private static final class RunRecordsPageWriter implements Closeable {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final HttpResponder responder;
+    private final ByteArrayOutputStream outputStream;
+    private final JsonWriter jsonWriter;
+    private ChunkResponder chunkResponder;
+    private String lastPageToken;
+    private int count;
+
+    RunRecordsPageWriter(HttpResponder responder) throws IOException {
+      this.responder = responder;
+      this.outputStream = new ByteArrayOutputStream();
+      this.jsonWriter = new JsonWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+      jsonWriter.beginObject();
+      jsonWriter.name("runs").beginArray();
+    }
+
+    void write(String pageToken, RunRecord record) {
+      try {
+        GSON.toJson(record, RunRecord.class, jsonWriter);
+        jsonWriter.flush();
+        lastPageToken = pageToken;
+        count++;
+        if (outputStream.size() >= CHUNK_SIZE) {
+          sendChunk();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Completes the response.
+     *
+     * @param limit the page size. The next page token is only written if the page is full.
+     */
+    void finish(int limit) throws IOException {
+      jsonWriter.endArray();
+      if (count >= limit && lastPageToken != null) {
+        jsonWriter.name("nextPageToken").value(lastPageToken);
+      }
+      jsonWriter.endObject();
+      jsonWriter.flush();
+
+      if (chunkResponder == null) {
+        responder.sendJson(HttpResponseStatus.OK, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+      } else {
+        sendChunk();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (chunkResponder != null) {
+        chunkResponder.close();
+      }
+    }
+
+    private void sendChunk() throws IOException {
+      if (chunkResponder == null) {
+        chunkResponder = responder.sendChunkStart(
+          HttpResponseStatus.OK, new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "application/json"));
+      }
+      chunkResponder.sendChunk(Unpooled.wrappedBuffer(outputStream.toByteArray()));
+      outputStream.reset();
+    }
+  }
 }
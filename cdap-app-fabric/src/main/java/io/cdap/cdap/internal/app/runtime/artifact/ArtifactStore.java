@@ -938,6 +938,7 @@ public class ArtifactStore {
 
     // delete old plugins, we loop twice to only access to one table at a time to prevent deadlock
     StructuredTable pluginDataTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
+    List<Collection<Field<?>>> pluginKeys = new ArrayList<>();
     for (PluginClass pluginClass : oldMeta.meta.getClasses().getPlugins()) {
       // delete metadata for each artifact this plugin extends
       for (ArtifactRange artifactRange : oldMeta.meta.getUsableBy()) {
@@ -945,19 +946,22 @@ public class ArtifactStore {
         PluginKeyPrefix pluginKey = new PluginKeyPrefix(artifactRange.getNamespace(),
                                                         artifactRange.getName(), pluginClass.getType(),
                                                         pluginClass.getName());
-        pluginDataTable.delete(concatFields(pluginKey.keys, artifactCell.keys));
+        pluginKeys.add(concatFields(pluginKey.keys, artifactCell.keys));
       }
     }
+    pluginDataTable.deleteAll(pluginKeys);
 
     // Delete the universal plugin row
     StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
+    List<Collection<Field<?>>> uniPluginKeys = new ArrayList<>();
     for (PluginClass pluginClass : oldMeta.meta.getClasses().getPlugins()) {
       if (oldMeta.meta.getUsableBy().isEmpty()) {
         UniversalPluginKeyPrefix pluginKey = new UniversalPluginKeyPrefix(artifactId.getNamespace().getId(),
                                                                           pluginClass.getType(), pluginClass.getName());
-        uniPluginTable.delete(concatFields(pluginKey.keys, artifactCell.keys));
+        uniPluginKeys.add(concatFields(pluginKey.keys, artifactCell.keys));
       }
     }
+    uniPluginTable.deleteAll(uniPluginKeys);
 
     // delete the old jar file
     try {
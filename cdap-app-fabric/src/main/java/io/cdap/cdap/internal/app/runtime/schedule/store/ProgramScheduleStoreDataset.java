@@ -59,6 +59,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -138,12 +139,19 @@ public class ProgramScheduleStoreDataset {
    */
   private void addScheduleWithStatus(ProgramSchedule schedule, ProgramScheduleStatus status, long currentTime)
     throws AlreadyExistsException, IOException {
-    Collection<Field<?>> scheduleKeys = getScheduleKeys(schedule.getScheduleId());
-    Optional<StructuredRow> existing = scheduleStore.read(scheduleKeys);
+    Optional<StructuredRow> existing = scheduleStore.read(getScheduleKeys(schedule.getScheduleId()));
     if (existing.isPresent() && existing.get().getString(StoreDefinition.ProgramScheduleStore.SCHEDULE) != null) {
       throw new AlreadyExistsException(schedule.getScheduleId());
     }
-    
+    writeSchedule(schedule, status, currentTime);
+  }
+
+  /**
+   * Writes a schedule and its triggers, without checking whether the schedule already exists.
+   */
+  private void writeSchedule(ProgramSchedule schedule, ProgramScheduleStatus status,
+                             long currentTime) throws IOException {
+    Collection<Field<?>> scheduleKeys = getScheduleKeys(schedule.getScheduleId());
     Collection<Field<?>> scheduleFields = new ArrayList<>(scheduleKeys);
     scheduleFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.SCHEDULE, GSON.toJson(schedule)));
     scheduleFields.add(Fields.longField(StoreDefinition.ProgramScheduleStore.UPDATE_TIME, currentTime));
@@ -151,11 +159,13 @@ public class ProgramScheduleStoreDataset {
     scheduleStore.upsert(scheduleFields);
 
     int count = 0;
+    List<Collection<Field<?>>> triggers = new ArrayList<>();
     for (String triggerKey : extractTriggerKeys(schedule)) {
       Collection<Field<?>> triggerFields = getTriggerKeys(scheduleKeys, count++);
       triggerFields.add(Fields.stringField(StoreDefinition.ProgramScheduleStore.TRIGGER_KEY, triggerKey));
-      triggerStore.upsert(triggerFields);
+      triggers.add(triggerFields);
     }
+    triggerStore.upsertAll(triggers);
   }
 
   /**
@@ -167,8 +177,23 @@ public class ProgramScheduleStoreDataset {
    */
   public long addSchedules(Iterable<? extends ProgramSchedule> schedules) throws AlreadyExistsException, IOException {
     long currentTime = System.currentTimeMillis();
-    for (ProgramSchedule schedule : schedules) {
-      addScheduleWithStatus(schedule, ProgramScheduleStatus.SUSPENDED, currentTime); // initially suspended
+    List<ProgramSchedule> toAdd = new ArrayList<>();
+    schedules.forEach(toAdd::add);
+
+    // check the existence of all schedules with a single read before writing any of them
+    Map<ScheduleId, StructuredRow> existing = readScheduleRows(
+      toAdd.stream().map(ProgramSchedule::getScheduleId).collect(Collectors.toList()));
+    Set<ScheduleId> added = new HashSet<>();
+    for (ProgramSchedule schedule : toAdd) {
+      ScheduleId scheduleId = schedule.getScheduleId();
+      StructuredRow row = existing.get(scheduleId);
+      if (!added.add(scheduleId)
+        || (row != null && row.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE) != null)) {
+        throw new AlreadyExistsException(scheduleId);
+      }
+    }
+    for (ProgramSchedule schedule : toAdd) {
+      writeSchedule(schedule, ProgramScheduleStatus.SUSPENDED, currentTime); // initially suspended
     }
     return currentTime;
   }
@@ -249,9 +274,21 @@ public class ProgramScheduleStoreDataset {
     if (deleteTime == null) {
       deleteTime = System.currentTimeMillis();
     }
-    for (ScheduleId scheduleId : scheduleIds) {
-      StructuredRow existingRow = readExistingScheduleRow(scheduleId);
-      markScheduleAsDeleted(existingRow, deleteTime);
+    List<ScheduleId> toDelete = new ArrayList<>();
+    scheduleIds.forEach(toDelete::add);
+
+    // make sure all schedules exist with a single read before deleting any of them
+    Map<ScheduleId, StructuredRow> existing = readScheduleRows(toDelete);
+    Set<ScheduleId> deleted = new HashSet<>();
+    for (ScheduleId scheduleId : toDelete) {
+      StructuredRow row = existing.get(scheduleId);
+      if (!deleted.add(scheduleId) || row == null
+        || row.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE) == null) {
+        throw new NotFoundException(scheduleId);
+      }
+    }
+    for (ScheduleId scheduleId : toDelete) {
+      markScheduleAsDeleted(existing.get(scheduleId), deleteTime);
       Collection<Field<?>> scheduleKeys = getScheduleKeys(scheduleId);
       triggerStore.deleteAll(Range.singleton(scheduleKeys));
     }
@@ -473,38 +510,39 @@ public class ProgramScheduleStoreDataset {
    * @return a list of all schedules that are triggered by this key; never null
    */
   public Collection<ProgramScheduleRecord> findSchedules(String triggerKey) throws IOException {
-    Map<ScheduleId, ProgramScheduleRecord> schedulesFound = new HashMap<>();
+    // first collect the schedules of all triggers, then read them all with a single multi-read
+    Map<ScheduleId, StructuredRow> triggerRows = new LinkedHashMap<>();
     Field<String> triggerField = Fields.stringField(StoreDefinition.ProgramScheduleStore.TRIGGER_KEY, triggerKey);
     try (CloseableIterator<StructuredRow> iterator = triggerStore.scan(triggerField)) {
       while (iterator.hasNext()) {
         StructuredRow triggerRow = iterator.next();
         try {
-          ScheduleId scheduleId = rowToScheduleId(triggerRow);
-          if (schedulesFound.containsKey(scheduleId)) {
-            continue;
-          }
-          Optional<StructuredRow> optional = scheduleStore.read(getScheduleKeys(scheduleId));
-          if (!optional.isPresent()) {
-            throw new NotFoundException(scheduleId);
-          }
-          StructuredRow scheduleRow = optional.get();
-          String serialized = scheduleRow.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE);
-          if (serialized == null) {
-            throw new NotFoundException(scheduleId);
-          }
-          ProgramSchedule schedule = GSON.fromJson(serialized, ProgramSchedule.class);
-          ProgramScheduleMeta meta = extractMetaFromRow(scheduleId, scheduleRow);
-          ProgramScheduleRecord record = new ProgramScheduleRecord(schedule, meta);
-          schedulesFound.put(scheduleId, record);
-        } catch (IllegalArgumentException | NotFoundException e) {
-          // the only exceptions we know to be thrown here are IllegalArgumentException (ill-formed key) or
-          // NotFoundException (if the schedule does not exist). Both should never happen, so we warn and ignore.
-          // we will let any other exception propagate up, because it would be a DataSetException or similarly serious.
+          triggerRows.putIfAbsent(rowToScheduleId(triggerRow), triggerRow);
+        } catch (IllegalArgumentException e) {
+          // an ill-formed key should never happen, so we warn and ignore
           LOG.warn("Problem with trigger '{}' found for trigger key '{}': {}. Skipping entry.",
                    triggerRow, triggerKey, e.getMessage());
         }
       }
     }
+
+    Map<ScheduleId, StructuredRow> scheduleRows = readScheduleRows(triggerRows.keySet());
+    Map<ScheduleId, ProgramScheduleRecord> schedulesFound = new HashMap<>();
+    for (Map.Entry<ScheduleId, StructuredRow> entry : triggerRows.entrySet()) {
+      ScheduleId scheduleId = entry.getKey();
+      StructuredRow scheduleRow = scheduleRows.get(scheduleId);
+      String serialized = scheduleRow == null
+        ? null : scheduleRow.getString(StoreDefinition.ProgramScheduleStore.SCHEDULE);
+      if (serialized == null) {
+        // the schedule of a trigger should always exist, so we warn and ignore
+        LOG.warn("Problem with trigger '{}' found for trigger key '{}': schedule '{}' does not exist. Skipping entry.",
+                 entry.getValue(), triggerKey, scheduleId);
+        continue;
+      }
+      ProgramSchedule schedule = GSON.fromJson(serialized, ProgramSchedule.class);
+      ProgramScheduleMeta meta = extractMetaFromRow(scheduleId, scheduleRow);
+      schedulesFound.put(scheduleId, new ProgramScheduleRecord(schedule, meta));
+    }
     return schedulesFound.values();
   }
 
@@ -614,6 +652,26 @@ public class ProgramScheduleStoreDataset {
     return existing.get();
   }
 
+  /**
+   * Reads the rows of the given schedules with a single {@link StructuredTable#multiRead}.
+   *
+   * @return the rows of the schedules that have a row, by schedule id
+   */
+  private Map<ScheduleId, StructuredRow> readScheduleRows(Collection<ScheduleId> scheduleIds) throws IOException {
+    if (scheduleIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    List<Collection<Field<?>>> keys = new ArrayList<>(scheduleIds.size());
+    for (ScheduleId scheduleId : scheduleIds) {
+      keys.add(getScheduleKeys(scheduleId));
+    }
+    Map<ScheduleId, StructuredRow> rows = new HashMap<>();
+    for (StructuredRow row : scheduleStore.multiRead(keys)) {
+      rows.put(rowToScheduleId(row), row);
+    }
+    return rows;
+  }
+
   /**
    * Reads the meta data from a row in the schedule store.
    *
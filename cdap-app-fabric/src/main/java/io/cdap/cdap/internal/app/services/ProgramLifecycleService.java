@@ -109,6 +109,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
@@ -295,6 +296,36 @@ public class ProgramLifecycleService {
       .map(record -> RunRecord.builder(record).build()).collect(Collectors.toList());
   }
 
+  /**
+   * Scans a page of runs within the specified start and end times for the specified program.
+   *
+   * @param programId the program to get runs for
+   * @param programRunStatus status of runs to return
+   * @param start earliest start time of runs to return
+   * @param end latest start time of runs to return
+   * @param pageToken the token to resume the scan from, which is obtained from the consumer of some previous scan,
+   *                  or {@code null} to scan from the beginning
+   * @param limit the maximum number of runs to return
+   * @param consumer a {@link BiConsumer} to consume each run, together with the page token to resume the scan
+   *                 after that run. Runs are sorted by start time, with the newest run first.
+   * @throws NotFoundException if the application to which this program belongs was not found or the program is not
+   *                           found in the app
+   * @throws BadRequestException if the page token is invalid
+   * @throws UnauthorizedException if the principal does not have access to the program
+   * @throws Exception if there was some other exception performing authorization checks
+   */
+  public void scanRunRecords(ProgramId programId, ProgramRunStatus programRunStatus, long start, long end,
+                             @Nullable String pageToken, int limit,
+                             BiConsumer<String, RunRecord> consumer) throws Exception {
+    accessEnforcer.enforce(programId, authenticationContext.getPrincipal(), StandardPermission.GET);
+    ProgramSpecification programSpec = getProgramSpecificationWithoutAuthz(programId);
+    if (programSpec == null) {
+      throw new NotFoundException(programId);
+    }
+    store.scanRuns(programId, programRunStatus, start, end, pageToken, limit,
+                   (token, record) -> consumer.accept(token, RunRecord.builder(record).build()));
+  }
+
   /**
    * Get the latest runs within the specified start and end times for the specified programs.
    *
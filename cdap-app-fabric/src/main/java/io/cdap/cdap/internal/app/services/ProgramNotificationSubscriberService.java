@@ -22,6 +22,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import io.cdap.cdap.api.messaging.Message;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.api.schedule.SchedulableProgramType;
@@ -81,6 +82,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -113,6 +115,7 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
   private final ProgramStateWriter programStateWriter;
   private final Queue<Runnable> tasks;
   private final MetricsCollectionService metricsCollectionService;
+  private final int processingParallelism;
   private Set<ProgramCompletionNotifier> programCompletionNotifiers;
 
   @Inject
@@ -131,8 +134,10 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     this.programLifecycleService = programLifecycleService;
     this.provisioningService = provisioningService;
     this.programStateWriter = programStateWriter;
-    this.tasks = new LinkedList<>();
+    // Messages can be processed by multiple threads
+    this.tasks = new ConcurrentLinkedQueue<>();
     this.metricsCollectionService = metricsCollectionService;
+    this.processingParallelism = cConf.getInt(Constants.AppFabric.STATUS_EVENT_PROCESSING_PARALLELISM, 1);
     this.programCompletionNotifiers = Collections.emptySet();
   }
 
@@ -153,6 +158,34 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
     getAppMetadataStore(context).persistSubscriberState(getTopicId().getTopic(), "", messageId);
   }
 
+  @Override
+  protected int getProcessingParallelism() {
+    return processingParallelism;
+  }
+
+  /**
+   * Partitions messages by application, so that status events of a workflow and its inner programs are always
+   * processed in order.
+   */
+  @Nullable
+  @Override
+  protected Object getPartitionKey(ImmutablePair<String, Notification> message) {
+    ProgramRunId programRunId = getProgramRunId(message.getSecond());
+    return programRunId == null ? null : programRunId.getParent().getParent();
+  }
+
+  /**
+   * Decodes the {@link Notification} together with the {@link ProgramRunId} it carries, so that the run id is only
+   * parsed once for both partitioning and processing.
+   */
+  @Override
+  protected Notification decodeMessage(Message message) {
+    Notification notification = super.decodeMessage(message);
+    String programRun = notification.getProperties().get(ProgramOptionConstants.PROGRAM_RUN_ID);
+    return new ProgramRunNotification(notification, programRun == null
+      ? null : GSON.fromJson(programRun, ProgramRunId.class));
+  }
+
   @Override
   protected void processMessages(StructuredTableContext structuredTableContext,
                                  Iterator<ImmutablePair<String, Notification>> messages) throws Exception {
@@ -206,7 +239,7 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
       LOG.warn("Ignore notification that misses program run state information, {}", notification);
       return Collections.emptyList();
     }
-    ProgramRunId programRunId = GSON.fromJson(programRun, ProgramRunId.class);
+    ProgramRunId programRunId = getProgramRunId(notification);
 
     ProgramRunStatus programRunStatus = null;
     if (programStatusStr != null) {
@@ -697,4 +730,30 @@ public class ProgramNotificationSubscriberService extends AbstractNotificationSu
   private AppMetadataStore getAppMetadataStore(StructuredTableContext context) {
     return AppMetadataStore.create(context);
   }
+
+  /**
+   * Returns the {@link ProgramRunId} of the given {@link Notification}, or {@code null} if it doesn't have one.
+   */
+  @Nullable
+  private static ProgramRunId getProgramRunId(Notification notification) {
+    if (notification instanceof ProgramRunNotification) {
+      return ((ProgramRunNotification) notification).programRunId;
+    }
+    String programRun = notification.getProperties().get(ProgramOptionConstants.PROGRAM_RUN_ID);
+    return programRun == null ? null : GSON.fromJson(programRun, ProgramRunId.class);
+  }
+
+  /**
+   * A {@link Notification} decoded from TMS, with its {@link ProgramRunId} already parsed.
+   */
+  private static final class ProgramRunNotification extends Notification {
+
+    @Nullable
+    private final ProgramRunId programRunId;
+
+    ProgramRunNotification(Notification notification, @Nullable ProgramRunId programRunId) {
+      super(notification.getNotificationType(), notification.getProperties());
+      this.programRunId = programRunId;
+    }
+  }
 }
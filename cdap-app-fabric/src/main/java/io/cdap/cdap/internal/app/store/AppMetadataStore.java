@@ -35,6 +35,7 @@ import io.cdap.cdap.api.workflow.WorkflowToken;
 import io.cdap.cdap.common.BadRequestException;
 import io.cdap.cdap.common.app.RunIds;
 import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.internal.app.ApplicationSpecificationAdapter;
 import io.cdap.cdap.internal.app.runtime.ProgramOptionConstants;
 import io.cdap.cdap.internal.app.runtime.SystemArguments;
@@ -66,8 +67,10 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -1269,6 +1272,69 @@ public class AppMetadataStore {
     }
   }
 
+  /**
+   * Scans runs of the given program, starting after the position encoded by the given page token.
+   * Active runs are scanned before completed runs, and runs of the same kind are ordered by start time,
+   * with the newest run first. Since the position is based on the run record key, a run that completes
+   * between two scans can be skipped or returned twice.
+   *
+   * @param programId the program to scan runs for
+   * @param status to filter by
+   * @param startTime the run has to be started on or after this time
+   * @param endTime the run has to be started before this time
+   * @param pageToken the token to resume the scan from, which is obtained from the consumer of some previous scan,
+   *                  or {@code null} to start the scan at the beginning
+   * @param limit maximum number of run records to scan
+   * @param consumer a {@link BiConsumer} to consume each run record, together with the page token to resume
+   *                 the scan after that run record
+   * @throws BadRequestException if the page token is invalid
+   * @throws IOException if failed to query the storage
+   */
+  public void scanRuns(ProgramId programId, ProgramRunStatus status, long startTime, long endTime,
+                       @Nullable String pageToken, int limit,
+                       BiConsumer<String, RunRecordDetail> consumer) throws BadRequestException, IOException {
+    List<String> recordTypes = status == ProgramRunStatus.ALL
+      ? Arrays.asList(TYPE_RUN_RECORD_ACTIVE, TYPE_RUN_RECORD_COMPLETED)
+      : Collections.singletonList(STATUS_TYPE_MAP.get(status));
+
+    int startIdx = 0;
+    ImmutablePair<String, String> position = null;
+    if (pageToken != null) {
+      position = decodeRunPageToken(pageToken);
+      startIdx = recordTypes.indexOf(position.getFirst());
+      if (startIdx < 0) {
+        throw new BadRequestException(String.format("Page token '%s' is not valid for runs with status %s",
+                                                    pageToken, status));
+      }
+    }
+
+    Predicate<RunRecordDetail> statusFilter = status == ProgramRunStatus.ALL ? null : r -> r.getStatus() == status;
+    int remaining = limit;
+    for (int i = startIdx; i < recordTypes.size() && remaining > 0; i++) {
+      String recordType = recordTypes.get(i);
+      Range range = createRunRecordScanRange(getRunRecordProgramPrefix(recordType, programId), startTime, endTime);
+      Predicate<StructuredRow> keyFilter = null;
+
+      if (i == startIdx && position != null) {
+        // Resume right after the last returned run. The time range is enforced with a key filter,
+        // since the page token might not be within the time range.
+        String run = position.getSecond();
+        List<Field<?>> begin = getProgramRunInvertedTimeKey(recordType, programId.run(run),
+                                                            RunIds.getTime(run, TimeUnit.SECONDS));
+        range = Range.create(begin, Range.Bound.EXCLUSIVE, range.getEnd(), range.getEndBound());
+        keyFilter = getKeyFilterByTimeRange(startTime, endTime);
+      }
+
+      try (CloseableIterator<RunRecordDetail> iterator = queryProgramRuns(range, keyFilter, statusFilter, remaining)) {
+        while (iterator.hasNext()) {
+          RunRecordDetail record = iterator.next();
+          consumer.accept(encodeRunPageToken(recordType, record.getProgramRunId().getRun()), record);
+          remaining--;
+        }
+      }
+    }
+  }
+
   // TODO: getRun is duplicated in cdap-watchdog AppMetadataStore class.
   // Any changes made here will have to be made over there too.
   // JIRA https://issues.cask.co/browse/CDAP-2172
@@ -1839,6 +1905,38 @@ public class AppMetadataStore {
     return addProgramPrimaryKeys(programId, fields);
   }
 
+  /**
+   * Encodes the position of a run record into an opaque page token.
+   */
+  private static String encodeRunPageToken(String recordType, String run) {
+    return Base64.getUrlEncoder().withoutPadding()
+      .encodeToString((recordType + ":" + run).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes the page token created by {@link #encodeRunPageToken(String, String)}.
+   *
+   * @return a pair of the run record type and the run id
+   * @throws BadRequestException if the page token is invalid
+   */
+  private static ImmutablePair<String, String> decodeRunPageToken(String pageToken) throws BadRequestException {
+    try {
+      String token = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+      int idx = token.indexOf(':');
+      if (idx > 0) {
+        String recordType = token.substring(0, idx);
+        String run = token.substring(idx + 1);
+        if ((TYPE_RUN_RECORD_ACTIVE.equals(recordType) || TYPE_RUN_RECORD_COMPLETED.equals(recordType))
+          && RunIds.getTime(run, TimeUnit.SECONDS) >= 0) {
+          return ImmutablePair.of(recordType, run);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      // Fall through to throw BadRequestException
+    }
+    throw new BadRequestException(String.format("Invalid page token '%s'", pageToken));
+  }
+
   @Nullable
   private Predicate<StructuredRow> getKeyFilterByTimeRange(long startTime, long endTime) {
     if (startTime <= 0 && endTime == Long.MAX_VALUE) {
@@ -38,6 +38,7 @@ import io.cdap.cdap.api.workflow.WorkflowToken;
 import io.cdap.cdap.app.program.ProgramDescriptor;
 import io.cdap.cdap.app.store.Store;
 import io.cdap.cdap.common.ApplicationNotFoundException;
+import io.cdap.cdap.common.BadRequestException;
 import io.cdap.cdap.common.NotFoundException;
 import io.cdap.cdap.common.ProgramNotFoundException;
 import io.cdap.cdap.data2.dataset2.DatasetFramework;
@@ -92,6 +93,8 @@ public class DefaultStore implements Store {
   // as it is not specifically metadata
   private static final DatasetId WORKFLOW_STATS_INSTANCE_ID = NamespaceId.SYSTEM.dataset("workflow.stats");
   private static final Map<String, String> EMPTY_STRING_MAP = Collections.emptyMap();
+  // Maximum number of run records to scan in one transaction
+  private static final int RUN_SCAN_TX_BATCH_SIZE = 100;
 
   private final TransactionRunner transactionRunner;
 
@@ -293,6 +296,36 @@ public class DefaultStore implements Store {
     });
   }
 
+  @Override
+  public void scanRuns(ProgramId id, ProgramRunStatus status, long startTime, long endTime,
+                       @Nullable String pageToken, int limit,
+                       BiConsumer<String, RunRecordDetail> consumer) throws BadRequestException {
+    String token = pageToken;
+    int remaining = limit;
+
+    // Scan in batches to avoid holding a single transaction for too long,
+    // and only call the consumer outside of the transaction.
+    while (remaining > 0) {
+      int batchSize = Math.min(remaining, RUN_SCAN_TX_BATCH_SIZE);
+      String batchToken = token;
+      List<Map.Entry<String, RunRecordDetail>> batch = TransactionRunners.run(transactionRunner, context -> {
+        List<Map.Entry<String, RunRecordDetail>> result = new ArrayList<>(batchSize);
+        getAppMetadataStore(context).scanRuns(id, status, startTime, endTime, batchToken, batchSize,
+                                              (t, record) -> result.add(Maps.immutableEntry(t, record)));
+        return result;
+      }, BadRequestException.class);
+
+      for (Map.Entry<String, RunRecordDetail> entry : batch) {
+        consumer.accept(entry.getKey(), entry.getValue());
+        token = entry.getKey();
+      }
+      if (batch.size() < batchSize) {
+        break;
+      }
+      remaining -= batch.size();
+    }
+  }
+
   @Override
   public Map<ProgramRunId, RunRecordDetail> getRuns(ProgramRunStatus status,
                                                     Predicate<RunRecordDetail> filter) {
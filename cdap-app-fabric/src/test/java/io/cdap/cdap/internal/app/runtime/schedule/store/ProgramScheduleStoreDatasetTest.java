@@ -20,6 +20,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.cdap.cdap.api.ProgramStatus;
+import io.cdap.cdap.common.AlreadyExistsException;
+import io.cdap.cdap.common.NotFoundException;
 import io.cdap.cdap.internal.app.runtime.schedule.ProgramSchedule;
 import io.cdap.cdap.internal.app.runtime.schedule.ProgramScheduleRecord;
 import io.cdap.cdap.internal.app.runtime.schedule.ProgramScheduleStatus;
@@ -314,6 +316,69 @@ public abstract class ProgramScheduleStoreDatasetTest extends AppFabricTestBase
     );
   }
 
+  @Test
+  public void testAddAndDeleteMultipleSchedules() throws Exception {
+    TransactionRunner transactionRunner = getTransactionRunner();
+
+    ProgramSchedule sched1 = new ProgramSchedule("sched1", "one partition schedule", PROG1_ID,
+      Collections.emptyMap(), new PartitionTrigger(DS1_ID, 1), Collections.emptyList());
+    ProgramSchedule sched2 = new ProgramSchedule("sched2", "two partitions schedule", PROG2_ID,
+      Collections.emptyMap(), new PartitionTrigger(DS1_ID, 2), Collections.emptyList());
+    ProgramSchedule sched3 = new ProgramSchedule("sched3", "time schedule", PROG3_ID,
+      Collections.emptyMap(), new TimeTrigger("* * * 1 1"), Collections.emptyList());
+
+    TransactionRunners.run(
+      transactionRunner,
+      context -> {
+        ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context);
+        store.addSchedules(ImmutableList.of(sched1, sched2));
+      }
+    );
+
+    // adding an existing schedule or the same schedule twice fails
+    for (Collection<ProgramSchedule> schedules : ImmutableList.of(ImmutableList.of(sched3, sched1),
+                                                                  ImmutableList.of(sched3, sched3))) {
+      try {
+        TransactionRunners.run(
+          transactionRunner,
+          context -> {
+            Schedulers.getScheduleStore(context).addSchedules(schedules);
+          }, AlreadyExistsException.class);
+        Assert.fail("Expected AlreadyExistsException");
+      } catch (AlreadyExistsException e) {
+        // expected
+      }
+    }
+
+    // deleting a schedule that does not exist fails
+    try {
+      TransactionRunners.run(
+        transactionRunner,
+        context -> {
+          Schedulers.getScheduleStore(context).deleteSchedules(ImmutableList.of(sched1.getScheduleId(),
+                                                                                sched3.getScheduleId()), null);
+        }, NotFoundException.class);
+      Assert.fail("Expected NotFoundException");
+    } catch (NotFoundException e) {
+      // expected
+    }
+
+    TransactionRunners.run(
+      transactionRunner,
+      context -> {
+        ProgramScheduleStoreDataset store = Schedulers.getScheduleStore(context);
+        Assert.assertEquals(ImmutableSet.of(sched1, sched2),
+                            toScheduleSet(store.findSchedules(Schedulers.triggerKeyForPartition(DS1_ID))));
+        store.deleteSchedules(ImmutableList.of(sched1.getScheduleId(), sched2.getScheduleId()), null);
+        Assert.assertTrue(store.findSchedules(Schedulers.triggerKeyForPartition(DS1_ID)).isEmpty());
+        // deleted schedules can be added again
+        store.addSchedules(ImmutableList.of(sched1, sched3));
+        Assert.assertEquals(ImmutableSet.of(sched1),
+                            toScheduleSet(store.findSchedules(Schedulers.triggerKeyForPartition(DS1_ID))));
+      }
+    );
+  }
+
   private Set<ProgramSchedule> toScheduleSet(Collection<ProgramScheduleRecord> records) {
     return records.stream().map(ProgramScheduleRecord::getSchedule).collect(Collectors.toSet());
   }
@@ -23,6 +23,7 @@ import com.google.common.collect.Lists;
 import io.cdap.cdap.AllProgramsApp;
 import io.cdap.cdap.api.app.ApplicationSpecification;
 import io.cdap.cdap.api.artifact.ArtifactId;
+import io.cdap.cdap.common.BadRequestException;
 import io.cdap.cdap.common.app.RunIds;
 import io.cdap.cdap.internal.AppFabricTestHelper;
 import io.cdap.cdap.internal.app.deploy.Specifications;
@@ -659,6 +660,87 @@ public abstract class AppMetadataStoreTest {
     Assert.assertFalse(hasResult.get());
   }
 
+  @Test
+  public void testScanRuns() throws Exception {
+    ProgramId programId = NamespaceId.DEFAULT.app("app").program(ProgramType.WORKFLOW, "workflow");
+
+    // Insert runs one second apart, with every third run still running
+    List<ProgramRunId> activeRuns = new ArrayList<>();
+    List<ProgramRunId> completedRuns = new ArrayList<>();
+    List<ProgramRunId> rangeRuns = new ArrayList<>();
+    for (int i = 1; i <= 12; i++) {
+      RunId runId = RunIds.generate(TimeUnit.SECONDS.toMillis(i));
+      ProgramRunId programRunId = programId.run(runId);
+      boolean completed = i % 3 != 0;
+
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore store = AppMetadataStore.create(context);
+        recordProvisionAndStart(programRunId, store);
+        store.recordProgramRunning(programRunId, RunIds.getTime(runId, TimeUnit.SECONDS), null,
+                                   AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+        if (completed) {
+          store.recordProgramStop(programRunId, RunIds.getTime(runId, TimeUnit.SECONDS) + 1,
+                                  ProgramRunStatus.COMPLETED, null,
+                                  AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+        }
+      });
+
+      // Scan returns the newest run first
+      (completed ? completedRuns : activeRuns).add(0, programRunId);
+    }
+
+    List<ProgramRunId> allRuns = new ArrayList<>(activeRuns);
+    allRuns.addAll(completedRuns);
+    for (ProgramRunId runId : allRuns) {
+      long startTime = RunIds.getTime(runId.getRun(), TimeUnit.SECONDS);
+      if (startTime >= 4 && startTime < 10) {
+        rangeRuns.add(runId);
+      }
+    }
+
+    // Scan with different page sizes, including ones that divide the number of runs
+    for (int pageSize : new int[] { 1, 4, 5, 100 }) {
+      Assert.assertEquals(allRuns, scanRuns(programId, ProgramRunStatus.ALL, 0, Long.MAX_VALUE, pageSize));
+      Assert.assertEquals(completedRuns,
+                          scanRuns(programId, ProgramRunStatus.COMPLETED, 0, Long.MAX_VALUE, pageSize));
+      Assert.assertEquals(activeRuns, scanRuns(programId, ProgramRunStatus.RUNNING, 0, Long.MAX_VALUE, pageSize));
+      Assert.assertEquals(rangeRuns, scanRuns(programId, ProgramRunStatus.ALL, 4, 10, pageSize));
+    }
+
+    // Scan with an invalid page token should fail
+    try {
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore.create(context).scanRuns(programId, ProgramRunStatus.ALL, 0, Long.MAX_VALUE, "invalid", 1,
+                                                  (token, record) -> { });
+      }, BadRequestException.class);
+      Assert.fail("Expected BadRequestException");
+    } catch (BadRequestException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Scans all runs of the given program page by page, and returns the ids of the runs in scan order.
+   */
+  private List<ProgramRunId> scanRuns(ProgramId programId, ProgramRunStatus status,
+                                      long startTime, long endTime, int pageSize) throws BadRequestException {
+    List<ProgramRunId> result = new ArrayList<>();
+    AtomicReference<String> pageToken = new AtomicReference<>();
+    AtomicInteger count = new AtomicInteger();
+    do {
+      count.set(0);
+      TransactionRunners.run(transactionRunner, context -> {
+        AppMetadataStore store = AppMetadataStore.create(context);
+        store.scanRuns(programId, status, startTime, endTime, pageToken.get(), pageSize, (token, record) -> {
+          pageToken.set(token);
+          result.add(record.getProgramRunId());
+          count.incrementAndGet();
+        });
+      }, BadRequestException.class);
+    } while (count.get() == pageSize);
+    return result;
+  }
+
   private <T> void assertSecondCallIsNull(Callable<T> callable) throws Exception {
     T result = callable.call();
     Assert.assertNotNull(result);
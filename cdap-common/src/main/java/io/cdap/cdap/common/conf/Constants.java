@@ -217,6 +217,8 @@ public final class Constants {
     public static final String APP_SCHEDULER_QUEUE = "apps.scheduler.queue";
     public static final String STATUS_EVENT_FETCH_SIZE = "app.program.status.event.fetch.size";
     public static final String STATUS_EVENT_POLL_DELAY_MILLIS = "app.program.status.event.poll.delay.millis";
+    public static final String STATUS_EVENT_PROCESSING_PARALLELISM =
+      "app.program.status.event.processing.parallelism";
     public static final String MAPREDUCE_JOB_CLIENT_CONNECT_MAX_RETRIES = "mapreduce.jobclient.connect.max.retries";
     public static final String MAPREDUCE_INCLUDE_CUSTOM_CLASSES = "mapreduce.include.custom.format.classes";
     public static final String MAPREDUCE_STATUS_REPORT_INTERVAL_SECONDS = "mapreduce.status.report.interval.seconds";
@@ -582,6 +584,7 @@ public final class Constants {
     public static final String DATA_STORAGE_SQL_PASSWORD = "data.storage.sql.jdbc.password";
     public static final String DATA_STORAGE_SQL_PROPERTY_PREFIX = "data.storage.sql.jdbc.property.";
     public static final String DATA_STORAGE_SQL_CONNECTION_SIZE = "data.storage.sql.jdbc.connection.pool.size";
+    public static final String DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE = "data.storage.sql.jdbc.statement.cache.size";
 
     // used for Guice named bindings
     public static final String TABLE_TYPE = "table.type";
@@ -727,12 +730,16 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
     public static final String PROCESSOR_MAX_DELAY_MS = "metrics.processor.max.delay.ms";
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
+    public static final String PROCESSOR_DECODE_THREADS = "metrics.processor.decode.threads";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
     public static final String TIME_SERIES_TABLE_ROLL_TIME = "metrics.data.table.ts.rollTime";
 
     public static final String METRICS_MINIMUM_RESOLUTION_SECONDS = "metrics.minimum.resolution.seconds";
+    public static final String QUERY_CACHE_MAX_ENTRIES = "metrics.query.cache.max.entries";
+    public static final String QUERY_CACHE_EXPIRE_SECONDS = "metrics.query.cache.expire.seconds";
+    public static final String QUERY_CACHE_REFRESH_OVERLAP_SECONDS = "metrics.query.cache.refresh.overlap.seconds";
     public static final String MINIMUM_RESOLUTION_RETENTION_SECONDS =
       "metrics.data.table.retention.minimum.resolution.seconds";
     // Key prefix for retention seconds. The actual key is suffixed by the table resolution.
@@ -878,6 +885,10 @@ public final class Constants {
         public static final String OP_COUNT = "dataset.store.ops";
         public static final String WRITE_COUNT = "dataset.store.writes";
         public static final String WRITE_BYTES = "dataset.store.bytes";
+        public static final String LEVELDB_ROW_CACHE_HIT_COUNT = "dataset.leveldb.row.cache.hit.count";
+        public static final String LEVELDB_ROW_CACHE_MISS_COUNT = "dataset.leveldb.row.cache.miss.count";
+        public static final String LEVELDB_ROW_CACHE_EVICTION_COUNT = "dataset.leveldb.row.cache.eviction.count";
+        public static final String LEVELDB_ROW_CACHE_SIZE = "dataset.leveldb.row.cache.size";
       }
 
       /**
@@ -887,6 +898,19 @@ public final class Constants {
         public static final String PROCESS_MIN_DELAY = "log.process.min.delay";
         public static final String PROCESS_MAX_DELAY = "log.process.max.delay";
         public static final String PROCESS_MESSAGES_COUNT = "log.process.message.count";
+        public static final String APPENDER_QUEUE_SIZE = "log.appender.queue.size";
+        public static final String APPENDER_DROPPED_COUNT = "log.appender.dropped.count";
+        public static final String APPENDER_PUBLISH_LATENCY = "log.appender.publish.latency.ms";
+      }
+
+      /**
+       * Metrics query metrics
+       */
+      public static final class Query {
+        public static final String CACHE_HIT_COUNT = "metrics.query.cache.hit.count";
+        public static final String CACHE_MISS_COUNT = "metrics.query.cache.miss.count";
+        public static final String CACHE_SIZE = "metrics.query.cache.size";
+        public static final String CACHE_SAVED_INTERVALS = "metrics.query.cache.saved.intervals";
       }
     }
 
@@ -941,6 +965,8 @@ public final class Constants {
       public static final String ACTIVE_CONNECTIONS = "structured.table.connection.active";
       public static final String IDLE_CONNECTIONS = "structured.table.connection.idle";
       public static final String ERROR_CONNECTIONS = "structured.table.connection.error";
+      public static final String STATEMENT_CACHE_HIT = "structured.table.statement.cache.hit";
+      public static final String STATEMENT_CACHE_MISS = "structured.table.statement.cache.miss";
     }
 
     /**
@@ -1020,6 +1046,8 @@ public final class Constants {
     public static final String LOG_BUFFER_RECOVERY_BATCH_SIZE = "log.buffer.recovery.batch.size";
     // number of events to be sent to time event queue processor from incoming queue
     public static final String LOG_BUFFER_PIPELINE_BATCH_SIZE = "log.buffer.pipeline.batch.size";
+    // number of shards that each log buffer pipeline is divided into
+    public static final String LOG_BUFFER_PIPELINE_SHARDS = "log.buffer.pipeline.shards";
     // log buffer server configs
     public static final String LOG_BUFFER_SERVER_BIND_ADDRESS = "log.buffer.server.bind.address";
     public static final String LOG_BUFFER_SERVER_BIND_PORT = "log.buffer.server.bind.port";
@@ -1092,6 +1120,9 @@ public final class Constants {
     public static final String KAFKA_TOPIC = "log.kafka.topic";
     public static final String TMS_TOPIC_PREFIX = "log.tms.topic.prefix";
     public static final String APPENDER_QUEUE_SIZE = "log.queue.size";
+    public static final String APPENDER_QUEUE_OFFER_TIMEOUT_MS = "log.queue.offer.timeout.ms";
+    public static final String PUBLISH_BATCH_MAX_BYTES = "log.publish.batch.max.bytes";
+    public static final String PUBLISH_TARGET_LATENCY_MS = "log.publish.target.latency.ms";
     public static final String NUM_PARTITIONS = "log.publish.num.partitions";
     public static final String LOG_PUBLISH_PARTITION_KEY = "log.publish.partition.key";
 
@@ -1452,6 +1483,8 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_COMPRESSION_ENABLED = "data.local.storage.compression.enabled";
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
+  public static final String CFG_DATA_LEVELDB_ROW_CACHE_SIZE = "data.local.storage.row.cache.size";
+  public static final String CFG_DATA_LEVELDB_ROW_CACHE_MAX_ROW_SIZE = "data.local.storage.row.cache.max.row.size";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
   public static final String CFG_DATA_LEVELDB_COMPACTION_INTERVAL_SECONDS =
     "data.local.storage.compaction.interval.seconds";
@@ -1466,6 +1499,8 @@ public final class Constants {
   public static final String DEFAULT_DATA_LEVELDB_DIR = "data";
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
+  public static final long DEFAULT_DATA_LEVELDB_ROW_CACHE_SIZE = 1024 * 1024 * 32;
+  public static final int DEFAULT_DATA_LEVELDB_ROW_CACHE_MAX_ROW_SIZE = 1024 * 64;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
   public static final long DEFAULT_DATA_LEVELDB_COMPACTION_INTERVAL_SECONDS = 3600 * 24 * 7L;
   public static final int DEFAULT_DATA_LEVELDB_COMPACTION_LEVEL_MIN = 0;
@@ -1569,8 +1604,15 @@ public final class Constants {
     public static final String LOCAL_DATA_DIR = "messaging.local.data.dir";
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
     public static final String LOCAL_DATA_PARTITION_SECONDS = "messaging.local.data.partition.secs";
+    public static final String LOCAL_DATA_SEGMENT_SIZE_MB = "messaging.local.data.segment.size.mb";
+    public static final String LOCAL_TABLE_TYPE = "messaging.local.table.type";
+    public static final String LOCAL_TABLE_TYPE_LEVELDB = "leveldb";
+    public static final String LOCAL_TABLE_TYPE_SEGMENT = "segment";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_TYPE = "messaging.cache.type";
+    public static final String CACHE_TYPE_HEAP = "heap";
+    public static final String CACHE_TYPE_OFF_HEAP = "offheap";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1581,6 +1623,7 @@ public final class Constants {
     public static final String PAYLOAD_TABLE_HBASE_SPLITS = "messaging.payload.table.hbase.splits";
     public static final String SYSTEM_TOPICS = "messaging.system.topics";
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
+    public static final String GROUP_COMMIT_WINDOW_MILLIS = "messaging.group.commit.window.millis";
     public static final String TABLE_HBASE_SPLIT_POLICY = "messaging.table.hbase.split.policy";
     public static final String TOPIC_DEFAULT_TTL_SECONDS = "messaging.topic.default.ttl.seconds";
     public static final String COPROCESSOR_METADATA_CACHE_UPDATE_FREQUENCY_SECONDS =
@@ -1590,6 +1633,8 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_FETCH_MAX_WAIT_MILLIS = "messaging.http.server.fetch.max.wait.millis";
+    public static final String HTTP_SERVER_FETCH_WAIT_THREADS = "messaging.http.server.fetch.wait.threads";
     public static final String HTTP_COMPRESS_PAYLOAD = "messaging.http.compress.payload";
 
     // Distributed mode related configurations
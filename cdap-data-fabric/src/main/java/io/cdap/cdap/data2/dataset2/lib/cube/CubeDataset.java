@@ -48,6 +48,13 @@ public class CubeDataset extends AbstractDataset implements Cube {
   public CubeDataset(String name, MetricsTable entityTable,
                      Map<Integer, Table> resolutionTables,
                      Map<String, ? extends Aggregation> aggregations) {
+    this(name, entityTable, resolutionTables, aggregations, FactTable.Encoding.COLUMN);
+  }
+
+  public CubeDataset(String name, MetricsTable entityTable,
+                     Map<Integer, Table> resolutionTables,
+                     Map<String, ? extends Aggregation> aggregations,
+                     FactTable.Encoding factEncoding) {
     super(name, entityTable, resolutionTables.values().toArray(new Dataset[resolutionTables.values().size()]));
     this.entityTable = entityTable;
     this.resolutionTables = resolutionTables;
@@ -57,7 +64,7 @@ public class CubeDataset extends AbstractDataset implements Cube {
       resolutions[index++] = resolution;
     }
     this.cube = new DefaultCube(resolutions,
-                                new FactTableSupplierImpl(entityTable, resolutionTables),
+                                new FactTableSupplierImpl(entityTable, resolutionTables, factEncoding),
                                 aggregations, ImmutableMap.<String, AggregationAlias>of());
   }
 
@@ -107,17 +114,20 @@ public class CubeDataset extends AbstractDataset implements Cube {
   private static final class FactTableSupplierImpl implements FactTableSupplier {
     private final MetricsTable entityTable;
     private final Map<Integer, Table> resolutionTables;
+    private final FactTable.Encoding factEncoding;
 
-    private FactTableSupplierImpl(MetricsTable entityTable, Map<Integer, Table> resolutionTables) {
+    private FactTableSupplierImpl(MetricsTable entityTable, Map<Integer, Table> resolutionTables,
+                                  FactTable.Encoding factEncoding) {
       this.entityTable = entityTable;
       this.resolutionTables = resolutionTables;
+      this.factEncoding = factEncoding;
     }
 
     @Override
     public FactTable get(int resolution, int rollTime) {
       return new FactTable(new MetricsTableOnTable(resolutionTables.get(resolution)),
                            new EntityTable(entityTable),
-                           resolution, rollTime);
+                           resolution, rollTime, factEncoding);
     }
   }
 }
@@ -53,6 +53,7 @@ import java.util.Set;
      dataset.cube.aggregation.userPages.requiredDimensions=page
      dataset.cube.aggregation.userActions.dimensions=user,action
      dataset.cube.aggregation.userActions.requiredDimensions=action
+     dataset.cube.fact.encoding=block
     </pre>
  *
  * <ul>
@@ -68,6 +69,11 @@ import java.util.Set;
  *     configures "userActions" aggregation (name doesn't have any restricted format, can be any alphabetical) that
  *     aggregates measurements for user and action; allows querying e.g. number of specific actions of specific user
  *   </li>
+ *   <li>
+ *     configures Cube to write the values of each fact table row into compressed blocks, which makes queries
+ *     over long time ranges faster at the cost of slower writes. Defaults to "column", that writes each value into
+ *     its own column.
+ *   </li>
  * </ul>
  *
  * Aggregation is defined with list of dimensions to aggregate by and a list of required dimensions
@@ -82,6 +88,7 @@ public class CubeDatasetDefinition
   public static final String PROPERTY_AGGREGATION_PREFIX = "dataset.cube.aggregation.";
   public static final String PROPERTY_DIMENSIONS = "dimensions";
   public static final String PROPERTY_REQUIRED_DIMENSIONS = "requiredDimensions";
+  public static final String PROPERTY_FACT_ENCODING = "dataset.cube.fact.encoding";
   // 1 second is the only default resolution
   public static final int[] DEFAULT_RESOLUTIONS = new int[]{1};
 
@@ -109,6 +116,8 @@ public class CubeDatasetDefinition
 
   @Override
   public DatasetSpecification configure(String instanceName, DatasetProperties properties) {
+    // validates the encoding
+    getFactEncoding(properties.getProperties());
 
     DatasetProperties factTableProperties = computeFactTableProperties(properties);
     List<DatasetSpecification> datasetSpecs = Lists.newArrayList();
@@ -131,6 +140,8 @@ public class CubeDatasetDefinition
   public DatasetSpecification reconfigure(String instanceName,
                                           DatasetProperties newProps,
                                           DatasetSpecification currentSpec) throws IncompatibleUpdateException {
+    // validates the encoding. Changing it is allowed, as rows written with either encoding can always be read
+    getFactEncoding(newProps.getProperties());
 
     DatasetProperties factTableProperties = computeFactTableProperties(newProps);
     List<DatasetSpecification> datasetSpecs = Lists.newArrayList();
@@ -186,7 +197,8 @@ public class CubeDatasetDefinition
 
     Map<String, Aggregation> aggregations = getAggregations(spec.getProperties());
 
-    return new CubeDataset(spec.getName(), entityTable, resolutionTables, aggregations);
+    return new CubeDataset(spec.getName(), entityTable, resolutionTables, aggregations,
+                           getFactEncoding(spec.getProperties()));
   }
 
   private DatasetProperties computeFactTableProperties(DatasetProperties props) {
@@ -236,6 +248,23 @@ public class CubeDatasetDefinition
     return aggregations;
   }
 
+  private FactTable.Encoding getFactEncoding(Map<String, String> propsMap) {
+    // Example of configuring the block encoding:
+    //   dataset.cube.fact.encoding=block
+
+    String encoding = propsMap.get(PROPERTY_FACT_ENCODING);
+    if (encoding == null) {
+      return FactTable.Encoding.COLUMN;
+    }
+    try {
+      return FactTable.Encoding.valueOf(encoding.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format("Invalid value %s for property %s. Must be one of %s.",
+                                                       encoding, PROPERTY_FACT_ENCODING,
+                                                       Arrays.toString(FactTable.Encoding.values())));
+    }
+  }
+
   private int[] getResolutions(Map<String, String> propsMap) {
     // Example of configuring 1 second and 60 seconds resolutions:
     //   dataset.cube.resolutions=1,60
@@ -134,17 +134,23 @@ public class DefaultCube implements Cube, MeteredDataset {
       }
     }
 
-    Map<Integer, Future<?>> futures = new HashMap<>();
+    // Each resolution rolls up the facts that fall into the same interval before writing
+    Map<Integer, Future<Integer>> futures = new HashMap<>();
     for (Map.Entry<Integer, FactTable> table : resolutionToFactTable.entrySet()) {
-      futures.put(table.getKey(), executorService.submit(() -> table.getValue().add(toWrite)));
+      futures.put(table.getKey(), executorService.submit(() -> {
+        List<Fact> rollups = FactRollup.rollup(toWrite, table.getKey());
+        table.getValue().add(rollups);
+        return rollups.size();
+      }));
     }
 
+    int addedCount = 0;
     boolean failed = false;
     Exception failedException = null;
     StringBuilder failedMessage = new StringBuilder("Failed to add metrics to ");
-    for (Map.Entry<Integer, Future<?>> future : futures.entrySet()) {
+    for (Map.Entry<Integer, Future<Integer>> future : futures.entrySet()) {
       try {
-        Uninterruptibles.getUninterruptibly(future.getValue());
+        addedCount += Uninterruptibles.getUninterruptibly(future.getValue());
       } catch (ExecutionException e) {
         if (!failed) {
           failed = true;
@@ -168,7 +174,7 @@ public class DefaultCube implements Cube, MeteredDataset {
     incrementMetric("cube.cubeFact.added.count", facts.size());
     incrementMetric("cube.tsFact.created.count", toWrite.size());
     incrementMetric("cube.tsFact.created.dimValues.count", dimValuesCount);
-    incrementMetric("cube.tsFact.added.count", toWrite.size() * resolutionToFactTable.size());
+    incrementMetric("cube.tsFact.added.count", addedCount);
   }
 
   @Override
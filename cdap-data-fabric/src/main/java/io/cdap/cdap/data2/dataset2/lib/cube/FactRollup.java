@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.Fact;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Pre-aggregates a batch of {@link Fact}s for a given resolution before they are written to the {@link FactTable}
+ * of that resolution. Facts with the same dimension values that fall into the same resolution interval are merged
+ * into one, with counters summed up and the last value of each gauge kept. This is the same result as writing the
+ * facts one by one, but with one write per measure and interval, which greatly reduces the work for coarse
+ * resolutions, where many facts fall into the same interval.
+ */
+final class FactRollup {
+
+  private FactRollup() {
+    // no-op
+  }
+
+  /**
+   * Rolls up the given list of facts for the given resolution.
+   *
+   * @param facts the facts to roll up
+   * @param resolution the resolution in seconds
+   * @return a list of rolled up facts, with timestamps rounded to the resolution
+   */
+  static List<Fact> rollup(List<Fact> facts, int resolution) {
+    Map<RollupKey, RollupValue> rollups = new LinkedHashMap<>();
+    for (Fact fact : facts) {
+      RollupKey key = new RollupKey(fact.getTimestamp() / resolution * resolution, fact.getDimensionValues());
+      RollupValue value = rollups.computeIfAbsent(key, k -> new RollupValue());
+      for (Measurement measurement : fact.getMeasurements()) {
+        value.add(measurement);
+      }
+    }
+
+    // Nothing got merged
+    if (rollups.size() == facts.size()) {
+      return facts;
+    }
+
+    List<Fact> result = new ArrayList<>(rollups.size());
+    for (Map.Entry<RollupKey, RollupValue> entry : rollups.entrySet()) {
+      RollupKey key = entry.getKey();
+      result.add(new Fact(key.timestamp, key.dimensionValues, entry.getValue().getMeasurements()));
+    }
+    return result;
+  }
+
+  /**
+   * Key for facts that are merged together.
+   */
+  private static final class RollupKey {
+    private final long timestamp;
+    private final List<DimensionValue> dimensionValues;
+    private final int hashCode;
+
+    RollupKey(long timestamp, List<DimensionValue> dimensionValues) {
+      this.timestamp = timestamp;
+      this.dimensionValues = dimensionValues;
+      this.hashCode = Objects.hash(timestamp, dimensionValues);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RollupKey other = (RollupKey) o;
+      return timestamp == other.timestamp && dimensionValues.equals(other.dimensionValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * The merged measurements of facts.
+   */
+  private static final class RollupValue {
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private final Map<String, Long> gauges = new LinkedHashMap<>();
+
+    void add(Measurement measurement) {
+      if (measurement.getType() == MeasureType.COUNTER) {
+        counters.merge(measurement.getName(), measurement.getValue(), Long::sum);
+      } else {
+        gauges.put(measurement.getName(), measurement.getValue());
+      }
+    }
+
+    List<Measurement> getMeasurements() {
+      List<Measurement> measurements = new ArrayList<>(counters.size() + gauges.size());
+      counters.forEach((name, value) -> measurements.add(new Measurement(name, MeasureType.COUNTER, value)));
+      gauges.forEach((name, value) -> measurements.add(new Measurement(name, MeasureType.GAUGE, value)));
+      return measurements;
+    }
+  }
+}
@@ -41,7 +41,9 @@ import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.DatasetContext;
 import io.cdap.cdap.api.dataset.DatasetSpecification;
 import io.cdap.cdap.api.dataset.PartitionNotFoundException;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.AbstractDataset;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.dataset.lib.DynamicPartitioner;
 import io.cdap.cdap.api.dataset.lib.FileSet;
 import io.cdap.cdap.api.dataset.lib.FileSetArguments;
@@ -62,14 +64,17 @@ import io.cdap.cdap.api.dataset.lib.Partitioning.FieldType;
 import io.cdap.cdap.api.dataset.lib.partitioned.PartitionKeyCodec;
 import io.cdap.cdap.api.dataset.table.Put;
 import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.Locations;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
+import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data.RuntimeProgramContext;
 import io.cdap.cdap.data.RuntimeProgramContextAware;
 import io.cdap.cdap.data2.dataset2.lib.file.FileSetDataset;
+import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import io.cdap.cdap.explore.client.ExploreFacade;
 import io.cdap.cdap.proto.id.DatasetId;
 import org.apache.tephra.Transaction;
@@ -79,8 +84,10 @@ import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -737,6 +744,41 @@ public class PartitionedFileSetDataset extends AbstractDataset
     return partitionDetails;
   }
 
+  @ReadOnly
+  @Override
+  public CloseableIterator<PartitionDetail> getPartitionIterator(@Nullable final PartitionFilter filter) {
+    final Scanner scanner = scanPartitions(filter, generateStartKey(filter), generateStopKey(filter));
+    return new AbstractCloseableIterator<PartitionDetail>() {
+      private boolean matched;
+
+      @Override
+      protected PartitionDetail computeNext() {
+        Row row;
+        while ((row = scanner.next()) != null) {
+          PartitionKey key = parseMatchingRowKey(row, filter);
+          if (key == null) {
+            continue;
+          }
+          matched = true;
+          byte[] pathBytes = row.get(RELATIVE_PATH);
+          if (pathBytes != null) {
+            return new BasicPartitionDetail(PartitionedFileSetDataset.this, Bytes.toString(pathBytes), key,
+                                            metadataFromRow(row));
+          }
+        }
+        if (!matched) {
+          warnIfInvalidPartitionFilter(filter, partitioning);
+        }
+        return endOfData();
+      }
+
+      @Override
+      public void close() {
+        scanner.close();
+      }
+    };
+  }
+
   private Collection<PartitionKey> getPartitionPaths(@Nullable PartitionFilter filter) {
     // this avoids constructing the Partition object for every partition.
     final Set<PartitionKey> partitionKeys = new HashSet<>();
@@ -765,21 +807,14 @@ public class PartitionedFileSetDataset extends AbstractDataset
   private void getPartitions(@Nullable PartitionFilter filter, PartitionConsumer consumer, boolean decodeMetadata,
                              @Nullable byte[] startKey, @Nullable byte[] endKey, long limit) {
     long count = 0L;
-    try (Scanner scanner = partitionsTable.scan(startKey, endKey)) {
+    try (Scanner scanner = scanPartitions(filter, startKey, endKey)) {
       while (count < limit) {
         Row row = scanner.next();
         if (row == null) {
           break;
         }
-        PartitionKey key;
-        try {
-          key = parseRowKey(row.getRow(), partitioning);
-        } catch (IllegalArgumentException e) {
-          LOG.debug(String.format("Failed to parse row key for partitioned file set '%s': %s",
-                                  getName(), Bytes.toStringBinary(row.getRow())));
-          continue;
-        }
-        if (filter != null && !filter.match(key)) {
+        PartitionKey key = parseMatchingRowKey(row, filter);
+        if (key == null) {
           continue;
         }
         byte[] pathBytes = row.get(RELATIVE_PATH);
@@ -794,6 +829,39 @@ public class PartitionedFileSetDataset extends AbstractDataset
     }
   }
 
+  /**
+   * Scans the partitions table between the given keys. Single-value conditions of the filter that are not covered by
+   * the start and stop key are pushed down to the table as a {@link FuzzyRowFilter}, if possible.
+   */
+  private Scanner scanPartitions(@Nullable PartitionFilter filter, @Nullable byte[] startKey, @Nullable byte[] endKey) {
+    FuzzyRowFilter fuzzyRowFilter = generateFuzzyRowFilter(filter);
+    if (fuzzyRowFilter == null) {
+      return partitionsTable.scan(startKey, endKey);
+    }
+    return partitionsTable.scan(new Scan(startKey, endKey, fuzzyRowFilter));
+  }
+
+  /**
+   * Parses the partition key of a row of the partitions table.
+   *
+   * @return the partition key, or null if the row key cannot be parsed or the partition key does not match the filter
+   */
+  @Nullable
+  private PartitionKey parseMatchingRowKey(Row row, @Nullable PartitionFilter filter) {
+    PartitionKey key;
+    try {
+      key = parseRowKey(row.getRow(), partitioning);
+    } catch (IllegalArgumentException e) {
+      LOG.debug(String.format("Failed to parse row key for partitioned file set '%s': %s",
+                              getName(), Bytes.toStringBinary(row.getRow())));
+      return null;
+    }
+    if (filter != null && !filter.match(key)) {
+      return null;
+    }
+    return key;
+  }
+
   private PartitionMetadata metadataFromRow(Row row) {
     Map<String, String> metadata = new HashMap<>();
     for (Map.Entry<byte[], byte[]> entry : row.getColumns().entrySet()) {
@@ -1268,9 +1336,9 @@ public class PartitionedFileSetDataset extends AbstractDataset
       if (condition == null) {
         break; // this field is not present; we can't include any more fields in the stop key
       }
-      Comparable upperValue = condition.getUpper();
+      Comparable upperValue = condition.isSingleValue() ? condition.getValue() : condition.getUpper();
       if (upperValue == null) {
-        break; // this field is not present; we can't include any more fields in the stop key
+        break; // this field has no upper bound; we can't include any more fields in the stop key
       }
       try {
         fieldType.validate(upperValue);
@@ -1306,6 +1374,65 @@ public class PartitionedFileSetDataset extends AbstractDataset
     return stopKey;
   }
 
+  /**
+   * Generates a {@link FuzzyRowFilter} for the single-value conditions of a partition filter on fields that follow a
+   * field without a single-value condition, that is, the conditions that cannot be expressed with the start and stop
+   * key of the scan. The offset of a field in the row key is only known if all preceding fields have a fixed length
+   * or a single-value condition, hence no conditions past a string field without single value are included.
+   *
+   * @return the fuzzy row filter, or null if there is no condition to push down
+   */
+  @Nullable
+  private FuzzyRowFilter generateFuzzyRowFilter(@Nullable PartitionFilter filter) {
+    if (null == filter) {
+      return null;
+    }
+    ByteArrayOutputStream fuzzyKey = new ByteArrayOutputStream();
+    ByteArrayOutputStream fuzzyMask = new ByteArrayOutputStream();
+    boolean allSingleValue = true;
+    boolean first = true;
+    int fuzzyKeyLength = 0;
+    for (Map.Entry<String, FieldType> entry : partitioning.getFields().entrySet()) {
+      if (!first) {
+        // the \0 between each of the fields is fixed
+        fuzzyKey.write(0);
+        fuzzyMask.write(0);
+      }
+      first = false;
+      FieldType fieldType = entry.getValue();
+      PartitionFilter.Condition<? extends Comparable> condition = filter.getCondition(entry.getKey());
+      if (condition != null && condition.isSingleValue()) {
+        byte[] bytes;
+        try {
+          bytes = FieldTypes.toBytes(condition.getValue(), fieldType);
+        } catch (IllegalArgumentException e) {
+          return null; // the filter does not match any partition, leave it to filtering the scanned rows
+        }
+        fuzzyKey.write(bytes, 0, bytes.length);
+        fuzzyMask.write(new byte[bytes.length], 0, bytes.length);
+        if (!allSingleValue) {
+          fuzzyKeyLength = fuzzyKey.size();
+        }
+        continue;
+      }
+      if (fieldType == FieldType.STRING) {
+        break; // variable length; we don't know the offset of any more fields in the row key
+      }
+      int size = fieldType == FieldType.INT ? Bytes.SIZEOF_INT : Bytes.SIZEOF_LONG;
+      byte[] fuzzy = new byte[size];
+      Arrays.fill(fuzzy, (byte) 1);
+      fuzzyKey.write(new byte[size], 0, size);
+      fuzzyMask.write(fuzzy, 0, size);
+      allSingleValue = false;
+    }
+    if (fuzzyKeyLength == 0) {
+      return null;
+    }
+    return new FuzzyRowFilter(Collections.singletonList(
+      ImmutablePair.of(Arrays.copyOf(fuzzyKey.toByteArray(), fuzzyKeyLength),
+                       Arrays.copyOf(fuzzyMask.toByteArray(), fuzzyKeyLength))));
+  }
+
   @VisibleForTesting
   static PartitionKey parseRowKey(byte[] rowKey, Partitioning partitioning) {
     PartitionKey.Builder builder = PartitionKey.builder();
@@ -18,7 +18,6 @@ package io.cdap.cdap.data2.dataset2.lib.table;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import io.cdap.cdap.api.annotation.ReadOnly;
@@ -476,7 +475,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
           mergeToPersisted(rowColumns, buffCols, columns);
         }
 
-        result.add(new Result(row, unwrapDeletes(rowColumns)));
+        result.add(new Result(row, removeDeletes(rowColumns)));
       }
       return result;
     } catch (Exception e) {
@@ -696,8 +695,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public Scanner scan(Scan scan) {
     ensureTransactionIsStarted();
     NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
+    FuzzyRowFilter filter = getFuzzyRowFilter(scan.getFilter());
     try {
-      return new BufferingScanner(bufferMap, scanPersisted(scan));
+      return new BufferingScanner(bufferMap, filter, scanPersisted(scan));
     } catch (Exception e) {
       LOG.debug("scan failed for table: " + getTransactionAwareName() +
           ", scan: " + scan.toString(), e);
@@ -718,29 +718,19 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     } else {
       bufferMap = buff.subMap(startRow, true, stopRow, false);
     }
-    bufferMap = applyFilter(bufferMap, scan.getFilter());
     return bufferMap;
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> applyFilter(
-                                                        NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap,
-                                                        @Nullable Filter filter) {
+  @Nullable
+  private FuzzyRowFilter getFuzzyRowFilter(@Nullable Filter filter) {
     if (filter == null) {
-      return bufferMap;
+      return null;
     }
-
     // todo: currently we support only FuzzyRowFilter as an experimental feature
     if (filter instanceof FuzzyRowFilter) {
-      NavigableMap<byte[], NavigableMap<byte[], Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : bufferMap.entrySet()) {
-        if (FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey())) {
-          result.put(entry.getKey(), entry.getValue());
-        }
-      }
-      return result;
-    } else {
-      throw new DataSetException("Unknown filter type: " + filter);
+      return (FuzzyRowFilter) filter;
     }
+    throw new DataSetException("Unknown filter type: " + filter);
   }
 
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
@@ -761,7 +751,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       mergeToPersisted(result, buffCols, null);
     }
 
-    return unwrapDeletes(result);
+    return removeDeletes(result);
   }
 
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
@@ -802,7 +792,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // overlay buffered values on persisted, applying increments where necessary
     mergeToPersisted(result, buffCols, columns);
 
-    return unwrapDeletes(result);
+    return removeDeletes(result);
   }
 
   /**
@@ -810,42 +800,65 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
    * with the updated values.
    * @param persisted The map to modify with the buffered values.
    * @param buffered The buffered values to overlay on the persisted map.
+   * @param columns The columns to overlay, or {@code null} to overlay all buffered columns.
    */
-  private static void mergeToPersisted(Map<byte[], byte[]> persisted, Map<byte[], Update> buffered, byte[][] columns) {
-    List<byte[]> columnKeys;
+  private static void mergeToPersisted(Map<byte[], byte[]> persisted, Map<byte[], Update> buffered,
+                                       @Nullable byte[][] columns) {
     if (columns != null) {
-      columnKeys = Arrays.asList(columns);
-    } else {
+      for (byte[] key : columns) {
+        Update val = buffered.get(key);
+        if (val != null || buffered.containsKey(key)) {
+          mergeToPersisted(persisted, key, val);
+        }
+      }
+      return;
+    }
+    for (Map.Entry<byte[], Update> entry : buffered.entrySet()) {
       // NOTE: we want to copy key's byte array because it may be leaked to table's client and we don't want client
       //       to affect the buffer by changing it in place
-      columnKeys = Lists.newArrayListWithExpectedSize(buffered.size());
-      for (byte[] key : buffered.keySet()) {
-        columnKeys.add(copy(key));
-      }
+      mergeToPersisted(persisted, copy(entry.getKey()), entry.getValue());
     }
-    // overlay buffered values on persisted, applying increments where necessary
-    for (byte[] key : columnKeys) {
-      Update val = buffered.get(key);
-      if (val == null) {
-        if (buffered.containsKey(key)) {
-          persisted.remove(key);
-        }
-      } else if (val instanceof IncrementValue) {
-        long persistedValue = 0L;
-        byte[] persistedBytes = persisted.get(key);
-        if (persistedBytes != null) {
-          persistedValue = Bytes.toLong(persistedBytes);
-        }
-        long newValue = persistedValue + ((IncrementValue) val).getValue();
-        persisted.put(key, Bytes.toBytes(newValue));
+  }
+
+  /**
+   * Returns the columns of a row that only exists in the buffer. Since there is no persisted value, deletes are
+   * skipped and increments are the buffered values. The keys and values are copied, so that the buffer can change
+   * after the row is returned.
+   */
+  private static Map<byte[], byte[]> toColumns(NavigableMap<byte[], Update> buffered) {
+    Map<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], Update> entry : buffered.entrySet()) {
+      Update val = entry.getValue();
+      if (val instanceof IncrementValue) {
+        columns.put(copy(entry.getKey()), Bytes.toBytes(((IncrementValue) val).getValue()));
       } else if (val instanceof PutValue) {
-        // overwrite the current
-        // NOTE: we want to copy value's byte array because it may be leaked to table's client and we don't want client
-        // to affect the buffer by changing it in place
-        persisted.put(key, copy(((PutValue) val).getValue()));
+        columns.put(copy(entry.getKey()), copy(((PutValue) val).getValue()));
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Applies a single buffered update on top of the map of persisted values, applying increments where necessary.
+   */
+  private static void mergeToPersisted(Map<byte[], byte[]> persisted, byte[] key, @Nullable Update val) {
+    if (val == null) {
+      persisted.remove(key);
+    } else if (val instanceof IncrementValue) {
+      long persistedValue = 0L;
+      byte[] persistedBytes = persisted.get(key);
+      if (persistedBytes != null) {
+        persistedValue = Bytes.toLong(persistedBytes);
       }
-      // unknown type?!
+      long newValue = persistedValue + ((IncrementValue) val).getValue();
+      persisted.put(key, Bytes.toBytes(newValue));
+    } else if (val instanceof PutValue) {
+      // overwrite the current
+      // NOTE: we want to copy value's byte array because it may be leaked to table's client and we don't want client
+      // to affect the buffer by changing it in place
+      persisted.put(key, copy(((PutValue) val).getValue()));
     }
+    // unknown type?!
   }
 
   // utilities useful for underlying implementations
@@ -921,6 +934,14 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return result;
   }
 
+  /**
+   * Same as {@link #unwrapDeletes(NavigableMap)}, but removes the deletes from the given map instead of copying it.
+   */
+  private static NavigableMap<byte[], byte[]> removeDeletes(NavigableMap<byte[], byte[]> rowMap) {
+    rowMap.values().removeIf(value -> unwrapDeleteIfNeeded(value) == null);
+    return rowMap;
+  }
+
   private void reportWrite(int numOps, int dataSize) {
     if (metricsCollector != null) {
       metricsCollector.increment(Constants.Metrics.Name.Dataset.WRITE_COUNT, numOps);
@@ -962,14 +983,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // they get annotated
 
   @ReadOnly
-  private Iterator<byte[]> getBufferKeyIterator(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
-    final Iterator<byte[]> iterator = buffer.keySet().iterator();
-    return new AbstractIterator<byte[]>() {
-      @Override
-      protected byte[] computeNext() {
-        return BufferingTable.this.hasNext(iterator) ? BufferingTable.this.next(iterator) : endOfData();
-      }
-    };
+  private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> getBufferIterator(
+    NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
+    return buffer.entrySet().iterator();
   }
 
   @ReadOnly
@@ -982,28 +998,25 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return iterator.next();
   }
 
-  @ReadOnly
-  private NavigableMap<byte[], Update> getFromBuffer(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer,
-                                                     byte[] key) {
-    return buffer.get(key);
-  }
-
   /**
-   * Scanner implementation that overlays buffered data on top of already persisted data.
+   * Scanner implementation that overlays buffered data on top of already persisted data. Both are sorted by row, so
+   * it walks the buffered rows and the persisted scanner side by side. The filter of the scan is applied to the
+   * buffered rows as they are read, seeking ahead in the buffer with the hints of the filter.
    */
   private class BufferingScanner implements Scanner {
     private final NavigableMap<byte[], NavigableMap<byte[], Update>> buffer;
+    private final FuzzyRowFilter filter;
     private final Scanner persistedScanner;
-    private final Iterator<byte[]> keyIter;
-    private byte[] currentKey;
+    private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferIter;
+    private Map.Entry<byte[], NavigableMap<byte[], Update>> currentEntry;
     private Row currentRow;
 
-    private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Scanner persistedScanner) {
+    private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer,
+                             @Nullable FuzzyRowFilter filter, Scanner persistedScanner) {
       this.buffer = buffer;
-      this.keyIter = getBufferKeyIterator(buffer);
-      if (this.keyIter.hasNext()) {
-        currentKey = keyIter.next();
-      }
+      this.filter = filter;
+      this.bufferIter = getBufferIterator(buffer);
+      this.currentEntry = nextBufferEntry();
       this.persistedScanner = persistedScanner;
       this.currentRow = this.persistedScanner.next();
     }
@@ -1011,20 +1024,20 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     @Nullable
     @Override
     public Row next() {
-      if (currentKey == null && currentRow == null) {
+      if (currentEntry == null && currentRow == null) {
         // out of rows
         return null;
       }
       reportRead(1);
       int order;
-      if (currentKey == null) {
+      if (currentEntry == null) {
         // exhausted buffer is the same as persisted scan row coming first
         order = 1;
       } else if (currentRow == null) {
         // exhausted persisted scanner is the same as buffer row coming first
         order = -1;
       } else {
-        order = Bytes.compareTo(currentKey, currentRow.getRow());
+        order = Bytes.compareTo(currentEntry.getKey(), currentRow.getRow());
       }
 
       Row result;
@@ -1034,23 +1047,51 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         currentRow = persistedScanner.next();
       } else if (order < 0) {
         // buffer row comes first or persisted scanner is empty
-        Map<byte[], byte[]> persistedRow = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        mergeToPersisted(persistedRow, getFromBuffer(buffer, currentKey), null);
-        result = new Result(copy(currentKey), persistedRow);
+        result = new Result(copy(currentEntry.getKey()), toColumns(currentEntry.getValue()));
 
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+        currentEntry = nextBufferEntry();
       } else {
         // if currentKey and currentRow are equal, merge and advance both
         Map<byte[], byte[]> persisted = currentRow.getColumns();
-        mergeToPersisted(persisted, getFromBuffer(buffer, currentKey), null);
+        mergeToPersisted(persisted, currentEntry.getValue(), null);
         result = new Result(currentRow.getRow(), persisted);
 
         currentRow = persistedScanner.next();
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+        currentEntry = nextBufferEntry();
       }
       return result;
     }
 
+    /**
+     * Returns the next buffered row that passes the filter, or {@code null} if there is none.
+     */
+    @Nullable
+    private Map.Entry<byte[], NavigableMap<byte[], Update>> nextBufferEntry() {
+      while (BufferingTable.this.hasNext(bufferIter)) {
+        Map.Entry<byte[], NavigableMap<byte[], Update>> entry = BufferingTable.this.next(bufferIter);
+        if (filter == null) {
+          return entry;
+        }
+        switch (filter.filterRow(entry.getKey())) {
+          case INCLUDE:
+            return entry;
+          case SEEK_NEXT_USING_HINT:
+            // the hint may be past the end of the scanned range, in which case there is no next entry
+            Map.Entry<byte[], NavigableMap<byte[], Update>> next =
+              buffer.ceilingEntry(filter.getNextRowHint(entry.getKey()));
+            if (next == null) {
+              return null;
+            }
+            bufferIter = getBufferIterator(buffer.tailMap(next.getKey(), true));
+            break;
+          default:
+            // no greater row can match
+            return null;
+        }
+      }
+      return null;
+    }
+
     @Override
     public void close() {
       this.persistedScanner.close();
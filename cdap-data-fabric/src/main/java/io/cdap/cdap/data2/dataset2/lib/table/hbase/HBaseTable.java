@@ -204,11 +204,8 @@ public class HBaseTable extends BufferingTable {
       }
     }
 
-    if (hbaseGets.isEmpty()) {
-      return Collections.emptyList();
-    }
-
-    Result[] hbaseResults = hbaseGet(hbaseGets);
+    // still return one (empty) row for each get if all of them are for no columns
+    Result[] hbaseResults = hbaseGets.isEmpty() ? new Result[0] : hbaseGet(hbaseGets);
 
     List<Map<byte[], byte[]>> results = new ArrayList<>(gets.size());
     int hbaseResultsIndex = 0;
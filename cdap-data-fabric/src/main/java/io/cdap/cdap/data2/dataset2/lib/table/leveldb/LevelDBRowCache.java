@@ -0,0 +1,259 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of the raw LevelDB entries of table rows, shared by all tables of a {@link LevelDBTableService}. The cached
+ * entries contain all versions and delete markers of a row, so that {@link LevelDBTableCore} can answer any point
+ * read of the row from the cache, with or without a transaction. Rows without entries are cached too, so that
+ * lookups of missing rows don't go to LevelDB either. Rows larger than the maximum row size are only remembered as
+ * {@link CachedRow#TOO_LARGE}, which tells to read them from LevelDB. That marker is kept when the row is written,
+ * so that frequently written large rows are not loaded again after every write only to find out they are too large.
+ * <p/>
+ * Every write to a row must call {@link #invalidate} after the write. A row read from LevelDB is added with
+ * {@link #put}, given the stamp obtained with {@link #getStamp} before reading it, and the entry is removed again if
+ * a write happened in the meantime. This makes sure a concurrent reader never leaves a stale row in the cache.
+ */
+final class LevelDBRowCache {
+
+  // Number of write generation counters, must be a power of two
+  private static final int GENERATION_STRIPES = 1024;
+  // Approximate memory overhead of a cache entry and of a cell, used for the weight of cached rows
+  private static final int ENTRY_OVERHEAD = 128;
+  private static final int CELL_OVERHEAD = 64;
+
+  private final Cache<RowKey, CachedRow> cache;
+  private final int maxRowBytes;
+  // Write generations, striped by table and row, which change after every write
+  private final AtomicLongArray generations;
+  // Changes whenever multiple rows are invalidated at once
+  private final AtomicLong epoch;
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxBytes the approximate maximum total size of the cached rows
+   * @param maxRowBytes the maximum size of a single row to cache
+   */
+  LevelDBRowCache(long maxBytes, int maxRowBytes) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxBytes)
+      .weigher(new Weigher<RowKey, CachedRow>() {
+        @Override
+        public int weigh(RowKey key, CachedRow value) {
+          return ENTRY_OVERHEAD + key.row.length + value.bytes;
+        }
+      })
+      .recordStats()
+      .build();
+    this.maxRowBytes = maxRowBytes;
+    this.generations = new AtomicLongArray(GENERATION_STRIPES);
+    this.epoch = new AtomicLong();
+  }
+
+  /**
+   * Returns the maximum size of a single row to cache.
+   */
+  int getMaxRowBytes() {
+    return maxRowBytes;
+  }
+
+  /**
+   * Returns the cached row, or {@code null} if it is not cached.
+   */
+  @Nullable
+  CachedRow get(String tableName, byte[] row) {
+    return cache.getIfPresent(new RowKey(tableName, row));
+  }
+
+  /**
+   * Returns the stamp to pass to {@link #put} for a row that is about to be read from LevelDB.
+   */
+  long getStamp(String tableName, byte[] row) {
+    return generations.get(getStripe(tableName, row)) + epoch.get();
+  }
+
+  /**
+   * Adds a row that was read from LevelDB.
+   *
+   * @param stamp the stamp returned by {@link #getStamp} before the row was read
+   */
+  void put(String tableName, byte[] row, CachedRow cachedRow, long stamp) {
+    RowKey key = new RowKey(tableName, Arrays.copyOf(row, row.length));
+    cache.put(key, cachedRow);
+    if (cachedRow != CachedRow.TOO_LARGE && getStamp(tableName, row) != stamp) {
+      // the row was written while it was read, the entry may be stale
+      cache.asMap().remove(key, cachedRow);
+    }
+  }
+
+  /**
+   * Invalidates a row after it was written.
+   */
+  void invalidate(String tableName, byte[] row) {
+    generations.incrementAndGet(getStripe(tableName, row));
+    RowKey key = new RowKey(tableName, row);
+    if (cache.getIfPresent(key) != CachedRow.TOO_LARGE) {
+      cache.invalidate(key);
+    }
+  }
+
+  /**
+   * Invalidates the given rows after they were written.
+   */
+  void invalidate(String tableName, Collection<byte[]> rows) {
+    for (byte[] row : rows) {
+      invalidate(tableName, row);
+    }
+  }
+
+  /**
+   * Invalidates all rows of a table, after a write to an arbitrary set of rows or when the table is dropped.
+   */
+  void invalidateTable(String tableName) {
+    epoch.incrementAndGet();
+    cache.asMap().keySet().removeIf(key -> key.tableName.equals(tableName));
+  }
+
+  /**
+   * Invalidates all rows of all tables.
+   */
+  void invalidateAll() {
+    epoch.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the hit and miss statistics of the cache.
+   */
+  CacheStats getStats() {
+    return cache.stats();
+  }
+
+  /**
+   * Returns the number of cached rows.
+   */
+  long size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the hash of a row of a table, with the bits spread such that the lower bits can be used to pick a stripe.
+   */
+  static int hashRow(String tableName, byte[] row) {
+    int hash = 31 * tableName.hashCode() + Bytes.hashCode(row);
+    // spread the bits, same as the hash smearing of java.util.HashMap
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    return hash ^ (hash >>> 7) ^ (hash >>> 4);
+  }
+
+  private int getStripe(String tableName, byte[] row) {
+    return hashRow(tableName, row) & (GENERATION_STRIPES - 1);
+  }
+
+  /**
+   * The raw LevelDB entries of a row, sorted by key.
+   */
+  static final class CachedRow {
+
+    /**
+     * Marker for rows that are too large to be cached.
+     */
+    static final CachedRow TOO_LARGE = new CachedRow(Collections.emptyList(), 0);
+
+    private final List<Map.Entry<byte[], byte[]>> entries;
+    private final int bytes;
+
+    CachedRow(List<Map.Entry<byte[], byte[]>> entries, int bytes) {
+      this.entries = entries;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Returns the size in bytes of the given entry when cached.
+     */
+    static int getEntryBytes(byte[] key, byte[] value) {
+      return CELL_OVERHEAD + key.length + value.length;
+    }
+
+    /**
+     * Returns an iterator over the entries of the row, starting at the first entry not smaller than the given key.
+     */
+    PeekingIterator<Map.Entry<byte[], byte[]>> iterator(byte[] startKey) {
+      int low = 0;
+      int high = entries.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (KeyValue.KEY_COMPARATOR.compare(entries.get(mid).getKey(), startKey) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return Iterators.peekingIterator(entries.subList(low, entries.size()).iterator());
+    }
+  }
+
+  /**
+   * Key of the cache.
+   */
+  private static final class RowKey {
+    private final String tableName;
+    private final byte[] row;
+    private final int hashCode;
+
+    RowKey(String tableName, byte[] row) {
+      this.tableName = tableName;
+      this.row = row;
+      this.hashCode = 31 * tableName.hashCode() + Bytes.hashCode(row);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      RowKey other = (RowKey) o;
+      return tableName.equals(other.tableName) && Bytes.equals(row, other.row);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -17,12 +17,14 @@
 package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.PeekingIterator;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.table.Result;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBRowCache.CachedRow;
 import org.apache.tephra.Transaction;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
@@ -34,22 +36,41 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Queue;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.Nullable;
 
 /**
  * Provides common operations for levelDB tables and queues.
+ * <p/>
+ * Increments and swaps are read-modify-write operations. They are made atomic with a set of locks striped over the
+ * rows of all tables, so that operations on unrelated rows run in parallel. The writes of concurrent increments and
+ * swaps are grouped into a single LevelDB write by a {@link GroupCommit}.
+ * <p/>
+ * Point reads of a row are served from the {@link LevelDBRowCache} of the {@link LevelDBTableService} if it is
+ * enabled. Every write invalidates the rows it changes in that cache once it is done.
  */
 public class LevelDBTableCore {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableCore.class);
 
+  // Number of row locks, must be a power of two
+  private static final int ROW_LOCK_STRIPES = 1024;
+
+  // Row locks are shared by all instances, since there can be multiple instances for the same table
+  private static final Lock[] ROW_LOCKS = createRowLocks();
+
   private static final Scanner EMPTY_SCANNER = createEmptyScanner();
 
   // this represents deleted values
@@ -70,10 +91,12 @@ public class LevelDBTableCore {
 
   private final String tableName;
   private final LevelDBTableService service;
+  private final GroupCommit groupCommit;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) {
     this.tableName = tableName;
     this.service = service;
+    this.groupCommit = new GroupCommit();
   }
 
   private DB getDB() throws IOException {
@@ -85,67 +108,140 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), Long.MAX_VALUE);
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        PendingWrite write = new PendingWrite(1);
+        write.put(createPutKey(row, column, Long.MAX_VALUE), newValue);
+        try {
+          groupCommit.write(write);
+        } finally {
+          invalidateRow(row);
+        }
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
     Map<byte[], Long> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
-    DB db = getDB();
-    WriteBatch writeBatch = db.createWriteBatch();
-    try (Snapshot snapshot = db.getSnapshot()) {
-      ReadOptions readOptions = new ReadOptions().snapshot(snapshot);
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      DB db = getDB();
+      PendingWrite write = new PendingWrite(increments.size());
+      try (Snapshot snapshot = db.getSnapshot()) {
+        ReadOptions readOptions = new ReadOptions().snapshot(snapshot);
 
-      for (Map.Entry<byte[], Long> entry : increments.entrySet()) {
-        byte[] rowKey = createPutKey(row, entry.getKey(), Long.MAX_VALUE);
-        byte[] existingValue = db.get(rowKey, readOptions);
-        long newValue = incrementValue(entry.getValue(), existingValue, row, entry.getKey());
-        result.put(entry.getKey(), newValue);
-        writeBatch.put(rowKey, Bytes.toBytes(newValue));
+        for (Map.Entry<byte[], Long> entry : increments.entrySet()) {
+          byte[] rowKey = createPutKey(row, entry.getKey(), Long.MAX_VALUE);
+          byte[] existingValue = db.get(rowKey, readOptions);
+          long newValue = incrementValue(entry.getValue(), existingValue, row, entry.getKey());
+          result.put(entry.getKey(), newValue);
+          write.put(rowKey, Bytes.toBytes(newValue));
+        }
       }
-      db.write(writeBatch, service.getWriteOptions());
+      try {
+        groupCommit.write(write);
+      } finally {
+        invalidateRow(row);
+      }
+    } finally {
+      lock.unlock();
     }
 
     return result;
   }
 
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
     if (updates.isEmpty()) {
       return;
     }
 
-    DB db = getDB();
-    WriteBatch writeBatch = db.createWriteBatch();
-    try (Snapshot snapshot = db.getSnapshot()) {
-      ReadOptions readOptions = new ReadOptions().snapshot(snapshot);
-
-      for (Map.Entry<byte[], NavigableMap<byte[], Long>> updateEntry : updates.entrySet()) {
-        for (Map.Entry<byte[], Long> entry : updateEntry.getValue().entrySet()) {
-          byte[] rowKey = createPutKey(updateEntry.getKey(), entry.getKey(), Long.MAX_VALUE);
-          byte[] existingValue = db.get(rowKey, readOptions);
-          long newValue = incrementValue(entry.getValue(), existingValue, updateEntry.getKey(), entry.getKey());
-          writeBatch.put(rowKey, Bytes.toBytes(newValue));
+    List<Lock> locks = getRowLocks(updates.keySet());
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+    try {
+      DB db = getDB();
+      PendingWrite write = new PendingWrite(updates.size());
+      try (Snapshot snapshot = db.getSnapshot()) {
+        ReadOptions readOptions = new ReadOptions().snapshot(snapshot);
+
+        for (Map.Entry<byte[], NavigableMap<byte[], Long>> updateEntry : updates.entrySet()) {
+          for (Map.Entry<byte[], Long> entry : updateEntry.getValue().entrySet()) {
+            byte[] rowKey = createPutKey(updateEntry.getKey(), entry.getKey(), Long.MAX_VALUE);
+            byte[] existingValue = db.get(rowKey, readOptions);
+            long newValue = incrementValue(entry.getValue(), existingValue, updateEntry.getKey(), entry.getKey());
+            write.put(rowKey, Bytes.toBytes(newValue));
+          }
         }
       }
-      db.write(writeBatch, service.getWriteOptions());
+      try {
+        groupCommit.write(write);
+      } finally {
+        invalidateRows(updates.keySet());
+      }
+    } finally {
+      for (Lock lock : locks) {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the lock of the given row.
+   */
+  private Lock getRowLock(byte[] row) {
+    return ROW_LOCKS[getRowLockIndex(row)];
+  }
+
+  /**
+   * Returns the locks of the given rows, without duplicates and sorted by index. Acquiring them in that order
+   * avoids deadlocks between concurrent multi-row operations.
+   */
+  private List<Lock> getRowLocks(Collection<byte[]> rows) {
+    boolean[] indexes = new boolean[ROW_LOCK_STRIPES];
+    for (byte[] row : rows) {
+      indexes[getRowLockIndex(row)] = true;
+    }
+    List<Lock> locks = new ArrayList<>(Math.min(rows.size(), ROW_LOCK_STRIPES));
+    for (int i = 0; i < ROW_LOCK_STRIPES; i++) {
+      if (indexes[i]) {
+        locks.add(ROW_LOCKS[i]);
+      }
+    }
+    return locks;
+  }
+
+  private int getRowLockIndex(byte[] row) {
+    return LevelDBRowCache.hashRow(tableName, row) & (ROW_LOCK_STRIPES - 1);
+  }
+
+  private static Lock[] createRowLocks() {
+    Lock[] locks = new Lock[ROW_LOCK_STRIPES];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new ReentrantLock();
     }
+    return locks;
   }
 
   private long incrementValue(long value, @Nullable byte[] existingValue, byte[] row, byte[] col) {
@@ -170,7 +266,11 @@ public class LevelDBTableCore {
         batch.put(key, column.getValue() == null ? DELETE_MARKER : column.getValue());
       }
     }
-    db.write(batch, service.getWriteOptions());
+    try {
+      db.write(batch, service.getWriteOptions());
+    } finally {
+      invalidateRows(changes.keySet());
+    }
   }
 
   /**
@@ -178,14 +278,22 @@ public class LevelDBTableCore {
    * as a result it hides any value written with equal or smaller version.
    */
   public void putDefaultVersion(byte[] row, byte[] column, byte[] value) throws IOException {
-    getDB().put(createPutKey(row, column, KeyValue.LATEST_TIMESTAMP), value);
+    try {
+      getDB().put(createPutKey(row, column, KeyValue.LATEST_TIMESTAMP), value);
+    } finally {
+      invalidateRow(row);
+    }
   }
 
   /**
    * Write the value at the target row and column with the specified version.
    */
   public void put(byte[] row, byte[] column, byte[] value, long version) throws IOException {
-    getDB().put(createPutKey(row, column, version), value);
+    try {
+      getDB().put(createPutKey(row, column, version), value);
+    } finally {
+      invalidateRow(row);
+    }
   }
 
   /**
@@ -212,29 +320,37 @@ public class LevelDBTableCore {
   public byte[] getLatest(byte[] row, byte[] col, @Nullable Transaction tx) throws IOException {
     byte[] startKey = createStartKey(row, col);
     byte[] endKey = createEndKey(row, upperBound(col));
-    byte[] val = null;
+    CachedRow cachedRow = getCachedRow(row);
+    if (cachedRow != null) {
+      return getLatest(cachedRow.iterator(startKey), endKey, tx);
+    }
     try (DBIterator iterator = getDB().iterator()) {
       iterator.seek(startKey);
-      while (iterator.hasNext()) {
-        Map.Entry<byte[], byte[]> entry = iterator.next();
+      return getLatest(iterator, endKey, tx);
+    }
+  }
 
-        // If we have reached past the endKey, nothing is found. Break out of the loop.
-        if (KeyValue.KEY_COMPARATOR.compare(entry.getKey(), endKey) >= 0) {
-          break;
-        }
+  @Nullable
+  private static byte[] getLatest(Iterator<Map.Entry<byte[], byte[]>> iterator, byte[] endKey,
+                                  @Nullable Transaction tx) {
+    while (iterator.hasNext()) {
+      Map.Entry<byte[], byte[]> entry = iterator.next();
 
-        KeyValue kv = KeyValue.fromKey(entry.getKey());
+      // If we have reached past the endKey, nothing is found. Break out of the loop.
+      if (KeyValue.KEY_COMPARATOR.compare(entry.getKey(), endKey) >= 0) {
+        break;
+      }
 
-        // Determine if this KV is visible
-        if (tx != null && !tx.isVisible(kv.getTimestamp())) {
-          continue;
-        }
+      KeyValue kv = KeyValue.fromKey(entry.getKey());
 
-        val = entry.getValue();
-        break;
+      // Determine if this KV is visible
+      if (tx != null && !tx.isVisible(kv.getTimestamp())) {
+        continue;
       }
+
+      return entry.getValue();
     }
-    return val;
+    return null;
   }
 
   public void undo(Map<byte[], ? extends Map<byte[], ?>> persisted, long version) throws IOException {
@@ -249,7 +365,11 @@ public class LevelDBTableCore {
         batch.delete(key);
       }
     }
-    db.write(batch, service.getWriteOptions());
+    try {
+      db.write(batch, service.getWriteOptions());
+    } finally {
+      invalidateRows(persisted.keySet());
+    }
   }
 
   public Scanner scan(byte[] startRow, byte[] stopRow,
@@ -286,9 +406,79 @@ public class LevelDBTableCore {
 
     byte[] startKey = createStartKey(row, columns == null ? startCol : columns[0]);
     byte[] endKey = createEndKey(row, columns == null ? stopCol : upperBound(columns[columns.length - 1]));
+    CachedRow cachedRow = getCachedRow(row);
+    if (cachedRow != null) {
+      return getRow(cachedRow.iterator(startKey), endKey, tx, false, columns, limit).getSecond();
+    }
     try (DBIterator iterator = getDB().iterator()) {
       iterator.seek(startKey);
-      return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
+      return getRow(new PeekingDBIterator(iterator), endKey, tx, false, columns, limit).getSecond();
+    }
+  }
+
+  /**
+   * Returns all entries of the given row from the row cache, loading them from LevelDB on a cache miss.
+   *
+   * @return the cached row, or {@code null} if the row cache is disabled or the row is too large to be cached
+   */
+  @Nullable
+  private CachedRow getCachedRow(byte[] row) throws IOException {
+    LevelDBRowCache rowCache = service.getRowCache();
+    if (rowCache == null) {
+      return null;
+    }
+    CachedRow cachedRow = rowCache.get(tableName, row);
+    if (cachedRow == null) {
+      long stamp = rowCache.getStamp(tableName, row);
+      cachedRow = loadRow(row, rowCache.getMaxRowBytes());
+      rowCache.put(tableName, row, cachedRow, stamp);
+    }
+    return cachedRow == CachedRow.TOO_LARGE ? null : cachedRow;
+  }
+
+  /**
+   * Reads all entries of the given row from LevelDB, or returns {@link CachedRow#TOO_LARGE} if they exceed the given
+   * size. A row without any entry is returned as an empty {@link CachedRow}.
+   */
+  private CachedRow loadRow(byte[] row, int maxRowBytes) throws IOException {
+    byte[] endKey = createEndKey(row, null);
+    List<Map.Entry<byte[], byte[]>> entries = new ArrayList<>();
+    int bytes = 0;
+    try (DBIterator iterator = getDB().iterator()) {
+      iterator.seek(createStartKey(row));
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        if (KeyValue.KEY_COMPARATOR.compare(entry.getKey(), endKey) >= 0) {
+          break;
+        }
+        bytes += CachedRow.getEntryBytes(entry.getKey(), entry.getValue());
+        if (bytes > maxRowBytes) {
+          return CachedRow.TOO_LARGE;
+        }
+        entries.add(entry);
+      }
+    }
+    return new CachedRow(entries, bytes);
+  }
+
+  private void invalidateRow(byte[] row) {
+    LevelDBRowCache rowCache = service.getRowCache();
+    if (rowCache != null) {
+      rowCache.invalidate(tableName, row);
+    }
+  }
+
+  private void invalidateRows(Collection<byte[]> rows) {
+    LevelDBRowCache rowCache = service.getRowCache();
+    if (rowCache != null) {
+      rowCache.invalidate(tableName, rows);
+    }
+  }
+
+  private void invalidateTable() {
+    LevelDBRowCache rowCache = service.getRowCache();
+    if (rowCache != null) {
+      rowCache.invalidateTable(tableName);
     }
   }
 
@@ -309,8 +499,8 @@ public class LevelDBTableCore {
 
   /**
    * Read one row of the table at the latest or highest version. This is used both by getRow() and by Scanner.next().
-   * @param iterator An iterator over the database. This is passed in such that the caller can reuse the same
-   *                 iterator if scanning multiple rows.
+   * @param iterator An iterator over the database or over a cached row. This is passed in such that the caller can
+   *                 reuse the same iterator if scanning multiple rows.
    * @param endKey An upper bound for the (leveldb) keys to read. This method never reads past that key.
    * @param tx The transaction to use for visibility.
    * @param multiRow If true indicates that the row may end before the endKey. In that case,
@@ -321,18 +511,16 @@ public class LevelDBTableCore {
    * @return a pair consisting of the row key of the next non-empty row and the column map for that row. If multiRow
    *         is false, null is returned for row key because the caller already knows it.
    */
-  private static ImmutablePair<byte[], NavigableMap<byte[], byte[]>> getRow(DBIterator iterator,
-                                                                            @Nullable byte[] endKey,
-                                                                            @Nullable Transaction tx,
-                                                                            boolean multiRow,
-                                                                            @Nullable byte[][] columns, int limit) {
+  private static ImmutablePair<byte[], NavigableMap<byte[], byte[]>> getRow(
+    PeekingIterator<Map.Entry<byte[], byte[]>> iterator, @Nullable byte[] endKey, @Nullable Transaction tx,
+    boolean multiRow, @Nullable byte[][] columns, int limit) {
     byte[] rowBeingRead = null;
     byte[] previousRow = null;
     byte[] previousCol = null;
     NavigableMap<byte[], byte[]> map = new TreeMap<>(Bytes.BYTES_COMPARATOR);
 
     while (iterator.hasNext()) {
-      Map.Entry<byte[], byte[]> entry = iterator.peekNext();
+      Map.Entry<byte[], byte[]> entry = iterator.peek();
 
       // if we have reached past the endKey, nothing was found, return null
       if (endKey != null && KeyValue.KEY_COMPARATOR.compare(entry.getKey(), endKey) >= 0) {
@@ -394,14 +582,22 @@ public class LevelDBTableCore {
    * Delete the cell at specified row and column with max version {@link KeyValue.LATEST_TIMESTAMP}.
    */
   public void deleteDefaultVersion(byte[] row, byte[] column) throws IOException {
-    getDB().delete(createPutKey(row, column, KeyValue.LATEST_TIMESTAMP));
+    try {
+      getDB().delete(createPutKey(row, column, KeyValue.LATEST_TIMESTAMP));
+    } finally {
+      invalidateRow(row);
+    }
   }
 
   /**
    * Delete the cell at specified row and column with specified version.
    */
   public void delete(byte[] row, byte[] column, long version) throws IOException {
-    getDB().delete(createPutKey(row, column, version));
+    try {
+      getDB().delete(createPutKey(row, column, version));
+    } finally {
+      invalidateRow(row);
+    }
   }
 
   /**
@@ -454,7 +650,11 @@ public class LevelDBTableCore {
       }
     }
     // delete all the entries that were found
-    db.write(batch, getWriteOptions());
+    try {
+      db.write(batch, getWriteOptions());
+    } finally {
+      invalidateRows(toDelete);
+    }
   }
 
   public void deleteRange(byte[] startRow, byte[] stopRow, @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns)
@@ -503,6 +703,8 @@ public class LevelDBTableCore {
       }
     } finally {
       deleteIterator.close();
+      // the deleted rows are not known upfront, invalidate the whole table
+      invalidateTable();
     }
   }
 
@@ -512,6 +714,8 @@ public class LevelDBTableCore {
     try (DBIterator iterator = db.iterator()) {
       addToDeleteBatch(batch, iterator, row, column);
       db.write(batch);
+    } finally {
+      invalidateRow(row);
     }
   }
 
@@ -558,6 +762,7 @@ public class LevelDBTableCore {
     private final Transaction tx;
     private byte[] endKey;
     private final DBIterator iterator;
+    private final PeekingIterator<Map.Entry<byte[], byte[]>> peekingIterator;
     private final byte[][] columns;
     private final FuzzyRowFilter filter;
 
@@ -566,6 +771,7 @@ public class LevelDBTableCore {
       this.tx = tx;
       this.endKey = endKey;
       this.iterator = iterator;
+      this.peekingIterator = new PeekingDBIterator(iterator);
       this.filter = filter;
       this.columns = columns;
     }
@@ -574,7 +780,8 @@ public class LevelDBTableCore {
     public Row next() {
       try {
         while (true) {
-          ImmutablePair<byte[], NavigableMap<byte[], byte[]>> result = getRow(iterator, endKey, tx, true, columns, -1);
+          ImmutablePair<byte[], NavigableMap<byte[], byte[]>> result = getRow(peekingIterator, endKey, tx, true,
+                                                                              columns, -1);
           if (result.getFirst() == null) {
             return null;
           }
@@ -614,6 +821,114 @@ public class LevelDBTableCore {
     }
   }
 
+  /**
+   * Adapts a {@link DBIterator} to a {@link PeekingIterator}, so that rows can be read the same way from LevelDB and
+   * from the {@link LevelDBRowCache}.
+   */
+  private static final class PeekingDBIterator implements PeekingIterator<Map.Entry<byte[], byte[]>> {
+
+    private final DBIterator iterator;
+
+    PeekingDBIterator(DBIterator iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> peek() {
+      return iterator.peekNext();
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+      return iterator.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Remove not supported");
+    }
+  }
+
+  /**
+   * Groups the writes of concurrent callers into a single LevelDB write. Each caller queues its write and then
+   * competes for the commit lock. The caller that gets it writes everything that is queued at that time, so callers
+   * that get the lock afterwards usually find their write already done.
+   */
+  private final class GroupCommit {
+
+    private final Queue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    private final Lock commitLock = new ReentrantLock();
+
+    /**
+     * Writes the given {@link PendingWrite}, and returns once it is written.
+     */
+    void write(PendingWrite write) throws IOException {
+      queue.add(write);
+      commitLock.lock();
+      try {
+        if (!write.done) {
+          List<PendingWrite> group = new ArrayList<>();
+          PendingWrite pending;
+          while ((pending = queue.poll()) != null) {
+            group.add(pending);
+          }
+          commit(group);
+        }
+      } finally {
+        commitLock.unlock();
+      }
+      if (write.failure != null) {
+        throw new IOException("Failed to write to LevelDB table " + tableName, write.failure);
+      }
+    }
+
+    private void commit(List<PendingWrite> group) {
+      Exception failure = null;
+      try {
+        DB db = getDB();
+        WriteBatch batch = db.createWriteBatch();
+        for (PendingWrite pending : group) {
+          for (int i = 0; i < pending.keys.size(); i++) {
+            batch.put(pending.keys.get(i), pending.values.get(i));
+          }
+        }
+        db.write(batch, getWriteOptions());
+      } catch (Exception e) {
+        failure = e;
+      }
+      for (PendingWrite pending : group) {
+        pending.failure = failure;
+        pending.done = true;
+      }
+    }
+  }
+
+  /**
+   * The puts of a caller of the {@link GroupCommit}. Its state is guarded by the commit lock.
+   */
+  private static final class PendingWrite {
+
+    private final List<byte[]> keys;
+    private final List<byte[]> values;
+    private boolean done;
+    private Exception failure;
+
+    PendingWrite(int size) {
+      this.keys = new ArrayList<>(size);
+      this.values = new ArrayList<>(size);
+    }
+
+    void put(byte[] key, byte[] value) {
+      keys.add(key);
+      values.add(value);
+    }
+  }
+
   // ------- helpers to create the keys for writes and scans ----------
 
   private static byte[] createPutKey(byte[] rowKey, byte[] columnKey, long version) {
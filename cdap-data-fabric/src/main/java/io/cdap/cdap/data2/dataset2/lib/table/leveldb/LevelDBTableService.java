@@ -18,6 +18,7 @@ package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -55,6 +56,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -75,6 +77,7 @@ public class LevelDBTableService implements AutoCloseable {
   private String basePath;
   private WriteOptions writeOptions;
   private boolean isClosed;
+  private volatile LevelDBRowCache rowCache;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
 
@@ -117,6 +120,12 @@ public class LevelDBTableService implements AutoCloseable {
                                        Constants.DEFAULT_DATA_LEVELDB_COMPACTION_LEVEL_MIN);
     compactionLevelMax = config.getInt(Constants.CFG_DATA_LEVELDB_COMPACTION_LEVEL_MAX,
                                        Constants.DEFAULT_DATA_LEVELDB_COMPACTION_LEVEL_MAX);
+    long rowCacheSize = config.getLong(Constants.CFG_DATA_LEVELDB_ROW_CACHE_SIZE,
+                                       Constants.DEFAULT_DATA_LEVELDB_ROW_CACHE_SIZE);
+    int rowCacheMaxRowSize = config.getInt(Constants.CFG_DATA_LEVELDB_ROW_CACHE_MAX_ROW_SIZE,
+                                           Constants.DEFAULT_DATA_LEVELDB_ROW_CACHE_MAX_ROW_SIZE);
+    rowCache = rowCacheSize > 0 && rowCacheMaxRowSize > 0
+      ? new LevelDBRowCache(rowCacheSize, rowCacheMaxRowSize) : null;
     if (scheduledFuture != null) {
       scheduledFuture.cancel(true);
       scheduledFuture = null;
@@ -206,6 +215,10 @@ public class LevelDBTableService implements AutoCloseable {
       Closeables.closeQuietly(entries);
     }
     tables.clear();
+    LevelDBRowCache rowCache = this.rowCache;
+    if (rowCache != null) {
+      rowCache.invalidateAll();
+    }
   }
 
   private void ensureOpen() {
@@ -279,6 +292,31 @@ public class LevelDBTableService implements AutoCloseable {
     return writeOptions;
   }
 
+  /**
+   * Returns the cache of table rows for point reads, or {@code null} if it is disabled.
+   */
+  @Nullable
+  LevelDBRowCache getRowCache() {
+    return rowCache;
+  }
+
+  /**
+   * Returns the statistics of the row cache, or {@code null} if it is disabled.
+   */
+  @Nullable
+  public CacheStats getRowCacheStats() {
+    LevelDBRowCache rowCache = this.rowCache;
+    return rowCache == null ? null : rowCache.getStats();
+  }
+
+  /**
+   * Returns the number of rows in the row cache, or {@code 0} if it is disabled.
+   */
+  public long getRowCacheSize() {
+    LevelDBRowCache rowCache = this.rowCache;
+    return rowCache == null ? 0L : rowCache.size();
+  }
+
   public DB getTable(String tableName) throws IOException {
     ensureOpen();
     DB db = tables.get(tableName);
@@ -352,6 +390,10 @@ public class LevelDBTableService implements AutoCloseable {
     if (db != null) {
       db.close();
     }
+    LevelDBRowCache rowCache = this.rowCache;
+    if (rowCache != null) {
+      rowCache.invalidateTable(name);
+    }
     String dbPath = getDBPath(basePath, name);
     factory.destroy(new File(dbPath), new Options());
   }
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.timeseries;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Helper for serde of the values of a {@link FactTable} row into compressed blocks, which is used
+ * by the {@link FactTable.Encoding#BLOCK} encoding.
+ * <p/>
+ * The values of a row are split by column index, which is the number of resolution intervals from the timebase
+ * of the row, into at most {@link #MAX_BLOCKS} blocks, each covering a fixed span of column indexes and stored in
+ * its own single byte column. Writing a value only rewrites the block covering it, which bounds the cost of a
+ * write regardless of the number of values in the row.
+ * <p/>
+ * A block contains the values sorted by column index. Block format:
+ * <pre>
+ *   &lt;version&gt;&lt;count&gt;(&lt;column index delta-of-delta&gt;&lt;value xor previous value&gt;)*
+ * </pre>
+ * Delta-of-deltas are written as zig-zag varints, so regular intervals take a single byte. The first value is
+ * written as a zig-zag varint and every following value is written as the unsigned varint of its xor with the
+ * previous value, so repeated or slowly changing values take a byte or two.
+ */
+final class FactBlock {
+
+  /**
+   * Maximum number of blocks in a row, which is the number of single byte columns.
+   */
+  static final int MAX_BLOCKS = 256;
+
+  private static final byte VERSION = 0;
+  // minimum number of column indexes covered by a block
+  private static final int MIN_BLOCK_SPAN = 64;
+  // Columns that hold the blocks. They are shorter than the two bytes columns used by the COLUMN encoding,
+  // hence they never conflict with them.
+  private static final byte[][] COLUMNS = new byte[MAX_BLOCKS][];
+
+  static {
+    for (int i = 0; i < MAX_BLOCKS; i++) {
+      COLUMNS[i] = new byte[] {(byte) i};
+    }
+  }
+
+  private FactBlock() {
+    // no-op
+  }
+
+  /**
+   * Returns the number of column indexes covered by each block of a row with the given roll time.
+   */
+  static int getBlockSpan(int rollTime) {
+    return Math.max(MIN_BLOCK_SPAN, (rollTime + MAX_BLOCKS - 1) / MAX_BLOCKS);
+  }
+
+  /**
+   * Returns the column that holds the block of the given index.
+   */
+  static byte[] getColumn(int blockIndex) {
+    return COLUMNS[blockIndex];
+  }
+
+  /**
+   * Returns the index of the block held by the given block column.
+   */
+  static int getBlockIndex(byte[] column) {
+    return column[0] & 0xff;
+  }
+
+  /**
+   * Returns {@code true} if the given column is a block column.
+   */
+  static boolean isBlockColumn(byte[] column) {
+    return column.length == 1;
+  }
+
+  /**
+   * Encodes the given column index to value map into a block.
+   */
+  static byte[] encode(NavigableMap<Integer, Long> values) {
+    // version, count and at most 5 bytes for a column index and 10 bytes for a value per entry
+    byte[] buffer = new byte[1 + 5 + values.size() * 15];
+    buffer[0] = VERSION;
+    int offset = writeVarLong(buffer, 1, values.size());
+
+    int prevIndex = 0;
+    int prevDelta = 0;
+    long prevValue = 0;
+    boolean first = true;
+    for (Map.Entry<Integer, Long> entry : values.entrySet()) {
+      int delta = entry.getKey() - prevIndex;
+      offset = writeVarLong(buffer, offset, zigZag(delta - prevDelta));
+      prevIndex = entry.getKey();
+      prevDelta = delta;
+
+      long value = entry.getValue();
+      offset = writeVarLong(buffer, offset, first ? zigZag(value) : value ^ prevValue);
+      prevValue = value;
+      first = false;
+    }
+    return Arrays.copyOf(buffer, offset);
+  }
+
+  /**
+   * Decodes the given block into a mutable column index to value map.
+   *
+   * @param block the block to decode, {@code null} for an empty block
+   */
+  static NavigableMap<Integer, Long> decode(@Nullable byte[] block) {
+    NavigableMap<Integer, Long> values = new TreeMap<>();
+    if (block == null) {
+      return values;
+    }
+    Decoder decoder = new Decoder(block);
+    while (decoder.next()) {
+      values.put(decoder.getIndex(), decoder.getValue());
+    }
+    return values;
+  }
+
+  /**
+   * Decodes a block one entry at a time, without materializing it.
+   */
+  static final class Decoder {
+    private final byte[] block;
+    private final int count;
+    private int offset;
+    private int decoded;
+    private int index;
+    private int delta;
+    private long value;
+
+    Decoder(byte[] block) {
+      if (block.length == 0 || block[0] != VERSION) {
+        throw new IllegalArgumentException("Unsupported fact block version "
+                                             + (block.length == 0 ? "<empty>" : Byte.toString(block[0])));
+      }
+      this.block = block;
+      this.offset = 1;
+      this.count = (int) readVarLong();
+    }
+
+    /**
+     * Moves to the next entry of the block.
+     *
+     * @return {@code true} if there is an entry, {@code false} if the end of the block is reached
+     */
+    boolean next() {
+      if (decoded >= count) {
+        return false;
+      }
+      delta += (int) unZigZag(readVarLong());
+      index += delta;
+      long encoded = readVarLong();
+      value = decoded == 0 ? unZigZag(encoded) : value ^ encoded;
+      decoded++;
+      return true;
+    }
+
+    /**
+     * Returns the column index of the current entry.
+     */
+    int getIndex() {
+      return index;
+    }
+
+    /**
+     * Returns the value of the current entry.
+     */
+    long getValue() {
+      return value;
+    }
+
+    private long readVarLong() {
+      long result = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = block[offset++];
+        result |= (long) (b & 0x7f) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return result;
+    }
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static int writeVarLong(byte[] buffer, int offset, long value) {
+    while ((value & ~0x7fL) != 0) {
+      buffer[offset++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    buffer[offset++] = (byte) value;
+    return offset;
+  }
+}
@@ -220,10 +220,18 @@ public class FactCodec {
   }
 
   public byte[] createColumn(long ts) {
+    return deltaCache[getColumnIndex(ts)];
+  }
+
+  /**
+   * Returns the index of the column for the given timestamp, which is the number of resolution intervals between
+   * the timebase of the row and the timestamp.
+   */
+  public int getColumnIndex(long ts) {
     long timestamp = roundToResolution(ts);
     int timeBase = getTimeBase(timestamp);
 
-    return deltaCache[(int) ((ts - timeBase) / resolution)];
+    return (int) ((ts - timeBase) / resolution);
   }
 
   public String getMeasureName(byte[] rowKey) {
@@ -264,10 +272,17 @@ public class FactCodec {
   }
 
   public long getTimestamp(byte[] rowKey, byte[] column) {
+    // time leftover is encoded as 2 byte column name
+    return getTimestamp(rowKey, Bytes.toShort(column));
+  }
+
+  /**
+   * Returns the timestamp of the given column index in the given row.
+   */
+  public long getTimestamp(byte[] rowKey, int columnIndex) {
     // timebase is encoded as int after the encoded agg group
     int timebase = Bytes.toInt(rowKey, VERSION.length + entityTable.getIdSize());
-    // time leftover is encoded as 2 byte column name
-    int leftover = Bytes.toShort(column) * resolution;
+    int leftover = columnIndex * resolution;
 
     return timebase + leftover;
   }
@@ -18,6 +18,7 @@ package io.cdap.cdap.data2.dataset2.lib.timeseries;
 
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
@@ -25,7 +26,9 @@ import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -106,10 +109,28 @@ public final class FactScanner implements Iterator<FactScanResult> {
           //       list of dimension names as we *always* know it (it is given) at the time of scanning
           List<DimensionValue> dimensionValues = codec.getDimensionValues(rowKey);
 
+          // blocks are sorted by block index, hence by time
+          List<byte[]> blocks = new ArrayList<>();
+          for (Map.Entry<byte[], byte[]> columnValue : rowResult.getColumns().entrySet()) {
+            if (FactBlock.isBlockColumn(columnValue.getKey())) {
+              blocks.add(columnValue.getValue());
+            }
+          }
+          if (!blocks.isEmpty() && blocks.size() == rowResult.getColumns().size()) {
+            if (codec.getTimestamp(rowKey, 0) > endTs) {
+              break;
+            }
+            // values are only decoded when the result is iterated, and only up to endTs
+            return new FactScanResult(measureName, dimensionValues, () -> decodeBlocks(rowKey, blocks));
+          }
+
           boolean exhausted = false;
           List<TimeValue> timeValues = Lists.newLinkedList();
           // todo: entry set is ordered by ts?
           for (Map.Entry<byte[], byte[]> columnValue : rowResult.getColumns().entrySet()) {
+            if (FactBlock.isBlockColumn(columnValue.getKey())) {
+              continue;
+            }
             long ts = codec.getTimestamp(rowKey, columnValue.getKey());
             if (ts < startTs) {
               continue;
@@ -125,6 +146,12 @@ public final class FactScanner implements Iterator<FactScanResult> {
             timeValues.add(timeValue);
           }
 
+          if (!blocks.isEmpty()) {
+            // row has values written with both encodings
+            Iterators.addAll(timeValues, decodeBlocks(rowKey, blocks));
+            timeValues.sort(Comparator.comparingLong(TimeValue::getTimestamp));
+          }
+
           if (timeValues.isEmpty() && exhausted) {
             break;
           }
@@ -138,4 +165,38 @@ public final class FactScanner implements Iterator<FactScanResult> {
       }
     };
   }
+
+  /**
+   * Returns an {@link Iterator} that decodes the values of the given blocks that are within the scan time range.
+   * The blocks must be sorted by time.
+   */
+  private Iterator<TimeValue> decodeBlocks(byte[] rowKey, List<byte[]> blocks) {
+    Iterator<byte[]> blockIterator = blocks.iterator();
+    return new AbstractIterator<TimeValue>() {
+
+      private FactBlock.Decoder decoder;
+
+      @Override
+      protected TimeValue computeNext() {
+        while (decoder != null || blockIterator.hasNext()) {
+          if (decoder == null) {
+            decoder = new FactBlock.Decoder(blockIterator.next());
+          }
+          if (!decoder.next()) {
+            decoder = null;
+            continue;
+          }
+          long ts = codec.getTimestamp(rowKey, decoder.getIndex());
+          if (ts < startTs) {
+            continue;
+          }
+          if (ts > endTs) {
+            break;
+          }
+          return new TimeValue(ts, decoder.getValue());
+        }
+        return endOfData();
+      }
+    };
+  }
 }
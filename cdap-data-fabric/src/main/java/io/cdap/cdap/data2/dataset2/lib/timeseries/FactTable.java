@@ -23,13 +23,17 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
 import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
 import io.cdap.cdap.api.dataset.lib.cube.Measurement;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.common.service.RetryStrategies;
+import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
@@ -50,12 +54,17 @@ import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import javax.annotation.Nullable;
 
 /**
  * Table for storing {@link Fact}s.
  *
+ * Values of a row are written either in individual columns or in compressed blocks, depending on the
+ * {@link Encoding} of the table.
+ *
  * Thread safe as long as the passed into the constructor datasets are thread safe (usually is not the case).
  */
 public final class FactTable implements Closeable {
@@ -65,6 +74,9 @@ public final class FactTable implements Closeable {
   // hard limits on some ops to stay on safe side
   private static final int MAX_RECORDS_TO_SCAN_DURING_SEARCH = 10 * 1000 * 1000;
   private static final int MAX_SCANS_DURING_SEARCH = 10 * 1000;
+  // retries of the compare-and-swap of a block on conflict
+  private static final RetryStrategy SWAP_RETRY_STRATEGY =
+    RetryStrategies.limit(20, RetryStrategies.exponentialDelay(1L, 100L, TimeUnit.MILLISECONDS));
 
   private final MetricsTable timeSeriesTable;
   private final EntityTable entityTable;
@@ -73,8 +85,12 @@ public final class FactTable implements Closeable {
   // todo: should not be used outside of codec
   private final int rollTime;
 
+  private final Encoding encoding;
+  private final int blockSpan;
+
   private final String putCountMetric;
   private final String incrementCountMetric;
+  private final String swapConflictCountMetric;
   private final Cache<FactCacheKey, Long> factCounterCache;
 
   @Nullable
@@ -93,6 +109,24 @@ public final class FactTable implements Closeable {
    */
   public FactTable(MetricsTable timeSeriesTable,
                    EntityTable entityTable, int resolution, int rollTime) {
+    this(timeSeriesTable, entityTable, resolution, rollTime, Encoding.COLUMN);
+  }
+
+  /**
+   * Creates an instance of {@link FactTable}.
+   *
+   * @param timeSeriesTable A table for storing facts information.
+   * @param entityTable The table for storing dimension encoding mappings.
+   * @param resolution Resolution in seconds
+   * @param rollTime Number of resolution for writing to a new row with a new timebase.
+   *                 Meaning the differences between timebase of two consecutive rows divided by
+   *                 resolution seconds. It essentially defines how many columns per row in the table.
+   *                 This value should be < 65535.
+   * @param encoding The {@link Encoding} used to write values into a row. Rows written with either encoding can
+   *                 always be read.
+   */
+  public FactTable(MetricsTable timeSeriesTable,
+                   EntityTable entityTable, int resolution, int rollTime, Encoding encoding) {
     // Two bytes for column name, which is a delta timestamp
     Preconditions.checkArgument(rollTime <= MAX_ROLL_TIME, "Rolltime should be <= " + MAX_ROLL_TIME);
 
@@ -101,11 +135,14 @@ public final class FactTable implements Closeable {
     this.codec = new FactCodec(entityTable, resolution, rollTime);
     this.resolution = resolution;
     this.rollTime = rollTime;
+    this.encoding = encoding;
+    this.blockSpan = FactBlock.getBlockSpan(rollTime);
     this.putCountMetric = "factTable." + resolution + ".put.count";
     this.incrementCountMetric = "factTable." + resolution + ".increment.count";
+    this.swapConflictCountMetric = "factTable." + resolution + ".swap.conflict.count";
 
-    // only use the cache if the resolution is not the total resolution
-    this.factCounterCache = resolution == Integer.MAX_VALUE ? null :
+    // only use the cache if the resolution is not the total resolution and values are written as individual columns
+    this.factCounterCache = resolution == Integer.MAX_VALUE || encoding == Encoding.BLOCK ? null :
       CacheBuilder.newBuilder().expireAfterAccess(1L, TimeUnit.MINUTES).maximumSize(100000).build();
   }
 
@@ -114,6 +151,11 @@ public final class FactTable implements Closeable {
   }
 
   public void add(List<Fact> facts) {
+    if (encoding == Encoding.BLOCK) {
+      addBlocks(facts);
+      return;
+    }
+
     // Simply collecting all rows/cols/values that need to be put to the underlying table.
     NavigableMap<byte[], NavigableMap<byte[], Long>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -175,6 +217,100 @@ public final class FactTable implements Closeable {
     }
   }
 
+  /**
+   * Adds the given facts with the {@link Encoding#BLOCK} encoding. Only the blocks covering the given facts are
+   * updated, each with a read-modify-write followed by a compare-and-swap, which is retried on conflict, so that
+   * concurrent writers never lose counter increments.
+   */
+  private void addBlocks(List<Fact> facts) {
+    // row key -> column index -> value, for gauges and counters
+    NavigableMap<byte[], NavigableMap<Integer, Long>> gauges = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], NavigableMap<Integer, Long>> increments = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Fact fact : facts) {
+      int columnIndex = codec.getColumnIndex(fact.getTimestamp());
+      for (Measurement measurement : fact.getMeasurements()) {
+        byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
+        if (MeasureType.COUNTER == measurement.getType()) {
+          increments.computeIfAbsent(rowKey, k -> new TreeMap<>()).merge(columnIndex, measurement.getValue(),
+                                                                         Long::sum);
+        } else {
+          gauges.computeIfAbsent(rowKey, k -> new TreeMap<>()).put(columnIndex, measurement.getValue());
+        }
+      }
+    }
+
+    Set<byte[]> rowKeys = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+    rowKeys.addAll(gauges.keySet());
+    rowKeys.addAll(increments.keySet());
+
+    int blocks = 0;
+    int conflicts = 0;
+    for (byte[] rowKey : rowKeys) {
+      NavigableMap<Integer, Long> rowGauges = gauges.getOrDefault(rowKey, Collections.emptyNavigableMap());
+      NavigableMap<Integer, Long> rowIncrements = increments.getOrDefault(rowKey, Collections.emptyNavigableMap());
+      Set<Integer> blockIndexes = new TreeSet<>();
+      rowGauges.keySet().forEach(columnIndex -> blockIndexes.add(columnIndex / blockSpan));
+      rowIncrements.keySet().forEach(columnIndex -> blockIndexes.add(columnIndex / blockSpan));
+
+      for (int blockIndex : blockIndexes) {
+        int fromIndex = blockIndex * blockSpan;
+        int toIndex = fromIndex + blockSpan;
+        Map<Integer, Long> blockGauges = rowGauges.subMap(fromIndex, toIndex);
+        Map<Integer, Long> blockIncrements = rowIncrements.subMap(fromIndex, toIndex);
+        conflicts += updateBlock(rowKey, blockIndex, values -> {
+          // same as with individual columns, gauges are written before increments are applied
+          values.putAll(blockGauges);
+          blockIncrements.forEach((columnIndex, value) -> values.merge(columnIndex, value, Long::sum));
+          return true;
+        });
+        blocks++;
+      }
+    }
+
+    if (metrics != null) {
+      metrics.increment(putCountMetric, blocks);
+      metrics.increment(swapConflictCountMetric, conflicts);
+    }
+  }
+
+  /**
+   * Updates a block of the given row with a read-modify-write followed by a compare-and-swap, which is retried
+   * with backoff on conflict. An empty block is removed.
+   *
+   * @param rowKey the row of the block
+   * @param blockIndex the index of the block in the row
+   * @param update modifies the decoded values of the block, returns {@code false} if nothing was modified
+   * @return the number of conflicts
+   * @throws DataSetException if the block cannot be updated because of too many conflicts
+   */
+  private int updateBlock(byte[] rowKey, int blockIndex, Predicate<NavigableMap<Integer, Long>> update) {
+    byte[] column = FactBlock.getColumn(blockIndex);
+    long startTime = System.currentTimeMillis();
+    int conflicts = 0;
+    while (true) {
+      byte[] oldBlock = timeSeriesTable.get(rowKey, column);
+      NavigableMap<Integer, Long> values = FactBlock.decode(oldBlock);
+      if (!update.test(values)) {
+        return conflicts;
+      }
+      byte[] newBlock = values.isEmpty() ? null : FactBlock.encode(values);
+      if (oldBlock == null && newBlock == null) {
+        return conflicts;
+      }
+      if (timeSeriesTable.swap(rowKey, column, oldBlock, newBlock)) {
+        return conflicts;
+      }
+
+      conflicts++;
+      long delay = SWAP_RETRY_STRATEGY.nextRetry(conflicts, startTime);
+      if (delay < 0) {
+        throw new DataSetException(String.format("Failed to update block %d of row %s after %d conflicts",
+                                                 blockIndex, Bytes.toStringBinary(rowKey), conflicts));
+      }
+      Uninterruptibles.sleepUninterruptibly(delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
   private class MeasureNameComparator implements Comparator<String> {
     private final Map<String, Long> measureNameToEntityIdMap;
 
@@ -249,9 +385,19 @@ public final class FactTable implements Closeable {
       Row row;
       while ((row = scanner.next()) != null) {
         List<byte[]> columns = Lists.newArrayList();
+        boolean hasBlock = false;
+        for (byte[] column : row.getColumns().keySet()) {
+          if (FactBlock.isBlockColumn(column)) {
+            hasBlock = true;
+            deleteFromBlock(row.getRow(), FactBlock.getBlockIndex(column), scan.getStartTs(), scan.getEndTs());
+          }
+        }
 
         boolean exhausted = false;
         for (byte[] column : row.getColumns().keySet()) {
+          if (FactBlock.isBlockColumn(column)) {
+            continue;
+          }
           long ts = codec.getTimestamp(row.getRow(), column);
           if (ts < scan.getStartTs()) {
             continue;
@@ -266,7 +412,9 @@ public final class FactTable implements Closeable {
         }
 
         // todo: do deletes efficiently, in batches, not one-by-one
-        timeSeriesTable.delete(row.getRow(), columns.toArray(new byte[columns.size()][]));
+        if (!hasBlock || !columns.isEmpty()) {
+          timeSeriesTable.delete(row.getRow(), columns.toArray(new byte[columns.size()][]));
+        }
 
         if (exhausted) {
           break;
@@ -275,6 +423,22 @@ public final class FactTable implements Closeable {
     }
   }
 
+  /**
+   * Removes the values in the given time range from a block of the given row. The block is not rewritten if it
+   * has no values in the time range.
+   */
+  private void deleteFromBlock(byte[] rowKey, int blockIndex, long startTs, long endTs) {
+    int fromIndex = blockIndex * blockSpan;
+    if (codec.getTimestamp(rowKey, fromIndex) > endTs
+      || codec.getTimestamp(rowKey, fromIndex + blockSpan - 1) < startTs) {
+      return;
+    }
+    updateBlock(rowKey, blockIndex, values -> values.keySet().removeIf(columnIndex -> {
+      long ts = codec.getTimestamp(rowKey, columnIndex);
+      return ts >= startTs && ts <= endTs;
+    }));
+  }
+
   /**
    * Searches for first non-null valued dimensions in records that contain given list of dimensions and match given
    * dimension values in given time range. Returned dimension values are those that are not defined in given
@@ -492,6 +656,23 @@ public final class FactTable implements Closeable {
     values.put(column, newValue);
   }
 
+  /**
+   * The encoding used to write the values of a row.
+   */
+  public enum Encoding {
+    /**
+     * Each value is written in its own column, named by its time offset within the row.
+     */
+    COLUMN,
+
+    /**
+     * Values of a row are written in a few compressed blocks, each covering a fixed span of time. This greatly
+     * reduces the number of cells scanned and decoded by queries over long time ranges, at the cost of a
+     * read-modify-write of the block covering each written value. See {@link FactBlock} for the format.
+     */
+    BLOCK
+  }
+
   class FactCacheKey {
     private final List<DimensionValue> dimensionValues;
     private final String metricName;
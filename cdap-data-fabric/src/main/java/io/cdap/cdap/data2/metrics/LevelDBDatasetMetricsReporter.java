@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.data2.metrics;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.inject.Inject;
@@ -52,6 +53,7 @@ public class LevelDBDatasetMetricsReporter extends AbstractScheduledService impl
   private final LevelDBTableService ldbService;
   private final DatasetFramework dsFramework;
   private ScheduledExecutorService executor;
+  private CacheStats lastRowCacheStats;
 
   @Inject
   public LevelDBDatasetMetricsReporter(MetricsCollectionService metricsService,
@@ -92,6 +94,23 @@ public class LevelDBDatasetMetricsReporter extends AbstractScheduledService impl
     if (tableStats.size() > 0) {
       report(tableStats);
     }
+    reportRowCacheStats();
+  }
+
+  private void reportRowCacheStats() {
+    CacheStats stats = ldbService.getRowCacheStats();
+    if (stats == null) {
+      return;
+    }
+    // the cache stats are cumulative, only emit the increase since the last report
+    CacheStats delta = lastRowCacheStats == null ? stats : stats.minus(lastRowCacheStats);
+    lastRowCacheStats = stats;
+
+    MetricsContext collector = metricsService.getContext(Constants.Metrics.STORAGE_METRICS_TAGS);
+    collector.increment(Constants.Metrics.Name.Dataset.LEVELDB_ROW_CACHE_HIT_COUNT, delta.hitCount());
+    collector.increment(Constants.Metrics.Name.Dataset.LEVELDB_ROW_CACHE_MISS_COUNT, delta.missCount());
+    collector.increment(Constants.Metrics.Name.Dataset.LEVELDB_ROW_CACHE_EVICTION_COUNT, delta.evictionCount());
+    collector.gauge(Constants.Metrics.Name.Dataset.LEVELDB_ROW_CACHE_SIZE, ldbService.getRowCacheSize());
   }
 
   private void report(Map<TableId, LevelDBTableService.TableStats> datasetStat)
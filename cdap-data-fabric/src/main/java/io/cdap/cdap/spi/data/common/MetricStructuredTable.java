@@ -66,6 +66,25 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void upsertAll(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    try {
+      if (!emitTimeMetrics) {
+        structuredTable.upsertAll(multiFields);
+      } else {
+        long curTime = System.nanoTime();
+        structuredTable.upsertAll(multiFields);
+        long duration = System.nanoTime() - curTime;
+        metricsCollector.increment(metricPrefix + "multi.upsert.time", duration);
+      }
+      metricsCollector.increment(metricPrefix + "multi.upsert.count", 1L);
+    } catch (Exception e) {
+      metricsCollector.increment(metricPrefix + "multi.upsert.error", 1L);
+      throw e;
+    }
+  }
+
   @Override
   public void update(Collection<Field<?>> fields) throws InvalidFieldException, IOException {
     try {
@@ -184,6 +203,27 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public CloseableIterator<StructuredRow> scanIndex(Range indexRange,
+                                                    int limit) throws InvalidFieldException, IOException {
+    try {
+      CloseableIterator<StructuredRow> result;
+      if (!emitTimeMetrics) {
+        result = structuredTable.scanIndex(indexRange, limit);
+      } else {
+        long curTime = System.nanoTime();
+        result = structuredTable.scanIndex(indexRange, limit);
+        long duration = System.nanoTime() - curTime;
+        metricsCollector.increment(metricPrefix + "index.range.scan.time", duration);
+      }
+      metricsCollector.increment(metricPrefix + "index.range.scan.count", 1L);
+      return result;
+    } catch (Exception e) {
+      metricsCollector.increment(metricPrefix + "index.range.scan.error", 1L);
+      throw e;
+    }
+  }
+
   @Override
   public CloseableIterator<StructuredRow> multiScan(Collection<Range> keyRanges,
                                                     int limit) throws InvalidFieldException, IOException {
@@ -263,6 +303,25 @@ public class MetricStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void deleteAll(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    try {
+      if (!emitTimeMetrics) {
+        structuredTable.deleteAll(multiKeys);
+      } else {
+        long curTime = System.nanoTime();
+        structuredTable.deleteAll(multiKeys);
+        long duration = System.nanoTime() - curTime;
+        metricsCollector.increment(metricPrefix + "multi.delete.time", duration);
+      }
+      metricsCollector.increment(metricPrefix + "multi.delete.count", 1L);
+    } catch (Exception e) {
+      metricsCollector.increment(metricPrefix + "multi.delete.error", 1L);
+      throw e;
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     try {
@@ -40,6 +40,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -77,6 +78,16 @@ public final class NoSqlStructuredTable implements StructuredTable {
     table.put(convertFieldsToBytes(fields));
   }
 
+  @Override
+  public void upsertAll(Collection<? extends Collection<Field<?>>> multiFields) throws InvalidFieldException {
+    LOG.trace("Table {}: Write multiple rows {}", schema.getTableId(), multiFields);
+    // Convert all rows before writing, so that no row is written if any of them is invalid
+    List<Put> puts = multiFields.stream().map(this::convertFieldsToBytes).collect(Collectors.toList());
+    for (Put put : puts) {
+      table.put(put);
+    }
+  }
+
   @Override
   public void update(Collection<Field<?>> fields) throws InvalidFieldException {
     LOG.trace("Table {}: Update fields {}", schema.getTableId(), fields);
@@ -177,6 +188,32 @@ public final class NoSqlStructuredTable implements StructuredTable {
     return new ScannerIterator(scanner, schema);
   }
 
+  @Override
+  public CloseableIterator<StructuredRow> scanIndex(Range indexRange, int limit) throws InvalidFieldException {
+    LOG.trace("Table {}: Scan index range {} with limit {}", schema.getTableId(), indexRange, limit);
+    List<String> indexColumns = fieldValidator.validateIndexRange(indexRange);
+    String column = indexColumns.get(0);
+    if (indexColumns.size() > 1 || !schema.isIndexColumn(column)) {
+      throw new UnsupportedOperationException(
+        String.format("Table %s: Range %s needs a composite index, which is not supported by the NoSQL storage",
+                      schema.getTableId(), indexRange));
+    }
+
+    byte[] columnBytes = convertColumnsToBytes(Collections.singleton(column))[0];
+    Iterator<ImmutablePair<byte[], byte[]>> rangeIterator =
+      createIndexScanValues(schema.getType(column), indexRange).iterator();
+    return new LimitIterator(new AbstractIterator<ScannerIterator>() {
+      @Override
+      protected ScannerIterator computeNext() {
+        if (!rangeIterator.hasNext()) {
+          return endOfData();
+        }
+        ImmutablePair<byte[], byte[]> range = rangeIterator.next();
+        return new ScannerIterator(table.scanByIndex(columnBytes, range.getFirst(), range.getSecond()), schema);
+      }
+    }, limit);
+  }
+
   @Override
   public boolean compareAndSwap(Collection<Field<?>> keys, Field<?> oldValue, Field<?> newValue) {
     LOG.trace("Table {}: CompareAndSwap with keys {}, oldValue {}, newValue {}", schema.getTableId(), keys,
@@ -225,6 +262,16 @@ public final class NoSqlStructuredTable implements StructuredTable {
     table.delete(convertKeyToBytes(keys, false));
   }
 
+  @Override
+  public void deleteAll(Collection<? extends Collection<Field<?>>> multiKeys) throws InvalidFieldException {
+    LOG.trace("Table {}: Delete with multiple keys {}", schema.getTableId(), multiKeys);
+    // Convert all keys before deleting, so that no row is deleted if any of them is invalid
+    List<byte[]> rowKeys = multiKeys.stream().map(k -> convertKeyToBytes(k, false)).collect(Collectors.toList());
+    for (byte[] rowKey : rowKeys) {
+      table.delete(rowKey);
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", schema.getTableId(), keyRange);
@@ -416,6 +463,72 @@ public final class NoSqlStructuredTable implements StructuredTable {
     }
   }
 
+  /**
+   * Creates the index value ranges to scan for a single column index range, in the order of the index values.
+   * Each range has an inclusive start and an exclusive end, with {@code null} meaning unbounded.
+   * Integer and long values are encoded with Bytes.toBytes, which sorts the negative values after the non-negative
+   * ones. A range that covers both is scanned as two bounded ranges, the negative values first.
+   */
+  private List<ImmutablePair<byte[], byte[]>> createIndexScanValues(FieldType.Type type, Range range) {
+    Field<?> begin = range.getBegin().isEmpty() ? null : range.getBegin().iterator().next();
+    Field<?> end = range.getEnd().isEmpty() ? null : range.getEnd().iterator().next();
+
+    if (type == FieldType.Type.STRING) {
+      byte[] start = begin == null ? null : Bytes.toBytes((String) begin.getValue());
+      if (start != null && range.getBeginBound() == Range.Bound.EXCLUSIVE) {
+        start = nextIndexValue(start);
+      }
+      byte[] stop = end == null ? null : Bytes.toBytes((String) end.getValue());
+      if (stop != null && range.getEndBound() == Range.Bound.INCLUSIVE) {
+        stop = nextIndexValue(stop);
+      }
+      return Collections.singletonList(ImmutablePair.of(start, stop));
+    }
+
+    // Turn the range into an inclusive range of numbers
+    long min = type == FieldType.Type.INTEGER ? Integer.MIN_VALUE : Long.MIN_VALUE;
+    long max = type == FieldType.Type.INTEGER ? Integer.MAX_VALUE : Long.MAX_VALUE;
+    long from = begin == null ? min : ((Number) begin.getValue()).longValue();
+    long to = end == null ? max : ((Number) end.getValue()).longValue();
+    if (begin != null && range.getBeginBound() == Range.Bound.EXCLUSIVE) {
+      if (from == max) {
+        return Collections.emptyList();
+      }
+      from++;
+    }
+    if (end != null && range.getEndBound() == Range.Bound.EXCLUSIVE) {
+      if (to == min) {
+        return Collections.emptyList();
+      }
+      to--;
+    }
+
+    List<ImmutablePair<byte[], byte[]>> result = new ArrayList<>(2);
+    if (from <= to && from < 0) {
+      result.add(ImmutablePair.of(numberToIndexValue(type, from),
+                                  nextIndexValue(numberToIndexValue(type, Math.min(to, -1L)))));
+    }
+    if (from <= to && to >= 0) {
+      result.add(ImmutablePair.of(numberToIndexValue(type, Math.max(from, 0L)),
+                                  nextIndexValue(numberToIndexValue(type, to))));
+    }
+    return result;
+  }
+
+  /**
+   * Encodes a number the same way as it is stored for an integer or long column.
+   */
+  private static byte[] numberToIndexValue(FieldType.Type type, long value) {
+    return type == FieldType.Type.INTEGER ? Bytes.toBytes((int) value) : Bytes.toBytes(value);
+  }
+
+  /**
+   * Returns the smallest index value that is larger than the given one.
+   */
+  private static byte[] nextIndexValue(byte[] value) {
+    return Bytes.concat(value, new byte[] { 0 });
+  }
+
   private Scanner getScanner(Range keyRange) {
     ImmutablePair<byte[], byte[]> keys = createScanKeys(keyRange);
     return table.scan(keys.getFirst(), keys.getSecond());
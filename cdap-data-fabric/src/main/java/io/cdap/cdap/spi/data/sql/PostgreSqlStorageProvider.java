@@ -29,6 +29,7 @@ import io.cdap.cdap.spi.data.StorageProviderContext;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.sql.jdbc.JDBCDriverShim;
 import io.cdap.cdap.spi.data.sql.jdbc.MetricsDataSource;
+import io.cdap.cdap.spi.data.sql.jdbc.StatementCachingConnectionFactory;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import org.apache.commons.dbcp2.ConnectionFactory;
 import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
@@ -125,7 +126,14 @@ public class PostgreSqlStorageProvider implements StorageProvider {
     LOG.info("Creating the DataSource with jdbc url: {}", jdbcUrl);
 
     ConnectionFactory connectionFactory = new DriverManagerConnectionFactory(jdbcUrl, properties);
-    PoolableConnectionFactory poolableConnectionFactory = new PoolableConnectionFactory(connectionFactory, null);
+
+    // Cache prepared statements per connection. Since all values, including the limit, are set as statement
+    // parameters, the SQL string identifies the query shape, and reusing the statement lets the server reuse the
+    // query plan. The cache size bounds the statements kept for each connection between uses.
+    int statementCacheSize = cConf.getInt(Constants.Dataset.DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE);
+    PoolableConnectionFactory poolableConnectionFactory = statementCacheSize > 0
+      ? new StatementCachingConnectionFactory(connectionFactory, statementCacheSize, metricsCollectionService)
+      : new PoolableConnectionFactory(connectionFactory, null);
     // The GenericObjectPool is thread safe according to the javadoc,
     // the PoolingDataSource will be thread safe as long as the connectin pool is thread-safe
     GenericObjectPool<PoolableConnection> connectionPool = new GenericObjectPool<>(poolableConnectionFactory);
@@ -51,6 +51,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javax.annotation.Nullable;
@@ -84,6 +85,26 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     upsertInternal(fields);
   }
 
+  @Override
+  public void upsertAll(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Write multiple rows {}", tableSchema.getTableId(), multiFields);
+    for (Collection<Field<?>> fields : multiFields) {
+      Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
+      if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
+        throw new InvalidFieldException(tableSchema.getTableId(), fields,
+                                        String.format("Given fields %s do not contain all the " +
+                                                        "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
+      }
+    }
+    try {
+      executeBatch(multiFields, fields -> getWriteSqlQuery(fields, null));
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to write to table %s with multiple rows %s",
+                                          tableSchema.getTableId().getName(), multiFields), e);
+    }
+  }
+
   @Override
   public void update(Collection<Field<?>> fields) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: Update fields {}", tableSchema.getTableId(), fields);
@@ -166,7 +187,8 @@ public class PostgreSqlStructuredTable implements StructuredTable {
       queryString, keyFields.entrySet().stream()
         .map(e -> {
           StringBuilder fieldBuilder = new StringBuilder(e.getKey()).append(" IN (");
-          Joiner.on(',').appendTo(fieldBuilder, IntStream.range(0, e.getValue().size()).mapToObj(i -> "?").iterator());
+          Joiner.on(',').appendTo(fieldBuilder, IntStream.range(0, getInListSize(e.getValue().size()))
+            .mapToObj(i -> "?").iterator());
           return fieldBuilder.append(")").toString();
         }).iterator()
     );
@@ -175,7 +197,7 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     PreparedStatement preparedStatement = connection.prepareStatement(queryString.toString());
 
     // Set fields to the statement
-    setFields(preparedStatement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
+    setInListFields(preparedStatement, keyFields, 1);
     return preparedStatement;
   }
 
@@ -201,13 +223,14 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     LOG.trace("Table {}: Scan range {} with limit {}", tableSchema.getTableId(), keyRange, limit);
     fieldValidator.validatePrimaryKeys(keyRange.getBegin(), true);
     fieldValidator.validatePrimaryKeys(keyRange.getEnd(), true);
-    String scanQuery = getScanQuery(keyRange, limit);
+    String scanQuery = getScanQuery(keyRange);
 
     // We don't close the statement here because once it is closed, the result set is also closed.
     try {
       PreparedStatement statement = connection.prepareStatement(scanQuery);
       statement.setFetchSize(SCAN_FETCH_SIZE);
-      setStatementFieldByRange(keyRange, statement);
+      int index = setStatementFieldByRange(keyRange, statement, 1);
+      statement.setInt(index, limit);
       LOG.trace("SQL statement: {}", statement);
 
       ResultSet resultSet = statement.executeQuery();
@@ -268,7 +291,9 @@ public class PostgreSqlStructuredTable implements StructuredTable {
    * E.g.
    *
    * SELECT * FROM table WHERE key1 in (?,?) AND key2 in (?,?)
-   * OR ((key3 >= ?) AND (key3 <= ?)) OR ((key4 >= ?) AND (key4 <= ?)) LIMIT limit
+   * OR ((key3 >= ?) AND (key3 <= ?)) OR ((key4 >= ?) AND (key4 <= ?)) LIMIT ?
+   *
+   * The size of each IN list is rounded up by {@link #getInListSize(int)}.
    *
    * @param keyFields a map from field name to field values that the query has to match with
    * @param ranges the list of ranges to scan
@@ -286,7 +311,8 @@ public class PostgreSqlStructuredTable implements StructuredTable {
       query
         .append(separator)
         .append(entry.getKey()).append(" IN (")
-        .append(IntStream.range(0, entry.getValue().size()).mapToObj(i -> "?").collect(Collectors.joining(",")))
+        .append(IntStream.range(0, getInListSize(entry.getValue().size())).mapToObj(i -> "?")
+                  .collect(Collectors.joining(",")))
         .append(")");
       separator = " AND ";
     }
@@ -303,16 +329,17 @@ public class PostgreSqlStructuredTable implements StructuredTable {
       query.append(")");
     }
     query.append(getOrderByClause(tableSchema.getPrimaryKeys()));
-    query.append(" LIMIT ").append(limit).append(";");
+    query.append(" LIMIT ?;");
 
     PreparedStatement statement = connection.prepareStatement(query.toString());
     statement.setFetchSize(SCAN_FETCH_SIZE);
 
     // Set the parameters
-    int index = setFields(statement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
+    int index = setInListFields(statement, keyFields, 1);
     for (Range range : ranges) {
       index = setStatementFieldByRange(range, statement, index);
     }
+    statement.setInt(index, limit);
     return statement;
   }
 
@@ -339,6 +366,29 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public CloseableIterator<StructuredRow> scanIndex(Range indexRange,
+                                                    int limit) throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Scan index range {} with limit {}", tableSchema.getTableId(), indexRange, limit);
+    List<String> indexColumns = fieldValidator.validateIndexRange(indexRange);
+    String scanQuery = getIndexScanQuery(indexRange, indexColumns);
+
+    // We don't close the statement here because once it is closed, the result set is also closed.
+    try {
+      PreparedStatement statement = connection.prepareStatement(scanQuery);
+      statement.setFetchSize(SCAN_FETCH_SIZE);
+      int index = setStatementFieldByRange(indexRange, statement, 1);
+      statement.setInt(index, limit);
+      LOG.trace("SQL statement: {}", statement);
+
+      ResultSet resultSet = statement.executeQuery();
+      return new ResultSetIterator(statement, resultSet, tableSchema);
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to scan from table %s with index range %s",
+                                          tableSchema.getTableId().getName(), indexRange), e);
+    }
+  }
+
   @Override
   public boolean compareAndSwap(Collection<Field<?>> keys, Field<?> oldValue, Field<?> newValue)
     throws InvalidFieldException, IOException {
@@ -453,6 +503,21 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void deleteAll(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Delete with multiple keys {}", tableSchema.getTableId(), multiKeys);
+    for (Collection<Field<?>> keys : multiKeys) {
+      fieldValidator.validatePrimaryKeys(keys, false);
+    }
+    try {
+      executeBatch(multiKeys, this::getDeleteQuery);
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to delete the rows from table %s with multiple keys %s",
+                                          tableSchema.getTableId().getName(), multiKeys), e);
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", tableSchema.getTableId(), keyRange);
@@ -517,6 +582,44 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     }
   }
 
+  /**
+   * Executes statements for the given collection of fields using JDBC batching. Consecutive elements that result in
+   * the same SQL query are sent to the database in one batch, so that the rows are written in the iteration order.
+   *
+   * @param multiFields a collection of fields, each for executing one statement
+   * @param queryFunction a function to generate the SQL query for the given fields. The query must take the
+   *                      field values as parameters in the same order as the fields
+   * @throws SQLException if failed to execute the statements
+   */
+  private void executeBatch(Collection<? extends Collection<Field<?>>> multiFields,
+                            Function<Collection<Field<?>>, String> queryFunction) throws SQLException {
+    String batchQuery = null;
+    PreparedStatement statement = null;
+    try {
+      for (Collection<Field<?>> fields : multiFields) {
+        String query = queryFunction.apply(fields);
+        if (!query.equals(batchQuery)) {
+          if (statement != null) {
+            statement.executeBatch();
+            statement.close();
+          }
+          statement = connection.prepareStatement(query);
+          batchQuery = query;
+        }
+        setFields(statement, fields, 1);
+        statement.addBatch();
+      }
+      if (statement != null) {
+        LOG.trace("SQL statement: {}", statement);
+        statement.executeBatch();
+      }
+    } finally {
+      if (statement != null) {
+        statement.close();
+      }
+    }
+  }
+
   private void updateInternal(Collection<Field<?>> fields) throws IOException {
     String sqlQuery = getUpdateSqlQuery(fields);
     try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
@@ -591,6 +694,40 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     return index;
   }
 
+  /**
+   * Sets the values of IN lists into the given {@link PreparedStatement}. Each IN list has the size returned by
+   * {@link #getInListSize(int)}, with the last value repeated to fill it up.
+   *
+   * @param statement the prepared statement to have the fields set into
+   * @param keyFields a map from field name to the values of the IN list of the field
+   * @param beginIndex the first argument index to use to set the fields
+   * @return the next argument index that have been set up to
+   */
+  private int setInListFields(PreparedStatement statement, Map<String, Set<Field<?>>> keyFields,
+                              int beginIndex) throws SQLException {
+    int index = beginIndex;
+    for (Set<Field<?>> fields : keyFields.values()) {
+      Field<?> lastField = null;
+      for (Field<?> field : fields) {
+        setField(statement, field, index++);
+        lastField = field;
+      }
+      for (int i = fields.size(); i < getInListSize(fields.size()); i++) {
+        setField(statement, lastField, index++);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns the number of parameters of an IN list for the given number of values, which is rounded up to a power
+   * of two. This bounds the number of distinct queries, so that prepared statements can be reused across calls
+   * with different number of values.
+   */
+  private static int getInListSize(int size) {
+    return size <= 1 ? size : Integer.highestOneBit(size - 1) << 1;
+  }
+
   private void setField(PreparedStatement statement, Field field,
                         int parameterIndex) throws SQLException, InvalidFieldException {
     fieldValidator.validateField(field);
@@ -750,13 +887,14 @@ public class PostgreSqlStructuredTable implements StructuredTable {
   /**
    * Get the scan query for the range given. For example, if the range provides key1, key2 as the begin and end to
    * scan, both rows are inclusive, it will generate the following query:
-   * SELECT * FROM simpletable WHERE (key1,key2)>=(?,?) AND (key1,key2)<=(?,?) LIMIT 10;
+   * SELECT * FROM simpletable WHERE (key1,key2)>=(?,?) AND (key1,key2)<=(?,?) LIMIT ?;
+   *
+   * The limit is set as the last parameter, so that the query is the same for any limit.
    *
    * @param range the range to scan.
-   * @param limit limit number of row
    * @return the scan query
    */
-  private String getScanQuery(Range range, int limit) {
+  private String getScanQuery(Range range) {
     StringBuilder queryString = new StringBuilder("SELECT * FROM ").append(tableSchema.getTableId().getName());
     if (!range.getBegin().isEmpty() || !range.getEnd().isEmpty()) {
       queryString.append(" WHERE ");
@@ -764,7 +902,34 @@ public class PostgreSqlStructuredTable implements StructuredTable {
     }
 
     queryString.append(getOrderByClause(tableSchema.getPrimaryKeys()));
-    queryString.append(" LIMIT ").append(limit).append(";");
+    queryString.append(" LIMIT ?;");
+    return queryString.toString();
+  }
+
+  /**
+   * Get the scan query for the index range given. For example, if the range provides col1, col2 of a composite index
+   * as the begin and col1 as the end to scan, both inclusive, it will generate the following query:
+   * SELECT * FROM simpletable WHERE col1 IS NOT NULL AND col2 IS NOT NULL AND (col1,col2)>=(?,?) AND (col1)<=(?)
+   * ORDER BY col1, col2, key1, key2 LIMIT ?;
+   *
+   * The IS NOT NULL conditions are needed since a row comparison can be decided on the first column alone.
+   *
+   * @param range the index range to scan
+   * @param indexColumns the index columns used by the range
+   * @return the scan query
+   */
+  private String getIndexScanQuery(Range range, List<String> indexColumns) {
+    StringBuilder queryString = new StringBuilder("SELECT * FROM ").append(tableSchema.getTableId().getName())
+      .append(" WHERE ");
+    for (String column : indexColumns) {
+      queryString.append(column).append(" IS NOT NULL AND ");
+    }
+    appendRange(queryString, range);
+
+    List<String> orderBy = new ArrayList<>(indexColumns);
+    tableSchema.getPrimaryKeys().stream().filter(key -> !orderBy.contains(key)).forEach(orderBy::add);
+    queryString.append(getOrderByClause(orderBy));
+    queryString.append(" LIMIT ?;");
     return queryString.toString();
   }
 
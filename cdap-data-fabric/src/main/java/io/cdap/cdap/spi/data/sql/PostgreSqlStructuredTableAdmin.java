@@ -16,8 +16,10 @@
 
 package io.cdap.cdap.spi.data.sql;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.TableAlreadyExistsException;
@@ -31,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
@@ -48,6 +51,9 @@ import javax.sql.DataSource;
  */
 public class PostgreSqlStructuredTableAdmin implements StructuredTableAdmin {
   private static final Logger LOG = LoggerFactory.getLogger(PostgreSqlStructuredTableAdmin.class);
+  // Maximum length in bytes of identifiers in PostgreSQL
+  private static final int MAX_IDENTIFIER_LENGTH = 63;
+
   private final StructuredTableRegistry registry;
   private final DataSource dataSource;
 
@@ -84,6 +90,10 @@ public class PostgreSqlStructuredTableAdmin implements StructuredTableAdmin {
           LOG.debug("Create index statement: {}", indexStatement);
           statement.execute(indexStatement);
         }
+        for (String indexStatement : getCreateCompositeIndexStatements(spec)) {
+          LOG.debug("Create composite index statement: {}", indexStatement);
+          statement.execute(indexStatement);
+        }
 
         registry.registerSpecification(spec);
       }
@@ -146,6 +156,10 @@ public class PostgreSqlStructuredTableAdmin implements StructuredTableAdmin {
     DatabaseMetaData metaData = connection.getMetaData();
     Set<String> existingIndexes = new HashSet<>();
     Set<String> indexes = new HashSet<>(specification.getIndexes());
+    // Columns of composite indexes are not single column indexes
+    Set<String> compositeIndexNames = specification.getCompositeIndexes().stream()
+      .map(columns -> getCompositeIndexName(specification.getTableId(), columns).toLowerCase())
+      .collect(Collectors.toSet());
     try (ResultSet rs = metaData.getIndexInfo(null, null,
                                               specification.getTableId().getName(), false, false)) {
       while (rs.next()) {
@@ -153,7 +167,8 @@ public class PostgreSqlStructuredTableAdmin implements StructuredTableAdmin {
         // null can be returned if the created index is of tableIndexStatistic, though we don't create indexes of this
         // type, it is safe to only add non-null column name.
         String columnName = rs.getString("COLUMN_NAME");
-        if (columnName != null) {
+        String indexName = rs.getString("INDEX_NAME");
+        if (columnName != null && (indexName == null || !compositeIndexNames.contains(indexName.toLowerCase()))) {
           existingIndexes.add(columnName);
         }
       }
@@ -186,6 +201,39 @@ public class PostgreSqlStructuredTableAdmin implements StructuredTableAdmin {
     return statements;
   }
 
+  /**
+   * Returns the statements for creating the composite indexes. Composite indexes are identified by name,
+   * hence they are created with IF NOT EXISTS instead of being checked with the database metadata.
+   */
+  private List<String> getCreateCompositeIndexStatements(StructuredTableSpecification specification) {
+    StructuredTableId tableId = specification.getTableId();
+    List<String> statements = new ArrayList<>();
+    for (List<String> columns : specification.getCompositeIndexes()) {
+      statements.add(String.format("CREATE INDEX IF NOT EXISTS %s ON %s (%s)", getCompositeIndexName(tableId, columns),
+                                   tableId.getName(), String.join(",", columns)));
+    }
+    return statements;
+  }
+
+  /**
+   * Returns the name of the composite index on the given columns. PostgreSQL truncates identifiers longer than
+   * {@link #MAX_IDENTIFIER_LENGTH} bytes, so a long name is shortened to a prefix followed by a hash of the full name,
+   * which keeps it unique among the indexes of the table.
+   */
+  @VisibleForTesting
+  static String getCompositeIndexName(StructuredTableId tableId, List<String> columns) {
+    String name = tableId.getName() + "_" + String.join("_", columns) + "_idx";
+    if (name.getBytes(StandardCharsets.UTF_8).length <= MAX_IDENTIFIER_LENGTH) {
+      return name;
+    }
+    String suffix = "_" + Hashing.sha256().hashString(name, StandardCharsets.UTF_8).toString().substring(0, 16);
+    String prefix = name.substring(0, MAX_IDENTIFIER_LENGTH - suffix.length());
+    while (prefix.getBytes(StandardCharsets.UTF_8).length > MAX_IDENTIFIER_LENGTH - suffix.length()) {
+      prefix = prefix.substring(0, prefix.length() - 1);
+    }
+    return prefix + suffix;
+  }
+
   private String getDeleteStatement(String tableName) {
     return "DROP TABLE " + tableName + ";";
   }
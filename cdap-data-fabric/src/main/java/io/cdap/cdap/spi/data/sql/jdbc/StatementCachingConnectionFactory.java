@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.sql.jdbc;
+
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.Constants;
+import org.apache.commons.dbcp2.ConnectionFactory;
+import org.apache.commons.dbcp2.DelegatingPreparedStatement;
+import org.apache.commons.dbcp2.PStmtKey;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.dbcp2.PoolableConnectionFactory;
+import org.apache.commons.dbcp2.PoolingConnection;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+
+import java.sql.Connection;
+
+/**
+ * A {@link PoolableConnectionFactory} that caches prepared statements for each connection, and emits metrics about
+ * the hits and misses of the statement cache.
+ * <p/>
+ * Each connection has its own keyed pool of statements. The number of statements open at the same time on a
+ * connection is not limited, so that preparing a statement never fails because the pool is exhausted. The cache size
+ * is applied when the connection is returned to the connection pool, after all its statements are closed.
+ * Every statement borrowed from the statement pool is a prepare, and every statement created by the pool is a miss,
+ * hence the metrics are computed from the counters of the statement pool.
+ */
+public class StatementCachingConnectionFactory extends PoolableConnectionFactory {
+
+  private final MetricsCollectionService metricsCollectionService;
+
+  /**
+   * Creates the factory.
+   *
+   * @param connectionFactory the {@link ConnectionFactory} for creating the physical connections
+   * @param statementCacheSize maximum number of prepared statements kept for each connection
+   * @param metricsCollectionService the {@link MetricsCollectionService} for emitting the statement cache metrics
+   */
+  public StatementCachingConnectionFactory(ConnectionFactory connectionFactory, int statementCacheSize,
+                                           MetricsCollectionService metricsCollectionService) {
+    super(() -> new StatementCachingConnection(connectionFactory.createConnection(), statementCacheSize), null);
+    this.metricsCollectionService = metricsCollectionService;
+  }
+
+  @Override
+  public void passivateObject(PooledObject<PoolableConnection> p) throws Exception {
+    // This closes all the statements opened on the connection, which returns them to the statement pool
+    super.passivateObject(p);
+    Connection connection = p.getObject().getDelegate();
+    if (connection instanceof StatementCachingConnection) {
+      ((StatementCachingConnection) connection).release(
+        metricsCollectionService.getContext(Constants.Metrics.STORAGE_METRICS_TAGS));
+    }
+  }
+
+  /**
+   * A {@link PoolingConnection} that owns its statement pool, in order to bound the statements kept and to read
+   * the pool counters.
+   */
+  private static final class StatementCachingConnection extends PoolingConnection {
+
+    private final GenericKeyedObjectPool<PStmtKey, DelegatingPreparedStatement> statementPool;
+    private final int cacheSize;
+    private long borrowedCount;
+    private long createdCount;
+
+    StatementCachingConnection(Connection connection, int cacheSize) {
+      super(connection);
+      GenericKeyedObjectPoolConfig<DelegatingPreparedStatement> config = new GenericKeyedObjectPoolConfig<>();
+      config.setMaxTotal(-1);
+      config.setMaxTotalPerKey(-1);
+      config.setMaxIdlePerKey(1);
+      config.setJmxEnabled(false);
+      this.statementPool = new GenericKeyedObjectPool<>(this, config);
+      this.cacheSize = cacheSize;
+      setStatementPool(statementPool);
+    }
+
+    @Override
+    public void passivateObject(PStmtKey key, PooledObject<DelegatingPreparedStatement> p) throws Exception {
+      // Cached statements keep the state set on them, hence reset it before the statement is used by another query
+      DelegatingPreparedStatement statement = p.getObject();
+      statement.setFetchSize(0);
+      statement.setMaxRows(0);
+      super.passivateObject(key, p);
+    }
+
+    /**
+     * Drops the least recently used statements beyond the cache size and emits the statement cache metrics since the
+     * last call. It must be called when none of the statements of the connection is open.
+     */
+    void release(MetricsContext metricsContext) {
+      while (statementPool.getNumIdle() > cacheSize) {
+        statementPool.clearOldest();
+      }
+
+      long borrowed = statementPool.getBorrowedCount();
+      long created = statementPool.getCreatedCount();
+      long misses = created - createdCount;
+      long hits = borrowed - borrowedCount - misses;
+      borrowedCount = borrowed;
+      createdCount = created;
+
+      if (hits > 0) {
+        metricsContext.increment(Constants.Metrics.StructuredTable.STATEMENT_CACHE_HIT, hits);
+      }
+      if (misses > 0) {
+        metricsContext.increment(Constants.Metrics.StructuredTable.STATEMENT_CACHE_MISS, misses);
+      }
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import com.google.common.collect.ImmutableList;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.Fact;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link FactRollup}.
+ */
+public class FactRollupTest {
+
+  @Test
+  public void testRollup() {
+    List<DimensionValue> dims1 = ImmutableList.of(new DimensionValue("dim1", "value1"),
+                                                  new DimensionValue("dim2", null));
+    List<DimensionValue> dims2 = ImmutableList.of(new DimensionValue("dim1", "value2"),
+                                                  new DimensionValue("dim2", null));
+    List<Fact> facts = ImmutableList.of(
+      new Fact(61, dims1, ImmutableList.of(new Measurement("count", MeasureType.COUNTER, 1),
+                                           new Measurement("gauge", MeasureType.GAUGE, 5))),
+      new Fact(62, dims2, new Measurement("count", MeasureType.COUNTER, 10)),
+      new Fact(119, dims1, ImmutableList.of(new Measurement("count", MeasureType.COUNTER, 2),
+                                            new Measurement("gauge", MeasureType.GAUGE, 7))),
+      new Fact(120, dims1, new Measurement("count", MeasureType.COUNTER, 4))
+    );
+
+    // Nothing to merge at resolution 1
+    Assert.assertSame(facts, FactRollup.rollup(facts, 1));
+
+    // At minute resolution, the first and third facts are merged
+    List<Fact> rollups = FactRollup.rollup(facts, 60);
+    Assert.assertEquals(3, rollups.size());
+    assertFact(rollups.get(0), 60, dims1, 3, 7L);
+    assertFact(rollups.get(1), 60, dims2, 10, null);
+    assertFact(rollups.get(2), 120, dims1, 4, null);
+
+    // At hour resolution, facts are merged by dimension values
+    rollups = FactRollup.rollup(facts, 3600);
+    Assert.assertEquals(2, rollups.size());
+    assertFact(rollups.get(0), 0, dims1, 7, 7L);
+    assertFact(rollups.get(1), 0, dims2, 10, null);
+  }
+
+  private void assertFact(Fact fact, long timestamp, List<DimensionValue> dimensionValues,
+                          long count, Long gauge) {
+    Assert.assertEquals(timestamp, fact.getTimestamp());
+    Assert.assertEquals(dimensionValues, fact.getDimensionValues());
+
+    Map<String, Measurement> measurements = new HashMap<>();
+    for (Measurement measurement : fact.getMeasurements()) {
+      measurements.put(measurement.getName(), measurement);
+    }
+    Assert.assertEquals(gauge == null ? 1 : 2, measurements.size());
+    Assert.assertEquals(MeasureType.COUNTER, measurements.get("count").getType());
+    Assert.assertEquals(count, measurements.get("count").getValue());
+    if (gauge != null) {
+      Assert.assertEquals(MeasureType.GAUGE, measurements.get("gauge").getType());
+      Assert.assertEquals((long) gauge, measurements.get("gauge").getValue());
+    }
+  }
+}
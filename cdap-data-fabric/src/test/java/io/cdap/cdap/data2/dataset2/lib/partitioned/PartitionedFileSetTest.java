@@ -25,6 +25,7 @@ import com.google.common.collect.Sets;
 import io.cdap.cdap.api.Predicate;
 import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.PartitionNotFoundException;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.dataset.lib.FileSet;
 import io.cdap.cdap.api.dataset.lib.FileSetArguments;
 import io.cdap.cdap.api.dataset.lib.FileSetProperties;
@@ -65,6 +66,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -74,6 +76,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 /**
  * Test partitioned file sets without map/reduce and without explore.
@@ -1038,6 +1041,78 @@ public class PartitionedFileSetTest {
 
   }
 
+  @Test
+  public void testPartitionIterator() throws Exception {
+    DatasetId instance = DatasetFrameworkTestUtil.NAMESPACE_ID.dataset("pfsIter");
+    // partitioning with fixed length fields first, so that conditions on later fields can be pushed down to the scan
+    final Partitioning partitioning = Partitioning.builder().addIntField("i").addLongField("l").addStringField("s")
+      .build();
+    dsFrameworkUtil.createInstance("partitionedFileSet", instance, PartitionedFileSetProperties.builder()
+      .setPartitioning(partitioning)
+      .build());
+    try {
+      final PartitionedFileSet dataset = dsFrameworkUtil.getInstance(instance);
+
+      // all keys, in the order of their row keys
+      final List<PartitionKey> keys = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        for (long l = 0; l < 4; l++) {
+          for (String str : new String[] { "a", "b" }) {
+            keys.add(PartitionKey.builder().addField("i", i).addField("l", l).addField("s", str).build());
+          }
+        }
+      }
+      dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(
+        new TransactionExecutor.Subroutine() {
+          @Override
+          public void apply() throws Exception {
+            for (PartitionKey key : keys) {
+              dataset.addPartition(key, PartitionedFileSetDataset.getOutputPath(key, partitioning));
+            }
+          }
+        });
+
+      List<PartitionFilter> filters = Lists.newArrayList(
+        null,
+        PartitionFilter.builder().addValueCondition("i", 2).build(),
+        PartitionFilter.builder().addValueCondition("l", 2L).build(),
+        PartitionFilter.builder().addRangeCondition("i", 1, 3).addValueCondition("s", "b").build(),
+        PartitionFilter.builder().addValueCondition("l", 1L).addRangeCondition("s", "b", null).build(),
+        PartitionFilter.builder().addValueCondition("i", 1).addValueCondition("s", "a").build(),
+        PartitionFilter.builder().addValueCondition("l", 7L).build());
+
+      for (final PartitionFilter filter : filters) {
+        dsFrameworkUtil.newTransactionExecutor((TransactionAware) dataset).execute(
+          new TransactionExecutor.Subroutine() {
+            @Override
+            public void apply() throws Exception {
+              List<PartitionKey> expected = new ArrayList<>();
+              for (PartitionKey key : keys) {
+                if (filter == null || filter.match(key)) {
+                  expected.add(key);
+                }
+              }
+              List<PartitionKey> actual = new ArrayList<>();
+              try (CloseableIterator<PartitionDetail> iterator = dataset.getPartitionIterator(filter)) {
+                while (iterator.hasNext()) {
+                  PartitionDetail partition = iterator.next();
+                  PartitionKey key = partition.getPartitionKey();
+                  Assert.assertEquals(PartitionedFileSetDataset.getOutputPath(key, partitioning),
+                                      partition.getRelativePath());
+                  actual.add(key);
+                }
+              }
+              Assert.assertEquals("Unexpected partitions for filter " + filter, expected, actual);
+              Assert.assertEquals(new HashSet<>(expected), dataset.getPartitions(filter).stream()
+                .map(PartitionDetail::getPartitionKey).collect(Collectors.toSet()));
+            }
+          });
+      }
+    } finally {
+      dsFrameworkUtil.deleteInstance(instance);
+    }
+  }
+
   private void testAllFilters(PartitionedFileSet dataset,
                               Set<BasicPartition> allPartitionDetails,
                               List<PartitionFilter> filters) throws Exception {
@@ -27,6 +27,7 @@ import io.cdap.cdap.api.dataset.table.Scan;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.api.dataset.table.TableProperties;
+import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.dataset2.TableAssert;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
@@ -35,6 +36,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -191,6 +193,57 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testScanWithFilterAndBuffering() throws Exception {
+    String testScanWithFilterAndBuffering = "testScanWithFilterAndBuffering";
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, testScanWithFilterAndBuffering);
+    admin.create();
+    try (Table table1 = getTable(CONTEXT1, testScanWithFilterAndBuffering)) {
+      Transaction tx1 = txClient.startShort();
+      ((TransactionAware) table1).startTx(tx1);
+
+      table1.put(Bytes.toBytes("1_a1"), a(C1), a(V1));
+      table1.put(Bytes.toBytes("1_b1"), a(C1), a(V1));
+      table1.put(Bytes.toBytes("2_a2"), a(C1), a(V1));
+
+      txClient.canCommitOrThrow(tx1, ((TransactionAware) table1).getTxChanges());
+      Assert.assertTrue(((TransactionAware) table1).commitTx());
+      txClient.commitOrThrow(tx1);
+
+      Transaction tx2 = txClient.startShort();
+      ((TransactionAware) table1).startTx(tx2);
+
+      // buffered rows before, between and after the persisted ones, matching the filter or not
+      table1.put(Bytes.toBytes("0_a0"), a(C1), a(V2));
+      table1.put(Bytes.toBytes("1_a1"), a(C2), a(V2));
+      table1.put(Bytes.toBytes("1_b2"), a(C1), a(V2));
+      table1.put(Bytes.toBytes("2_a2"), a(C1), a(V2));
+      table1.put(Bytes.toBytes("2_b3"), a(C1), a(V2));
+      table1.put(Bytes.toBytes("3_a3"), a(C1), a(V2));
+      table1.put(Bytes.toBytes("3_c3"), a(C1), a(V2));
+
+      // only rows with 'a' as third byte match the filter
+      FuzzyRowFilter filter = new FuzzyRowFilter(
+        Collections.singletonList(ImmutablePair.of(new byte[] { '*', '_', 'a', '*' },
+                                                   new byte[] { 0x01, 0x00, 0x00, 0x01 })));
+      TableAssert.assertScan(a(Bytes.toBytes("1_a1"), Bytes.toBytes("2_a2"), Bytes.toBytes("3_a3")),
+                             aa(a(C1, V1, C2, V2), // 1_a1
+                                a(C1, V2),         // 2_a2
+                                a(C1, V2)),        // 3_a3
+                             table1.scan(new Scan(Bytes.toBytes("1_"), null, filter)));
+      TableAssert.assertScan(a(Bytes.toBytes("0_a0"), Bytes.toBytes("1_a1")),
+                             aa(a(C1, V2),         // 0_a0
+                                a(C1, V1, C2, V2)), // 1_a1
+                             table1.scan(new Scan(null, Bytes.toBytes("2_"), filter)));
+
+      txClient.canCommitOrThrow(tx2, ((TransactionAware) table1).getTxChanges());
+      Assert.assertTrue(((TransactionAware) table1).commitTx());
+      txClient.commitOrThrow(tx2);
+    } finally {
+      admin.drop();
+    }
+  }
+
   @Test
   public void testChangingParamsAndReturnValues() throws Exception {
     // The test verifies that one can re-use byte arrays passed as parameters to write methods of a table without
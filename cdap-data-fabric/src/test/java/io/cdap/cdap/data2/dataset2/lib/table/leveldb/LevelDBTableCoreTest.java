@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
 
+import com.google.common.cache.CacheStats;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import io.cdap.cdap.api.common.Bytes;
@@ -41,8 +42,16 @@ import org.junit.rules.TemporaryFolder;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 
@@ -276,6 +285,116 @@ public class LevelDBTableCoreTest {
     }
   }
 
+  @Test
+  public void testConcurrentIncrementAndSwap() throws Exception {
+    String tableName = "testConcurrentIncrementTable";
+    service.ensureTableExists(tableName);
+
+    int numThreads = 8;
+    int numIterations = 480;
+    int numRows = 16;
+    byte[] col = Bytes.toBytes(colName);
+    byte[] swapRow = Bytes.toBytes("swap");
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      CyclicBarrier barrier = new CyclicBarrier(numThreads);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        futures.add(executor.submit(() -> {
+          // each thread uses its own instance, the row locks are shared among them
+          LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+          barrier.await();
+          for (int j = 0; j < numIterations; j++) {
+            // increment one row, and then all rows at once
+            byte[] row = Bytes.toBytes(getRowName(rowNamePrefix, j % numRows));
+            table.increment(row, Collections.singletonMap(col, 1L));
+
+            NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+            for (int k = 0; k < numRows; k++) {
+              NavigableMap<byte[], Long> increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+              increments.put(col, 2L);
+              updates.put(Bytes.toBytes(getRowName(rowNamePrefix, k)), increments);
+            }
+            table.increment(updates);
+
+            // increment with compare and swap
+            while (true) {
+              byte[] existing = table.getRow(swapRow, new byte[][] { col }, null, null, -1, null).get(col);
+              byte[] newValue = Bytes.toBytes(existing == null ? 1L : Bytes.toLong(existing) + 1);
+              if (table.swap(swapRow, col, existing, newValue)) {
+                break;
+              }
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+    long rowIncrements = (long) numThreads * numIterations / numRows;
+    for (int i = 0; i < numRows; i++) {
+      byte[] value = table.getRow(Bytes.toBytes(getRowName(rowNamePrefix, i)), new byte[][] { col },
+                                  null, null, -1, null).get(col);
+      Assert.assertEquals(rowIncrements + 2L * numThreads * numIterations, Bytes.toLong(value));
+    }
+    byte[] value = table.getRow(swapRow, new byte[][] { col }, null, null, -1, null).get(col);
+    Assert.assertEquals((long) numThreads * numIterations, Bytes.toLong(value));
+
+    service.dropTable(tableName);
+  }
+
+  @Test
+  public void testRowCache() throws Exception {
+    String tableName = "testRowCacheTable";
+    service.ensureTableExists(tableName);
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+    byte[] row = Bytes.toBytes("row");
+    byte[] col = Bytes.toBytes(colName);
+
+    // reading a missing row twice only reads it once from LevelDB
+    CacheStats before = service.getRowCacheStats();
+    Assert.assertNull(table.getLatest(row, col, null));
+    Assert.assertTrue(table.getRow(row, null, null, null, -1, null).isEmpty());
+    CacheStats stats = service.getRowCacheStats().minus(before);
+    Assert.assertEquals(1L, stats.missCount());
+    Assert.assertEquals(1L, stats.hitCount());
+
+    // writes are visible to the next read
+    writeRowColDefaultVersion(table, "row", colName, "val-0");
+    Assert.assertEquals("val-0", readRowColLatest(table, "row", colName));
+    Assert.assertEquals(1L, (long) table.increment(row, Collections.singletonMap(Bytes.toBytes("count"), 1L))
+      .get(Bytes.toBytes("count")));
+    Assert.assertEquals(2, table.getRow(row, null, null, null, -1, null).size());
+    writeRowCol(table, "row", "col-1", "val-1", 1L);
+    Assert.assertEquals("val-1", readRowColLatest(table, "row", "col-1"));
+    deleteRowColDefaultVersion(table, "row", colName);
+    Assert.assertNull(readRowColLatest(table, "row", colName));
+    table.deleteRows(Collections.singletonList(row));
+    Assert.assertTrue(table.getRow(row, null, null, null, -1, null).isEmpty());
+
+    // a row larger than the maximum row size is read from LevelDB, and is not loaded again after a write
+    byte[] value = new byte[Constants.DEFAULT_DATA_LEVELDB_ROW_CACHE_MAX_ROW_SIZE];
+    table.put(row, col, value, 1L);
+    before = service.getRowCacheStats();
+    Assert.assertArrayEquals(value, table.getLatest(row, col, null));
+    writeRowCol(table, "row", "col-2", "val-2", 1L);
+    Assert.assertEquals("val-2", readRowColLatest(table, "row", "col-2"));
+    stats = service.getRowCacheStats().minus(before);
+    Assert.assertEquals(1L, stats.missCount());
+    Assert.assertEquals(1L, stats.hitCount());
+    table.deleteRange(null, null, null, null);
+    Assert.assertNull(table.getLatest(row, col, null));
+
+    service.dropTable(tableName);
+  }
+
   /**
    * Write the given value as the latest at the target row and col.
    */
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.timeseries;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Unit tests for {@link FactBlock}.
+ */
+public class FactBlockTest {
+
+  @Test
+  public void testEncodeDecode() {
+    NavigableMap<Integer, Long> values = new TreeMap<>();
+    values.put(0, 0L);
+    values.put(1, -1L);
+    values.put(5, Long.MAX_VALUE);
+    values.put(6, Long.MIN_VALUE);
+    values.put(100, 12345L);
+    values.put(65534, 12345L);
+    Assert.assertEquals(values, FactBlock.decode(FactBlock.encode(values)));
+
+    // empty block
+    Assert.assertEquals(new TreeMap<>(), FactBlock.decode(FactBlock.encode(new TreeMap<>())));
+    Assert.assertEquals(new TreeMap<>(), FactBlock.decode(null));
+  }
+
+  @Test
+  public void testCompression() {
+    // regular intervals with the same value takes two bytes per value
+    NavigableMap<Integer, Long> values = new TreeMap<>();
+    for (int i = 0; i < 60; i++) {
+      values.put(i, 5L);
+    }
+    byte[] block = FactBlock.encode(values);
+    Assert.assertEquals(2 + 60 * 2, block.length);
+
+    FactBlock.Decoder decoder = new FactBlock.Decoder(block);
+    for (int i = 0; i < 60; i++) {
+      Assert.assertTrue(decoder.next());
+      Assert.assertEquals(i, decoder.getIndex());
+      Assert.assertEquals(5L, decoder.getValue());
+    }
+    Assert.assertFalse(decoder.next());
+  }
+}
@@ -24,6 +24,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DataSetException;
 import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
 import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
 import io.cdap.cdap.api.dataset.lib.cube.Measurement;
@@ -31,6 +32,7 @@ import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import org.junit.Assert;
@@ -42,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Test base for {@link io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable}.
@@ -565,6 +568,176 @@ public class FactTableTest {
     Assert.assertEquals(3, splitsWithRows.size());
   }
 
+  @Test
+  public void testBlockEncoding() throws Exception {
+    InMemoryTableService.create("BlockEntityTable");
+    InMemoryTableService.create("BlockDataTable");
+    int resolution = 1;
+    int rollTimebaseInterval = 60;
+
+    InMemoryMetricsTable metricsTable = new InMemoryMetricsTable("BlockDataTable");
+    EntityTable entityTable = new EntityTable(new InMemoryMetricsTable("BlockEntityTable"));
+    FactTable table = new FactTable(metricsTable, entityTable, resolution, rollTimebaseInterval,
+                                    FactTable.Encoding.BLOCK);
+
+    // aligned to start of a row
+    long ts = System.currentTimeMillis() / 1000 / rollTimebaseInterval * rollTimebaseInterval;
+    List<DimensionValue> dims = dimValues("dim1", "value1", "dim2", "value2");
+
+    table.add(ImmutableList.of(new Fact(ts, dims, new Measurement("counter", MeasureType.COUNTER, 1)),
+                               new Fact(ts, dims, new Measurement("counter", MeasureType.COUNTER, 1)),
+                               new Fact(ts + 1, dims, new Measurement("counter", MeasureType.COUNTER, 1)),
+                               new Fact(ts + 2, dims, new Measurement("counter", MeasureType.COUNTER, 1)),
+                               new Fact(ts, dims, new Measurement("gauge", MeasureType.GAUGE, 5)),
+                               new Fact(ts + 1, dims, new Measurement("gauge", MeasureType.GAUGE, 7))));
+    // updates existing blocks and creates a block in the next row
+    table.add(ImmutableList.of(new Fact(ts + 2, dims, new Measurement("counter", MeasureType.COUNTER, 5)),
+                               new Fact(ts + 61, dims, new Measurement("counter", MeasureType.COUNTER, 1)),
+                               new Fact(ts + 1, dims, new Measurement("gauge", MeasureType.GAUGE, 9))));
+
+    Table<String, List<DimensionValue>, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("counter", dims, ImmutableList.of(new TimeValue(ts, 2), new TimeValue(ts + 1, 1),
+                                                   new TimeValue(ts + 2, 6), new TimeValue(ts + 61, 1)));
+    expected.put("gauge", dims, ImmutableList.of(new TimeValue(ts, 5), new TimeValue(ts + 1, 9)));
+    assertScan(table, expected, new FactScan(ts - 10, ts + 100, dims));
+
+    // each row only has the block column
+    Scanner scanner = metricsTable.scan(null, null, null);
+    Row row;
+    int rows = 0;
+    while ((row = scanner.next()) != null) {
+      rows++;
+      Assert.assertEquals(1, row.getColumns().size());
+    }
+    scanner.close();
+    Assert.assertEquals(3, rows);
+
+    // values written with the column encoding to the same row are merged with the block
+    FactTable columnTable = new FactTable(metricsTable, entityTable, resolution, rollTimebaseInterval);
+    columnTable.add(ImmutableList.of(new Fact(ts + 3, dims, new Measurement("counter", MeasureType.COUNTER, 4))));
+    expected.put("counter", dims, ImmutableList.of(new TimeValue(ts, 2), new TimeValue(ts + 1, 1),
+                                                   new TimeValue(ts + 2, 6), new TimeValue(ts + 3, 4),
+                                                   new TimeValue(ts + 61, 1)));
+    assertScan(columnTable, expected, new FactScan(ts - 10, ts + 100, dims));
+
+    // only values in the scan time range are returned
+    expected.clear();
+    expected.put("counter", dims, ImmutableList.of(new TimeValue(ts + 1, 1), new TimeValue(ts + 2, 6)));
+    expected.put("gauge", dims, ImmutableList.of(new TimeValue(ts + 1, 9)));
+    assertScan(table, expected, new FactScan(ts + 1, ts + 2, dims));
+
+    // delete removes values from both the block and the columns
+    table.delete(new FactScan(ts + 1, ts + 3, dims));
+    expected.clear();
+    expected.put("counter", dims, ImmutableList.of(new TimeValue(ts, 2), new TimeValue(ts + 61, 1)));
+    expected.put("gauge", dims, ImmutableList.of(new TimeValue(ts, 5)));
+    assertScan(table, expected, new FactScan(ts - 10, ts + 100, dims));
+
+    // deleting all values of a block removes the block
+    table.delete(new FactScan(ts - 10, ts + 100, "gauge", dims));
+    expected.remove("gauge", dims);
+    assertScan(table, expected, new FactScan(ts - 10, ts + 100, dims));
+  }
+
+  @Test
+  public void testMultipleBlocks() throws Exception {
+    InMemoryTableService.create("MultiBlockEntityTable");
+    InMemoryTableService.create("MultiBlockDataTable");
+    int resolution = 1;
+    int rollTimebaseInterval = 3600;
+    int blockSpan = FactBlock.getBlockSpan(rollTimebaseInterval);
+
+    // records the index of each block being swapped
+    List<Integer> swappedBlocks = new ArrayList<>();
+    InMemoryMetricsTable metricsTable = new InMemoryMetricsTable("MultiBlockDataTable") {
+      @Override
+      public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+        swappedBlocks.add(FactBlock.getBlockIndex(column));
+        return super.swap(row, column, oldValue, newValue);
+      }
+    };
+    EntityTable entityTable = new EntityTable(new InMemoryMetricsTable("MultiBlockEntityTable"));
+    FactTable table = new FactTable(metricsTable, entityTable, resolution, rollTimebaseInterval,
+                                    FactTable.Encoding.BLOCK);
+
+    // aligned to start of a row
+    long ts = System.currentTimeMillis() / 1000 / rollTimebaseInterval * rollTimebaseInterval;
+    List<DimensionValue> dims = dimValues("dim1", "value1");
+
+    // values in three different blocks of the same row
+    table.add(ImmutableList.of(new Fact(ts, dims, new Measurement("counter", MeasureType.COUNTER, 1)),
+                               new Fact(ts + blockSpan, dims, new Measurement("counter", MeasureType.COUNTER, 2)),
+                               new Fact(ts + 3 * blockSpan + 1, dims,
+                                        new Measurement("counter", MeasureType.COUNTER, 3))));
+    Assert.assertEquals(ImmutableList.of(0, 1, 3), swappedBlocks);
+    Assert.assertEquals(3, getOnlyRow(metricsTable).getColumns().size());
+
+    // only the block covering the written value is rewritten
+    swappedBlocks.clear();
+    table.add(ImmutableList.of(new Fact(ts + blockSpan + 1, dims,
+                                        new Measurement("counter", MeasureType.COUNTER, 4))));
+    Assert.assertEquals(ImmutableList.of(1), swappedBlocks);
+    Assert.assertEquals(3, getOnlyRow(metricsTable).getColumns().size());
+
+    Table<String, List<DimensionValue>, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("counter", dims, ImmutableList.of(new TimeValue(ts, 1), new TimeValue(ts + blockSpan, 2),
+                                                   new TimeValue(ts + blockSpan + 1, 4),
+                                                   new TimeValue(ts + 3 * blockSpan + 1, 3)));
+    assertScan(table, expected, new FactScan(ts - 10, ts + rollTimebaseInterval, dims));
+
+    // scanning a time range within a block
+    expected.put("counter", dims, ImmutableList.of(new TimeValue(ts + blockSpan + 1, 4)));
+    assertScan(table, expected, new FactScan(ts + blockSpan + 1, ts + 2 * blockSpan, dims));
+
+    // delete only rewrites the blocks in the time range
+    swappedBlocks.clear();
+    table.delete(new FactScan(ts + blockSpan, ts + blockSpan, dims));
+    Assert.assertEquals(ImmutableList.of(1), swappedBlocks);
+    expected.put("counter", dims, ImmutableList.of(new TimeValue(ts, 1), new TimeValue(ts + blockSpan + 1, 4),
+                                                   new TimeValue(ts + 3 * blockSpan + 1, 3)));
+    assertScan(table, expected, new FactScan(ts - 10, ts + rollTimebaseInterval, dims));
+  }
+
+  @Test
+  public void testBlockSwapConflicts() throws Exception {
+    InMemoryTableService.create("ConflictEntityTable");
+    InMemoryTableService.create("ConflictDataTable");
+    int rollTimebaseInterval = 60;
+
+    // a table that never wins the compare-and-swap
+    AtomicInteger swaps = new AtomicInteger();
+    InMemoryMetricsTable metricsTable = new InMemoryMetricsTable("ConflictDataTable") {
+      @Override
+      public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+        swaps.incrementAndGet();
+        return false;
+      }
+    };
+    EntityTable entityTable = new EntityTable(new InMemoryMetricsTable("ConflictEntityTable"));
+    FactTable table = new FactTable(metricsTable, entityTable, 1, rollTimebaseInterval, FactTable.Encoding.BLOCK);
+
+    long ts = System.currentTimeMillis() / 1000;
+    try {
+      table.add(ImmutableList.of(new Fact(ts, dimValues("dim1", "value1"),
+                                          new Measurement("counter", MeasureType.COUNTER, 1))));
+      Assert.fail("Expected the write to fail after too many conflicts");
+    } catch (DataSetException e) {
+      // expected
+    }
+    // the swap is retried a bounded number of times
+    Assert.assertTrue(swaps.get() > 1);
+    Assert.assertTrue(swaps.get() < 100);
+  }
+
+  private Row getOnlyRow(MetricsTable metricsTable) {
+    try (Scanner scanner = metricsTable.scan(null, null, null)) {
+      Row row = scanner.next();
+      Assert.assertNotNull(row);
+      Assert.assertNull(scanner.next());
+      return row;
+    }
+  }
+
   @Test
   public void testCache() throws Exception {
     String tableName = "testCacheTable";
@@ -27,6 +27,8 @@ import io.cdap.cdap.data2.dataset2.lib.table.MDSKey;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.StructuredTableTest;
 import io.cdap.cdap.spi.data.table.StructuredTableSchema;
+import io.cdap.cdap.spi.data.table.field.Fields;
+import io.cdap.cdap.spi.data.table.field.Range;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
@@ -39,6 +41,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -88,6 +91,23 @@ public class NoSqlStructuredTableTest extends StructuredTableTest {
     }
   }
 
+  @Override
+  @Test
+  public void testCompositeIndexRangeScan() throws Exception {
+    // Composite indexes are not supported, including ranges on a prefix of a composite index
+    List<Range> ranges = Arrays.asList(
+      Range.singleton(Collections.singleton(Fields.longField(LONG_COL, 1L))),
+      Range.singleton(Arrays.asList(Fields.stringField(STRING_COL, "a"), Fields.longField(LONG_COL, 1L))));
+    for (Range range : ranges) {
+      try {
+        scanIndexKeys(range, 100);
+        Assert.fail("Expected UnsupportedOperationException for scanning index with range " + range);
+      } catch (UnsupportedOperationException e) {
+        // Expected
+      }
+    }
+  }
+
   @Test
   public void testScannerIteratorSingle() throws Exception {
     testScannerIterator(1);
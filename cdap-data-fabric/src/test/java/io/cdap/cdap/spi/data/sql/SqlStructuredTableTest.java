@@ -29,12 +29,16 @@ import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
 import io.cdap.cdap.data.runtime.StorageModule;
 import io.cdap.cdap.spi.data.StructuredTableAdmin;
 import io.cdap.cdap.spi.data.StructuredTableTest;
+import io.cdap.cdap.spi.data.table.StructuredTableId;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Test for SQL structured table.
@@ -74,6 +78,24 @@ public class SqlStructuredTableTest extends StructuredTableTest {
     }
   }
 
+  @Test
+  public void testCompositeIndexName() {
+    StructuredTableId tableId = new StructuredTableId("some_table");
+    Assert.assertEquals("some_table_a_b_idx",
+                        PostgreSqlStructuredTableAdmin.getCompositeIndexName(tableId, Arrays.asList("a", "b")));
+
+    // Long names are capped to the PostgreSQL identifier limit and stay distinct
+    List<String> columns1 = Arrays.asList("some_long_column_name", "another_long_column_name", "column1");
+    List<String> columns2 = Arrays.asList("some_long_column_name", "another_long_column_name", "column2");
+    String name1 = PostgreSqlStructuredTableAdmin.getCompositeIndexName(tableId, columns1);
+    String name2 = PostgreSqlStructuredTableAdmin.getCompositeIndexName(tableId, columns2);
+    Assert.assertEquals(63, name1.length());
+    Assert.assertEquals(63, name2.length());
+    Assert.assertTrue(name1.startsWith("some_table_some_long_column_name_"));
+    Assert.assertNotEquals(name1, name2);
+    Assert.assertEquals(name1, PostgreSqlStructuredTableAdmin.getCompositeIndexName(tableId, columns1));
+  }
+
   @Override
   protected StructuredTableAdmin getStructuredTableAdmin() {
     return tableAdmin;
@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.sql.jdbc;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.conf.SConfiguration;
+import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+import io.cdap.cdap.spi.data.sql.PostgreSqlStorageProvider;
+import io.cdap.cdap.spi.data.sql.PostgresInstantiator;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+
+/**
+ * Tests for the {@link StatementCachingConnectionFactory} used by the {@link DataSource} created by
+ * {@link PostgreSqlStorageProvider}.
+ */
+public class StatementCachingConnectionFactoryTest {
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final int STATEMENT_CACHE_SIZE = 2;
+  private static final Map<String, Long> METRICS = new ConcurrentHashMap<>();
+
+  private static EmbeddedPostgres pg;
+  private static DataSource dataSource;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    pg = PostgresInstantiator.createAndStart(cConf, TEMP_FOLDER.newFolder());
+    cConf.setInt(Constants.Dataset.DATA_STORAGE_SQL_STATEMENT_CACHE_SIZE, STATEMENT_CACHE_SIZE);
+    cConf.setInt(Constants.Dataset.DATA_STORAGE_SQL_CONNECTION_SIZE, 1);
+    dataSource = PostgreSqlStorageProvider.createDataSource(cConf, SConfiguration.create(),
+                                                            new NoOpMetricsCollectionService() {
+      @Override
+      public MetricsContext getContext(Map<String, String> tags) {
+        return new RecordingMetricsContext();
+      }
+    });
+  }
+
+  @AfterClass
+  public static void finish() throws Exception {
+    ((AutoCloseable) dataSource).close();
+    pg.close();
+  }
+
+  @Before
+  public void beforeTest() {
+    METRICS.clear();
+  }
+
+  @Test
+  public void testStatementCache() throws Exception {
+    try (Connection connection = dataSource.getConnection()) {
+      try (PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+        statement.setFetchSize(10);
+        statement.setMaxRows(5);
+        statement.setInt(1, 1);
+        assertResult(statement, 1);
+      }
+
+      // The statement is served from the cache, with the fetch size and max rows reset
+      try (PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+        Assert.assertEquals(0, statement.getFetchSize());
+        Assert.assertEquals(0, statement.getMaxRows());
+        statement.setInt(1, 2);
+        assertResult(statement, 2);
+      }
+    }
+    // Metrics are emitted when the connection is returned to the pool
+    assertCacheMetrics(1L, 1L);
+
+    // The cache is kept with the pooled connection
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+      statement.setInt(1, 3);
+      assertResult(statement, 3);
+    }
+    assertCacheMetrics(2L, 1L);
+  }
+
+  @Test
+  public void testMoreOpenStatementsThanCacheSize() throws Exception {
+    int numStatements = STATEMENT_CACHE_SIZE + 1;
+    try (Connection connection = dataSource.getConnection()) {
+      // Opening more statements than the cache size on the same connection doesn't fail
+      List<PreparedStatement> statements = new ArrayList<>();
+      try {
+        for (int i = 0; i < numStatements; i++) {
+          PreparedStatement statement = connection.prepareStatement("SELECT ? + " + i);
+          statements.add(statement);
+          statement.setInt(1, 1);
+        }
+        for (int i = 0; i < statements.size(); i++) {
+          assertResult(statements.get(i), i + 1);
+        }
+      } finally {
+        for (PreparedStatement statement : statements) {
+          statement.close();
+        }
+      }
+    }
+    assertCacheMetrics(0L, numStatements);
+
+    // Only the cache size number of statements are kept after the connection is returned
+    try (Connection connection = dataSource.getConnection()) {
+      for (int i = 0; i < numStatements; i++) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT ? + " + i)) {
+          statement.setInt(1, 1);
+          assertResult(statement, i + 1);
+        }
+      }
+    }
+    assertCacheMetrics(STATEMENT_CACHE_SIZE, numStatements + 1L);
+  }
+
+  private void assertResult(PreparedStatement statement, int expected) throws Exception {
+    try (ResultSet resultSet = statement.executeQuery()) {
+      Assert.assertTrue(resultSet.next());
+      Assert.assertEquals(expected, resultSet.getInt(1));
+      Assert.assertFalse(resultSet.next());
+    }
+  }
+
+  private void assertCacheMetrics(long hits, long misses) {
+    Assert.assertEquals(hits, (long) METRICS.getOrDefault(Constants.Metrics.StructuredTable.STATEMENT_CACHE_HIT, 0L));
+    Assert.assertEquals(misses,
+                        (long) METRICS.getOrDefault(Constants.Metrics.StructuredTable.STATEMENT_CACHE_MISS, 0L));
+  }
+
+  /**
+   * A {@link MetricsContext} that records the sum of increments of each metric.
+   */
+  private static final class RecordingMetricsContext implements MetricsContext {
+
+    @Override
+    public void increment(String metricName, long value) {
+      METRICS.merge(metricName, value, Long::sum);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      // no-op
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+  }
+}
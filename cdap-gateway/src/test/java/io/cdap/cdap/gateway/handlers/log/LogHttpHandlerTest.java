@@ -181,6 +181,7 @@ public class LogHttpHandlerTest {
     testNext("testApp1", "workers", "testWorker1", true, MockLogReader.TEST_NAMESPACE);
     testNextNoMax("testApp1", "workers", "testWorker1", MockLogReader.TEST_NAMESPACE);
     testNextFilter("testApp1", "workers", "testWorker1", MockLogReader.TEST_NAMESPACE);
+    testSearch("testApp1", "workers", "testWorker1", MockLogReader.TEST_NAMESPACE);
     testNextNoFrom("testApp1", "workers", "testWorker1", MockLogReader.TEST_NAMESPACE);
     testNext("testApp1", "workers", "testWorker1", false, MockLogReader.TEST_NAMESPACE);
     testNextRunId("testApp1", "workers", "testWorker1", MockLogReader.TEST_NAMESPACE, "text", ImmutableList.of());
@@ -501,6 +502,28 @@ public class LogHttpHandlerTest {
     }
   }
 
+  private void testSearch(String appId, String entityType, String entityId, String namespace) throws Exception {
+    for (String format : FORMATS) {
+      String searchUrl =
+        String.format("apps/%s/%s/%s/logs/search?fromOffset=%s&max=16&q=%s&loglevel=ERROR&format=%s",
+                      appId, entityType, entityId, getFromOffset(12), entityId.toUpperCase(), format);
+      HttpResponse response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, true, false, true, 8, 12);
+
+      // Terms must match as whole words
+      searchUrl = String.format("apps/%s/%s/%s/logs/search?fromOffset=%s&max=16&q=im&format=%s",
+                                appId, entityType, entityId, getFromOffset(12), format);
+      response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, true, false, true, 0, 12);
+    }
+
+    // At least one search criteria is required
+    String searchUrl = String.format("apps/%s/%s/%s/logs/search?fromOffset=%s", appId, entityType, entityId,
+                                     getFromOffset(12));
+    HttpResponse response = doGet(getVersionedAPIPath(searchUrl, namespace));
+    Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.getResponseCode());
+  }
+
   private void testNextNoFrom(String appId, String entityType, String entityId, String namespace) throws Exception {
     for (String format : FORMATS) {
       String nextNoFromUrl = String.format("apps/%s/%s/%s/logs/next?format=%s", appId, entityType, entityId, format);
@@ -17,6 +17,7 @@
 package io.cdap.cdap.spi.data;
 
 import io.cdap.cdap.api.annotation.Beta;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.spi.data.table.StructuredTableSpecification;
 import io.cdap.cdap.spi.data.table.field.Field;
@@ -48,6 +49,24 @@ public interface StructuredTable extends Closeable {
    */
   void upsert(Collection<Field<?>> fields) throws InvalidFieldException, IOException;
 
+  /**
+   * Insert or replace multiple rows in the table. Each element of the collection contains the fields of one row,
+   * with both the primary key and the rest of the columns to write. Rows are written in the iteration order of the
+   * collection. The default implementation is to call {@link #upsert(Collection)} one by one. Implementations of
+   * this interface can provide an optimized version.
+   *
+   * @param multiFields a collection of fields of the rows to write
+   * @throws InvalidFieldException if any of the fields are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error writing to the table
+   */
+  default void upsertAll(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    for (Collection<Field<?>> fields : multiFields) {
+      upsert(fields);
+    }
+  }
+
   /**
    * Update the collection of fields to the table.
    * The fields contain the primary key and other columns to update.
@@ -130,6 +149,51 @@ public interface StructuredTable extends Closeable {
    */
   CloseableIterator<StructuredRow> scan(Field<?> index) throws InvalidFieldException, IOException;
 
+  /**
+   * Read a set of rows from the table with index values within the given range.
+   * The fields on each end of the range must be a prefix of the columns of the same index, which is either a single
+   * column index or a composite index. Rows are compared with the range ends on the given prefix columns in order,
+   * and rows with a null value in any of those columns are not returned.
+   * The order of the rows returned is not specified.
+   * The default implementation only supports a singleton range on a single column, which is served by
+   * {@link #scan(Field)} with the limit applied to the result. Implementations of this interface should provide
+   * a version that supports all ranges.
+   *
+   * @param indexRange index range for the scan
+   * @param limit maximum number of rows to return
+   * @return a {@link CloseableIterator} of rows
+   * @throws InvalidFieldException if any of the fields are not part of the table schema, the types of the value
+   *                               do not match, or the fields are not a prefix of the columns of an index
+   * @throws IOException if there is an error scanning the table
+   * @throws UnsupportedOperationException if the range is not supported by the implementation, such as a range
+   *                                       on a composite index for implementations without composite indexes
+   */
+  default CloseableIterator<StructuredRow> scanIndex(Range indexRange,
+                                                     int limit) throws InvalidFieldException, IOException {
+    if (!indexRange.isSingleton() || indexRange.getBegin().size() != 1) {
+      throw new UnsupportedOperationException("Scanning index with range " + indexRange + " is not supported");
+    }
+    CloseableIterator<StructuredRow> iterator = scan(indexRange.getBegin().iterator().next());
+    return new AbstractCloseableIterator<StructuredRow>() {
+
+      private int count;
+
+      @Override
+      protected StructuredRow computeNext() {
+        if (count >= limit || !iterator.hasNext()) {
+          return endOfData();
+        }
+        count++;
+        return iterator.next();
+      }
+
+      @Override
+      public void close() {
+        iterator.close();
+      }
+    };
+  }
+
   /**
    * Read a set of rows from the table matching the set of key ranges.
    * The rows returned will be sorted on the primary key order.
@@ -184,6 +248,22 @@ public interface StructuredTable extends Closeable {
    */
   void delete(Collection<Field<?>> keys) throws InvalidFieldException, IOException;
 
+  /**
+   * Delete multiple rows from the table. The default implementation is to call {@link #delete(Collection)}
+   * one by one. Implementations of this interface can provide an optimized version.
+   *
+   * @param multiKeys a collection of primary keys of the rows to delete
+   * @throws InvalidFieldException if any of the keys are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error deleting from the table
+   */
+  default void deleteAll(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    for (Collection<Field<?>> keys : multiKeys) {
+      delete(keys);
+    }
+  }
+
   /**
    * Delete a range of rows from the table.
    *
@@ -40,18 +40,31 @@ public class StructuredTableSchema {
   // primary keys have to be ordered as defined in the table schema
   private final List<String> primaryKeys;
   private final Set<String> indexes;
+  // composite index columns have to be ordered as defined in the table schema
+  private final List<List<String>> compositeIndexes;
 
   public StructuredTableSchema(StructuredTableSpecification spec) {
-    this(spec.getTableId(), spec.getFieldTypes(), spec.getPrimaryKeys(), spec.getIndexes());
+    this(spec.getTableId(), spec.getFieldTypes(), spec.getPrimaryKeys(), spec.getIndexes(),
+         spec.getCompositeIndexes());
   }
 
   public StructuredTableSchema(StructuredTableId tableId, List<FieldType> fields,
                                List<String> primaryKeys, Collection<String> indexes) {
+    this(tableId, fields, primaryKeys, indexes, Collections.emptyList());
+  }
+
+  public StructuredTableSchema(StructuredTableId tableId, List<FieldType> fields,
+                               List<String> primaryKeys, Collection<String> indexes,
+                               List<List<String>> compositeIndexes) {
     this.tableId = tableId;
     this.fields = Collections.unmodifiableMap(fields.stream().collect(
       Collectors.toMap(FieldType::getName, FieldType::getType)));
     this.primaryKeys = Collections.unmodifiableList(new ArrayList<>(primaryKeys));
     this.indexes = Collections.unmodifiableSet(new HashSet<>(indexes));
+    this.compositeIndexes = Collections.unmodifiableList(
+      compositeIndexes.stream()
+        .map(columns -> Collections.unmodifiableList(new ArrayList<>(columns)))
+        .collect(Collectors.toList()));
   }
 
   public StructuredTableId getTableId() {
@@ -66,6 +79,10 @@ public class StructuredTableSchema {
     return indexes;
   }
 
+  public List<List<String>> getCompositeIndexes() {
+    return compositeIndexes;
+  }
+
   /**
    * Check if the given field name is a column of the primary keys.
    *
@@ -86,6 +103,25 @@ public class StructuredTableSchema {
     return indexes.contains(fieldName);
   }
 
+  /**
+   * Check if the given list of field names can be served by an index. This is the case if the list has a single
+   * index column, or if it is a prefix of the columns of a composite index.
+   *
+   * @param fieldNames the ordered list of field names to be checked
+   * @return true if the field names form an index prefix, false otherwise
+   */
+  public boolean isIndexPrefix(List<String> fieldNames) {
+    if (fieldNames.isEmpty()) {
+      return false;
+    }
+    if (fieldNames.size() == 1 && isIndexColumn(fieldNames.get(0))) {
+      return true;
+    }
+    return compositeIndexes.stream()
+      .anyMatch(columns -> columns.size() >= fieldNames.size()
+        && columns.subList(0, fieldNames.size()).equals(fieldNames));
+  }
+
   /**
    * Get the field type of the given field name.
    *
@@ -113,12 +149,13 @@ public class StructuredTableSchema {
     return Objects.equals(tableId, that.tableId)
       && Objects.equals(fields, that.fields)
       && Objects.equals(primaryKeys, that.primaryKeys)
-      && Objects.equals(indexes, that.indexes);
+      && Objects.equals(indexes, that.indexes)
+      && Objects.equals(compositeIndexes, that.compositeIndexes);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(tableId, fields, primaryKeys, indexes);
+    return Objects.hash(tableId, fields, primaryKeys, indexes, compositeIndexes);
   }
   
   /**
@@ -137,6 +174,9 @@ public class StructuredTableSchema {
    *   <li>
    *     They have the same set of indexes.
    *   </li>
+   *   <li>
+   *     They have the same set of composite indexes.
+   *   </li>
    * </ol>
    *
    * @param spec the {@link StructuredTableSpecification} to check for compatibility
@@ -151,6 +191,7 @@ public class StructuredTableSchema {
     }
 
     return getPrimaryKeys().equals(spec.getPrimaryKeys())
-      && getIndexes().equals(new HashSet<>(spec.getIndexes()));
+      && getIndexes().equals(new HashSet<>(spec.getIndexes()))
+      && new HashSet<>(getCompositeIndexes()).equals(new HashSet<>(spec.getCompositeIndexes()));
   }
 }
@@ -25,6 +25,7 @@ import io.cdap.cdap.spi.data.table.field.Fields;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -39,6 +40,8 @@ import java.util.stream.Collectors;
  *   <li>fields - the schema of the table, consists of the column names and their types</li>
  *   <li>primaryKeys - the primary key for each row</li>
  *   <li>indexes - the columns to index on. Only one column can be part of an index</li>
+ *   <li>compositeIndexes - the ordered lists of columns to index on together, which can be used for
+ *   range scans on a prefix of the columns. Not all storage implementations support composite indexes</li>
  * </ul>
  */
 @Beta
@@ -51,16 +54,19 @@ public final class StructuredTableSpecification {
   private final List<FieldType> fieldTypes;
   private final List<String> primaryKeys;
   private final List<String> indexes;
+  // This can be null for specifications serialized before composite indexes were supported
+  private final List<List<String>> compositeIndexes;
 
   /**
    * Use {@link Builder} to create instances.
    */
   private StructuredTableSpecification(StructuredTableId tableId, List<FieldType> fieldTypes, List<String> primaryKeys,
-                                       List<String> indexes) {
+                                       List<String> indexes, List<List<String>> compositeIndexes) {
     this.tableId = tableId;
     this.fieldTypes = Collections.unmodifiableList(fieldTypes);
     this.primaryKeys = Collections.unmodifiableList(primaryKeys);
     this.indexes = Collections.unmodifiableList(indexes);
+    this.compositeIndexes = Collections.unmodifiableList(compositeIndexes);
   }
 
   /**
@@ -91,6 +97,14 @@ public final class StructuredTableSpecification {
     return indexes;
   }
 
+  /**
+   * @return the list of composite indexes defined on the table. Each composite index is the ordered list of columns
+   *         in the index
+   */
+  public List<List<String>> getCompositeIndexes() {
+    return compositeIndexes == null ? Collections.emptyList() : compositeIndexes;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -103,12 +117,13 @@ public final class StructuredTableSpecification {
     return Objects.equals(tableId, that.tableId) &&
       Objects.equals(fieldTypes, that.fieldTypes) &&
       Objects.equals(primaryKeys, that.primaryKeys) &&
-      Objects.equals(indexes, that.indexes);
+      Objects.equals(indexes, that.indexes) &&
+      Objects.equals(getCompositeIndexes(), that.getCompositeIndexes());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(tableId, fieldTypes, primaryKeys, indexes);
+    return Objects.hash(tableId, fieldTypes, primaryKeys, indexes, getCompositeIndexes());
   }
 
   @Override
@@ -118,6 +133,7 @@ public final class StructuredTableSpecification {
       ", fieldTypes=" + fieldTypes +
       ", primaryKeys=" + primaryKeys +
       ", indexes=" + indexes +
+      ", compositeIndexes=" + getCompositeIndexes() +
       '}';
   }
 
@@ -129,6 +145,7 @@ public final class StructuredTableSpecification {
     private List<FieldType> fieldTypes;
     private List<String> primaryKeys;
     private List<String> indexes;
+    private List<List<String>> compositeIndexes;
 
     /**
      * Create a builder that is initialized with all the information from an existing specification.
@@ -137,6 +154,7 @@ public final class StructuredTableSpecification {
       this.fieldTypes = new ArrayList<>();
       this.primaryKeys = new ArrayList<>();
       this.indexes = new ArrayList<>();
+      this.compositeIndexes = new ArrayList<>();
     }
 
     /**
@@ -147,6 +165,7 @@ public final class StructuredTableSpecification {
       this.fieldTypes = new ArrayList<>(existing.getFieldTypes());
       this.primaryKeys = new ArrayList<>(existing.getPrimaryKeys());
       this.indexes = new ArrayList<>(existing.getIndexes());
+      this.compositeIndexes = new ArrayList<>(existing.getCompositeIndexes());
     }
 
     /**
@@ -193,13 +212,26 @@ public final class StructuredTableSpecification {
       return this;
     }
 
+    /**
+     * Add a composite index over the given fields. The index can be used to scan for rows with a range on a prefix of
+     * the fields, in the order given. A table can define multiple composite indexes.
+     * See {@link FieldType#INDEX_COLUMN_TYPES} for valid index field types.
+     * @param columns list of field names for the index, in the index order. There must be at least two fields.
+     * @return Builder instance
+     */
+    public Builder withCompositeIndex(String ...columns) {
+      this.compositeIndexes.add(Collections.unmodifiableList(Arrays.asList(columns)));
+      return this;
+    }
+
     /**
      * Build the table specification
      * @return the table specification
      */
     public StructuredTableSpecification build() throws InvalidFieldException {
       validate();
-      return new StructuredTableSpecification(tableId, fieldTypes, primaryKeys, indexes);
+      return new StructuredTableSpecification(tableId, fieldTypes, primaryKeys, indexes,
+                                              new ArrayList<>(compositeIndexes));
     }
 
     private void validate() throws InvalidFieldException {
@@ -260,6 +292,26 @@ public final class StructuredTableSpecification {
             String.format("has wrong type for an index column. Valid types are: %s", FieldType.INDEX_COLUMN_TYPES));
         }
       }
+
+      // Validate that the composite indexes have at least two distinct fields, all defined and of valid type
+      for (List<String> compositeIndex : compositeIndexes) {
+        if (compositeIndex.size() < 2 || new HashSet<>(compositeIndex).size() != compositeIndex.size()) {
+          throw new IllegalArgumentException(
+            String.format("Invalid composite index %s for the table %s. It should have at least two distinct fields",
+                          compositeIndex, tableId));
+        }
+        for (String column : compositeIndex) {
+          FieldType.Type type = typeMap.get(column);
+          if (type == null) {
+            throw new InvalidFieldException(tableId, column, "is not defined as an index column");
+          }
+          if (!Fields.isIndexColumnType(type)) {
+            throw new InvalidFieldException(
+              tableId, column,
+              String.format("has wrong type for an index column. Valid types are: %s", FieldType.INDEX_COLUMN_TYPES));
+          }
+        }
+      }
     }
   }
 }
@@ -20,6 +20,7 @@ import io.cdap.cdap.api.annotation.Beta;
 import io.cdap.cdap.spi.data.InvalidFieldException;
 import io.cdap.cdap.spi.data.table.StructuredTableSchema;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -91,4 +92,55 @@ public final class FieldValidator {
       i++;
     }
   }
+
+  /**
+   * Validate if the given range can be used for scanning an index. Each end of the range must be a prefix of the
+   * columns of the same index, at least one end must not be empty, and none of the field values can be null.
+   *
+   * @param range the range to validate
+   * @return the ordered list of index columns used by the range
+   * @throws InvalidFieldException if the range cannot be served by an index of the table
+   */
+  public List<String> validateIndexRange(Range range) throws InvalidFieldException {
+    Collection<Field<?>> begin = range.getBegin();
+    Collection<Field<?>> end = range.getEnd();
+    Collection<Field<?>> longer = begin.size() >= end.size() ? begin : end;
+    Collection<Field<?>> shorter = longer == begin ? end : begin;
+
+    if (longer.isEmpty()) {
+      throw new InvalidFieldException(tableSchema.getTableId(), longer,
+                                      "An index range must have at least one of begin and end specified");
+    }
+
+    List<String> columns = new ArrayList<>();
+    for (Field<?> field : longer) {
+      validateIndexField(field);
+      columns.add(field.getName());
+    }
+    if (!tableSchema.isIndexPrefix(columns)) {
+      throw new InvalidFieldException(
+        tableSchema.getTableId(), longer,
+        String.format("Given fields %s are not the prefix of any index of the table", longer));
+    }
+
+    int i = 0;
+    for (Field<?> field : shorter) {
+      validateIndexField(field);
+      if (!field.getName().equals(columns.get(i))) {
+        throw new InvalidFieldException(
+          tableSchema.getTableId(), shorter,
+          String.format("Given fields %s are not the prefix of the index columns %s", shorter, columns));
+      }
+      i++;
+    }
+    return columns;
+  }
+
+  private void validateIndexField(Field<?> field) throws InvalidFieldException {
+    validateField(field);
+    if (field.getValue() == null) {
+      throw new InvalidFieldException(tableSchema.getTableId(), field.getName(),
+                                      "is used in an index range but the value is null");
+    }
+  }
 }
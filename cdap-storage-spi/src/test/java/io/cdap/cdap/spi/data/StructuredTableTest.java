@@ -65,11 +65,12 @@ public abstract class StructuredTableTest {
   private static final StructuredTableId SIMPLE_TABLE = new StructuredTableId("simpleTable");
   private static final String KEY = "key";
   private static final String KEY2 = "key2";
-  private static final String STRING_COL = "col1";
+  protected static final String STRING_COL = "col1";
   private static final String DOUBLE_COL = "col2";
   private static final String FLOAT_COL = "col3";
   private static final String BYTES_COL = "col4";
-  private static final String LONG_COL = "col5";
+  protected static final String LONG_COL = "col5";
+  private static final String INT_COL = "col6";
   private static final String VAL = "val";
   private static final StructuredTableSchema SIMPLE_SCHEMA;
 
@@ -79,9 +80,11 @@ public abstract class StructuredTableTest {
        .withId(SIMPLE_TABLE)
        .withFields(Fields.intType(KEY), Fields.stringType(STRING_COL), Fields.longType(KEY2),
                    Fields.doubleType(DOUBLE_COL), Fields.floatType(FLOAT_COL), Fields.bytesType(BYTES_COL),
-                   Fields.longType(LONG_COL))
+                   Fields.longType(LONG_COL), Fields.intType(INT_COL))
        .withPrimaryKeys(KEY, KEY2)
-       .withIndexes(STRING_COL)
+       .withIndexes(STRING_COL, INT_COL)
+       .withCompositeIndex(STRING_COL, LONG_COL)
+       .withCompositeIndex(LONG_COL, STRING_COL)
        .build();
       SIMPLE_SCHEMA = new StructuredTableSchema(SIMPLE_SPEC);
     } catch (InvalidFieldException e) {
@@ -174,6 +177,53 @@ public abstract class StructuredTableTest {
     Assert.assertEquals(new HashSet<>(keys), result);
   }
 
+  @Test
+  public void testUpsertAllDeleteAll() throws Exception {
+    int max = 10;
+
+    // Write all rows in one call. Rows with the same key are written in order, hence the last one wins.
+    List<Collection<Field<?>>> expected = new ArrayList<>();
+    List<Collection<Field<?>>> rows = new ArrayList<>();
+    for (int i = 0; i < max; i++) {
+      List<Field<?>> fields = Arrays.asList(Fields.intField(KEY, i),
+                                            Fields.longField(KEY2, (long) i),
+                                            Fields.stringField(STRING_COL, VAL + i),
+                                            Fields.doubleField(DOUBLE_COL, (double) i),
+                                            Fields.floatField(FLOAT_COL, (float) i),
+                                            Fields.bytesField(BYTES_COL, Bytes.toBytes("bytes-" + i)));
+      rows.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i),
+                             Fields.stringField(STRING_COL, "old")));
+      rows.add(fields);
+      expected.add(fields);
+    }
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      table.upsertAll(rows);
+    });
+    Assert.assertEquals(expected, readSimpleStructuredRows(max));
+
+    // Delete the even rows in one call
+    List<Collection<Field<?>>> keys = new ArrayList<>();
+    for (int i = 0; i < max; i += 2) {
+      keys.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i)));
+    }
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      table.deleteAll(keys);
+    });
+    List<Collection<Field<?>>> actual = readSimpleStructuredRows(max);
+    Assert.assertEquals(IntStream.range(0, max).filter(i -> i % 2 == 1).mapToObj(expected::get)
+                          .collect(Collectors.toList()), actual);
+
+    // Empty collections are no-op
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      table.upsertAll(Collections.emptyList());
+      table.deleteAll(Collections.emptyList());
+    });
+    Assert.assertEquals(actual, readSimpleStructuredRows(max));
+  }
+
   @Test
   public void testSimpleScan() throws Exception {
     int max = 100;
@@ -568,6 +618,117 @@ public abstract class StructuredTableTest {
     });
   }
 
+  @Test
+  public void testIndexRangeScan() throws Exception {
+    writeIndexRangeRows();
+
+    // String column range
+    Assert.assertEquals(new HashSet<>(Arrays.asList(1, 4, 7, 10, 12)),
+                        scanIndexKeys(Range.singleton(Collections.singleton(Fields.stringField(STRING_COL, "b"))),
+                                      100));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(2, 5, 8, 11)),
+                        scanIndexKeys(Range.from(Collections.singleton(Fields.stringField(STRING_COL, "b")),
+                                                 Range.Bound.EXCLUSIVE), 100));
+
+    // Integer column range, with ranges covering negative values, positive values or both
+    Assert.assertEquals(new HashSet<>(Arrays.asList(3, 4, 5, 6, 7, 8)),
+                        scanIndexKeys(Range.create(Collections.singleton(Fields.intField(INT_COL, -3)),
+                                                   Range.Bound.INCLUSIVE,
+                                                   Collections.singleton(Fields.intField(INT_COL, 2)),
+                                                   Range.Bound.INCLUSIVE), 100));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(5, 6)),
+                        scanIndexKeys(Range.create(Collections.singleton(Fields.intField(INT_COL, -2)),
+                                                   Range.Bound.EXCLUSIVE,
+                                                   Collections.singleton(Fields.intField(INT_COL, 1)),
+                                                   Range.Bound.EXCLUSIVE), 100));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(0, 1)),
+                        scanIndexKeys(Range.to(Collections.singleton(Fields.intField(INT_COL, -4)),
+                                               Range.Bound.EXCLUSIVE), 100));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(6, 7, 8, 9, 10, 11)),
+                        scanIndexKeys(Range.from(Collections.singleton(Fields.intField(INT_COL, -1)),
+                                                 Range.Bound.EXCLUSIVE), 100));
+    Assert.assertEquals(Collections.emptySet(),
+                        scanIndexKeys(Range.from(Collections.singleton(Fields.intField(INT_COL, Integer.MAX_VALUE)),
+                                                 Range.Bound.EXCLUSIVE), 100));
+
+    // Limit
+    Assert.assertEquals(3, scanIndexKeys(Range.from(Collections.singleton(Fields.intField(INT_COL, -6)),
+                                                    Range.Bound.INCLUSIVE), 3).size());
+
+    // Ranges that cannot be served by an index
+    List<Range> invalidRanges = Arrays.asList(
+      Range.all(),
+      Range.singleton(Collections.singleton(Fields.longField(KEY2, 1L))),
+      Range.singleton(Arrays.asList(Fields.longField(LONG_COL, 1L), Fields.longField(KEY2, 1L))),
+      Range.create(Collections.singleton(Fields.stringField(STRING_COL, "a")), Range.Bound.INCLUSIVE,
+                   Collections.singleton(Fields.longField(LONG_COL, 1L)), Range.Bound.INCLUSIVE));
+    for (Range range : invalidRanges) {
+      try {
+        scanIndexKeys(range, 100);
+        Assert.fail("Expected InvalidFieldException for scanning index with range " + range);
+      } catch (InvalidFieldException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void testCompositeIndexRangeScan() throws Exception {
+    writeIndexRangeRows();
+
+    // Composite index prefix range, the row without LONG_COL value should not be returned
+    Assert.assertEquals(new HashSet<>(Arrays.asList(7, 10)),
+                        scanIndexKeys(Range.create(Arrays.asList(Fields.stringField(STRING_COL, "b"),
+                                                                 Fields.longField(LONG_COL, 0L)),
+                                                   Range.Bound.INCLUSIVE,
+                                                   Collections.singleton(Fields.stringField(STRING_COL, "b")),
+                                                   Range.Bound.INCLUSIVE), 100));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(6, 9, 1, 4)),
+                        scanIndexKeys(Range.create(Arrays.asList(Fields.stringField(STRING_COL, "a"),
+                                                                 Fields.longField(LONG_COL, -3L)),
+                                                   Range.Bound.EXCLUSIVE,
+                                                   Arrays.asList(Fields.stringField(STRING_COL, "b"),
+                                                                 Fields.longField(LONG_COL, 1L)),
+                                                   Range.Bound.EXCLUSIVE), 100));
+
+    // Composite index with a long first column, with range covering both negative and positive values
+    Assert.assertEquals(new HashSet<>(Arrays.asList(3, 4, 5, 6, 7, 8)),
+                        scanIndexKeys(Range.create(Collections.singleton(Fields.longField(LONG_COL, -3L)),
+                                                   Range.Bound.INCLUSIVE,
+                                                   Collections.singleton(Fields.longField(LONG_COL, 2L)),
+                                                   Range.Bound.INCLUSIVE), 100));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(0, 1)),
+                        scanIndexKeys(Range.to(Collections.singleton(Fields.longField(LONG_COL, -4L)),
+                                               Range.Bound.EXCLUSIVE), 100));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(8, 9, 10, 11)),
+                        scanIndexKeys(Range.create(Arrays.asList(Fields.longField(LONG_COL, 2L),
+                                                                 Fields.stringField(STRING_COL, "c")),
+                                                   Range.Bound.INCLUSIVE,
+                                                   Collections.singleton(Fields.longField(LONG_COL, 100L)),
+                                                   Range.Bound.INCLUSIVE), 100));
+
+    // Limit
+    Assert.assertEquals(3, scanIndexKeys(Range.from(Collections.singleton(Fields.longField(LONG_COL, -6L)),
+                                                    Range.Bound.INCLUSIVE), 3).size());
+  }
+
+  /**
+   * Writes rows with keys 0 to 11, STRING_COL "a", "b", "c" alternating, and both LONG_COL and INT_COL from -6 to 5.
+   * Also writes a row with key 12 and STRING_COL "b" only.
+   */
+  private void writeIndexRangeRows() throws Exception {
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      for (int i = 0; i < 12; i++) {
+        table.upsert(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i),
+                                   Fields.stringField(STRING_COL, String.valueOf((char) ('a' + i % 3))),
+                                   Fields.longField(LONG_COL, i - 6L), Fields.intField(INT_COL, i - 6)));
+      }
+      table.upsert(Arrays.asList(Fields.intField(KEY, 12), Fields.longField(KEY2, 12L),
+                                 Fields.stringField(STRING_COL, "b")));
+    });
+  }
+
   @Test
   public void testCount() throws Exception {
     // Write records
@@ -686,6 +847,17 @@ public abstract class StructuredTableTest {
     Assert.assertFalse(row.isPresent());
   }
 
+  protected Set<Integer> scanIndexKeys(Range indexRange, int limit) throws Exception {
+    return TransactionRunners.run(getTransactionRunner(), context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      Set<Integer> keys = new HashSet<>();
+      try (CloseableIterator<StructuredRow> iterator = table.scanIndex(indexRange, limit)) {
+        iterator.forEachRemaining(row -> keys.add(row.getInteger(KEY)));
+      }
+      return keys;
+    }, InvalidFieldException.class);
+  }
+
   private List<Collection<Field<?>>> writeSimpleStructuredRows(int max, String suffix) throws Exception {
     List<Collection<Field<?>>> expected = new ArrayList<>(max);
     // Write rows in reverse order to test sorting
@@ -26,15 +26,9 @@ import io.cdap.cdap.messaging.store.MessageFilter;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.NavigableSet;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nullable;
 
 /**
@@ -61,27 +55,29 @@ import javax.annotation.Nullable;
  *     it if needed. This essentially is to amortize the cost of the blocking weight reduction operations among all
  *     fetchers (which typically has multiple of them), without blocking the single publish as much as possible.
  *
+ * This class maintains the weight and the limits of the cache, while the storage of entries is provided by
+ * the subclasses. See {@link OnHeapMessageCache} for an implementation that keeps entries on heap, and
+ * {@link OffHeapMessageCache} for an implementation that keeps serialized entries in off-heap memory segments.
+ *
  * @param <T> type of entry stored in the cache
  */
-public class MessageCache<T> {
+public abstract class MessageCache<T> {
 
-  private static final String METRICS_WEIGHT = "cache.weight";
-  private static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
-  private static final String METRICS_ENTRIES_REMOVED = "cache.entries.removed";
-  private static final String METRICS_ADD_REQUESTS = "cache.add.requests";
-  private static final String METRICS_ADD_REDUCE_WEIGHT = "cache.add.reduce.weight";
-  private static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
-  private static final String METRICS_SCAN_REDUCE_WEIGHT = "cache.scan.reduce.weight";
+  static final String METRICS_WEIGHT = "cache.weight";
+  static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
+  static final String METRICS_ENTRIES_REMOVED = "cache.entries.removed";
+  static final String METRICS_ADD_REQUESTS = "cache.add.requests";
+  static final String METRICS_ADD_REDUCE_WEIGHT = "cache.add.reduce.weight";
+  static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
+  static final String METRICS_SCAN_REDUCE_WEIGHT = "cache.scan.reduce.weight";
 
-  private final NavigableSet<CacheEntry<T>> cache;
   private final Comparator<T> comparator;
+  private final Weigher<T> weigher;
   private final AtomicReference<Limits> limits;
   private final MetricsContext metricsContext;
   private final AtomicLong currentWeight;
   private final AtomicBoolean needReduceWeight;
   private final AtomicBoolean adding;
-  private final Weigher<T> weigher;
-  private final ReadWriteLock cacheLock;
 
   /**
    * Creates a new instance of the cache.
@@ -91,16 +87,14 @@ public class MessageCache<T> {
    * @param limits the limits for maintaining cache weight; see class description for more detail
    * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
    */
-  public MessageCache(Comparator<T> comparator, Weigher<T> weigher, Limits limits, MetricsContext metricsContext) {
-    this.cache = new ConcurrentSkipListSet<>(new CacheEntryComparator<>(comparator));
+  protected MessageCache(Comparator<T> comparator, Weigher<T> weigher, Limits limits, MetricsContext metricsContext) {
     this.comparator = comparator;
+    this.weigher = weigher;
     this.limits = new AtomicReference<>(limits);
     this.metricsContext = metricsContext;
     this.currentWeight = new AtomicLong();
     this.needReduceWeight = new AtomicBoolean();
     this.adding = new AtomicBoolean();
-    this.weigher = weigher;
-    this.cacheLock = new ReentrantReadWriteLock();
   }
 
   /**
@@ -119,7 +113,7 @@ public class MessageCache<T> {
    * @throws IllegalArgumentException if the entries provided are not in strictly increasing order
    *                                  or not larger existing cached entries
    */
-  public void addAll(Iterator<T> entries) {
+  public final void addAll(Iterator<T> entries) {
     if (!adding.compareAndSet(false, true)) {
       // This is to guard against bug, otherwise this shouldn't happen
       throw new ConcurrentModificationException(
@@ -127,52 +121,30 @@ public class MessageCache<T> {
     }
 
     try {
-      long newWeight = 0L;
-      CacheEntry<T> largestCacheEntry = null;
-
+      long newWeight = currentWeight.get();
       int entriesAdded = 0;
+
       while (entries.hasNext()) {
         T entry = entries.next();
-        CacheEntry<T> cacheEntry = new CacheEntry<>(entry, weigher.weight(entry));
-        newWeight = currentWeight.addAndGet(cacheEntry.getWeight());
+        int weight = weigher.weight(entry);
+        if (!add(entry, weight)) {
+          continue;
+        }
+        entriesAdded++;
+
+        newWeight = currentWeight.addAndGet(weight);
         if (newWeight > limits.get().getHardLimit()) {
           reduceWeight();
           metricsContext.increment(METRICS_ADD_REDUCE_WEIGHT, 1L);
           newWeight = currentWeight.get();
         }
-
-        // Make sure new entries are also in increasing order.
-        // For the first entry from the provided iterator, it must be larger than everything in the cache, hence
-        // the ceiling call must be returning null.
-        // For sub-sequence entries in the iterator, they must be in strictly increasing order
-        largestCacheEntry = largestCacheEntry == null ? cache.ceiling(cacheEntry) : largestCacheEntry;
-        if (largestCacheEntry != null && comparator.compare(largestCacheEntry.getEntry(), cacheEntry.getEntry()) >= 0) {
-          // Entries must be in strictly increasing order
-          // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
-          // unless there is bug in the TMS system (from the caller side).
-          currentWeight.addAndGet(-1 * cacheEntry.getWeight());
-          clear();
-          throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
-                                               "Entry " + entry + " is smaller than or equal to " +
-                                               largestCacheEntry.getEntry());
-        }
-
-        // It's ok to "leak" this to reader even if the new weight is larger than the hard limit
-        // The entry will get removed eventually and the read/write operations as a whole still give valid
-        // results
-        cache.add(cacheEntry);
-        entriesAdded++;
-        largestCacheEntry = cacheEntry;
       }
 
       metricsContext.increment(METRICS_ADD_REQUESTS, 1L);
       metricsContext.increment(METRICS_ENTRIES_ADDED, entriesAdded);
       metricsContext.gauge(METRICS_WEIGHT, newWeight);
 
-      if (newWeight > limits.get().getHardLimit()) {
-        reduceWeight();
-        metricsContext.increment(METRICS_ADD_REDUCE_WEIGHT, 1L);
-      } else if (newWeight > limits.get().getReduceTrigger()) {
+      if (newWeight > limits.get().getReduceTrigger()) {
         needReduceWeight.compareAndSet(false, true);
       }
     } finally {
@@ -189,46 +161,7 @@ public class MessageCache<T> {
    * @param limit maximum number of entries to fetch
    * @return a {@link Scanner} for accessing to the fetched entries
    */
-  public Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter) {
-    List<T> entries = new LinkedList<>();
-
-    // Acquire the read lock and copy the entries. This is to guard against weight reduction while the caller
-    // is iterating using the returned Scanner.
-    cacheLock.readLock().lock();
-    T firstInCache;
-    try {
-      firstInCache = cache.isEmpty() ? null : cache.first().getEntry();
-      for (CacheEntry<T> cacheEntry : cache.tailSet(new CacheEntry<>(startEntry, 0), includeStart)) {
-        if (entries.size() >= limit) {
-          break;
-        }
-
-        MessageFilter.Result result = filter.apply(cacheEntry.getEntry());
-        if (result == MessageFilter.Result.ACCEPT) {
-          entries.add(cacheEntry.getEntry());
-        } else if (result == MessageFilter.Result.HOLD) {
-          // Hold means not to scan more, so just break
-          break;
-        }
-      }
-    } finally {
-      cacheLock.readLock().unlock();
-    }
-
-    metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
-
-    return new AbstractScanner<T>(entries.iterator(), firstInCache) {
-      @Override
-      void doClose() {
-        // Use compareAndSet to check if need to reduce weight. There will only be
-        // one winner to proceed with the reduce weight call.
-        if (needReduceWeight.compareAndSet(true, false)) {
-          reduceWeight();
-          metricsContext.increment(METRICS_SCAN_REDUCE_WEIGHT, 1L);
-        }
-      }
-    };
-  }
+  public abstract Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter);
 
   /**
    * Updates entries in the cache. Update to each entry shouldn't change the ordering of the entry based on the
@@ -238,53 +171,14 @@ public class MessageCache<T> {
    * @param endEntry the ending entry for the update to end (inclusive)
    * @param updater a {@link EntryUpdater} to update the content of a entry
    */
-  public void updateEntries(T startEntry, T endEntry, EntryUpdater<T> updater) {
-    CacheEntry<T> startCacheEntry = new CacheEntry<>(startEntry, 0);
-
-    cacheLock.writeLock().lock();
-    try {
-      CacheEntry<T> lower = cache.lower(startCacheEntry);
-      Iterator<CacheEntry<T>> iterator = cache.subSet(startCacheEntry, true,
-                                                      new CacheEntry<>(endEntry, 0), true).iterator();
-      CacheEntry<T> cacheEntry = iterator.hasNext() ? iterator.next() : null;
-      while (cacheEntry != null) {
-        CacheEntry<T> nextCacheEntry = iterator.hasNext() ? iterator.next() : null;
-        CacheEntry<T> higher = nextCacheEntry == null ? cache.higher(cacheEntry) : nextCacheEntry;
-
-        try {
-          updater.updateEntry(cacheEntry.getEntry());
-        } catch (RuntimeException e) {
-          clear();
-          throw e;
-        }
-
-        // A quick check that the ordering hasn't been altered.
-        // It doesn't cover all possible case though. This is just a quick catch for bug in the caller.
-        if ((lower != null && comparator.compare(lower.getEntry(), cacheEntry.getEntry()) >= 0)
-            || (higher != null && comparator.compare(higher.getEntry(), cacheEntry.getEntry()) <= 0)) {
-          // This shouldn't happen, unless there is bug in the caller.
-          clear();
-          throw new IllegalStateException("Entry order should not be altered after update.");
-        }
-
-        lower = cacheEntry;
-        cacheEntry = nextCacheEntry;
-      }
-
-    } finally {
-      cacheLock.writeLock().unlock();
-    }
-  }
+  public abstract void updateEntries(T startEntry, T endEntry, EntryUpdater<T> updater);
 
   /**
    * Clears the cache. The caller is responsible to make sure there is no concurrent call to the
    * {@link #addAll(Iterator)} method.
    */
   public void clear() {
-    // To clear the cache, first set the limit to 0, the reset it back to proper limit
-    Limits oldLimits = limits.get();
-    resize(new Limits(0, 0, 0));
-    resize(oldLimits);
+    reduceWeight(0L);
   }
 
   /**
@@ -293,13 +187,8 @@ public class MessageCache<T> {
    * @param limits the new limits for this cache.
    */
   public void resize(Limits limits) {
-    cacheLock.writeLock().lock();
-    try {
-      this.limits.set(limits);
-      reduceWeight();
-    } finally {
-      cacheLock.writeLock().unlock();
-    }
+    this.limits.set(limits);
+    reduceWeight();
   }
 
   /**
@@ -318,28 +207,77 @@ public class MessageCache<T> {
   }
 
   /**
-   * Reduces the cache weight. Cached entries will be removed until the cache weight is smaller than the soft limit.
+   * Returns the {@link MetricsContext} for emitting metrics about this cache.
    */
-  private void reduceWeight() {
-    int entriesRemoved = 0;
-    cacheLock.writeLock().lock();
-    try {
-      long newWeight = currentWeight.get();
-      Iterator<CacheEntry<T>> iterator = cache.iterator();
-      while (iterator.hasNext()) {
-        CacheEntry<T> cacheEntry = iterator.next();
-        // If removing the next entry is smaller than the min weight, we are done with the reduce logic
-        if (newWeight - cacheEntry.getWeight() < limits.get().getMinRetain()) {
-          break;
+  final MetricsContext getMetricsContext() {
+    return metricsContext;
+  }
+
+  /**
+   * Subtracts the weight of a removed entry from the cache weight.
+   *
+   * @return the new cache weight
+   */
+  final long releaseWeight(int weight) {
+    return currentWeight.addAndGet(-1 * weight);
+  }
+
+  /**
+   * Creates a {@link Scanner} over the given entries fetched from the cache. Closing the scanner reduces
+   * the cache weight if the reduce trigger was hit by adding entries.
+   *
+   * @param entries the entries fetched from the cache
+   * @param firstInCache the first entry in the cache when the entries were fetched
+   * @param closeAction an action to perform when the scanner is closed
+   */
+  final Scanner<T> createScanner(Iterator<T> entries, @Nullable T firstInCache, Runnable closeAction) {
+    metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
+
+    return new AbstractScanner<T>(entries, firstInCache) {
+      @Override
+      void doClose() {
+        closeAction.run();
+        // Use compareAndSet to check if need to reduce weight. There will only be
+        // one winner to proceed with the reduce weight call.
+        if (needReduceWeight.compareAndSet(true, false)) {
+          reduceWeight();
+          metricsContext.increment(METRICS_SCAN_REDUCE_WEIGHT, 1L);
         }
-        iterator.remove();
-        entriesRemoved++;
-        newWeight = currentWeight.addAndGet(-1 * cacheEntry.getWeight());
       }
-    } finally {
-      cacheLock.writeLock().unlock();
-    }
-    metricsContext.increment(METRICS_ENTRIES_REMOVED, entriesRemoved);
+    };
+  }
+
+  /**
+   * Adds an entry to the end of the cache. The entry is not yet counted in the cache weight when this method
+   * is called. It is only called by the single writer.
+   *
+   * @param entry the entry to add
+   * @param weight the weight of the entry
+   * @return {@code true} if the entry is added, or {@code false} if the entry can't be stored by this cache.
+   *         If the entry is not added, the cache must not contain any entry smaller than the given entry.
+   * @throws IllegalArgumentException if the entry is not larger than the entries in the cache, in which case
+   *                                  the cache is cleared
+   */
+  abstract boolean add(T entry, int weight);
+
+  /**
+   * Removes entries from the beginning of the cache, until removing the next entry would make the cache weight
+   * smaller than the given weight. The weight of each removed entry is released with {@link #releaseWeight(int)}.
+   *
+   * @param minRetain the minimum weight to retain
+   * @return the number of entries removed
+   */
+  abstract int removeEntries(long minRetain);
+
+  /**
+   * Reduces the cache weight. Cached entries will be removed until the cache weight is smaller than the soft limit.
+   */
+  private void reduceWeight() {
+    reduceWeight(limits.get().getMinRetain());
+  }
+
+  private void reduceWeight(long minRetain) {
+    metricsContext.increment(METRICS_ENTRIES_REMOVED, removeEntries(minRetain));
   }
 
   /**
@@ -414,7 +352,6 @@ public class MessageCache<T> {
     public abstract void updateEntry(T entry);
   }
 
-
   /**
    * Abstract implementation of {@link Scanner}.
    *
@@ -426,7 +363,7 @@ public class MessageCache<T> {
     private final T firstInCache;
     private boolean closed;
 
-    private AbstractScanner(Iterator<T> iterator, @Nullable T firstInCache) {
+    AbstractScanner(Iterator<T> iterator, @Nullable T firstInCache) {
       this.iterator = iterator;
       this.firstInCache = firstInCache;
     }
@@ -459,55 +396,4 @@ public class MessageCache<T> {
      */
     abstract void doClose();
   }
-
-  /**
-   * A private class that wraps a user provided entry of type {@code T} with an associated weight.
-   *
-   * @param <T> type of the entry
-   */
-  private static class CacheEntry<T> {
-    private final T entry;
-    private final int weight;
-
-    private CacheEntry(T entry, int weight) {
-      this.entry = entry;
-      this.weight = weight;
-    }
-
-    T getEntry() {
-      return entry;
-    }
-
-    int getWeight() {
-      return weight;
-    }
-
-    @Override
-    public String toString() {
-      return "CacheEntry{" +
-        "entry=" + entry +
-        ", weight=" + weight +
-        '}';
-    }
-  }
-
-  /**
-   * A {@link Comparator} for {@link CacheEntry} that only compares with the user entry of type {@code T},
-   * using the provided {@link Comparator}.
-   *
-   * @param <T> type of the user entry
-   */
-  private static final class CacheEntryComparator<T> implements Comparator<CacheEntry<T>> {
-
-    private final Comparator<T> comparator;
-
-    private CacheEntryComparator(Comparator<T> comparator) {
-      this.comparator = comparator;
-    }
-
-    @Override
-    public int compare(CacheEntry<T> entry1, CacheEntry<T> entry2) {
-      return comparator.compare(entry1.getEntry(), entry2.getEntry());
-    }
-  }
 }
@@ -0,0 +1,612 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.messaging.store.MessageFilter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MessageCache} that stores serialized entries in off-heap memory instead of keeping entry objects on heap.
+ * It has the same contract and the same limits as the {@link OnHeapMessageCache}, but uses a different storage
+ * layout that takes advantage of the single writer, append only nature of TMS:
+ *
+ * - Entries are serialized with a {@link Serializer} and appended to a ring of direct memory segments.
+ *   Each entry is assigned a monotonically increasing sequence number. An entry is in the cache if its
+ *   sequence number is in the range of {@code [headSeq, tailSeq)}.
+ * - The writer appends to the last segment and publishes the entry by advancing the tail sequence.
+ *   It only needs to acquire a lock when rolling to a new segment.
+ * - The direct memory for the segments is allocated once when the cache is created. Weight reduction advances
+ *   the head sequence and releases segments that no longer contain live entries, which are then recycled
+ *   when the writer rolls to a new segment. If there is no segment to recycle, the writer removes the entries
+ *   of the oldest segment, even if the cache weight is below the limits.
+ * - Fetchers take an immutable snapshot of the segments and the sequence cursor, and pin the segments in
+ *   the snapshot, and then read without any locking. A segment is only recycled when no {@link Scanner} has
+ *   it pinned, hence data visible to a reader never changes underneath it. Entries are decoded lazily while
+ *   the {@link Scanner} is being iterated.
+ * - Entries that are larger than a segment are not cached. Adding such entry clears the cache.
+ *
+ * @param <T> type of entry stored in the cache
+ */
+public class OffHeapMessageCache<T> extends MessageCache<T> {
+
+  private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+  private static final int MAX_SEGMENT_SIZE = 8 * 1024 * 1024;
+  // The hard limit is divided into this number of segments, bounded by the min and max segment size.
+  private static final int SEGMENTS_PER_LIMIT = 16;
+  // Each record has a header of weight (int) and serialized size (int)
+  private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+  // Each record has an index entry of the record offset (int) at the end of the segment
+  private static final int INDEX_ENTRY_SIZE = Integer.BYTES;
+
+  private final Serializer<T> serializer;
+  private final AtomicLong updateCount;
+  private final Lock segmentLock;
+  private final int segmentSize;
+  // Direct memory buffers that are ready to be used by new segments. Guarded by the segmentLock.
+  private final Deque<ByteBuffer> freeBuffers;
+  // Segments that no longer contain live entries, but might still be pinned by scanners. Guarded by the segmentLock.
+  private final Deque<Segment> releasedSegments;
+
+  // Immutable array of segments. It gets replaced as a whole when segments are added or removed.
+  private volatile Segment[] segments;
+  // The sequence number of the first entry in the cache
+  private volatile long headSeq;
+  // The sequence number for the next entry to be added to the cache
+  private volatile long tailSeq;
+  // The last entry added to the cache. It is only accessed by the writer.
+  private T lastEntry;
+
+  /**
+   * Creates a new instance of the cache. The off-heap memory of the cache is allocated based on the hard limit
+   * of the given limits. Resizing the cache afterward changes the limits, but not the off-heap memory size.
+   *
+   * @param comparator a {@link Comparator} for ordering cache entries
+   * @param weigher a {@link Weigher} for computing the weight of each cache entry
+   * @param serializer a {@link Serializer} for storing entries in off-heap memory
+   * @param limits the limits for maintaining cache weight; see {@link MessageCache} for more detail
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  public OffHeapMessageCache(Comparator<T> comparator, Weigher<T> weigher, Serializer<T> serializer,
+                             Limits limits, MetricsContext metricsContext) {
+    super(comparator, weigher, limits, metricsContext);
+    this.serializer = serializer;
+    this.updateCount = new AtomicLong();
+    this.segmentLock = new ReentrantLock();
+    this.segmentSize = (int) Math.max(MIN_SEGMENT_SIZE,
+                                      Math.min(MAX_SEGMENT_SIZE, limits.getHardLimit() / SEGMENTS_PER_LIMIT));
+    this.freeBuffers = new ArrayDeque<>();
+    this.releasedSegments = new ArrayDeque<>();
+    this.segments = new Segment[0];
+
+    // Have room for the hard limit, plus the segment being written and one that is still being read
+    long segmentCount = limits.getHardLimit() / segmentSize + 2;
+    for (long i = 0; i < segmentCount; i++) {
+      freeBuffers.add(ByteBuffer.allocateDirect(segmentSize));
+    }
+  }
+
+  @Override
+  public Scanner<T> scan(T startEntry, boolean includeStart, int limit, final MessageFilter<T> filter) {
+    // The order of reads is important. The tail is read first, such that all entries before it
+    // are visible in the segments snapshot. Reading the update count makes in place updates visible.
+    // The segments are pinned before reading, so that they won't be recycled while this scanner is reading.
+    long tail;
+    Segment[] snapshot;
+    do {
+      updateCount.get();
+      tail = tailSeq;
+      snapshot = segments;
+    } while (!pin(snapshot));
+
+    try {
+      final long endSeq = tail;
+      final Segment[] pinned = snapshot;
+      long first = pinned.length == 0 ? endSeq : Math.max(headSeq, pinned[0].getBaseSeq());
+
+      T firstInCache = first < endSeq ? read(pinned, first) : null;
+      final long startSeq = search(pinned, first, endSeq, startEntry, includeStart);
+
+      Iterator<T> iterator = new AbstractIterator<T>() {
+        private long seq = startSeq;
+        private int count;
+
+        @Override
+        protected T computeNext() {
+          while (count < limit && seq < endSeq) {
+            T entry = read(pinned, seq++);
+            MessageFilter.Result result = filter.apply(entry);
+            if (result == MessageFilter.Result.ACCEPT) {
+              count++;
+              return entry;
+            }
+            if (result == MessageFilter.Result.HOLD) {
+              // Hold means not to scan more, so just break
+              break;
+            }
+          }
+          return endOfData();
+        }
+      };
+
+      return createScanner(iterator, firstInCache, () -> unpin(pinned, pinned.length));
+    } catch (RuntimeException e) {
+      unpin(snapshot, snapshot.length);
+      throw e;
+    }
+  }
+
+  /**
+   * Updates entries in the cache. Besides not changing the ordering of the entry, the update also shouldn't
+   * change the serialized size of the entry, since entries are updated in place.
+   *
+   * @param startEntry the starting entry for the update to start (inclusive)
+   * @param endEntry the ending entry for the update to end (inclusive)
+   * @param updater a {@link EntryUpdater} to update the content of a entry
+   */
+  @Override
+  public void updateEntries(T startEntry, T endEntry, EntryUpdater<T> updater) {
+    Comparator<T> comparator = getComparator();
+
+    // Acquire the lock to prevent segments being released while updating
+    segmentLock.lock();
+    try {
+      long tail = tailSeq;
+      Segment[] snapshot = segments;
+      long first = snapshot.length == 0 ? tail : Math.max(headSeq, snapshot[0].getBaseSeq());
+
+      long seq = search(snapshot, first, tail, startEntry, true);
+      T lower = seq > first ? read(snapshot, seq - 1) : null;
+
+      while (seq < tail) {
+        T entry = read(snapshot, seq);
+        if (comparator.compare(entry, endEntry) > 0) {
+          break;
+        }
+        T higher = seq + 1 < tail ? read(snapshot, seq + 1) : null;
+
+        try {
+          updater.updateEntry(entry);
+        } catch (RuntimeException e) {
+          clear();
+          throw e;
+        }
+
+        // A quick check that the ordering hasn't been altered.
+        // It doesn't cover all possible case though. This is just a quick catch for bug in the caller.
+        if ((lower != null && comparator.compare(lower, entry) >= 0)
+            || (higher != null && comparator.compare(higher, entry) <= 0)) {
+          // This shouldn't happen, unless there is bug in the caller.
+          clear();
+          throw new IllegalStateException("Entry order should not be altered after update.");
+        }
+
+        if (!findSegment(snapshot, seq).update(seq, entry, serializer)) {
+          clear();
+          throw new IllegalStateException("Entry serialized size should not be altered after update.");
+        }
+
+        lower = entry;
+        seq++;
+      }
+    } finally {
+      segmentLock.unlock();
+    }
+
+    // Publish the in place updates to readers
+    updateCount.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of off-heap segments currently held by this cache.
+   */
+  @VisibleForTesting
+  int getSegmentCount() {
+    return segments.length;
+  }
+
+  /**
+   * Appends the given entry to the last segment, and rolls to a new segment if there is not enough room.
+   */
+  @Override
+  boolean add(T entry, int weight) {
+    // Entries must be in strictly increasing order, and larger than everything in the cache.
+    if (lastEntry != null && headSeq < tailSeq && getComparator().compare(lastEntry, entry) >= 0) {
+      // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
+      // unless there is bug in the TMS system (from the caller side).
+      T largest = lastEntry;
+      clear();
+      throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
+                                           "Entry " + entry + " is smaller than or equal to " + largest);
+    }
+
+    int size = serializer.getSize(entry);
+    int recordSize = RECORD_HEADER_SIZE + size;
+
+    Segment[] current = segments;
+    Segment segment = current.length == 0 ? null : current[current.length - 1];
+    if (segment == null || !segment.hasRoom(recordSize)) {
+      segment = recordSize + INDEX_ENTRY_SIZE > segmentSize ? null : addSegment();
+      if (segment == null) {
+        // The entry can't be stored. Clear the cache, so that there is no hole between the cached entries.
+        clear();
+        return false;
+      }
+    }
+    segment.append(entry, weight, size, serializer);
+    lastEntry = entry;
+
+    // Publish the new entry to readers. It is safe to do non-atomic increment since there is only one writer.
+    tailSeq = tailSeq + 1;
+    return true;
+  }
+
+  /**
+   * Removes entries from the head of the cache. Segments that no longer contain any entries in the cache will be
+   * released, except the last one, which is the one that the writer is appending to.
+   */
+  @Override
+  int removeEntries(long minRetain) {
+    segmentLock.lock();
+    try {
+      return removeEntries(minRetain, Long.MAX_VALUE, 1);
+    } finally {
+      segmentLock.unlock();
+    }
+  }
+
+  /**
+   * Removes entries from the head of the cache, up to the given sequence number (exclusive), and releases the
+   * segments that no longer contain any entries in the cache. This method must be called with the segmentLock held.
+   *
+   * @param minRetain the minimum weight to retain
+   * @param endSeq the sequence number to stop removing entries at
+   * @param keepSegments number of segments at the end to keep, even if they don't contain any entries in the cache
+   * @return the number of entries removed
+   */
+  private int removeEntries(long minRetain, long endSeq, int keepSegments) {
+    int entriesRemoved = 0;
+    long newWeight = getCurrentWeight();
+    long tail = Math.min(tailSeq, endSeq);
+    Segment[] current = segments;
+    long seq = headSeq;
+
+    int idx = 0;
+    while (seq < tail) {
+      while (idx < current.length && seq >= current[idx].getEndSeq()) {
+        idx++;
+      }
+      if (idx >= current.length) {
+        break;
+      }
+      int weight = current[idx].getWeight(seq);
+      // If removing the next entry is smaller than the min weight, we are done with the reduce logic
+      if (newWeight - weight < minRetain) {
+        break;
+      }
+      seq++;
+      entriesRemoved++;
+      newWeight = releaseWeight(weight);
+    }
+    headSeq = seq;
+
+    int drop = 0;
+    while (drop < current.length - keepSegments && current[drop].getEndSeq() <= seq) {
+      releasedSegments.add(current[drop++]);
+    }
+    if (drop > 0) {
+      segments = Arrays.copyOfRange(current, drop, current.length);
+    }
+    return entriesRemoved;
+  }
+
+  /**
+   * Adds a new segment to the end of the segments array. This method is only called from the writer.
+   *
+   * @return the new {@link Segment} or {@code null} if there is no off-heap memory available for a new segment
+   */
+  @Nullable
+  private Segment addSegment() {
+    segmentLock.lock();
+    try {
+      ByteBuffer buffer = acquireBuffer();
+      if (buffer == null) {
+        return null;
+      }
+      Segment segment = new Segment(buffer, tailSeq);
+      Segment[] current = segments;
+      Segment[] newSegments = Arrays.copyOf(current, current.length + 1);
+      newSegments[current.length] = segment;
+      segments = newSegments;
+      return segment;
+    } finally {
+      segmentLock.unlock();
+    }
+  }
+
+  /**
+   * Acquires a buffer for a new segment. If all buffers are in use, entries in the oldest segments are removed
+   * until one of them can be recycled. This method must be called with the segmentLock held.
+   *
+   * @return a {@link ByteBuffer} or {@code null} if all the segments are pinned by scanners
+   */
+  @Nullable
+  private ByteBuffer acquireBuffer() {
+    recycleSegments();
+    int entriesRemoved = 0;
+    while (freeBuffers.isEmpty() && segments.length > 0) {
+      // The writer is about to roll to a new segment, hence all segments, including the last one, can be released.
+      entriesRemoved += removeEntries(Long.MIN_VALUE, segments[0].getEndSeq(), 0);
+      recycleSegments();
+    }
+    if (entriesRemoved > 0) {
+      getMetricsContext().increment(METRICS_ENTRIES_REMOVED, entriesRemoved);
+    }
+    return freeBuffers.poll();
+  }
+
+  /**
+   * Recycles the buffers of the released segments that are not pinned by any scanner.
+   * This method must be called with the segmentLock held.
+   */
+  private void recycleSegments() {
+    Iterator<Segment> iterator = releasedSegments.iterator();
+    while (iterator.hasNext()) {
+      Segment segment = iterator.next();
+      if (segment.recycle()) {
+        freeBuffers.add(segment.getBuffer());
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Pins all the given segments.
+   *
+   * @return {@code true} if all segments are pinned, or {@code false} if any of them has been recycled,
+   *         in which case none of the segments are pinned
+   */
+  private boolean pin(Segment[] snapshot) {
+    for (int i = 0; i < snapshot.length; i++) {
+      if (!snapshot[i].pin()) {
+        unpin(snapshot, i);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Unpins the first given number of segments.
+   */
+  private void unpin(Segment[] snapshot, int count) {
+    for (int i = 0; i < count; i++) {
+      snapshot[i].unpin();
+    }
+  }
+
+  /**
+   * Returns the sequence number of the first entry in {@code [first, tail)} that is larger than
+   * (or equal to if {@code inclusive} is {@code true}) the given entry. If there is no such entry,
+   * {@code tail} will be returned.
+   */
+  private long search(Segment[] snapshot, long first, long tail, T entry, boolean inclusive) {
+    Comparator<T> comparator = getComparator();
+    long low = first;
+    long high = tail;
+    while (low < high) {
+      long mid = (low + high) >>> 1;
+      int cmp = findSegment(snapshot, mid).compare(mid, entry, serializer, comparator);
+      if (cmp < 0 || (cmp == 0 && !inclusive)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Reads the entry of the given sequence number from the given segments snapshot.
+   */
+  private T read(Segment[] snapshot, long seq) {
+    return findSegment(snapshot, seq).read(seq, serializer);
+  }
+
+  /**
+   * Finds the {@link Segment} that contains the given sequence number.
+   */
+  private Segment findSegment(Segment[] snapshot, long seq) {
+    int low = 0;
+    int high = snapshot.length - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (snapshot[mid].getBaseSeq() <= seq) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return snapshot[low];
+  }
+
+  /**
+   * Serializer for storing entries in off-heap memory. All operations use absolute positions of the
+   * {@link ByteBuffer} and must not alter the position or limit of the buffer, since the same buffer
+   * is shared by concurrent readers.
+   *
+   * @param <T> type of the entry
+   */
+  public interface Serializer<T> {
+
+    /**
+     * Returns the number of bytes needed to serialize the given entry.
+     */
+    int getSize(T entry);
+
+    /**
+     * Serializes the given entry into the buffer, starting at the given offset.
+     */
+    void serialize(T entry, ByteBuffer buffer, int offset);
+
+    /**
+     * Deserializes an entry of the given serialized size from the buffer, starting at the given offset.
+     */
+    T deserialize(ByteBuffer buffer, int offset, int size);
+
+    /**
+     * Compares the serialized entry of the given size, starting at the given offset, with the given entry.
+     * The result must be the same as comparing the deserialized entry with the given {@link Comparator}.
+     * Implementations should override it to compare only the fields used for ordering, without deserializing
+     * the whole entry.
+     */
+    default int compare(ByteBuffer buffer, int offset, int size, T entry, Comparator<T> comparator) {
+      return comparator.compare(deserialize(buffer, offset, size), entry);
+    }
+  }
+
+  /**
+   * A fixed size off-heap memory segment. Records are appended from the beginning of the segment, while the
+   * record offsets are appended from the end of the segment backward. The segment is full when they meet.
+   * A new segment is created each time the writer rolls, while the buffer of a released segment is reused by
+   * a later segment once it is no longer pinned.
+   */
+  private static final class Segment {
+
+    private final ByteBuffer buffer;
+    private final long baseSeq;
+    // Number of scanners reading from this segment, or -1 if the buffer of this segment has been recycled
+    private final AtomicInteger pins;
+    // Number of records published in this segment
+    private volatile int count;
+    // End offset of the record data. Only accessed by the writer.
+    private int dataEnd;
+
+    Segment(ByteBuffer buffer, long baseSeq) {
+      this.buffer = buffer;
+      this.baseSeq = baseSeq;
+      this.pins = new AtomicInteger();
+    }
+
+    ByteBuffer getBuffer() {
+      return buffer;
+    }
+
+    long getBaseSeq() {
+      return baseSeq;
+    }
+
+    /**
+     * Pins this segment for reading.
+     *
+     * @return {@code true} if the segment is pinned, or {@code false} if the buffer has been recycled
+     */
+    boolean pin() {
+      while (true) {
+        int count = pins.get();
+        if (count < 0) {
+          return false;
+        }
+        if (pins.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    void unpin() {
+      pins.decrementAndGet();
+    }
+
+    /**
+     * Marks the buffer of this segment as recycled if it is not pinned.
+     *
+     * @return {@code true} if the buffer can be reused
+     */
+    boolean recycle() {
+      return pins.compareAndSet(0, -1);
+    }
+
+    long getEndSeq() {
+      return baseSeq + count;
+    }
+
+    boolean hasRoom(int recordSize) {
+      return dataEnd + recordSize + (count + 1) * INDEX_ENTRY_SIZE <= buffer.capacity();
+    }
+
+    <T> void append(T entry, int weight, int size, Serializer<T> serializer) {
+      int offset = dataEnd;
+      buffer.putInt(offset, weight);
+      buffer.putInt(offset + Integer.BYTES, size);
+      serializer.serialize(entry, buffer, offset + RECORD_HEADER_SIZE);
+      buffer.putInt(indexPosition(count), offset);
+      dataEnd = offset + RECORD_HEADER_SIZE + size;
+      // Publish the record. It is safe to do non-atomic increment since there is only one writer.
+      count = count + 1;
+    }
+
+    int getWeight(long seq) {
+      return buffer.getInt(getOffset(seq));
+    }
+
+    <T> T read(long seq, Serializer<T> serializer) {
+      int offset = getOffset(seq);
+      return serializer.deserialize(buffer, offset + RECORD_HEADER_SIZE, buffer.getInt(offset + Integer.BYTES));
+    }
+
+    <T> int compare(long seq, T entry, Serializer<T> serializer, Comparator<T> comparator) {
+      int offset = getOffset(seq);
+      return serializer.compare(buffer, offset + RECORD_HEADER_SIZE, buffer.getInt(offset + Integer.BYTES),
+                                entry, comparator);
+    }
+
+    /**
+     * Overwrites the record of the given sequence number in place.
+     *
+     * @return {@code true} if the record is updated, {@code false} if the serialized size has changed
+     */
+    <T> boolean update(long seq, T entry, Serializer<T> serializer) {
+      int offset = getOffset(seq);
+      if (serializer.getSize(entry) != buffer.getInt(offset + Integer.BYTES)) {
+        return false;
+      }
+      serializer.serialize(entry, buffer, offset + RECORD_HEADER_SIZE);
+      return true;
+    }
+
+    private int getOffset(long seq) {
+      return buffer.getInt(indexPosition((int) (seq - baseSeq)));
+    }
+
+    private int indexPosition(int idx) {
+      return buffer.capacity() - (idx + 1) * INDEX_ENTRY_SIZE;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.messaging.cache;
+
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.messaging.store.MessageFilter;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link MessageCache} that keeps entries on heap in a sorted set. Fetchers copy the entries under a read lock,
+ * such that weight reduction can't remove entries while the caller is iterating using the returned {@link Scanner}.
+ *
+ * @param <T> type of entry stored in the cache
+ */
+public class OnHeapMessageCache<T> extends MessageCache<T> {
+
+  private final NavigableSet<CacheEntry<T>> cache;
+  private final ReadWriteLock cacheLock;
+
+  /**
+   * Creates a new instance of the cache.
+   *
+   * @param comparator a {@link Comparator} for ordering cache entries
+   * @param weigher a {@link Weigher} for computing the weight of each cache entry
+   * @param limits the limits for maintaining cache weight; see {@link MessageCache} for more detail
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  public OnHeapMessageCache(Comparator<T> comparator, Weigher<T> weigher,
+                            Limits limits, MetricsContext metricsContext) {
+    super(comparator, weigher, limits, metricsContext);
+    this.cache = new ConcurrentSkipListSet<>(new CacheEntryComparator<>(comparator));
+    this.cacheLock = new ReentrantReadWriteLock();
+  }
+
+  @Override
+  public Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter) {
+    List<T> entries = new LinkedList<>();
+
+    // Acquire the read lock and copy the entries. This is to guard against weight reduction while the caller
+    // is iterating using the returned Scanner.
+    cacheLock.readLock().lock();
+    T firstInCache;
+    try {
+      firstInCache = cache.isEmpty() ? null : cache.first().getEntry();
+      for (CacheEntry<T> cacheEntry : cache.tailSet(new CacheEntry<>(startEntry, 0), includeStart)) {
+        if (entries.size() >= limit) {
+          break;
+        }
+
+        MessageFilter.Result result = filter.apply(cacheEntry.getEntry());
+        if (result == MessageFilter.Result.ACCEPT) {
+          entries.add(cacheEntry.getEntry());
+        } else if (result == MessageFilter.Result.HOLD) {
+          // Hold means not to scan more, so just break
+          break;
+        }
+      }
+    } finally {
+      cacheLock.readLock().unlock();
+    }
+
+    return createScanner(entries.iterator(), firstInCache, () -> { });
+  }
+
+  @Override
+  public void updateEntries(T startEntry, T endEntry, EntryUpdater<T> updater) {
+    Comparator<T> comparator = getComparator();
+    CacheEntry<T> startCacheEntry = new CacheEntry<>(startEntry, 0);
+
+    cacheLock.writeLock().lock();
+    try {
+      CacheEntry<T> lower = cache.lower(startCacheEntry);
+      Iterator<CacheEntry<T>> iterator = cache.subSet(startCacheEntry, true,
+                                                      new CacheEntry<>(endEntry, 0), true).iterator();
+      CacheEntry<T> cacheEntry = iterator.hasNext() ? iterator.next() : null;
+      while (cacheEntry != null) {
+        CacheEntry<T> nextCacheEntry = iterator.hasNext() ? iterator.next() : null;
+        CacheEntry<T> higher = nextCacheEntry == null ? cache.higher(cacheEntry) : nextCacheEntry;
+
+        try {
+          updater.updateEntry(cacheEntry.getEntry());
+        } catch (RuntimeException e) {
+          clear();
+          throw e;
+        }
+
+        // A quick check that the ordering hasn't been altered.
+        // It doesn't cover all possible case though. This is just a quick catch for bug in the caller.
+        if ((lower != null && comparator.compare(lower.getEntry(), cacheEntry.getEntry()) >= 0)
+            || (higher != null && comparator.compare(higher.getEntry(), cacheEntry.getEntry()) <= 0)) {
+          // This shouldn't happen, unless there is bug in the caller.
+          clear();
+          throw new IllegalStateException("Entry order should not be altered after update.");
+        }
+
+        lower = cacheEntry;
+        cacheEntry = nextCacheEntry;
+      }
+
+    } finally {
+      cacheLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  boolean add(T entry, int weight) {
+    CacheEntry<T> cacheEntry = new CacheEntry<>(entry, weight);
+
+    // Make sure new entries are in strictly increasing order, hence the ceiling call must be returning null.
+    CacheEntry<T> largerCacheEntry = cache.ceiling(cacheEntry);
+    if (largerCacheEntry != null) {
+      // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
+      // unless there is bug in the TMS system (from the caller side).
+      clear();
+      throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
+                                           "Entry " + entry + " is smaller than or equal to " +
+                                           largerCacheEntry.getEntry());
+    }
+
+    // It's ok to "leak" this to reader even if the new weight is larger than the hard limit
+    // The entry will get removed eventually and the read/write operations as a whole still give valid
+    // results
+    cache.add(cacheEntry);
+    return true;
+  }
+
+  @Override
+  int removeEntries(long minRetain) {
+    int entriesRemoved = 0;
+    cacheLock.writeLock().lock();
+    try {
+      long newWeight = getCurrentWeight();
+      Iterator<CacheEntry<T>> iterator = cache.iterator();
+      while (iterator.hasNext()) {
+        CacheEntry<T> cacheEntry = iterator.next();
+        // If removing the next entry is smaller than the min weight, we are done with the reduce logic
+        if (newWeight - cacheEntry.getWeight() < minRetain) {
+          break;
+        }
+        iterator.remove();
+        entriesRemoved++;
+        newWeight = releaseWeight(cacheEntry.getWeight());
+      }
+    } finally {
+      cacheLock.writeLock().unlock();
+    }
+    return entriesRemoved;
+  }
+
+  /**
+   * A private class that wraps a user provided entry of type {@code T} with an associated weight.
+   *
+   * @param <T> type of the entry
+   */
+  private static class CacheEntry<T> {
+    private final T entry;
+    private final int weight;
+
+    private CacheEntry(T entry, int weight) {
+      this.entry = entry;
+      this.weight = weight;
+    }
+
+    T getEntry() {
+      return entry;
+    }
+
+    int getWeight() {
+      return weight;
+    }
+
+    @Override
+    public String toString() {
+      return "CacheEntry{" +
+        "entry=" + entry +
+        ", weight=" + weight +
+        '}';
+    }
+  }
+
+  /**
+   * A {@link Comparator} for {@link CacheEntry} that only compares with the user entry of type {@code T},
+   * using the provided {@link Comparator}.
+   *
+   * @param <T> type of the user entry
+   */
+  private static final class CacheEntryComparator<T> implements Comparator<CacheEntry<T>> {
+
+    private final Comparator<T> comparator;
+
+    private CacheEntryComparator(Comparator<T> comparator) {
+      this.comparator = comparator;
+    }
+
+    @Override
+    public int compare(CacheEntry<T> entry1, CacheEntry<T> entry2) {
+      return comparator.compare(entry1.getEntry(), entry2.getEntry());
+    }
+  }
+}
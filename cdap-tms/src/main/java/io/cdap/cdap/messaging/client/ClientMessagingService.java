@@ -423,8 +423,17 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, createTopicPath(topicId) + "/poll");
+      long waitTimeoutMillis = getWaitTimeoutMillis();
+      String path = createTopicPath(topicId) + "/poll";
+      if (waitTimeoutMillis > 0) {
+        path += "?waitTimeoutMillis=" + waitTimeoutMillis;
+      }
+      HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, path);
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
+      // Make sure the read timeout is long enough for the server to wait for new messages. Zero means infinite.
+      if (waitTimeoutMillis > 0 && urlConn.getReadTimeout() > 0) {
+        urlConn.setReadTimeout((int) Math.min(Integer.MAX_VALUE, urlConn.getReadTimeout() + waitTimeoutMillis));
+      }
       if (compressPayload) {
         urlConn.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
       }
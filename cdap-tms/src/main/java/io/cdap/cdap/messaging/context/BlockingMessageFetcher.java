@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.context;
+
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.messaging.Message;
+import io.cdap.cdap.api.messaging.MessageFetcher;
+import io.cdap.cdap.api.messaging.TopicNotFoundException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MessageFetcher} that can block for new messages to be published when there is no message available.
+ */
+public interface BlockingMessageFetcher extends MessageFetcher {
+
+  /**
+   * Fetches messages from the given topic that were published after the given message id. If there is no message
+   * available, it blocks until new messages are published to the topic or the timeout elapsed.
+   *
+   * @param namespace namespace of the topic
+   * @param topic name of the topic
+   * @param limit maximum number of messages to fetch
+   * @param afterMessageId message id that the fetching should start after (exclusive), or {@code null} to fetch
+   *                       from the first available message
+   * @param timeout the maximum time to wait for new messages
+   * @param unit the unit of the timeout
+   * @return a {@link CloseableIterator} of {@link Message}, which can be empty if the timeout elapsed
+   * @throws TopicNotFoundException if the topic doesn't exist
+   * @throws IOException if failed to fetch messages
+   */
+  CloseableIterator<Message> fetch(String namespace, String topic, int limit, @Nullable String afterMessageId,
+                                   long timeout, TimeUnit unit) throws IOException, TopicNotFoundException;
+}
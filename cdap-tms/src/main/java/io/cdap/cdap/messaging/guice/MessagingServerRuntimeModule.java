@@ -19,6 +19,7 @@ package io.cdap.cdap.messaging.guice;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Binder;
 import com.google.inject.Inject;
+import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.google.inject.PrivateModule;
 import com.google.inject.Provider;
@@ -46,6 +47,7 @@ import io.cdap.cdap.messaging.store.cache.DefaultMessageTableCacheProvider;
 import io.cdap.cdap.messaging.store.cache.MessageTableCacheProvider;
 import io.cdap.cdap.messaging.store.hbase.HBaseTableFactory;
 import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import io.cdap.cdap.messaging.store.segment.SegmentTableFactory;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.HttpHandler;
 
@@ -121,7 +123,7 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
         }
       });
 
-      bind(TableFactory.class).to(LevelDBTableFactory.class).in(Scopes.SINGLETON);
+      bind(TableFactory.class).toProvider(LocalTableFactoryProvider.class).in(Scopes.SINGLETON);
       bind(MessagingService.class).to(CoreMessagingService.class).in(Scopes.SINGLETON);
       expose(MessagingService.class);
 
@@ -138,6 +140,37 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
     }
   }
 
+  /**
+   * A guice provider for the {@link TableFactory} used in local mode, based on the
+   * {@link Constants.MessagingSystem#LOCAL_TABLE_TYPE} configuration.
+   */
+  private static final class LocalTableFactoryProvider implements Provider<TableFactory> {
+
+    private final CConfiguration cConf;
+    private final Injector injector;
+
+    @Inject
+    LocalTableFactoryProvider(CConfiguration cConf, Injector injector) {
+      this.cConf = cConf;
+      this.injector = injector;
+    }
+
+    @Override
+    public TableFactory get() {
+      String tableType = cConf.get(Constants.MessagingSystem.LOCAL_TABLE_TYPE,
+                                   Constants.MessagingSystem.LOCAL_TABLE_TYPE_LEVELDB);
+      switch (tableType) {
+        case Constants.MessagingSystem.LOCAL_TABLE_TYPE_LEVELDB:
+          return injector.getInstance(LevelDBTableFactory.class);
+        case Constants.MessagingSystem.LOCAL_TABLE_TYPE_SEGMENT:
+          return injector.getInstance(SegmentTableFactory.class);
+        default:
+          throw new IllegalArgumentException("Unsupported value " + tableType + " for configuration "
+                                               + Constants.MessagingSystem.LOCAL_TABLE_TYPE);
+      }
+    }
+  }
+
   /**
    * A guice provider for {@link HBaseTableUtil}. We don't use {@link HBaseTableUtilFactory} as a provider
    * directly because the {@code @Inject} constructor of {@link HBaseTableUtilFactory} requires a
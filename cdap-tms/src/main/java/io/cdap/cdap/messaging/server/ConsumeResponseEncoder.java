@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.server;
+
+import io.cdap.cdap.messaging.Schemas;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.List;
+
+/**
+ * Encodes {@link RawMessage}s directly into {@link ByteBuf}s using the Avro binary encoding of the
+ * {@link Schemas.V1.ConsumeResponse#SCHEMA}, which is an array of records with the {@code id} and
+ * {@code payload} bytes fields.
+ *
+ * The Avro framing and small fields are written to buffers obtained from the {@link ByteBufAllocator}.
+ * Payloads of size larger than or equal to the wrap threshold are not copied. Instead, the payload byte array is
+ * wrapped and added as a component of a {@link CompositeByteBuf}. This requires the byte arrays in the
+ * {@link RawMessage} to be unmodified until the returned buffer is released.
+ *
+ * The encoded bytes are the same as encoding the array with {@code BinaryEncoder} and {@code GenericDatumWriter}.
+ */
+final class ConsumeResponseEncoder {
+
+  static final int DEFAULT_WRAP_THRESHOLD = 1024;
+
+  private final ByteBufAllocator allocator;
+  private final int wrapThreshold;
+
+  ConsumeResponseEncoder(ByteBufAllocator allocator, int wrapThreshold) {
+    this.allocator = allocator;
+    this.wrapThreshold = wrapThreshold;
+  }
+
+  /**
+   * Encodes a block of array items.
+   *
+   * @param messages the messages to encode as the array items in the block. It can be empty.
+   * @param endOfArray {@code true} to write the end of array marker after the items
+   * @return a {@link ByteBuf} containing the encoded bytes. The caller owns the returned buffer.
+   */
+  ByteBuf encode(List<RawMessage> messages, boolean endOfArray) {
+    // Compute the size of the bytes that are copied, excluding payloads that will be wrapped.
+    int remaining = endOfArray ? 1 : 0;
+    int wrapCount = 0;
+    if (!messages.isEmpty()) {
+      remaining += getVarLongSize(messages.size());
+    }
+    for (RawMessage message : messages) {
+      int idLength = message.getId().length;
+      int payloadLength = message.getPayload().length;
+      remaining += getVarLongSize(idLength) + idLength + getVarLongSize(payloadLength);
+      if (payloadLength < wrapThreshold) {
+        remaining += payloadLength;
+      } else {
+        wrapCount++;
+      }
+    }
+
+    ByteBuf buffer = allocator.buffer(remaining);
+    CompositeByteBuf composite = wrapCount == 0 ? null : allocator.compositeBuffer(wrapCount * 2 + 1);
+    try {
+      if (!messages.isEmpty()) {
+        // Same as BinaryEncoder.setItemCount, which writes the block count only if it is not zero
+        remaining -= writeVarLong(buffer, messages.size());
+      }
+      for (RawMessage message : messages) {
+        byte[] id = message.getId();
+        byte[] payload = message.getPayload();
+
+        remaining -= writeVarLong(buffer, id.length);
+        buffer.writeBytes(id);
+        remaining -= id.length;
+        remaining -= writeVarLong(buffer, payload.length);
+
+        if (payload.length < wrapThreshold) {
+          buffer.writeBytes(payload);
+          remaining -= payload.length;
+        } else {
+          composite.addComponent(true, buffer);
+          composite.addComponent(true, Unpooled.wrappedBuffer(payload));
+          buffer = allocator.buffer(Math.max(remaining, 0));
+        }
+      }
+      if (endOfArray) {
+        buffer.writeByte(0);
+      }
+    } catch (Throwable t) {
+      buffer.release();
+      if (composite != null) {
+        composite.release();
+      }
+      throw t;
+    }
+
+    if (composite == null) {
+      return buffer;
+    }
+    if (buffer.isReadable()) {
+      composite.addComponent(true, buffer);
+    } else {
+      buffer.release();
+    }
+    return composite;
+  }
+
+  /**
+   * Returns the number of bytes used by Avro to encode the given non-negative value as a zig-zag variable length long.
+   */
+  static int getVarLongSize(long value) {
+    long n = (value << 1) ^ (value >> 63);
+    int size = 1;
+    while ((n & ~0x7FL) != 0) {
+      n >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * Writes the given value using the Avro zig-zag variable length long encoding.
+   *
+   * @return the number of bytes written
+   */
+  static int writeVarLong(ByteBuf buffer, long value) {
+    long n = (value << 1) ^ (value >> 63);
+    int size = 1;
+    while ((n & ~0x7FL) != 0) {
+      buffer.writeByte((int) ((n & 0x7F) | 0x80));
+      n >>>= 7;
+      size++;
+    }
+    buffer.writeByte((int) n);
+    return size;
+  }
+}
@@ -22,6 +22,7 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.common.BadRequestException;
+import io.cdap.cdap.common.HttpExceptionHandler;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.ByteBuffers;
@@ -35,26 +36,26 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.AbstractHttpHandler;
 import io.cdap.http.BodyProducer;
+import io.cdap.http.ExceptionHandler;
+import io.cdap.http.HandlerContext;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.io.Encoder;
-import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,10 +66,17 @@ import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
@@ -86,21 +94,56 @@ public final class FetchHandler extends AbstractHttpHandler {
   );
 
   private final MessagingService messagingService;
+  private final long maxWaitMillis;
+  private final int waitThreads;
+  private final ExceptionHandler exceptionHandler;
   private int messageChunkSize;
+  private ExecutorService waitExecutor;
 
   @Inject
   FetchHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    // Fetches waiting for new messages are parked in a separate pool, so that they never block the handler threads
+    this.waitThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_FETCH_WAIT_THREADS, 0);
+    this.maxWaitMillis = waitThreads > 0
+      ? cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_FETCH_MAX_WAIT_MILLIS, 0L)
+      : 0L;
+    this.exceptionHandler = new HttpExceptionHandler();
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    if (maxWaitMillis > 0) {
+      // Use a synchronous queue so that fetches are not queued behind waiting fetches when all threads are busy
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        waitThreads, waitThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+        Threads.createDaemonThreadFactory("messaging-fetch-wait-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      waitExecutor = executor;
+    }
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    if (waitExecutor != null) {
+      waitExecutor.shutdownNow();
+    }
   }
 
   @POST
   @Path("poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("waitTimeoutMillis") @DefaultValue("0") long waitTimeoutMillis) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
+    if (waitTimeoutMillis < 0) {
+      throw new BadRequestException("The waitTimeoutMillis parameter must be >= 0.");
+    }
 
     // Currently only support avro
     if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
@@ -111,8 +154,54 @@ public final class FetchHandler extends AbstractHttpHandler {
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
 
-    // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    // Fetch the messages without waiting
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+    CloseableIterator<RawMessage> iterator = fetchMessages(fetchRequest, topicId, 0L);
+
+    // If there is no message available, wait for new messages in the wait executor and respond from there
+    long waitMillis = Math.min(waitTimeoutMillis, maxWaitMillis);
+    try {
+      if (waitMillis > 0 && !iterator.hasNext()
+        && submitWait(new DefaultHttpRequest(request.protocolVersion(), request.method(), request.uri()),
+                      responder, fetchRequest, topicId, waitMillis)) {
+        iterator.close();
+        return;
+      }
+    } catch (Throwable t) {
+      iterator.close();
+      throw t;
+    }
+    sendMessages(responder, iterator);
+  }
+
+  /**
+   * Submits a fetch that waits for new messages to the wait executor, which responds to the request once the fetch
+   * completes.
+   *
+   * @return {@code true} if the fetch is submitted, {@code false} if all threads of the wait executor are busy
+   */
+  private boolean submitWait(HttpRequest request, HttpResponder responder, GenericRecord fetchRequest,
+                             TopicId topicId, long waitMillis) {
+    try {
+      waitExecutor.execute(() -> {
+        try {
+          sendMessages(responder, fetchMessages(fetchRequest, topicId, waitMillis));
+        } catch (Throwable t) {
+          exceptionHandler.handle(t, request, responder);
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      // Respond without waiting. The client will fetch again after its own delay.
+      LOG.trace("No thread available for waiting for new messages in topic {}", topicId);
+      return false;
+    }
+  }
+
+  /**
+   * Sends the messages from the given iterator as the response. The iterator is closed when the response is completed.
+   */
+  private void sendMessages(HttpResponder responder, CloseableIterator<RawMessage> iterator) {
     try {
       responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
                             new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
@@ -125,9 +214,13 @@ public final class FetchHandler extends AbstractHttpHandler {
   /**
    * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
    */
-  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest,
-                                                      TopicId topicId) throws IOException, TopicNotFoundException {
+  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest, TopicId topicId,
+                                                      long waitTimeoutMillis)
+    throws IOException, TopicNotFoundException {
     MessageFetcher fetcher = messagingService.prepareFetch(topicId);
+    if (waitTimeoutMillis > 0) {
+      fetcher.setWaitTimeout(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
 
     Object startFrom = fetchRequest.get("startFrom");
     if (startFrom != null) {
@@ -166,32 +259,17 @@ public final class FetchHandler extends AbstractHttpHandler {
     private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
-    private final ByteBuf chunk;
-    private final Encoder encoder;
-    private final GenericRecord messageRecord;
-    private final DatumWriter<GenericRecord> messageWriter;
-    private boolean arrayStarted;
+    private final ConsumeResponseEncoder encoder;
     private boolean arrayEnded;
 
     MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
       this.iterator = iterator;
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
-      this.chunk = Unpooled.buffer(messageChunkSize);
-      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
-
-      // These are for writing individual message (response is an array of messages)
-      this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
-      this.messageWriter = new GenericDatumWriter<GenericRecord>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType()) {
-        @Override
-        protected void writeBytes(Object datum, Encoder out) throws IOException {
-          if (datum instanceof byte[]) {
-            out.writeBytes((byte[]) datum);
-          } else {
-            super.writeBytes(datum, out);
-          }
-        }
-      };
+      // Encode the response array directly instead of going through GenericRecord and DatumWriter,
+      // so that large payloads are sent without copying.
+      this.encoder = new ConsumeResponseEncoder(ByteBufAllocator.DEFAULT,
+                                                ConsumeResponseEncoder.DEFAULT_WRAP_THRESHOLD);
     }
 
     @Override
@@ -201,13 +279,6 @@ public final class FetchHandler extends AbstractHttpHandler {
         return Unpooled.EMPTY_BUFFER;
       }
 
-      chunk.clear();
-
-      if (!arrayStarted) {
-        arrayStarted = true;
-        encoder.writeArrayStart();
-      }
-
       // Try to buffer up to buffer size
       int size = 0;
       messages.clear();
@@ -221,30 +292,16 @@ public final class FetchHandler extends AbstractHttpHandler {
         size += message.getId().length + message.getPayload().length + 8;
       }
 
-      encoder.setItemCount(messages.size());
-      for (RawMessage message : messages) {
-        encoder.startItem();
-
-        // Write individual message (array element) with DatumWrite.
-        // This provides greater flexibility on schema evolution.
-        // The response will likely always be an array, but the element schema can evolve.
-        messageRecord.put("id", message.getId());
-        messageRecord.put("payload", message.getPayload());
-        messageWriter.write(messageRecord, encoder);
-      }
-
-      if (!iterator.hasNext()) {
-        arrayEnded = true;
-        encoder.writeArrayEnd();
-      }
-
-      return chunk.copy();
+      arrayEnded = !iterator.hasNext();
+      ByteBuf chunk = encoder.encode(messages, arrayEnded);
+      // Don't hold on to the messages, as their payloads may be referenced by the chunk until it is sent
+      messages.clear();
+      return chunk;
     }
 
     @Override
     public void finished() throws Exception {
       iterator.close();
-      chunk.release();
     }
 
     @Override
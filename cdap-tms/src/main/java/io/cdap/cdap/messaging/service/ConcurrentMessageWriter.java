@@ -23,15 +23,23 @@ import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.proto.id.TopicId;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -53,11 +61,19 @@ import javax.annotation.concurrent.ThreadSafe;
  * 5. The message table store method will consume the Iterator until it is empty
  * 6. Set the state of each PendingStoreRequest that are written to COMPLETED (succeed/failure).
  * 7. Set the AtomicBoolean flag back to false.
- * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, wait for the current writer to release
+ *    the flag and go back to step 2.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * The loop between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
+ * get written and flushed. Threads that failed to acquire the flag block on a condition that is signalled after
+ * each write, instead of spinning.
+ *
+ * When a group commit window is set and a thread finds other requests pending or a write in progress after step 1,
+ * it waits for up to the window before step 2 without holding the writer flag, so that requests arriving within
+ * the window are persisted with the same write. A request that arrives when there is no contention is written
+ * immediately. Together with a {@link StoreRequestWriter} that can write to multiple topics, a single instance of
+ * this class can be shared by all topics to perform group commit across topics.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
@@ -67,6 +83,9 @@ final class ConcurrentMessageWriter implements Closeable {
   private final PendingStoreQueue pendingStoreQueue;
   private final AtomicBoolean writerFlag;
   private final AtomicBoolean closed;
+  private final long groupCommitWindowNanos;
+  private final Lock writeLock;
+  private final Condition writeCompleted;
 
   /**
    * Constructor with a {@link NoopMetricsContext}. This constructor should only be used in unit-testing.
@@ -83,11 +102,42 @@ final class ConcurrentMessageWriter implements Closeable {
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param writeListener an optional {@link Consumer} to be called with each topic written
+   *                      after each successful write to the {@link StoreRequestWriter}
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          @Nullable Consumer<TopicId> writeListener) {
+    this(messagesWriter, metricsCollector, writeListener, 0L);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param writeListener an optional {@link Consumer} to be called with each topic written
+   *                      after each successful write to the {@link StoreRequestWriter}
+   * @param groupCommitWindowMillis time in milliseconds to wait for more requests before each write;
+   *                                no waiting if it is not positive
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          @Nullable Consumer<TopicId> writeListener, long groupCommitWindowMillis) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector, writeListener);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
+    this.groupCommitWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, groupCommitWindowMillis));
+    this.writeLock = new ReentrantLock();
+    this.writeCompleted = writeLock.newCondition();
   }
 
   /**
@@ -106,14 +156,19 @@ final class ConcurrentMessageWriter implements Closeable {
       throw new IOException("Message writer is already closed");
     }
 
+    long windowDeadline = System.nanoTime() + groupCommitWindowNanos;
     PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
     pendingStoreQueue.enqueue(pendingStoreRequest);
 
     metricsCollector.increment("persist.requested", 1L);
 
+    // Only wait for the group commit window if there are other requests to be written together
+    if (groupCommitWindowNanos > 0 && (writerFlag.get() || !pendingStoreQueue.isFirst(pendingStoreRequest))) {
+      awaitCompletion(pendingStoreRequest, windowDeadline);
+    }
     while (!pendingStoreRequest.isCompleted()) {
       if (!tryWrite()) {
-        Thread.yield();
+        awaitWriter(pendingStoreRequest);
       }
     }
 
@@ -147,10 +202,62 @@ final class ConcurrentMessageWriter implements Closeable {
       pendingStoreQueue.persist(messagesWriter);
     } finally {
       writerFlag.set(false);
+      writeLock.lock();
+      try {
+        writeCompleted.signalAll();
+      } finally {
+        writeLock.unlock();
+      }
     }
     return true;
   }
 
+  /**
+   * Blocks until the given request is completed or the given deadline has passed.
+   *
+   * @param request the request to wait for
+   * @param deadlineNanos the deadline as in {@link System#nanoTime()}
+   */
+  private void awaitCompletion(PendingStoreRequest request, long deadlineNanos) {
+    boolean interrupted = false;
+    writeLock.lock();
+    try {
+      long remainingNanos = deadlineNanos - System.nanoTime();
+      while (!request.isCompleted() && remainingNanos > 0) {
+        try {
+          remainingNanos = writeCompleted.awaitNanos(remainingNanos);
+        } catch (InterruptedException e) {
+          // The request is already in the queue, hence it must be waited until it is persisted
+          interrupted = true;
+          remainingNanos = deadlineNanos - System.nanoTime();
+        }
+      }
+    } finally {
+      writeLock.unlock();
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Blocks until the given request is completed or the writer flag is released.
+   *
+   * @param request the request to wait for, or {@code null} to only wait for the writer flag to be released
+   */
+  private void awaitWriter(@Nullable PendingStoreRequest request) {
+    writeLock.lock();
+    try {
+      // The writer signals the condition while holding the lock after releasing the flag, hence checking the flag
+      // while holding the lock guarantees the signal is not missed
+      while ((request == null || !request.isCompleted()) && writerFlag.get()) {
+        writeCompleted.awaitUninterruptibly();
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
   @Override
   public void close() throws IOException {
     if (!closed.compareAndSet(false, true)) {
@@ -160,26 +267,30 @@ final class ConcurrentMessageWriter implements Closeable {
     // When this thread can grab the writer flag, all pending write requests must be completed since the closed
     // flag was already set to false.
     while (!tryWrite()) {
-      Thread.yield();
+      awaitWriter(null);
     }
     messagesWriter.close();
   }
 
   /**
    * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
-   * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
-   * called while holding the writer flag.
+   * Except the {@link #enqueue(PendingStoreRequest)} and {@link #isFirst(PendingStoreRequest)} methods,
+   * all methods on this class can only be called while holding the writer flag.
    */
   private static final class PendingStoreQueue {
 
     private final MetricsCollector metricsCollector;
+    private final Consumer<TopicId> writeListener;
     private final Queue<PendingStoreRequest> writeQueue;
     private final List<PendingStoreRequest> inflightRequests;
+    private final Set<TopicId> inflightTopics;
 
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
+    private PendingStoreQueue(MetricsCollector metricsCollector, @Nullable Consumer<TopicId> writeListener) {
       this.metricsCollector = metricsCollector;
+      this.writeListener = writeListener;
       this.writeQueue = new ConcurrentLinkedQueue<>();
       this.inflightRequests = new ArrayList<>(100);
+      this.inflightTopics = new HashSet<>();
     }
 
     /**
@@ -189,6 +300,13 @@ final class ConcurrentMessageWriter implements Closeable {
       writeQueue.add(storeRequest);
     }
 
+    /**
+     * Returns {@code true} if the given {@link PendingStoreRequest} is at the head of the concurrent queue.
+     */
+    boolean isFirst(PendingStoreRequest storeRequest) {
+      return writeQueue.peek() == storeRequest;
+    }
+
     /**
      * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
      */
@@ -200,19 +318,36 @@ final class ConcurrentMessageWriter implements Closeable {
       // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
       // the thread pool size used by the http service.
       inflightRequests.clear();
+      inflightTopics.clear();
       PendingStoreRequest request = writeQueue.poll();
       while (request != null) {
         inflightRequests.add(request);
+        inflightTopics.add(request.getTopicId());
         request = writeQueue.poll();
       }
 
+      if (inflightRequests.isEmpty()) {
+        metricsCollector.gauge("persist.queue.size", 0);
+        return;
+      }
+
       metricsCollector.gauge("persist.queue.size", inflightRequests.size());
+      metricsCollector.gauge("persist.batch.topics", inflightTopics.size());
 
+      long startNanos = System.nanoTime();
       try {
         writer.write(inflightRequests.iterator());
         completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
+        return;
+      } finally {
+        metricsCollector.gauge("persist.batch.latency.ms",
+                               TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+      }
+
+      if (writeListener != null) {
+        inflightTopics.forEach(writeListener);
       }
     }
 
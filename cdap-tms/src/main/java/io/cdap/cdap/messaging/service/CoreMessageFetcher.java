@@ -44,17 +44,49 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final MessageArrivalNotifier arrivalNotifier;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     MessageArrivalNotifier arrivalNotifier) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.arrivalNotifier = arrivalNotifier;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long waitTimeoutMillis = getWaitTimeoutMillis();
+    if (waitTimeoutMillis <= 0L) {
+      return createIterator();
+    }
+
+    // Get the version before fetching so that messages published after the fetch started won't be missed
+    TopicId topicId = topicMetadata.getTopicId();
+    long version = arrivalNotifier.getVersion(topicId);
+    CloseableIterator<RawMessage> iterator = createIterator();
+    if (iterator.hasNext()) {
+      return iterator;
+    }
+    iterator.close();
+
+    try {
+      if (!arrivalNotifier.await(topicId, version, waitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        return CloseableIterator.empty();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return CloseableIterator.empty();
+    }
+    return createIterator();
+  }
+
+  /**
+   * Creates a {@link CloseableIterator} for fetching messages from the tables.
+   */
+  private CloseableIterator<RawMessage> createIterator() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
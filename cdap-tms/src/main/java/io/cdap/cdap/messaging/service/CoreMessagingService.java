@@ -86,6 +86,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
   private final long txMaxLifeTimeInMillis;
+  private final MessageArrivalNotifier arrivalNotifier;
+  private volatile ConcurrentMessageWriter groupCommitWriter;
 
   @Inject
   protected CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -99,6 +101,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     this.cConf = cConf;
     this.tableFactory = tableFactory;
     this.topicCache = createTopicCache();
+    this.arrivalNotifier = new MessageArrivalNotifier();
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
     this.timeProvider = timeProvider;
@@ -143,6 +146,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       topicCache.invalidate(topicId);
       messageTableWriterCache.invalidate(topicId);
       payloadTableWriterCache.invalidate(topicId);
+      arrivalNotifier.remove(topicId);
     }
   }
 
@@ -169,7 +173,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     final TopicMetadata metadata = getTopic(topicId);
     return new CoreMessageFetcher(metadata,
                                   () -> createMessageTable(metadata),
-                                  () -> createPayloadTable(metadata));
+                                  () -> createPayloadTable(metadata),
+                                  arrivalNotifier);
   }
 
   @Nullable
@@ -180,7 +185,11 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       if (request.isTransactional()) {
         ensureValidTxLifetime(request.getTransactionWritePointer());
       }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      ConcurrentMessageWriter writer = groupCommitWriter;
+      if (writer == null) {
+        writer = messageTableWriterCache.get(request.getTopicId());
+      }
+      return writer.persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -220,6 +229,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   protected void startUp() throws Exception {
     tableFactory.init();
+    groupCommitWriter = createGroupCommitWriter();
     Queue<TopicId> asyncCreationTopics = new LinkedList<>();
 
     Set<TopicId> systemTopics = MessagingServiceUtils.getSystemTopics(cConf, true);
@@ -251,6 +261,11 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   @Override
   protected void shutDown() throws Exception {
+    ConcurrentMessageWriter writer = groupCommitWriter;
+    groupCommitWriter = null;
+    if (writer != null) {
+      Closeables.closeQuietly(writer);
+    }
     messageTableWriterCache.invalidateAll();
     payloadTableWriterCache.invalidateAll();
     Closeables.closeQuietly(tableFactory);
@@ -367,11 +382,43 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          // Only writes to the message table make messages visible to fetchers
+          return messageTable
+            ? new ConcurrentMessageWriter(messagesWriter, metricsContext, arrivalNotifier::notifyArrival)
+            : new ConcurrentMessageWriter(messagesWriter, metricsContext);
         }
       });
   }
 
+  /**
+   * Creates a {@link ConcurrentMessageWriter} that is shared by all topics for writing to the message table
+   * if group commit is enabled and supported by the {@link TableFactory}.
+   *
+   * @return a {@link ConcurrentMessageWriter} or {@code null} if group commit is not used
+   */
+  @Nullable
+  private ConcurrentMessageWriter createGroupCommitWriter() throws IOException {
+    long windowMillis = cConf.getLong(Constants.MessagingSystem.GROUP_COMMIT_WINDOW_MILLIS);
+    if (windowMillis <= 0) {
+      return null;
+    }
+    MessageTable messageTable = tableFactory.createMultiTopicMessageTable();
+    if (messageTable == null) {
+      LOG.info("Group commit across topics is not supported by the message table. Ignoring configuration {}.",
+               Constants.MessagingSystem.GROUP_COMMIT_WINDOW_MILLIS);
+      return null;
+    }
+
+    MetricsContext metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.MESSAGING_SERVICE,
+      Constants.Metrics.Tag.INSTANCE_ID, cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, "0"),
+      Constants.Metrics.Tag.TABLE, "message"
+    ));
+    LOG.debug("Group commit across topics enabled with window of {} ms", windowMillis);
+    return new ConcurrentMessageWriter(new MessageTableStoreRequestWriter(messageTable, timeProvider),
+                                       metricsContext, arrivalNotifier::notifyArrival, windowMillis);
+  }
+
   /**
    * Creates a new instance of {@link MetadataTable}.
    */
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Tracks message arrival of each topic so that fetchers can block until new messages are published.
+ *
+ * Each topic has a version that gets incremented every time messages are committed to the message table
+ * of the topic. To avoid missing a publish, a fetcher should call {@link #getVersion(TopicId)} before fetching,
+ * and then call {@link #await(TopicId, long, long, TimeUnit)} with that version if the fetch returns nothing.
+ */
+@ThreadSafe
+final class MessageArrivalNotifier {
+
+  private final ConcurrentMap<TopicId, TopicVersion> versions = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current version of the given topic.
+   */
+  long getVersion(TopicId topicId) {
+    return getTopicVersion(topicId).get();
+  }
+
+  /**
+   * Notifies that new messages were committed to the given topic. All threads waiting on the topic will be woken up.
+   */
+  void notifyArrival(TopicId topicId) {
+    getTopicVersion(topicId).increment();
+  }
+
+  /**
+   * Blocks until the version of the given topic is different from the given version or the timeout elapsed.
+   *
+   * @param topicId the topic to wait for
+   * @param version the version acquired from {@link #getVersion(TopicId)} before the last fetch
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return {@code true} if new messages arrived, {@code false} if the timeout elapsed
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  boolean await(TopicId topicId, long version, long timeout, TimeUnit unit) throws InterruptedException {
+    return getTopicVersion(topicId).await(version, unit.toNanos(timeout));
+  }
+
+  /**
+   * Removes the tracking state of the given topic. Threads waiting on the topic will be woken up.
+   */
+  void remove(TopicId topicId) {
+    TopicVersion topicVersion = versions.remove(topicId);
+    if (topicVersion != null) {
+      topicVersion.increment();
+    }
+  }
+
+  private TopicVersion getTopicVersion(TopicId topicId) {
+    return versions.computeIfAbsent(topicId, k -> new TopicVersion());
+  }
+
+  /**
+   * A monotonically increasing version that threads can wait on for changes.
+   */
+  private static final class TopicVersion {
+
+    private long version;
+
+    synchronized long get() {
+      return version;
+    }
+
+    synchronized void increment() {
+      version++;
+      notifyAll();
+    }
+
+    synchronized boolean await(long expected, long timeoutNanos) throws InterruptedException {
+      long deadline = System.nanoTime() + timeoutNanos;
+      long remaining = timeoutNanos;
+      while (version == expected && remaining > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        remaining = deadline - System.nanoTime();
+      }
+      return version != expected;
+    }
+  }
+}
@@ -19,6 +19,7 @@ package io.cdap.cdap.messaging.store;
 import io.cdap.cdap.messaging.TopicMetadata;
 
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
  * A {@link TableFactory} that forwards all operations to another {@link TableFactory}.
@@ -45,6 +46,12 @@ public abstract class ForwardingTableFactory implements TableFactory {
     return getDelegate().createPayloadTable(topicMetadata);
   }
 
+  @Nullable
+  @Override
+  public MessageTable createMultiTopicMessageTable() throws IOException {
+    return getDelegate().createMultiTopicMessageTable();
+  }
+
   @Override
   public void close() throws IOException {
     getDelegate().close();
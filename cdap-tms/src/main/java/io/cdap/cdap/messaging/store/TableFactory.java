@@ -20,6 +20,7 @@ import io.cdap.cdap.messaging.TopicMetadata;
 
 import java.io.Closeable;
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
  * A factory to create instances of {@link MessageTable}, {@link PayloadTable} and {@link MetadataTable}.
@@ -32,6 +33,17 @@ public interface TableFactory extends Closeable {
 
   PayloadTable createPayloadTable(TopicMetadata topicMetadata) throws IOException;
 
+  /**
+   * Creates a {@link MessageTable} that can store entries of different topics with a single write.
+   * It is used for group commit across topics.
+   *
+   * @return a {@link MessageTable} or {@code null} if storing entries of multiple topics in one write is not supported
+   */
+  @Nullable
+  default MessageTable createMultiTopicMessageTable() throws IOException {
+    return null;
+  }
+
   /**
    * Perform any initialization required. This method will be called before any other method is called.
    */
@@ -367,6 +367,19 @@ final class CachingMessageTable implements MessageTable {
       this.sequenceId = other.getSequenceId();
     }
 
+    CacheMessageTableEntry(TopicId topicId, int generation, boolean transactional, long transactionWritePointer,
+                           @Nullable byte[] payload, long publishTimestamp, short sequenceId, boolean rollback) {
+      this.lookupOnly = false;
+      this.topicId = topicId;
+      this.generation = generation;
+      this.transactional = transactional;
+      this.transactionWritePointer = transactionWritePointer;
+      this.payload = payload;
+      this.publishTimestamp = publishTimestamp;
+      this.sequenceId = sequenceId;
+      this.rollback = rollback;
+    }
+
     void rollback() {
       if (isTransactional()) {
         rollback = true;
@@ -27,6 +27,7 @@ import io.cdap.cdap.messaging.store.PayloadTable;
 import io.cdap.cdap.messaging.store.TableFactory;
 
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
  * A {@link TableFactory} with optional caching for {@link MessageTable} that it creates.
@@ -64,6 +65,13 @@ public class CachingTableFactory extends ForwardingTableFactory {
     return new CachingMessageTable(cConf, messageTable, cacheProvider);
   }
 
+  @Nullable
+  @Override
+  public MessageTable createMultiTopicMessageTable() throws IOException {
+    MessageTable messageTable = delegateTableFactory.createMultiTopicMessageTable();
+    return messageTable == null ? null : new CachingMessageTable(cConf, messageTable, cacheProvider);
+  }
+
   @Override
   public PayloadTable createPayloadTable(TopicMetadata topicMetadata) throws IOException {
     return delegateTableFactory.createPayloadTable(topicMetadata);
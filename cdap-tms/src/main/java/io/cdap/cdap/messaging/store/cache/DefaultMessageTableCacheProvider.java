@@ -24,6 +24,8 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.OffHeapMessageCache;
+import io.cdap.cdap.messaging.cache.OnHeapMessageCache;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.proto.id.TopicId;
 
@@ -75,9 +77,11 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
               // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
               // In future, it can be adjusted dynamically based on metrics
               MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+              String cacheType = cConf.get(Constants.MessagingSystem.CACHE_TYPE,
+                                           Constants.MessagingSystem.CACHE_TYPE_HEAP);
               for (TopicId topic : systemTopics) {
-                caches.put(topic, new MessageCache<>(comparator, weigher, limits,
-                                                     createMetricsContext(cConf, topic, metricsCollectionService)));
+                MetricsContext metricsContext = createMetricsContext(cConf, topic, metricsCollectionService);
+                caches.put(topic, createMessageCache(cacheType, topic, comparator, weigher, limits, metricsContext));
               }
             }
           }
@@ -108,6 +112,27 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
     }
   }
 
+  /**
+   * Creates a {@link MessageCache} of the given cache type for the given topic.
+   */
+  private MessageCache<MessageTable.Entry> createMessageCache(String cacheType, TopicId topicId,
+                                                             MessageTableEntryComparator comparator,
+                                                             MessageTableEntryWeigher weigher,
+                                                             MessageCache.Limits limits,
+                                                             MetricsContext metricsContext) {
+    if (Constants.MessagingSystem.CACHE_TYPE_OFF_HEAP.equalsIgnoreCase(cacheType)) {
+      return new OffHeapMessageCache<>(comparator, weigher, new MessageTableEntrySerializer(topicId),
+                                       limits, metricsContext);
+    }
+    if (Constants.MessagingSystem.CACHE_TYPE_HEAP.equalsIgnoreCase(cacheType)) {
+      return new OnHeapMessageCache<>(comparator, weigher, limits, metricsContext);
+    }
+    throw new IllegalArgumentException("Unsupported messaging cache type '" + cacheType + "' set in "
+                                         + Constants.MessagingSystem.CACHE_TYPE + ". Supported types are "
+                                         + Constants.MessagingSystem.CACHE_TYPE_HEAP + " and "
+                                         + Constants.MessagingSystem.CACHE_TYPE_OFF_HEAP);
+  }
+
   /**
    * Creates a {@link MetricsContext} for {@link MessageCache} to use for the given topic.
    */
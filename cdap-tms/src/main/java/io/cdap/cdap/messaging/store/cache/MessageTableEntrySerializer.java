@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import io.cdap.cdap.messaging.cache.OffHeapMessageCache;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+
+/**
+ * A {@link OffHeapMessageCache.Serializer} for {@link MessageTable.Entry} of a given topic.
+ * The topic id is not serialized since each cache only contains entries of the same topic.
+ * Entries are deserialized as {@link CachingMessageTable.CacheMessageTableEntry}, with the rollback state preserved.
+ * Serialized entries are compared in place with the ordering of {@link MessageTableEntryComparator}.
+ */
+final class MessageTableEntrySerializer implements OffHeapMessageCache.Serializer<MessageTable.Entry> {
+
+  private static final int FLAG_TRANSACTIONAL = 1;
+  private static final int FLAG_PAYLOAD = 1 << 1;
+  private static final int FLAG_ROLLBACK = 1 << 2;
+
+  // generation (int), flags (byte), tx write pointer (long), publish timestamp (long), sequence id (short)
+  private static final int FIXED_SIZE = Integer.BYTES + 1 + Long.BYTES * 2 + Short.BYTES;
+  private static final int PUBLISH_TIMESTAMP_OFFSET = Integer.BYTES + 1 + Long.BYTES;
+  private static final int SEQUENCE_ID_OFFSET = PUBLISH_TIMESTAMP_OFFSET + Long.BYTES;
+
+  private final TopicId topicId;
+
+  MessageTableEntrySerializer(TopicId topicId) {
+    this.topicId = topicId;
+  }
+
+  @Override
+  public int getSize(MessageTable.Entry entry) {
+    byte[] payload = entry.getPayload();
+    return FIXED_SIZE + (payload == null ? 0 : payload.length);
+  }
+
+  @Override
+  public void serialize(MessageTable.Entry entry, ByteBuffer buffer, int offset) {
+    byte[] payload = entry.getPayload();
+    int flags = 0;
+    if (entry.isTransactional()) {
+      flags |= FLAG_TRANSACTIONAL;
+    }
+    if (payload != null) {
+      flags |= FLAG_PAYLOAD;
+    }
+    if (entry instanceof CachingMessageTable.CacheMessageTableEntry
+      && ((CachingMessageTable.CacheMessageTableEntry) entry).isRollback()) {
+      flags |= FLAG_ROLLBACK;
+    }
+
+    int pos = offset;
+    buffer.putInt(pos, entry.getGeneration());
+    pos += Integer.BYTES;
+    buffer.put(pos, (byte) flags);
+    pos += 1;
+    buffer.putLong(pos, entry.isTransactional() ? entry.getTransactionWritePointer() : 0L);
+    pos += Long.BYTES;
+    buffer.putLong(pos, entry.getPublishTimestamp());
+    pos += Long.BYTES;
+    buffer.putShort(pos, entry.getSequenceId());
+    pos += Short.BYTES;
+
+    if (payload != null) {
+      // Use a duplicate to avoid altering the position of the shared buffer
+      ByteBuffer duplicate = buffer.duplicate();
+      duplicate.position(pos);
+      duplicate.put(payload);
+    }
+  }
+
+  @Override
+  public MessageTable.Entry deserialize(ByteBuffer buffer, int offset, int size) {
+    int pos = offset;
+    int generation = buffer.getInt(pos);
+    pos += Integer.BYTES;
+    int flags = buffer.get(pos);
+    pos += 1;
+    long transactionWritePointer = buffer.getLong(pos);
+    pos += Long.BYTES;
+    long publishTimestamp = buffer.getLong(pos);
+    pos += Long.BYTES;
+    short sequenceId = buffer.getShort(pos);
+    pos += Short.BYTES;
+
+    byte[] payload = null;
+    if ((flags & FLAG_PAYLOAD) != 0) {
+      payload = new byte[size - FIXED_SIZE];
+      ByteBuffer duplicate = buffer.duplicate();
+      duplicate.position(pos);
+      duplicate.get(payload);
+    }
+
+    return new CachingMessageTable.CacheMessageTableEntry(topicId, generation, (flags & FLAG_TRANSACTIONAL) != 0,
+                                                          transactionWritePointer, payload, publishTimestamp,
+                                                          sequenceId, (flags & FLAG_ROLLBACK) != 0);
+  }
+
+  @Override
+  public int compare(ByteBuffer buffer, int offset, int size, MessageTable.Entry entry,
+                     Comparator<MessageTable.Entry> comparator) {
+    if (!(comparator instanceof MessageTableEntryComparator)) {
+      return OffHeapMessageCache.Serializer.super.compare(buffer, offset, size, entry, comparator);
+    }
+
+    // Same ordering as the MessageTableEntryComparator, without copying the payload
+    int cmp = Integer.compare(buffer.getInt(offset), entry.getGeneration());
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = Long.compare(buffer.getLong(offset + PUBLISH_TIMESTAMP_OFFSET), entry.getPublishTimestamp());
+    if (cmp != 0) {
+      return cmp;
+    }
+    return Integer.compare(buffer.getShort(offset + SEQUENCE_ID_OFFSET) & 0xFFFF, entry.getSequenceId() & 0xFFFF);
+  }
+}
@@ -171,6 +171,12 @@ public final class HBaseTableFactory implements TableFactory {
 
   @Override
   public MessageTable createMessageTable(TopicMetadata topicMetadata) throws IOException {
+    return createMultiTopicMessageTable();
+  }
+
+  @Override
+  public MessageTable createMultiTopicMessageTable() throws IOException {
+    // All topics share the same HBase table, hence the message table can store entries of any topic
     TableId tableId = tableUtil.createHTableId(NamespaceId.SYSTEM, messageTableName);
     Class<? extends Coprocessor> tableCoprocessor = tableUtil.getMessageTableRegionObserverClassForVersion();
     HTableWithRowKeyDistributor tableWithRowKeyDistributor = createTable(
@@ -0,0 +1,474 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * An append-only, memory-mapped file that stores message table entries of a single topic.
+ *
+ * The file starts with a header of {@link #HEADER_SIZE} bytes, which contains a magic number and the committed
+ * position, followed by records in the format of
+ *
+ * <pre>
+ *   [int record length][long publish timestamp][short sequence id][byte type][long tx write pointer][payload]
+ * </pre>
+ *
+ * where the record length excludes the length field itself. A record length of zero marks the end of the data.
+ * Records in a segment are strictly increasing in (publish timestamp, sequence id) order. A sparse index of
+ * record offsets is maintained in memory to support seeking to a given message key.
+ *
+ * Only one thread can append to a segment at a time. Appended records are not visible to readers until
+ * {@link #commit()} is called. Readers can read committed records concurrently without locking.
+ * A commit first flushes the records to disk and then persists the new committed position in the header.
+ * Recovery only restores records before the persisted committed position, hence records that were appended but
+ * not committed are discarded, even if they were written to the file through the page cache.
+ */
+final class MessageSegment {
+
+  static final String FILE_SUFFIX = ".seg";
+
+  static final byte TYPE_NON_TRANSACTIONAL = 0;
+  static final byte TYPE_TRANSACTIONAL = 1;
+  static final byte TYPE_PAYLOAD_REFERENCE = 2;
+
+  private static final int MAGIC = 0x544d5331;
+  // magic, committed position
+  private static final int HEADER_SIZE = Integer.BYTES * 2;
+  private static final int COMMITTED_POSITION_OFFSET = Integer.BYTES;
+  // publish timestamp, sequence id, type, tx write pointer
+  private static final int RECORD_FIXED_SIZE = Long.BYTES + Short.BYTES + 1 + Long.BYTES;
+  private static final int TIMESTAMP_OFFSET = Integer.BYTES;
+  private static final int SEQUENCE_ID_OFFSET = TIMESTAMP_OFFSET + Long.BYTES;
+  private static final int TYPE_OFFSET = SEQUENCE_ID_OFFSET + Short.BYTES;
+  private static final int TX_OFFSET = TYPE_OFFSET + 1;
+  private static final int PAYLOAD_OFFSET = TX_OFFSET + Long.BYTES;
+  // Adds an index entry for every this many bytes of records
+  private static final int INDEX_INTERVAL_BYTES = 4096;
+
+  private final long id;
+  private final File file;
+  private final MappedByteBuffer buffer;
+
+  // Only accessed by the appending thread
+  private int appendPosition;
+  private int lastIndexedPosition;
+  private long pendingFirstTimestamp;
+  private short pendingFirstSequenceId;
+  private long pendingLastTimestamp;
+  private short pendingLastSequenceId;
+
+  // State visible to readers, updated on commit
+  private volatile int writePosition;
+  private volatile long firstTimestamp;
+  private volatile short firstSequenceId;
+  private volatile long lastTimestamp;
+  private volatile short lastSequenceId;
+
+  // Sparse index, guarded by "this"
+  private long[] indexTimestamps;
+  private short[] indexSequenceIds;
+  private int[] indexOffsets;
+  private int indexSize;
+
+  /**
+   * Creates a new segment file with the given capacity.
+   */
+  static MessageSegment create(File file, long id, int capacity) throws IOException {
+    MappedByteBuffer buffer = map(file, Math.max(capacity, HEADER_SIZE + Integer.BYTES + RECORD_FIXED_SIZE));
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(COMMITTED_POSITION_OFFSET, HEADER_SIZE);
+    buffer.putInt(HEADER_SIZE, 0);
+    buffer.force();
+    return new MessageSegment(id, file, buffer);
+  }
+
+  /**
+   * Opens an existing segment file and recovers the committed records.
+   */
+  static MessageSegment open(File file, long id) throws IOException {
+    long length = file.length();
+    if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+      throw new IOException("Invalid length " + length + " of message segment file " + file);
+    }
+    MappedByteBuffer buffer = map(file, (int) length);
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Invalid message segment file " + file);
+    }
+    MessageSegment segment = new MessageSegment(id, file, buffer);
+    segment.recover();
+    return segment;
+  }
+
+  /**
+   * Returns the size in bytes needed to store a record with the given payload.
+   */
+  static int getRecordSize(@Nullable byte[] payload) {
+    return Integer.BYTES + RECORD_FIXED_SIZE + (payload == null ? 0 : payload.length);
+  }
+
+  /**
+   * Returns the segment size needed to store a record with the given payload.
+   */
+  static int getMinimumCapacity(@Nullable byte[] payload) {
+    // Reserve space for the end marker after the record
+    return HEADER_SIZE + getRecordSize(payload) + Integer.BYTES;
+  }
+
+  /**
+   * Compares two message keys. Sequence ids are compared as unsigned values to be consistent with the row key order.
+   */
+  static int compareKey(long timestamp1, short sequenceId1, long timestamp2, short sequenceId2) {
+    int cmp = Long.compare(timestamp1, timestamp2);
+    return cmp != 0 ? cmp : Integer.compare(Short.toUnsignedInt(sequenceId1), Short.toUnsignedInt(sequenceId2));
+  }
+
+  private static MappedByteBuffer map(File file, int size) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      if (raf.length() < size) {
+        raf.setLength(size);
+      }
+      // The mapping stays valid after the channel is closed
+      return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private MessageSegment(long id, File file, MappedByteBuffer buffer) {
+    this.id = id;
+    this.file = file;
+    this.buffer = buffer;
+    this.appendPosition = HEADER_SIZE;
+    this.lastIndexedPosition = -INDEX_INTERVAL_BYTES;
+    this.writePosition = HEADER_SIZE;
+    this.indexTimestamps = new long[16];
+    this.indexSequenceIds = new short[16];
+    this.indexOffsets = new int[16];
+  }
+
+  long getId() {
+    return id;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns {@code true} if there is no committed record in this segment.
+   */
+  boolean isEmpty() {
+    return writePosition == HEADER_SIZE;
+  }
+
+  /**
+   * Returns {@code true} if there is no record in this segment, including those not yet committed.
+   */
+  boolean isPendingEmpty() {
+    return appendPosition == HEADER_SIZE;
+  }
+
+  long getFirstTimestamp() {
+    return firstTimestamp;
+  }
+
+  short getFirstSequenceId() {
+    return firstSequenceId;
+  }
+
+  long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  short getLastSequenceId() {
+    return lastSequenceId;
+  }
+
+  /**
+   * Returns {@code true} if a record with the given key can be appended to this segment without breaking
+   * the key order.
+   */
+  boolean canAppend(long timestamp, short sequenceId) {
+    return isPendingEmpty()
+      || compareKey(pendingLastTimestamp, pendingLastSequenceId, timestamp, sequenceId) < 0;
+  }
+
+  /**
+   * Appends a record to this segment. The record is not visible to readers until {@link #commit()} is called.
+   *
+   * @return {@code true} if the record was appended, {@code false} if there is not enough space in this segment
+   */
+  boolean append(long timestamp, short sequenceId, byte type, long txWritePointer, @Nullable byte[] payload) {
+    int recordSize = getRecordSize(payload);
+    // Always leave space for the end marker
+    if (appendPosition + recordSize + Integer.BYTES > buffer.capacity()) {
+      return false;
+    }
+
+    int pos = appendPosition;
+    buffer.putLong(pos + TIMESTAMP_OFFSET, timestamp);
+    buffer.putShort(pos + SEQUENCE_ID_OFFSET, sequenceId);
+    buffer.put(pos + TYPE_OFFSET, type);
+    buffer.putLong(pos + TX_OFFSET, txWritePointer);
+    if (payload != null && payload.length > 0) {
+      ByteBuffer view = buffer.duplicate();
+      view.position(pos + PAYLOAD_OFFSET);
+      view.put(payload);
+    }
+    // Write the end marker before the record length, so that the data is always terminated
+    buffer.putInt(pos + recordSize, 0);
+    buffer.putInt(pos, recordSize - Integer.BYTES);
+
+    if (pos - lastIndexedPosition >= INDEX_INTERVAL_BYTES) {
+      addIndex(timestamp, sequenceId, pos);
+      lastIndexedPosition = pos;
+    }
+    if (isPendingEmpty()) {
+      pendingFirstTimestamp = timestamp;
+      pendingFirstSequenceId = sequenceId;
+    }
+    pendingLastTimestamp = timestamp;
+    pendingLastSequenceId = sequenceId;
+    appendPosition = pos + recordSize;
+    return true;
+  }
+
+  /**
+   * Flushes all appended records to disk, persists the committed position and makes the records visible to readers.
+   */
+  void commit() {
+    if (appendPosition == writePosition) {
+      return;
+    }
+    // The records must be on disk before the committed position that covers them
+    buffer.force();
+    buffer.putInt(COMMITTED_POSITION_OFFSET, appendPosition);
+    buffer.force();
+    if (writePosition == HEADER_SIZE) {
+      firstTimestamp = pendingFirstTimestamp;
+      firstSequenceId = pendingFirstSequenceId;
+    }
+    lastTimestamp = pendingLastTimestamp;
+    lastSequenceId = pendingLastSequenceId;
+    writePosition = appendPosition;
+  }
+
+  /**
+   * Discards all records appended since the last {@link #commit()}.
+   */
+  void abort() {
+    int committed = writePosition;
+    if (appendPosition == committed) {
+      return;
+    }
+    buffer.putInt(committed, 0);
+    appendPosition = committed;
+    pendingFirstTimestamp = firstTimestamp;
+    pendingFirstSequenceId = firstSequenceId;
+    pendingLastTimestamp = lastTimestamp;
+    pendingLastSequenceId = lastSequenceId;
+    synchronized (this) {
+      while (indexSize > 0 && indexOffsets[indexSize - 1] >= committed) {
+        indexSize--;
+      }
+      lastIndexedPosition = indexSize == 0 ? -INDEX_INTERVAL_BYTES : indexOffsets[indexSize - 1];
+    }
+  }
+
+  /**
+   * Forces changes made through {@link Cursor#updateTransaction(long)} to disk.
+   */
+  void force() {
+    buffer.force();
+  }
+
+  /**
+   * Returns a {@link Cursor} positioned at the first committed record with key larger than or equal to
+   * the given key.
+   */
+  Cursor seek(long timestamp, short sequenceId) {
+    int limit = writePosition;
+    int pos = HEADER_SIZE;
+    synchronized (this) {
+      // Binary search for the last index entry that is smaller than or equal to the given key
+      int low = 0;
+      int high = indexSize - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (compareKey(indexTimestamps[mid], indexSequenceIds[mid], timestamp, sequenceId) <= 0) {
+          pos = indexOffsets[mid];
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+    }
+
+    Cursor cursor = new Cursor(Math.min(pos, limit), limit);
+    while (cursor.isValid() && compareKey(cursor.getTimestamp(), cursor.getSequenceId(), timestamp, sequenceId) < 0) {
+      cursor.next();
+    }
+    return cursor;
+  }
+
+  private synchronized void addIndex(long timestamp, short sequenceId, int offset) {
+    if (indexSize == indexOffsets.length) {
+      int newSize = indexSize * 2;
+      indexTimestamps = Arrays.copyOf(indexTimestamps, newSize);
+      indexSequenceIds = Arrays.copyOf(indexSequenceIds, newSize);
+      indexOffsets = Arrays.copyOf(indexOffsets, newSize);
+    }
+    indexTimestamps[indexSize] = timestamp;
+    indexSequenceIds[indexSize] = sequenceId;
+    indexOffsets[indexSize] = offset;
+    indexSize++;
+  }
+
+  /**
+   * Scans the records up to the persisted committed position to rebuild the index.
+   */
+  private void recover() throws IOException {
+    int capacity = buffer.capacity();
+    int committed = buffer.getInt(COMMITTED_POSITION_OFFSET);
+    if (committed < HEADER_SIZE || committed + Integer.BYTES > capacity) {
+      throw new IOException("Invalid committed position " + committed + " in message segment file " + file);
+    }
+
+    int pos = HEADER_SIZE;
+    while (pos < committed) {
+      // Records must end at the committed position and be in increasing key order
+      int length = buffer.getInt(pos);
+      if (length < RECORD_FIXED_SIZE || pos + Integer.BYTES + length > committed) {
+        throw new IOException("Corrupted record at position " + pos + " in message segment file " + file);
+      }
+      long timestamp = buffer.getLong(pos + TIMESTAMP_OFFSET);
+      short sequenceId = buffer.getShort(pos + SEQUENCE_ID_OFFSET);
+      if (!canAppend(timestamp, sequenceId)) {
+        throw new IOException("Out of order record at position " + pos + " in message segment file " + file);
+      }
+      if (pos - lastIndexedPosition >= INDEX_INTERVAL_BYTES) {
+        addIndex(timestamp, sequenceId, pos);
+        lastIndexedPosition = pos;
+      }
+      if (isPendingEmpty()) {
+        pendingFirstTimestamp = timestamp;
+        pendingFirstSequenceId = sequenceId;
+      }
+      pendingLastTimestamp = timestamp;
+      pendingLastSequenceId = sequenceId;
+      pos += Integer.BYTES + length;
+      appendPosition = pos;
+    }
+
+    // Terminates the data to discard records that were written after the last commit
+    buffer.putInt(pos, 0);
+    if (appendPosition != HEADER_SIZE) {
+      firstTimestamp = pendingFirstTimestamp;
+      firstSequenceId = pendingFirstSequenceId;
+      lastTimestamp = pendingLastTimestamp;
+      lastSequenceId = pendingLastSequenceId;
+    }
+    writePosition = appendPosition;
+  }
+
+  @Override
+  public String toString() {
+    return "MessageSegment{file=" + file + ", writePosition=" + writePosition + "}";
+  }
+
+  /**
+   * A cursor for reading records in a {@link MessageSegment}. It only sees records committed before it was created.
+   */
+  final class Cursor {
+
+    private final ByteBuffer view;
+    private final int limit;
+    private int position;
+
+    private Cursor(int position, int limit) {
+      this.view = buffer.duplicate();
+      this.position = position;
+      this.limit = limit;
+    }
+
+    MessageSegment getSegment() {
+      return MessageSegment.this;
+    }
+
+    /**
+     * Returns {@code true} if the cursor is positioned at a record.
+     */
+    boolean isValid() {
+      return position < limit;
+    }
+
+    /**
+     * Moves the cursor to the next record.
+     */
+    void next() {
+      position += Integer.BYTES + view.getInt(position);
+    }
+
+    long getTimestamp() {
+      return view.getLong(position + TIMESTAMP_OFFSET);
+    }
+
+    short getSequenceId() {
+      return view.getShort(position + SEQUENCE_ID_OFFSET);
+    }
+
+    byte getType() {
+      return view.get(position + TYPE_OFFSET);
+    }
+
+    long getTxWritePointer() {
+      return view.getLong(position + TX_OFFSET);
+    }
+
+    /**
+     * Returns the size of the payload of the current record.
+     */
+    int getPayloadSize() {
+      return view.getInt(position) - RECORD_FIXED_SIZE;
+    }
+
+    /**
+     * Copies the payload of the current record to the given array.
+     */
+    void getPayload(byte[] payload) {
+      view.position(position + PAYLOAD_OFFSET);
+      view.get(payload, 0, getPayloadSize());
+    }
+
+    /**
+     * Updates the transaction write pointer of the current record in place. The record will be marked as
+     * transactional.
+     */
+    void updateTransaction(long txWritePointer) {
+      view.putLong(position + TX_OFFSET, txWritePointer);
+      if (getType() == TYPE_NON_TRANSACTIONAL) {
+        view.put(position + TYPE_OFFSET, TYPE_TRANSACTIONAL);
+      }
+    }
+  }
+}
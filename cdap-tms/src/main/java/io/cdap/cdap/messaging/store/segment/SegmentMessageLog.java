@@ -0,0 +1,314 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import io.cdap.cdap.common.utils.DirUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A log of message table entries of a topic generation, stored as a list of {@link MessageSegment} files
+ * in a directory.
+ *
+ * Entries are appended to the last segment. A new segment is started when the last segment is full or when an
+ * entry is not in increasing key order, which can happen if the clock moves backward. Because of the later case,
+ * segments can have overlapping key ranges, and reading merges entries from all segments in key order. If there
+ * are entries with the same key, the one in the newest segment wins.
+ *
+ * Pruning removes whole segment files.
+ */
+@ThreadSafe
+final class SegmentMessageLog {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentMessageLog.class);
+
+  private final File dir;
+  private final int segmentSize;
+  private volatile List<MessageSegment> segments;
+  private long nextSegmentId;
+
+  /**
+   * Opens the log in the given directory, recovering existing segments.
+   *
+   * @param dir the directory for storing the segment files
+   * @param segmentSize the size in bytes of each segment file
+   */
+  SegmentMessageLog(File dir, int segmentSize) throws IOException {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+
+    List<MessageSegment> segments = new ArrayList<>();
+    for (File file : DirUtils.listFiles(dir, (d, name) -> name.endsWith(MessageSegment.FILE_SUFFIX))) {
+      String name = file.getName();
+      long id;
+      try {
+        id = Long.parseLong(name.substring(0, name.length() - MessageSegment.FILE_SUFFIX.length()));
+      } catch (NumberFormatException e) {
+        LOG.warn("Ignoring unrecognized file {} in message segment directory", file);
+        continue;
+      }
+      segments.add(MessageSegment.open(file, id));
+    }
+    segments.sort(Comparator.comparingLong(MessageSegment::getId));
+    this.nextSegmentId = segments.isEmpty() ? 0L : segments.get(segments.size() - 1).getId() + 1;
+    this.segments = ImmutableList.copyOf(segments);
+  }
+
+  /**
+   * Appends the given entries to the log. Entries are durable and visible to readers when this method returns.
+   * Segments written by the batch are only committed after all entries are written, hence a failure in the middle
+   * of the batch discards the whole batch. The segments are committed one by one, hence a crash while committing
+   * can only leave a prefix of the batch in the log.
+   */
+  synchronized void append(Iterator<Entry> entries) throws IOException {
+    // Segments written by this batch, in the order of writing
+    List<MessageSegment> written = new ArrayList<>();
+    MessageSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    try {
+      while (entries.hasNext()) {
+        Entry entry = entries.next();
+        long timestamp = entry.getPublishTimestamp();
+        short sequenceId = entry.getSequenceId();
+        byte[] payload = entry.getPayload();
+
+        if (segment == null || !segment.canAppend(timestamp, sequenceId)
+          || !segment.append(timestamp, sequenceId, entry.getType(), entry.getTxWritePointer(), payload)) {
+          segment = addSegment(Math.max(segmentSize, MessageSegment.getMinimumCapacity(payload)));
+          if (!segment.append(timestamp, sequenceId, entry.getType(), entry.getTxWritePointer(), payload)) {
+            // This shouldn't happen as the segment was created with enough capacity
+            throw new IOException("Failed to append message to segment " + segment);
+          }
+        }
+        if (written.isEmpty() || written.get(written.size() - 1) != segment) {
+          written.add(segment);
+        }
+      }
+      for (MessageSegment writtenSegment : written) {
+        writtenSegment.commit();
+      }
+    } catch (Throwable t) {
+      for (MessageSegment writtenSegment : written) {
+        writtenSegment.abort();
+      }
+      throw t;
+    }
+  }
+
+  /**
+   * Returns an {@link Iterator} of {@link MessageSegment.Cursor} over all entries with key larger than or equal to
+   * the given key, in key order. The same cursor instance is returned for entries in the same segment, hence a cursor
+   * is only valid until the next call to {@link Iterator#next()}.
+   */
+  Iterator<MessageSegment.Cursor> scan(long timestamp, short sequenceId) {
+    List<MessageSegment> candidates = new ArrayList<>();
+    for (MessageSegment segment : segments) {
+      if (!segment.isEmpty()
+        && MessageSegment.compareKey(segment.getLastTimestamp(), segment.getLastSequenceId(),
+                                     timestamp, sequenceId) >= 0) {
+        candidates.add(segment);
+      }
+    }
+    if (candidates.isEmpty()) {
+      return ImmutableList.<MessageSegment.Cursor>of().iterator();
+    }
+    if (candidates.size() == 1) {
+      return new SingleSegmentIterator(candidates.get(0).seek(timestamp, sequenceId));
+    }
+    return new MergingIterator(candidates, timestamp, sequenceId);
+  }
+
+  /**
+   * Removes all segments that only contain entries with publish timestamp older than the given threshold.
+   *
+   * @return number of segments removed
+   */
+  synchronized int prune(long thresholdTimestamp) {
+    List<MessageSegment> remaining = new ArrayList<>();
+    List<MessageSegment> pruned = new ArrayList<>();
+    for (MessageSegment segment : segments) {
+      if (!segment.isEmpty() && segment.getLastTimestamp() < thresholdTimestamp) {
+        pruned.add(segment);
+      } else {
+        remaining.add(segment);
+      }
+    }
+    if (pruned.isEmpty()) {
+      return 0;
+    }
+
+    segments = ImmutableList.copyOf(remaining);
+    for (MessageSegment segment : pruned) {
+      // The memory mapping stays valid for readers that are still reading the segment
+      if (!segment.getFile().delete()) {
+        LOG.warn("Failed to delete message segment file {}", segment.getFile());
+      }
+    }
+    return pruned.size();
+  }
+
+  /**
+   * Returns the number of segments in this log.
+   */
+  int getSegmentCount() {
+    return segments.size();
+  }
+
+  private MessageSegment addSegment(int capacity) throws IOException {
+    File file = new File(dir, String.format("%020d%s", nextSegmentId, MessageSegment.FILE_SUFFIX));
+    MessageSegment segment = MessageSegment.create(file, nextSegmentId, capacity);
+    nextSegmentId++;
+    segments = ImmutableList.<MessageSegment>builder().addAll(segments).add(segment).build();
+    return segment;
+  }
+
+  /**
+   * An entry to be appended to the log.
+   */
+  interface Entry {
+
+    long getPublishTimestamp();
+
+    short getSequenceId();
+
+    /**
+     * Returns the type of the entry, which is one of the {@code TYPE_*} constants in {@link MessageSegment}.
+     */
+    byte getType();
+
+    long getTxWritePointer();
+
+    @Nullable
+    byte[] getPayload();
+  }
+
+  /**
+   * An {@link Iterator} over entries of a single segment.
+   */
+  private static final class SingleSegmentIterator extends AbstractIterator<MessageSegment.Cursor> {
+
+    private final MessageSegment.Cursor cursor;
+    private boolean started;
+
+    SingleSegmentIterator(MessageSegment.Cursor cursor) {
+      this.cursor = cursor;
+    }
+
+    @Override
+    protected MessageSegment.Cursor computeNext() {
+      if (started) {
+        cursor.next();
+      }
+      started = true;
+      return cursor.isValid() ? cursor : endOfData();
+    }
+  }
+
+  /**
+   * An {@link Iterator} that merges entries of multiple segments in key order. Segments are added to the merge
+   * lazily based on their first key.
+   */
+  private static final class MergingIterator extends AbstractIterator<MessageSegment.Cursor> {
+
+    private static final Comparator<MessageSegment.Cursor> CURSOR_COMPARATOR = (c1, c2) -> {
+      int cmp = MessageSegment.compareKey(c1.getTimestamp(), c1.getSequenceId(), c2.getTimestamp(), c2.getSequenceId());
+      // Newer segment goes first for entries with the same key
+      return cmp != 0 ? cmp : Long.compare(c2.getSegment().getId(), c1.getSegment().getId());
+    };
+
+    private final PriorityQueue<MessageSegment.Cursor> cursors;
+    private final Iterator<MessageSegment> pending;
+    private final long startTimestamp;
+    private final short startSequenceId;
+    private MessageSegment nextPending;
+    private MessageSegment.Cursor current;
+    private boolean hasLastKey;
+    private long lastTimestamp;
+    private short lastSequenceId;
+
+    MergingIterator(List<MessageSegment> segments, long startTimestamp, short startSequenceId) {
+      List<MessageSegment> sorted = new ArrayList<>(segments);
+      sorted.sort((s1, s2) -> MessageSegment.compareKey(s1.getFirstTimestamp(), s1.getFirstSequenceId(),
+                                                        s2.getFirstTimestamp(), s2.getFirstSequenceId()));
+      this.cursors = new PriorityQueue<>(sorted.size(), CURSOR_COMPARATOR);
+      this.pending = sorted.iterator();
+      this.nextPending = pending.next();
+      this.startTimestamp = startTimestamp;
+      this.startSequenceId = startSequenceId;
+    }
+
+    @Override
+    protected MessageSegment.Cursor computeNext() {
+      // Advance the cursor returned in the last call
+      if (current != null) {
+        current.next();
+        if (current.isValid()) {
+          cursors.add(current);
+        }
+        current = null;
+      }
+
+      while (true) {
+        // Add segments that can contain entries smaller than or equal to the smallest one in the queue
+        MessageSegment.Cursor head = cursors.peek();
+        while (nextPending != null
+          && (head == null || MessageSegment.compareKey(nextPending.getFirstTimestamp(),
+                                                        nextPending.getFirstSequenceId(),
+                                                        head.getTimestamp(), head.getSequenceId()) <= 0)) {
+          MessageSegment.Cursor cursor = nextPending.seek(startTimestamp, startSequenceId);
+          if (cursor.isValid()) {
+            cursors.add(cursor);
+          }
+          nextPending = pending.hasNext() ? pending.next() : null;
+          head = cursors.peek();
+        }
+
+        MessageSegment.Cursor cursor = cursors.poll();
+        if (cursor == null) {
+          return endOfData();
+        }
+
+        // Skip entries that have the same key as the last returned one
+        if (hasLastKey && MessageSegment.compareKey(lastTimestamp, lastSequenceId,
+                                                    cursor.getTimestamp(), cursor.getSequenceId()) == 0) {
+          cursor.next();
+          if (cursor.isValid()) {
+            cursors.add(cursor);
+          }
+          continue;
+        }
+
+        hasLastKey = true;
+        lastTimestamp = cursor.getTimestamp();
+        lastSequenceId = cursor.getSequenceId();
+        current = cursor;
+        return cursor;
+      }
+    }
+  }
+}
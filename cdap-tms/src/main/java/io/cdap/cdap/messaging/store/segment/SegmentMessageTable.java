@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.messaging.MessagingUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.store.AbstractMessageTable;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.MessageTableKey;
+import io.cdap.cdap.messaging.store.RawMessageTableEntry;
+import io.cdap.cdap.messaging.store.RollbackRequest;
+import io.cdap.cdap.messaging.store.ScanRequest;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MessageTable} that stores messages of a topic generation in a {@link SegmentMessageLog}.
+ */
+final class SegmentMessageTable extends AbstractMessageTable {
+
+  private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+  private final SegmentMessageLog log;
+  private final byte[] topic;
+
+  SegmentMessageTable(SegmentMessageLog log, TopicMetadata topicMetadata) {
+    this.log = log;
+    this.topic = MessagingUtils.toDataKeyPrefix(topicMetadata.getTopicId(), topicMetadata.getGeneration());
+  }
+
+  @Override
+  protected CloseableIterator<RawMessageTableEntry> scan(ScanRequest scanRequest) throws IOException {
+    byte[] startRow = scanRequest.getStartRow();
+    byte[] stopRow = scanRequest.getStopRow();
+    Iterator<MessageSegment.Cursor> cursors = log.scan(scanRequest.getStartTime(), getSequenceId(startRow));
+    MessageTableKey messageTableKey = MessageTableKey.fromTopic(topic);
+    RawMessageTableEntry tableEntry = new RawMessageTableEntry();
+
+    return new AbstractCloseableIterator<RawMessageTableEntry>() {
+      private boolean closed;
+
+      @Override
+      protected RawMessageTableEntry computeNext() {
+        while (!closed && cursors.hasNext()) {
+          MessageSegment.Cursor cursor = cursors.next();
+          messageTableKey.set(cursor.getTimestamp(), cursor.getSequenceId());
+          byte[] rowKey = messageTableKey.getRowKey();
+          if (Bytes.compareTo(rowKey, startRow) < 0) {
+            continue;
+          }
+          if (Bytes.compareTo(rowKey, stopRow) >= 0) {
+            break;
+          }
+
+          byte type = cursor.getType();
+          byte[] txPtr = type == MessageSegment.TYPE_NON_TRANSACTIONAL
+            ? null
+            : Bytes.toBytes(cursor.getTxWritePointer());
+          byte[] payload = null;
+          if (type != MessageSegment.TYPE_PAYLOAD_REFERENCE) {
+            int size = cursor.getPayloadSize();
+            payload = size == 0 ? EMPTY_PAYLOAD : new byte[size];
+            cursor.getPayload(payload);
+          }
+          return tableEntry.set(messageTableKey, txPtr, payload);
+        }
+        return endOfData();
+      }
+
+      @Override
+      public void close() {
+        closed = true;
+      }
+    };
+  }
+
+  @Override
+  protected void persist(Iterator<RawMessageTableEntry> entries) throws IOException {
+    log.append(new AbstractIterator<SegmentMessageLog.Entry>() {
+
+      private final MutableEntry entry = new MutableEntry();
+
+      @Override
+      protected SegmentMessageLog.Entry computeNext() {
+        if (!entries.hasNext()) {
+          return endOfData();
+        }
+        RawMessageTableEntry rawEntry = entries.next();
+        return entry.set(rawEntry.getKey(), rawEntry.getTxPtr(), rawEntry.getPayload());
+      }
+    });
+  }
+
+  @Override
+  protected void rollback(RollbackRequest rollbackRequest) throws IOException {
+    byte[] startRow = rollbackRequest.getStartRow();
+    byte[] stopRow = rollbackRequest.getStopRow();
+    long txWritePointer = Bytes.toLong(rollbackRequest.getTxWritePointer());
+    MessageTableKey messageTableKey = MessageTableKey.fromTopic(topic);
+    Set<MessageSegment> updatedSegments = new HashSet<>();
+
+    Iterator<MessageSegment.Cursor> cursors = log.scan(rollbackRequest.getStartTime(), getSequenceId(startRow));
+    while (cursors.hasNext()) {
+      MessageSegment.Cursor cursor = cursors.next();
+      messageTableKey.set(cursor.getTimestamp(), cursor.getSequenceId());
+      byte[] rowKey = messageTableKey.getRowKey();
+      if (Bytes.compareTo(rowKey, startRow) < 0) {
+        continue;
+      }
+      if (Bytes.compareTo(rowKey, stopRow) >= 0) {
+        break;
+      }
+      cursor.updateTransaction(txWritePointer);
+      updatedSegments.add(cursor.getSegment());
+    }
+
+    for (MessageSegment segment : updatedSegments) {
+      segment.force();
+    }
+  }
+
+  @Override
+  public void close() {
+    // This method has to be an no-op instead of closing the underlying log
+    // This is because a given log instance is shared within the same JVM
+  }
+
+  /**
+   * Returns the sequence id encoded in the given row key, or {@code 0} if the row key doesn't have one.
+   */
+  private short getSequenceId(byte[] row) {
+    int offset = topic.length + Bytes.SIZEOF_LONG;
+    return row.length >= offset + Bytes.SIZEOF_SHORT ? Bytes.toShort(row, offset) : 0;
+  }
+
+  /**
+   * A mutable {@link SegmentMessageLog.Entry} created from the columns of a {@link RawMessageTableEntry}.
+   */
+  private static final class MutableEntry implements SegmentMessageLog.Entry {
+
+    private long publishTimestamp;
+    private short sequenceId;
+    private byte type;
+    private long txWritePointer;
+    private byte[] payload;
+
+    MutableEntry set(MessageTableKey key, @Nullable byte[] txPtr, @Nullable byte[] payload) {
+      if (txPtr == null) {
+        // For non-tx message, payload cannot be null
+        Preconditions.checkArgument(payload != null, "Payload cannot be null for non-transactional message");
+        this.type = MessageSegment.TYPE_NON_TRANSACTIONAL;
+        this.txWritePointer = 0L;
+      } else {
+        this.type = payload == null ? MessageSegment.TYPE_PAYLOAD_REFERENCE : MessageSegment.TYPE_TRANSACTIONAL;
+        this.txWritePointer = Bytes.toLong(txPtr);
+      }
+      this.publishTimestamp = key.getPublishTimestamp();
+      this.sequenceId = key.getSequenceId();
+      this.payload = payload;
+      return this;
+    }
+
+    @Override
+    public long getPublishTimestamp() {
+      return publishTimestamp;
+    }
+
+    @Override
+    public short getSequenceId() {
+      return sequenceId;
+    }
+
+    @Override
+    public byte getType() {
+      return type;
+    }
+
+    @Override
+    public long getTxWritePointer() {
+      return txWritePointer;
+    }
+
+    @Nullable
+    @Override
+    public byte[] getPayload() {
+      return payload;
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.Closeables;
+import com.google.inject.Inject;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.MetadataTable;
+import io.cdap.cdap.messaging.store.PayloadTable;
+import io.cdap.cdap.messaging.store.TableFactory;
+import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TableFactory} that stores messages in memory-mapped, append-only segment files.
+ *
+ * Since messages of a topic are always published in increasing message id order, they are appended to segment
+ * files under the directory
+ *
+ *   [base dir]/segments/[namespace].[tablename].[topic].[generation]/
+ *
+ * without the key encoding, memtable insertion and compaction costs of LevelDB. Each segment keeps a sparse index
+ * of message ids for seeking, and TTL pruning deletes whole segment files.
+ *
+ * The {@link MetadataTable} and {@link PayloadTable} are provided by {@link LevelDBTableFactory}, because
+ * payloads are keyed by transaction write pointer, which is not append ordered.
+ */
+public final class SegmentTableFactory implements TableFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentTableFactory.class);
+  private static final String SEGMENTS_DIR = "segments";
+
+  private final LevelDBTableFactory levelDBTableFactory;
+  private final File baseDir;
+  private final String messageTableName;
+  private final int segmentSize;
+  private final ConcurrentMap<File, SegmentMessageLog> logs;
+  private final ScheduledExecutorService cleanupExecutor;
+
+  private volatile MetadataTable metadataTable;
+
+  @VisibleForTesting
+  @Inject
+  public SegmentTableFactory(CConfiguration cConf) {
+    this.levelDBTableFactory = new LevelDBTableFactory(cConf);
+    this.baseDir = new File(cConf.get(Constants.MessagingSystem.LOCAL_DATA_DIR), SEGMENTS_DIR);
+    this.messageTableName = cConf.get(Constants.MessagingSystem.MESSAGE_TABLE_NAME);
+    this.segmentSize = (int) Math.min(Integer.MAX_VALUE,
+                                      cConf.getLong(Constants.MessagingSystem.LOCAL_DATA_SEGMENT_SIZE_MB) << 20);
+    this.logs = new ConcurrentHashMap<>();
+    this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("segment-tms-data-cleanup"));
+    long cleanupFrequency = Long.parseLong(cConf.get(Constants.MessagingSystem.LOCAL_DATA_CLEANUP_FREQUENCY));
+    cleanupExecutor.scheduleAtFixedRate(new DataCleanup(), 0L, cleanupFrequency, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void init() throws IOException {
+    levelDBTableFactory.init();
+    ensureDirExists(baseDir);
+  }
+
+  @Override
+  public MetadataTable createMetadataTable() throws IOException {
+    MetadataTable table = levelDBTableFactory.createMetadataTable();
+    metadataTable = table;
+    return table;
+  }
+
+  @Override
+  public MessageTable createMessageTable(TopicMetadata topicMetadata) throws IOException {
+    return new SegmentMessageTable(getLog(topicMetadata.getTopicId(), topicMetadata.getGeneration()), topicMetadata);
+  }
+
+  @Override
+  public PayloadTable createPayloadTable(TopicMetadata topicMetadata) throws IOException {
+    return levelDBTableFactory.createPayloadTable(topicMetadata);
+  }
+
+  @Override
+  public void close() {
+    cleanupExecutor.shutdownNow();
+    logs.clear();
+    Closeables.closeQuietly(levelDBTableFactory);
+  }
+
+  @VisibleForTesting
+  SegmentMessageLog getLog(TopicId topicId, int generation) throws IOException {
+    File logDir = getLogDir(topicId, generation);
+    SegmentMessageLog log = logs.get(logDir);
+    if (log != null) {
+      return log;
+    }
+
+    synchronized (this) {
+      // Check again to make sure no new instance was being created while this thread is acquiring the lock
+      log = logs.get(logDir);
+      if (log != null) {
+        return log;
+      }
+      log = new SegmentMessageLog(ensureDirExists(logDir), segmentSize);
+      logs.put(logDir, log);
+    }
+
+    LOG.debug("Messaging segment log created at {}", logDir);
+    return log;
+  }
+
+  private File getLogDir(TopicId topicId, int generation) {
+    return new File(baseDir, String.format("%s.%s.%s.%d", topicId.getNamespace(), messageTableName,
+                                           topicId.getTopic(), generation));
+  }
+
+  private File ensureDirExists(File dir) throws IOException {
+    if (!DirUtils.mkdirs(dir)) {
+      throw new IOException("Failed to create local directory " + dir + " for the messaging system.");
+    }
+    return dir;
+  }
+
+  /**
+   * Removes segment logs of older generations and prunes segments that are older than the topic TTL.
+   * Cleanup of the payload table is done by the {@link LevelDBTableFactory}.
+   */
+  private class DataCleanup implements Runnable {
+
+    @Override
+    public void run() {
+      MetadataTable metadataTable = SegmentTableFactory.this.metadataTable;
+      if (metadataTable == null) {
+        return;
+      }
+
+      long now = System.currentTimeMillis();
+      try (CloseableIterator<TopicMetadata> metadataIterator = metadataTable.scanTopics()) {
+        while (metadataIterator.hasNext()) {
+          TopicMetadata metadata = metadataIterator.next();
+          int currGeneration = metadata.getGeneration();
+
+          // We can safely remove all generations that are less than `cleanOlderThan`.
+          int cleanOlderThan = currGeneration < 0 ? currGeneration * -1 + 1 : currGeneration;
+          for (int olderGeneration = cleanOlderThan - 1; olderGeneration > 0; olderGeneration--) {
+            File logDir = getLogDir(metadata.getTopicId(), olderGeneration);
+            if (!logDir.exists()) {
+              break;
+            }
+            logs.remove(logDir);
+            LOG.info("Deleting directory: {}", logDir);
+            DirUtils.deleteDirectoryContents(logDir);
+          }
+
+          if (currGeneration > 0) {
+            long thresholdTimestamp = now - TimeUnit.SECONDS.toMillis(metadata.getTTL());
+            getLog(metadata.getTopicId(), currGeneration).prune(thresholdTimestamp);
+          }
+        }
+      } catch (IOException ex) {
+        LOG.debug("Unable to perform data cleanup in TMS segment tables", ex);
+      }
+    }
+  }
+}
@@ -26,16 +26,27 @@ import io.cdap.cdap.spi.data.StructuredTableContext;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
 import io.cdap.cdap.spi.data.transaction.TxCallable;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
  * An abstract base class for implementing message consumption from TMS.
  * This service allows optional transactional fetch from TMS.
- * It always process messages and persisting consumer states in the same transaction.
+ * It always process messages and persisting consumer states in the same transaction, unless parallel processing
+ * is enabled by overriding {@link #getProcessingParallelism()}.
  *
  * @param <T> the type that each message will be decoded to.
  */
@@ -44,6 +55,7 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
   private static final Logger LOG = LoggerFactory.getLogger(AbstractMessagingSubscriberService.class);
 
   private final int txTimeoutSeconds;
+  private ExecutorService processExecutor;
 
   /**
    * Constructor.
@@ -107,6 +119,10 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
    * {@link #storeMessageId(StructuredTableContext, String)} call. If {@link Exception} is raised from this method,
    * the messages as provided through the {@code messages} parameter will be replayed in the next call.
    *
+   * If {@link #getProcessingParallelism()} returns a value larger than {@code 1}, this method is called concurrently
+   * for different partitions, and messages committed by a successful call can be replayed if processing of another
+   * partition of the same batch failed. Implementations must be thread-safe and idempotent in that case.
+   *
    * @param structuredTableContext the {@link StructuredTableContext} for getting the tables for the transaction
    * @param messages an {@link Iterator} of {@link ImmutablePair}, with the {@link ImmutablePair#first}
    *                 as the message id, and the {@link ImmutablePair#second} as the decoded message
@@ -116,6 +132,37 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
   protected abstract void processMessages(StructuredTableContext structuredTableContext,
                                           Iterator<ImmutablePair<String, T>> messages) throws Exception;
 
+  /**
+   * Returns the number of threads for processing each batch of messages. By default it returns {@code 1}, which
+   * processes messages sequentially in the same transaction as the {@link #storeMessageId(StructuredTableContext,
+   * String)} call.
+   *
+   * If it returns a value larger than {@code 1}, messages of a batch are divided into partitions based on
+   * {@link #getPartitionKey(ImmutablePair)}, and each partition is processed by
+   * {@link #processMessages(StructuredTableContext, Iterator)} in its own transactions in parallel. Messages in
+   * the same partition are processed in the order they were published. The message id of the batch is persisted
+   * in a separate transaction after all partitions are processed successfully. If processing of any partition
+   * failed, the whole batch will be replayed, including partitions that were already processed. Hence
+   * processing must be idempotent, and {@link #processMessages(StructuredTableContext, Iterator)} must consume
+   * all messages provided through the iterator.
+   */
+  protected int getProcessingParallelism() {
+    return 1;
+  }
+
+  /**
+   * Returns the partition key of the given message for parallel processing. Messages with equal keys are processed
+   * in order by the same thread. This method is only called if {@link #getProcessingParallelism()} returns a value
+   * larger than {@code 1}. By default it returns {@code null}, which puts all messages in the same partition.
+   *
+   * @param message the message to process
+   * @return the partition key or {@code null}
+   */
+  @Nullable
+  protected Object getPartitionKey(ImmutablePair<String, T> message) {
+    return null;
+  }
+
   /**
    * Perform post processing after a batch of messages has been processed and before the next batch of
    * messages is fetched. This will take place outside of the transaction used when processing messages.
@@ -134,6 +181,11 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
   @Nullable
   @Override
   protected String processMessages(Iterator<ImmutablePair<String, T>> messages) throws Exception {
+    int parallelism = getProcessingParallelism();
+    if (parallelism > 1) {
+      return processMessagesInParallel(messages, parallelism);
+    }
+
     MessageTrackingIterator iterator;
 
     // Process the notifications and record the message id of where the processing is up to.
@@ -156,6 +208,142 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractMess
     return iterator.getLastMessageId();
   }
 
+  @Override
+  protected void doShutdown() throws Exception {
+    try {
+      super.doShutdown();
+    } finally {
+      if (processExecutor != null) {
+        processExecutor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Processes the given messages by partitions in parallel.
+   *
+   * @see #getProcessingParallelism()
+   */
+  @Nullable
+  private String processMessagesInParallel(Iterator<ImmutablePair<String, T>> messages,
+                                           int parallelism) throws Exception {
+    // Divide the batch into partitions, preserving the message order within each partition
+    MessageTrackingIterator trackingIterator = new MessageTrackingIterator(messages);
+    List<List<ImmutablePair<String, T>>> partitions = new ArrayList<>(parallelism);
+    for (int i = 0; i < parallelism; i++) {
+      partitions.add(new ArrayList<>());
+    }
+    while (trackingIterator.hasNext()) {
+      ImmutablePair<String, T> message = trackingIterator.next();
+      partitions.get(Math.floorMod(Objects.hashCode(getPartitionKey(message)), parallelism)).add(message);
+    }
+
+    String lastMessageId = trackingIterator.getLastMessageId();
+    if (lastMessageId == null) {
+      return null;
+    }
+
+    ExecutorService executor = getProcessExecutor(parallelism);
+    List<Future<?>> futures = new ArrayList<>();
+    for (List<ImmutablePair<String, T>> partition : partitions) {
+      if (!partition.isEmpty()) {
+        futures.add(executor.submit(() -> {
+          processPartition(partition);
+          return null;
+        }));
+      }
+    }
+
+    // Wait for all partitions to complete, even if some of them failed, so that no partition is still being
+    // processed when the batch is replayed.
+    Exception failure = null;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        if (failure == null) {
+          failure = cause;
+        } else {
+          failure.addSuppressed(cause);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+
+    // All partitions are durable. Persist the message id of the last message in the batch.
+    TransactionRunners.run(getTransactionRunner(), context -> {
+      storeMessageId(context, lastMessageId);
+    }, Exception.class);
+    return lastMessageId;
+  }
+
+  /**
+   * Processes messages of a partition in one or more transactions, with each transaction bounded by time.
+   */
+  private void processPartition(List<ImmutablePair<String, T>> partition) throws Exception {
+    // 90% of the tx timeout is .9 * 1000 * txTimeoutSeconds = 900 * txTimeoutSeconds
+    long timeBoundMillis = 900L * txTimeoutSeconds;
+    int processed = 0;
+    while (processed < partition.size()) {
+      int start = processed;
+      int consumed = TransactionRunners.run(getTransactionRunner(), context -> {
+        // Create the iterator inside the transaction so that it starts from the same message if the
+        // transaction is retried
+        Iterator<ImmutablePair<String, T>> iterator = partition.subList(start, partition.size()).iterator();
+        CountingIterator countingIterator = new CountingIterator(new TimeBoundIterator<>(iterator, timeBoundMillis));
+        processMessages(context, countingIterator);
+        return countingIterator.getCount();
+      }, Exception.class);
+
+      if (consumed == 0) {
+        throw new IllegalStateException("No message was consumed when processing messages from topic "
+                                          + getTopicId() + " starting at message id "
+                                          + partition.get(start).getFirst());
+      }
+      processed += consumed;
+    }
+  }
+
+  private ExecutorService getProcessExecutor(int parallelism) {
+    if (processExecutor == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        parallelism, parallelism, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        Threads.createDaemonThreadFactory(getServiceName() + "-processor-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      processExecutor = executor;
+    }
+    return processExecutor;
+  }
+
+  /**
+   * An {@link Iterator} that counts the number of messages consumed.
+   */
+  private final class CountingIterator extends AbstractIterator<ImmutablePair<String, T>> {
+
+    private final Iterator<ImmutablePair<String, T>> messages;
+    private int count;
+
+    CountingIterator(Iterator<ImmutablePair<String, T>> messages) {
+      this.messages = messages;
+    }
+
+    @Override
+    protected ImmutablePair<String, T> computeNext() {
+      if (!messages.hasNext()) {
+        return endOfData();
+      }
+      count++;
+      return messages.next();
+    }
+
+    int getCount() {
+      return count;
+    }
+  }
+
   /**
    * An {@link Iterator} that remembers the message id that has been consumed up to.
    */
@@ -0,0 +1,418 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.cache;
+
+import com.google.common.collect.Lists;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.messaging.store.MessageFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for {@link OffHeapMessageCache}.
+ */
+public class OffHeapMessageCacheTest {
+
+  private static final MetricsContext NOOP_METRICS = new NoopMetricsContext();
+
+  @Test
+  public void testBasic() {
+    MessageCache<Integer> cache = createIntCache(new MessageCache.Limits(10, 14, 20));
+
+    cache.addAll(Arrays.asList(1, 2, 3, 4, 5, 11, 12, 13, 14, 15).iterator());
+    Assert.assertEquals(10, cache.getCurrentWeight());
+
+    MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+
+    // Scan with a start key that is not in cache
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      Assert.assertEquals(Integer.valueOf(1), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 11, 12, 13, 14, 15), Lists.newArrayList(scanner));
+    }
+
+    // Scan with a start key that is in the cache, inclusive and exclusive
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(3, true, 5, filter)) {
+      Assert.assertEquals(Arrays.asList(3, 4, 5, 11, 12), Lists.newArrayList(scanner));
+    }
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(3, false, 5, filter)) {
+      Assert.assertEquals(Arrays.asList(4, 5, 11, 12, 13), Lists.newArrayList(scanner));
+    }
+
+    // Scan with a start key that is between keys in the cache
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(9, true, 5, filter)) {
+      Assert.assertEquals(Arrays.asList(11, 12, 13, 14, 15), Lists.newArrayList(scanner));
+    }
+
+    // Scan with a start key that is larger than everything in the cache
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(16, true, 5, filter)) {
+      Assert.assertEquals(Integer.valueOf(1), scanner.getFirstInCache());
+      Assert.assertFalse(scanner.hasNext());
+    }
+
+    // Scan with filter that hold when number 11
+    MessageFilter<Integer> holdAtEleven = new MessageFilter<Integer>() {
+      @Override
+      public Result apply(Integer input) {
+        return input == 11 ? Result.HOLD : Result.ACCEPT;
+      }
+    };
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, holdAtEleven)) {
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), Lists.newArrayList(scanner));
+    }
+  }
+
+  @Test
+  public void testCacheReduction() {
+    MessageCache<Integer> cache = createIntCache(new MessageCache.Limits(5, 7, 10));
+    MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+
+    // Add entries so that it goes over the reduce trigger limit, but not hitting hard limit
+    cache.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9).iterator());
+
+    // First scan of the cache should gives all cached entries, since reduction only performed at scanner close
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), Lists.newArrayList(scanner));
+    }
+
+    // The second scan should only give the last 5 entries (min retain)
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      Assert.assertEquals(Integer.valueOf(5), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(5, 6, 7, 8, 9), Lists.newArrayList(scanner));
+    }
+
+    // Add more entries so that it will hit the hard limit while adding
+    cache.addAll(Arrays.asList(10, 11, 12, 13, 14, 15, 16).iterator());
+    Assert.assertTrue(cache.getCurrentWeight() <= 10);
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      List<Integer> entries = Lists.newArrayList(scanner);
+      Assert.assertEquals(scanner.getFirstInCache(), entries.get(0));
+      Assert.assertEquals(Integer.valueOf(16), entries.get(entries.size() - 1));
+    }
+  }
+
+  @Test
+  public void testSegmentRelease() {
+    OffHeapMessageCache<Integer> cache = createIntCache(new MessageCache.Limits(100, 150, 200));
+
+    // Add enough entries to fill up multiple segments
+    for (int i = 0; i < 100; i++) {
+      List<Integer> entries = new ArrayList<>();
+      for (int j = 0; j < 1000; j++) {
+        entries.add(i * 1000 + j);
+      }
+      cache.addAll(entries.iterator());
+    }
+
+    Assert.assertTrue(cache.getCurrentWeight() <= 200);
+    // Only the segments that contain live entries should be retained
+    Assert.assertTrue(cache.getSegmentCount() <= 2);
+
+    long weight = cache.getCurrentWeight();
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 1000, MessageFilter.<Integer>alwaysAccept())) {
+      List<Integer> entries = Lists.newArrayList(scanner);
+      Assert.assertEquals(weight, entries.size());
+      Assert.assertEquals(Integer.valueOf(99999), entries.get(entries.size() - 1));
+    }
+
+    // Clearing the cache should release all entries
+    cache.clear();
+    Assert.assertEquals(0, cache.getCurrentWeight());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 1000, MessageFilter.<Integer>alwaysAccept())) {
+      Assert.assertNull(scanner.getFirstInCache());
+      Assert.assertFalse(scanner.hasNext());
+    }
+  }
+
+  @Test
+  public void testPinnedSegment() {
+    OffHeapMessageCache<Integer> cache = createIntCache(new MessageCache.Limits(100, 150, 200));
+    List<Integer> entries = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      entries.add(i);
+    }
+    cache.addAll(entries.iterator());
+
+    // Keep a scanner open while the writer goes around the ring of segments multiple times
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 1000, MessageFilter.<Integer>alwaysAccept())) {
+      for (int i = 1; i < 100; i++) {
+        entries.clear();
+        for (int j = 0; j < 1000; j++) {
+          entries.add(i * 1000 + j);
+        }
+        cache.addAll(entries.iterator());
+      }
+
+      // The segment pinned by the scanner must not be overwritten
+      Assert.assertEquals(Integer.valueOf(0), scanner.getFirstInCache());
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        expected.add(i);
+      }
+      Assert.assertEquals(expected, Lists.newArrayList(scanner));
+    }
+
+    // After the scanner is closed, the cache keeps the latest entries
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 1000, MessageFilter.<Integer>alwaysAccept())) {
+      List<Integer> cached = Lists.newArrayList(scanner);
+      Assert.assertFalse(cached.isEmpty());
+      Assert.assertEquals(Integer.valueOf(99999), cached.get(cached.size() - 1));
+    }
+  }
+
+  @Test
+  public void testClearAfterResize() {
+    OffHeapMessageCache<Integer> cache = createIntCache(new MessageCache.Limits(5, 7, 10));
+    cache.resize(new MessageCache.Limits(50, 70, 100));
+    cache.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12).iterator());
+    Assert.assertEquals(12, cache.getCurrentWeight());
+
+    // Clearing the cache should keep the resized limits
+    cache.clear();
+    Assert.assertEquals(0, cache.getCurrentWeight());
+    Assert.assertEquals(100, cache.getLimits().getHardLimit());
+
+    List<Integer> entries = new ArrayList<>();
+    for (int i = 20; i < 40; i++) {
+      entries.add(i);
+    }
+    cache.addAll(entries.iterator());
+    Assert.assertEquals(20, cache.getCurrentWeight());
+  }
+
+  @Test
+  public void testSearchWithoutDeserialize() {
+    AtomicInteger deserializeCount = new AtomicInteger();
+    MessageCache<Integer> cache = new OffHeapMessageCache<>(Integer::compare, new UnitWeigher<>(), new IntSerializer() {
+      @Override
+      public Integer deserialize(ByteBuffer buffer, int offset, int size) {
+        deserializeCount.incrementAndGet();
+        return super.deserialize(buffer, offset, size);
+      }
+
+      @Override
+      public int compare(ByteBuffer buffer, int offset, int size, Integer entry, Comparator<Integer> comparator) {
+        return Integer.compare(buffer.getInt(offset), entry);
+      }
+    }, new MessageCache.Limits(1000, 1500, 2000), NOOP_METRICS);
+
+    List<Integer> entries = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      entries.add(i * 2);
+    }
+    cache.addAll(entries.iterator());
+
+    // Only the first entry in cache and the scanned entries are deserialized
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(501, true, 2, MessageFilter.<Integer>alwaysAccept())) {
+      Assert.assertEquals(Integer.valueOf(0), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(502, 504), Lists.newArrayList(scanner));
+    }
+    Assert.assertEquals(3, deserializeCount.get());
+  }
+
+  @Test
+  public void testUpdate() {
+    MessageCache<long[]> cache = new OffHeapMessageCache<>(new Comparator<long[]>() {
+      @Override
+      public int compare(long[] o1, long[] o2) {
+        return Long.compare(o1[0], o2[0]);
+      }
+    }, new UnitWeigher<long[]>(), new LongPairSerializer(), new MessageCache.Limits(10, 14, 20), NOOP_METRICS);
+
+    cache.addAll(Arrays.asList(new long[] {0, 0}, new long[] {1, 0}, new long[] {2, 0}).iterator());
+
+    // Update entries that alter ordering. Exception should be raised and the cache is cleared
+    try {
+      cache.updateEntries(new long[] {0, 0}, new long[] {2, 0}, new MessageCache.EntryUpdater<long[]>() {
+        @Override
+        public void updateEntry(long[] entry) {
+          entry[0] = entry[0] + 1;
+        }
+      });
+      Assert.fail("Expected exception of out of order update");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+
+    cache.addAll(Arrays.asList(new long[] {0, 0}, new long[] {1, 0}, new long[] {2, 0}).iterator());
+
+    // Update entries normally
+    cache.updateEntries(new long[] {1, 0}, new long[] {2, 0}, new MessageCache.EntryUpdater<long[]>() {
+      @Override
+      public void updateEntry(long[] entry) {
+        entry[1] = entry[0] * 10;
+      }
+    });
+
+    try (MessageCache.Scanner<long[]> scanner = cache.scan(new long[] {0, 0}, true, 10,
+                                                           MessageFilter.<long[]>alwaysAccept())) {
+      List<long[]> entries = Lists.newArrayList(scanner);
+      Assert.assertEquals(3, entries.size());
+      Assert.assertArrayEquals(new long[] {0, 0}, entries.get(0));
+      Assert.assertArrayEquals(new long[] {1, 10}, entries.get(1));
+      Assert.assertArrayEquals(new long[] {2, 20}, entries.get(2));
+    }
+  }
+
+  @Test
+  public void testAddError() {
+    MessageCache<Integer> cache = createIntCache(new MessageCache.Limits(5, 7, 10));
+
+    // Adding out of order should result in error
+    try {
+      cache.addAll(Arrays.asList(5, 2, 3, 4).iterator());
+      Assert.fail("Expected failure for adding out of order");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+
+    // Adding entries that are smaller than the largest one in the cache
+    cache.addAll(Arrays.asList(5, 6, 7, 8).iterator());
+    try {
+      cache.addAll(Arrays.asList(1, 2).iterator());
+      Assert.fail("Expected failure for adding out of order");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+
+    // After the cache is cleared, adding smaller entries is allowed
+    cache.addAll(Arrays.asList(1, 2).iterator());
+    Assert.assertEquals(2, cache.getCurrentWeight());
+  }
+
+  @Test
+  public void testConcurrentScan() throws Exception {
+    final OffHeapMessageCache<Integer> cache = createIntCache(new MessageCache.Limits(500, 700, 1000));
+    final AtomicBoolean stopped = new AtomicBoolean();
+    final int total = 200000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    try {
+      List<Future<?>> readers = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        readers.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+            while (!stopped.get()) {
+              try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 100, filter)) {
+                // Entries must always be consecutive, without any hole
+                Integer expected = scanner.getFirstInCache();
+                while (scanner.hasNext()) {
+                  Assert.assertEquals(expected, scanner.next());
+                  expected++;
+                }
+              }
+            }
+          }
+        }));
+      }
+
+      for (int i = 0; i < total; i += 100) {
+        List<Integer> entries = new ArrayList<>();
+        for (int j = i; j < i + 100; j++) {
+          entries.add(j);
+        }
+        cache.addAll(entries.iterator());
+      }
+      stopped.set(true);
+
+      for (Future<?> future : readers) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private OffHeapMessageCache<Integer> createIntCache(MessageCache.Limits limits) {
+    return new OffHeapMessageCache<>(new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return o1.compareTo(o2);
+      }
+    }, new UnitWeigher<Integer>(), new IntSerializer(), limits, NOOP_METRICS);
+  }
+
+  /**
+   * A {@link MessageCache.Weigher} that also return 1 for the weight
+   *
+   * @param <T> type of entry
+   */
+  private static final class UnitWeigher<T> implements MessageCache.Weigher<T> {
+
+    @Override
+    public int weight(T entry) {
+      return 1;
+    }
+  }
+
+  /**
+   * A {@link OffHeapMessageCache.Serializer} for {@link Integer}.
+   */
+  private static class IntSerializer implements OffHeapMessageCache.Serializer<Integer> {
+
+    @Override
+    public int getSize(Integer entry) {
+      return Integer.BYTES;
+    }
+
+    @Override
+    public void serialize(Integer entry, ByteBuffer buffer, int offset) {
+      buffer.putInt(offset, entry);
+    }
+
+    @Override
+    public Integer deserialize(ByteBuffer buffer, int offset, int size) {
+      return buffer.getInt(offset);
+    }
+  }
+
+  /**
+   * A {@link OffHeapMessageCache.Serializer} for a pair of long values stored in an array.
+   */
+  private static final class LongPairSerializer implements OffHeapMessageCache.Serializer<long[]> {
+
+    @Override
+    public int getSize(long[] entry) {
+      return Long.BYTES * 2;
+    }
+
+    @Override
+    public void serialize(long[] entry, ByteBuffer buffer, int offset) {
+      buffer.putLong(offset, entry[0]);
+      buffer.putLong(offset + Long.BYTES, entry[1]);
+    }
+
+    @Override
+    public long[] deserialize(ByteBuffer buffer, int offset, int size) {
+      return new long[] { buffer.getLong(offset), buffer.getLong(offset + Long.BYTES) };
+    }
+  }
+}
@@ -39,21 +39,17 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Unit test for {@link MessageCache}.
+ * Unit test for {@link OnHeapMessageCache}.
  */
-public class MessageCacheTest {
+public class OnHeapMessageCacheTest {
 
   private static final MetricsContext NOOP_METRICS = new NoopMetricsContext();
 
   @Test
   public void testNoCache() {
     // Create a cache with zero limits
-    MessageCache<String> cache = new MessageCache<>(String.CASE_INSENSITIVE_ORDER, new MessageCache.Weigher<String>() {
-      @Override
-      public int weight(String entry) {
-        return entry.length();
-      }
-    }, new MessageCache.Limits(0, 0, 0), NOOP_METRICS);
+    MessageCache<String> cache = new OnHeapMessageCache<>(String.CASE_INSENSITIVE_ORDER, String::length,
+                                                          new MessageCache.Limits(0, 0, 0), NOOP_METRICS);
     cache.addAll(Arrays.asList("111", "222", "333").iterator());
     Assert.assertEquals(0L, cache.getCurrentWeight());
 
@@ -66,8 +62,8 @@ public class MessageCacheTest {
   @Test
   public void testBasic() {
     // Test basic operations for the cache from single thread
-    MessageCache<Integer> cache = new MessageCache<>(new IntComparator(), new UnitWeigher<Integer>(),
-                                                     new MessageCache.Limits(10, 14, 20), NOOP_METRICS);
+    MessageCache<Integer> cache = new OnHeapMessageCache<>(new IntComparator(), new UnitWeigher<Integer>(),
+                                                           new MessageCache.Limits(10, 14, 20), NOOP_METRICS);
 
     cache.addAll(Arrays.asList(1, 2, 3, 4, 5, 11, 12, 13, 14, 15).iterator());
     Assert.assertEquals(10, cache.getCurrentWeight());
@@ -137,8 +133,8 @@ public class MessageCacheTest {
 
   @Test
   public void testUpdate() {
-    MessageCache<Entry> cache = new MessageCache<>(new EntryComparator(), new UnitWeigher<Entry>(),
-                                                   new MessageCache.Limits(10, 14, 20), NOOP_METRICS);
+    MessageCache<Entry> cache = new OnHeapMessageCache<>(new EntryComparator(), new UnitWeigher<Entry>(),
+                                                         new MessageCache.Limits(10, 14, 20), NOOP_METRICS);
 
     // Try update that alter order at different element. Exception should be raised in all cases.
     for (int i = 0; i < 3; i++) {
@@ -190,8 +186,8 @@ public class MessageCacheTest {
   @Test
   public void testCacheReduction() {
     // Test the cache reduction logic in single thread case.
-    MessageCache<Integer> cache = new MessageCache<>(new IntComparator(), new UnitWeigher<Integer>(),
-                                                     new MessageCache.Limits(5, 7, 10), NOOP_METRICS);
+    MessageCache<Integer> cache = new OnHeapMessageCache<>(new IntComparator(), new UnitWeigher<Integer>(),
+                                                           new MessageCache.Limits(5, 7, 10), NOOP_METRICS);
 
     MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
 
@@ -239,8 +235,8 @@ public class MessageCacheTest {
   @Test
   public void testCacheResize() {
     // Test resize the cache
-    MessageCache<Integer> cache = new MessageCache<>(new IntComparator(), new UnitWeigher<Integer>(),
-                                                     new MessageCache.Limits(2, 3, 4), NOOP_METRICS);
+    MessageCache<Integer> cache = new OnHeapMessageCache<>(new IntComparator(), new UnitWeigher<Integer>(),
+                                                           new MessageCache.Limits(2, 3, 4), NOOP_METRICS);
 
     MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
 
@@ -269,8 +265,8 @@ public class MessageCacheTest {
   @Test
   public void testAddError() throws Exception {
     // Test to verify various error situations are being safeguarded
-    final MessageCache<Integer> cache = new MessageCache<>(new IntComparator(), new UnitWeigher<Integer>(),
-                                                           new MessageCache.Limits(5, 7, 10), NOOP_METRICS);
+    final MessageCache<Integer> cache = new OnHeapMessageCache<>(new IntComparator(), new UnitWeigher<Integer>(),
+                                                                 new MessageCache.Limits(5, 7, 10), NOOP_METRICS);
 
     // 1. Adding out of order should result in error
     try {
@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.server;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.messaging.Schemas;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for {@link ConsumeResponseEncoder}.
+ */
+public class ConsumeResponseEncoderTest {
+
+  @Test
+  public void testVarLong() {
+    ByteBuf buffer = ByteBufAllocator.DEFAULT.buffer();
+    try {
+      for (long value : new long[] { 0L, 1L, 63L, 64L, 127L, 128L, 8191L, 8192L, Integer.MAX_VALUE, Long.MAX_VALUE }) {
+        buffer.clear();
+        int size = ConsumeResponseEncoder.writeVarLong(buffer, value);
+        Assert.assertEquals(size, buffer.readableBytes());
+        Assert.assertEquals(size, ConsumeResponseEncoder.getVarLongSize(value));
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+        encoder.writeLong(value);
+        Assert.assertArrayEquals(os.toByteArray(), ByteBufUtil.getBytes(buffer));
+      }
+    } finally {
+      buffer.release();
+    }
+  }
+
+  @Test
+  public void testSameAsDatumWriter() throws IOException {
+    List<RawMessage> messages = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      byte[] payload = new byte[i * 100];
+      Arrays.fill(payload, (byte) i);
+      messages.add(new RawMessage(Bytes.toBytes("id" + i), payload));
+    }
+
+    for (int threshold : new int[] { 0, 500, Integer.MAX_VALUE }) {
+      ConsumeResponseEncoder encoder = new ConsumeResponseEncoder(ByteBufAllocator.DEFAULT, threshold);
+
+      // Encode as two blocks, with an empty block at the end
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      appendAndRelease(os, encoder.encode(messages.subList(0, 7), false));
+      appendAndRelease(os, encoder.encode(messages.subList(7, messages.size()), false));
+      appendAndRelease(os, encoder.encode(Collections.emptyList(), true));
+
+      Assert.assertArrayEquals(encodeWithDatumWriter(Arrays.asList(messages.subList(0, 7),
+                                                                   messages.subList(7, messages.size()))),
+                               os.toByteArray());
+    }
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    ConsumeResponseEncoder encoder = new ConsumeResponseEncoder(ByteBufAllocator.DEFAULT, 0);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    appendAndRelease(os, encoder.encode(Collections.emptyList(), true));
+    Assert.assertArrayEquals(encodeWithDatumWriter(Collections.emptyList()), os.toByteArray());
+  }
+
+  @Test
+  public void testPayloadNotCopied() {
+    byte[] payload = new byte[4096];
+    ConsumeResponseEncoder encoder = new ConsumeResponseEncoder(ByteBufAllocator.DEFAULT, 1024);
+    ByteBuf buffer = encoder.encode(Collections.singletonList(new RawMessage(Bytes.toBytes("id"), payload)), true);
+    try {
+      Assert.assertTrue(buffer instanceof CompositeByteBuf);
+      CompositeByteBuf composite = (CompositeByteBuf) buffer;
+      Assert.assertEquals(3, composite.numComponents());
+      Assert.assertSame(payload, composite.component(1).array());
+    } finally {
+      buffer.release();
+    }
+  }
+
+  private void appendAndRelease(ByteArrayOutputStream os, ByteBuf buffer) throws IOException {
+    try {
+      buffer.readBytes(os, buffer.readableBytes());
+    } finally {
+      buffer.release();
+    }
+  }
+
+  /**
+   * Encodes the given blocks of messages in the same way as the {@link GenericDatumWriter} based encoding.
+   */
+  private byte[] encodeWithDatumWriter(List<List<RawMessage>> blocks) throws IOException {
+    Schema schema = Schemas.V1.ConsumeResponse.SCHEMA.getElementType();
+    GenericRecord record = new GenericData.Record(schema);
+    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(schema);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    encoder.writeArrayStart();
+    for (List<RawMessage> block : blocks) {
+      encoder.setItemCount(block.size());
+      for (RawMessage message : block) {
+        encoder.startItem();
+        record.put("id", ByteBuffer.wrap(message.getId()));
+        record.put("payload", ByteBuffer.wrap(message.getPayload()));
+        writer.write(record, encoder);
+      }
+    }
+    encoder.writeArrayEnd();
+    return os.toByteArray();
+  }
+}
@@ -22,6 +22,7 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -40,7 +41,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
@@ -268,6 +271,71 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testGroupCommit() throws InterruptedException, BrokenBarrierException {
+    int topicCount = 10;
+
+    // Use a write delay so that requests arrive while a write is in progress
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(), 100L);
+    Set<TopicId> notifiedTopics = ConcurrentHashMap.newKeySet();
+    // Use a large window so that requests arriving during a write are written together
+    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                       notifiedTopics::add, 500L);
+
+    ExecutorService executor = Executors.newFixedThreadPool(topicCount);
+    final CyclicBarrier barrier = new CyclicBarrier(topicCount + 1);
+    for (int i = 0; i < topicCount; i++) {
+      final TopicId topicId = NamespaceId.DEFAULT.topic("t" + i);
+      final TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+      executor.submit(() -> {
+        try {
+          barrier.await();
+          writer.persist(new TestStoreRequest(topicId, Arrays.asList("1", "2")), metadata);
+        } catch (Exception e) {
+          LOG.error("Exception raised when persisting.", e);
+        }
+      });
+    }
+
+    barrier.await();
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    // Requests of all topics should be persisted with fewer writes than the number of requests
+    Assert.assertTrue(testWriter.getWriteCount() < topicCount);
+    Assert.assertEquals(topicCount, notifiedTopics.size());
+    for (int i = 0; i < topicCount; i++) {
+      TopicId topicId = NamespaceId.DEFAULT.topic("t" + i);
+      Assert.assertTrue(notifiedTopics.contains(topicId));
+
+      List<String> payloads = new ArrayList<>();
+      for (RawMessage message : testWriter.getMessages().get(topicId)) {
+        payloads.add(Bytes.toString(message.getPayload()));
+      }
+      Assert.assertEquals(Arrays.asList("1", "2"), payloads);
+    }
+  }
+
+  @Test
+  public void testGroupCommitUncontended() throws IOException {
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(), null, 60000L);
+
+    // Without other pending requests, the request is written without waiting for the group commit window
+    Stopwatch stopwatch = new Stopwatch();
+    stopwatch.start();
+    for (int i = 0; i < 3; i++) {
+      writer.persist(new TestStoreRequest(topicId, Arrays.asList("1", "2")), metadata);
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() < 30000L);
+    Assert.assertEquals(3, testWriter.getWriteCount());
+    Assert.assertEquals(6, testWriter.getMessages().get(topicId).size());
+    writer.close();
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
@@ -275,6 +343,7 @@ public class ConcurrentMessageWriterTest {
 
     private final ListMultimap<TopicId, RawMessage> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
+    private int writeCount;
 
     TestStoreRequestWriter(TimeProvider timeProvider) {
       super(timeProvider, false);
@@ -297,6 +366,7 @@ public class ConcurrentMessageWriterTest {
 
     @Override
     protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+      writeCount++;
       while (entries.hasNext()) {
         TestEntry entry = entries.next();
         byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
@@ -315,6 +385,10 @@ public class ConcurrentMessageWriterTest {
       return messages;
     }
 
+    int getWriteCount() {
+      return writeCount;
+    }
+
     @Override
     public void close() throws IOException {
       // No-op
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for {@link MessageArrivalNotifier}.
+ */
+public class MessageArrivalNotifierTest {
+
+  @Test
+  public void testAwait() throws Exception {
+    MessageArrivalNotifier notifier = new MessageArrivalNotifier();
+    TopicId topic1 = NamespaceId.DEFAULT.topic("topic1");
+    TopicId topic2 = NamespaceId.DEFAULT.topic("topic2");
+
+    // Wait without any arrival should timeout
+    long version = notifier.getVersion(topic1);
+    Assert.assertFalse(notifier.await(topic1, version, 10, TimeUnit.MILLISECONDS));
+
+    // Arrival before waiting should return immediately
+    notifier.notifyArrival(topic1);
+    Assert.assertTrue(notifier.await(topic1, version, 1, TimeUnit.HOURS));
+
+    // Arrival on another topic shouldn't wake up the waiting thread
+    long version1 = notifier.getVersion(topic1);
+    long version2 = notifier.getVersion(topic2);
+    CompletableFuture<Boolean> future1 = CompletableFuture.supplyAsync(() -> await(notifier, topic1, version1));
+    CompletableFuture<Boolean> future2 = CompletableFuture.supplyAsync(() -> await(notifier, topic2, version2));
+
+    notifier.notifyArrival(topic2);
+    Assert.assertTrue(future2.get(10, TimeUnit.SECONDS));
+    Assert.assertFalse(future1.isDone());
+
+    // Removing the topic should wake up the waiting thread
+    notifier.remove(topic1);
+    Assert.assertTrue(future1.get(10, TimeUnit.SECONDS));
+  }
+
+  private boolean await(MessageArrivalNotifier notifier, TopicId topicId, long version) {
+    try {
+      return notifier.await(topicId, version, 1, TimeUnit.HOURS);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
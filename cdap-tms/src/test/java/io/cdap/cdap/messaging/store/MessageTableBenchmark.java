@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store;
+
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import io.cdap.cdap.messaging.store.segment.SegmentTableFactory;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simple benchmark that compares the store and fetch throughput of the local {@link MessageTable}
+ * implementations provided by {@link LevelDBTableFactory} and {@link SegmentTableFactory}.
+ *
+ * Usage: MessageTableBenchmark [messageCount] [payloadSize] [batchSize]
+ */
+public final class MessageTableBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int messageCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int payloadSize = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+    int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+    File baseDir = Files.createTempDirectory("tms-benchmark").toFile();
+    try {
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.MessagingSystem.LOCAL_DATA_DIR, new File(baseDir, "leveldb").getAbsolutePath());
+      try (TableFactory tableFactory = new LevelDBTableFactory(cConf)) {
+        run("leveldb", tableFactory, messageCount, payloadSize, batchSize);
+      }
+
+      cConf = CConfiguration.create();
+      cConf.set(Constants.MessagingSystem.LOCAL_DATA_DIR, new File(baseDir, "segment").getAbsolutePath());
+      try (TableFactory tableFactory = new SegmentTableFactory(cConf)) {
+        tableFactory.init();
+        run("segment", tableFactory, messageCount, payloadSize, batchSize);
+      }
+    } finally {
+      DirUtils.deleteDirectoryContents(baseDir);
+    }
+  }
+
+  private static void run(String name, TableFactory tableFactory,
+                          int messageCount, int payloadSize, int batchSize) throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("benchmark");
+    TopicMetadata metadata = new TopicMetadata(topicId, Collections.singletonMap(TopicMetadata.GENERATION_KEY, "1"));
+    byte[] payload = new byte[payloadSize];
+
+    try (MessageTable table = tableFactory.createMessageTable(metadata)) {
+      long startTime = System.nanoTime();
+      long publishTime = System.currentTimeMillis();
+      List<MessageTable.Entry> batch = new ArrayList<>(batchSize);
+      for (int i = 0; i < messageCount; i += batchSize) {
+        batch.clear();
+        for (int j = 0; j < batchSize && i + j < messageCount; j++) {
+          batch.add(new TestMessageEntry(topicId, 1, publishTime + i + j, 0, null, payload));
+        }
+        table.store(batch.iterator());
+      }
+      report(name, "store", messageCount, System.nanoTime() - startTime);
+
+      startTime = System.nanoTime();
+      int fetched = 0;
+      try (CloseableIterator<MessageTable.Entry> iterator = table.fetch(metadata, 0L, Integer.MAX_VALUE, null)) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          fetched++;
+        }
+      }
+      report(name, "fetch", fetched, System.nanoTime() - startTime);
+    }
+  }
+
+  private static void report(String name, String operation, int count, long nanos) {
+    long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(nanos));
+    System.out.printf("%-8s %-6s %,d messages in %,d ms (%,d messages/s)%n",
+                      name, operation, count, millis, count * 1000L / millis);
+  }
+
+  private MessageTableBenchmark() {
+    // no-op
+  }
+}
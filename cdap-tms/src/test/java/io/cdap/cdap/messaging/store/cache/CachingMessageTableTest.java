@@ -30,6 +30,7 @@ import io.cdap.cdap.common.utils.TimeProvider;
 import io.cdap.cdap.messaging.MessagingUtils;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.cache.OnHeapMessageCache;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.messaging.store.ImmutableMessageTableEntry;
 import io.cdap.cdap.messaging.store.MessageTable;
@@ -69,8 +70,8 @@ public class CachingMessageTableTest extends LevelDBMessageTableTest {
       .build(new CacheLoader<TopicId, MessageCache<MessageTable.Entry>>() {
         @Override
         public MessageCache<MessageTable.Entry> load(TopicId key) throws Exception {
-          return new MessageCache<>(new MessageTableEntryComparator(), new MessageTableEntryWeigher(),
-                                    new MessageCache.Limits(500, 700, 1000), new NoopMetricsContext());
+          return new OnHeapMessageCache<>(new MessageTableEntryComparator(), new MessageTableEntryWeigher(),
+                                          new MessageCache.Limits(500, 700, 1000), new NoopMetricsContext());
         }
       });
 
@@ -0,0 +1,331 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Unit tests for {@link SegmentMessageLog} and {@link MessageSegment}.
+ */
+public class SegmentMessageLogTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testAppendAndScan() throws IOException {
+    SegmentMessageLog log = new SegmentMessageLog(TEMP_FOLDER.newFolder(), 1024);
+    List<TestEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      entries.add(new TestEntry(1000L + i / 10, (short) (i % 10), "m" + i));
+    }
+    log.append(new ArrayList<SegmentMessageLog.Entry>(entries).iterator());
+
+    // Small segment size should result in multiple segments
+    Assert.assertTrue(log.getSegmentCount() > 1);
+    assertScan(entries, log.scan(0L, (short) 0));
+
+    // Scan from the middle
+    assertScan(entries.subList(55, entries.size()), log.scan(1005L, (short) 5));
+
+    // Scan beyond the end
+    Assert.assertFalse(log.scan(2000L, (short) 0).hasNext());
+  }
+
+  @Test
+  public void testOutOfOrder() throws IOException {
+    SegmentMessageLog log = new SegmentMessageLog(TEMP_FOLDER.newFolder(), 1 << 20);
+    log.append(entries(new TestEntry(10L, (short) 0, "a"), new TestEntry(20L, (short) 0, "b")));
+    Assert.assertEquals(1, log.getSegmentCount());
+
+    // Appending an entry with smaller key should start a new segment, and scan should merge in key order
+    log.append(entries(new TestEntry(15L, (short) 0, "c"), new TestEntry(25L, (short) 0, "d")));
+    Assert.assertEquals(2, log.getSegmentCount());
+
+    assertScan(Arrays.asList(new TestEntry(10L, (short) 0, "a"), new TestEntry(15L, (short) 0, "c"),
+                             new TestEntry(20L, (short) 0, "b"), new TestEntry(25L, (short) 0, "d")),
+               log.scan(0L, (short) 0));
+    assertScan(Arrays.asList(new TestEntry(20L, (short) 0, "b"), new TestEntry(25L, (short) 0, "d")),
+               log.scan(16L, (short) 0));
+
+    // Entry with duplicate key in a newer segment wins
+    log.append(entries(new TestEntry(20L, (short) 0, "e")));
+    Assert.assertEquals(3, log.getSegmentCount());
+    assertScan(Arrays.asList(new TestEntry(10L, (short) 0, "a"), new TestEntry(15L, (short) 0, "c"),
+                             new TestEntry(20L, (short) 0, "e"), new TestEntry(25L, (short) 0, "d")),
+               log.scan(0L, (short) 0));
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    File dir = TEMP_FOLDER.newFolder();
+    SegmentMessageLog log = new SegmentMessageLog(dir, 4096);
+    List<TestEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      entries.add(new TestEntry(1000L + i, (short) 0, "m" + i));
+    }
+    log.append(new ArrayList<SegmentMessageLog.Entry>(entries).iterator());
+    int segmentCount = log.getSegmentCount();
+
+    log = new SegmentMessageLog(dir, 4096);
+    Assert.assertEquals(segmentCount, log.getSegmentCount());
+    assertScan(entries, log.scan(0L, (short) 0));
+
+    // Appending after reopen should continue after the recovered entries
+    TestEntry entry = new TestEntry(5000L, (short) 0, "last");
+    log.append(entries(entry));
+    entries.add(entry);
+    assertScan(entries, new SegmentMessageLog(dir, 4096).scan(0L, (short) 0));
+  }
+
+  @Test
+  public void testAbort() throws IOException {
+    SegmentMessageLog log = new SegmentMessageLog(TEMP_FOLDER.newFolder(), 1 << 20);
+    TestEntry entry = new TestEntry(10L, (short) 0, "a");
+    log.append(entries(entry));
+
+    // Failure in the middle of a batch should discard the whole batch
+    Iterator<SegmentMessageLog.Entry> failing = new Iterator<SegmentMessageLog.Entry>() {
+      private int count;
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public SegmentMessageLog.Entry next() {
+        if (count == 5) {
+          throw new IllegalStateException("Expected");
+        }
+        return new TestEntry(20L + count++, (short) 0, "b");
+      }
+    };
+    try {
+      log.append(failing);
+      Assert.fail("Expected exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertScan(Collections.singletonList(entry), log.scan(0L, (short) 0));
+
+    TestEntry next = new TestEntry(30L, (short) 0, "c");
+    log.append(entries(next));
+    assertScan(Arrays.asList(entry, next), log.scan(0L, (short) 0));
+  }
+
+  @Test
+  public void testAbortAcrossSegments() throws IOException {
+    SegmentMessageLog log = new SegmentMessageLog(TEMP_FOLDER.newFolder(), 1024);
+    TestEntry entry = new TestEntry(10L, (short) 0, "a");
+    log.append(entries(entry));
+
+    // A batch that rolls over to new segments is neither visible nor committed until the whole batch is written
+    Iterator<SegmentMessageLog.Entry> failing = new Iterator<SegmentMessageLog.Entry>() {
+      private int count;
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public SegmentMessageLog.Entry next() {
+        if (log.getSegmentCount() > 2) {
+          assertScan(Collections.singletonList(entry), log.scan(0L, (short) 0));
+          throw new IllegalStateException("Expected");
+        }
+        return new TestEntry(20L + count++, (short) 0, "b");
+      }
+    };
+    try {
+      log.append(failing);
+      Assert.fail("Expected exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertScan(Collections.singletonList(entry), log.scan(0L, (short) 0));
+  }
+
+  @Test
+  public void testRecoverUncommitted() throws IOException {
+    File file = new File(TEMP_FOLDER.newFolder(), "0" + MessageSegment.FILE_SUFFIX);
+    MessageSegment segment = MessageSegment.create(file, 0L, 1 << 20);
+    Assert.assertTrue(segment.append(10L, (short) 0, MessageSegment.TYPE_NON_TRANSACTIONAL, 0L, new byte[10]));
+    segment.commit();
+
+    // Records written to the file but not committed should not be recovered
+    Assert.assertTrue(segment.append(20L, (short) 0, MessageSegment.TYPE_NON_TRANSACTIONAL, 0L, new byte[10]));
+    segment.force();
+
+    MessageSegment recovered = MessageSegment.open(file, 0L);
+    Assert.assertEquals(10L, recovered.getLastTimestamp());
+    MessageSegment.Cursor cursor = recovered.seek(0L, (short) 0);
+    Assert.assertTrue(cursor.isValid());
+    Assert.assertEquals(10L, cursor.getTimestamp());
+    cursor.next();
+    Assert.assertFalse(cursor.isValid());
+
+    // Appending after recovery should overwrite the uncommitted record
+    Assert.assertTrue(recovered.append(15L, (short) 0, MessageSegment.TYPE_NON_TRANSACTIONAL, 0L, null));
+    recovered.commit();
+    cursor = MessageSegment.open(file, 0L).seek(0L, (short) 0);
+    Assert.assertEquals(10L, cursor.getTimestamp());
+    cursor.next();
+    Assert.assertEquals(15L, cursor.getTimestamp());
+    cursor.next();
+    Assert.assertFalse(cursor.isValid());
+  }
+
+  @Test
+  public void testPrune() throws IOException {
+    File dir = TEMP_FOLDER.newFolder();
+    SegmentMessageLog log = new SegmentMessageLog(dir, 1 << 20);
+    log.append(entries(new TestEntry(10L, (short) 0, "a")));
+    log.append(entries(new TestEntry(5L, (short) 0, "b")));
+    log.append(entries(new TestEntry(1L, (short) 0, "c"), new TestEntry(100L, (short) 0, "d")));
+    Assert.assertEquals(3, log.getSegmentCount());
+
+    Assert.assertEquals(2, log.prune(50L));
+    Assert.assertEquals(1, log.getSegmentCount());
+    Assert.assertEquals(1, dir.listFiles().length);
+    assertScan(Arrays.asList(new TestEntry(1L, (short) 0, "c"), new TestEntry(100L, (short) 0, "d")),
+               log.scan(0L, (short) 0));
+
+    Assert.assertEquals(0, log.prune(50L));
+  }
+
+  @Test
+  public void testUpdateTransaction() throws IOException {
+    File dir = TEMP_FOLDER.newFolder();
+    SegmentMessageLog log = new SegmentMessageLog(dir, 1 << 20);
+    log.append(entries(new TestEntry(10L, (short) 0, "a"),
+                       new TestEntry(10L, (short) 1, MessageSegment.TYPE_TRANSACTIONAL, 7L, "b"),
+                       new TestEntry(10L, (short) 2, MessageSegment.TYPE_PAYLOAD_REFERENCE, 7L, null)));
+
+    Iterator<MessageSegment.Cursor> cursors = log.scan(10L, (short) 1);
+    while (cursors.hasNext()) {
+      MessageSegment.Cursor cursor = cursors.next();
+      cursor.updateTransaction(-7L);
+      cursor.getSegment().force();
+    }
+
+    cursors = new SegmentMessageLog(dir, 1 << 20).scan(0L, (short) 0);
+    MessageSegment.Cursor cursor = cursors.next();
+    Assert.assertEquals(MessageSegment.TYPE_NON_TRANSACTIONAL, cursor.getType());
+    cursor = cursors.next();
+    Assert.assertEquals(MessageSegment.TYPE_TRANSACTIONAL, cursor.getType());
+    Assert.assertEquals(-7L, cursor.getTxWritePointer());
+    cursor = cursors.next();
+    Assert.assertEquals(MessageSegment.TYPE_PAYLOAD_REFERENCE, cursor.getType());
+    Assert.assertEquals(-7L, cursor.getTxWritePointer());
+    Assert.assertFalse(cursors.hasNext());
+  }
+
+  @Test
+  public void testLargePayload() throws IOException {
+    SegmentMessageLog log = new SegmentMessageLog(TEMP_FOLDER.newFolder(), 1024);
+    char[] chars = new char[5000];
+    Arrays.fill(chars, 'x');
+    List<TestEntry> entries = Arrays.asList(new TestEntry(1L, (short) 0, "small"),
+                                            new TestEntry(2L, (short) 0, new String(chars)),
+                                            new TestEntry(3L, (short) 0, "small"));
+    log.append(new ArrayList<SegmentMessageLog.Entry>(entries).iterator());
+    assertScan(entries, log.scan(0L, (short) 0));
+  }
+
+  private Iterator<SegmentMessageLog.Entry> entries(SegmentMessageLog.Entry... entries) {
+    return Arrays.asList(entries).iterator();
+  }
+
+  private void assertScan(List<TestEntry> expected, Iterator<MessageSegment.Cursor> cursors) {
+    for (TestEntry entry : expected) {
+      Assert.assertTrue(cursors.hasNext());
+      MessageSegment.Cursor cursor = cursors.next();
+      Assert.assertEquals(entry.getPublishTimestamp(), cursor.getTimestamp());
+      Assert.assertEquals(entry.getSequenceId(), cursor.getSequenceId());
+      Assert.assertEquals(entry.getType(), cursor.getType());
+      byte[] payload = new byte[cursor.getPayloadSize()];
+      cursor.getPayload(payload);
+      Assert.assertArrayEquals(entry.getPayload() == null ? new byte[0] : entry.getPayload(), payload);
+    }
+    Assert.assertFalse(cursors.hasNext());
+  }
+
+  /**
+   * A {@link SegmentMessageLog.Entry} for testing.
+   */
+  private static final class TestEntry implements SegmentMessageLog.Entry {
+
+    private final long publishTimestamp;
+    private final short sequenceId;
+    private final byte type;
+    private final long txWritePointer;
+    private final byte[] payload;
+
+    TestEntry(long publishTimestamp, short sequenceId, String payload) {
+      this(publishTimestamp, sequenceId, MessageSegment.TYPE_NON_TRANSACTIONAL, 0L, payload);
+    }
+
+    TestEntry(long publishTimestamp, short sequenceId, byte type, long txWritePointer, @Nullable String payload) {
+      this.publishTimestamp = publishTimestamp;
+      this.sequenceId = sequenceId;
+      this.type = type;
+      this.txWritePointer = txWritePointer;
+      this.payload = payload == null ? null : payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long getPublishTimestamp() {
+      return publishTimestamp;
+    }
+
+    @Override
+    public short getSequenceId() {
+      return sequenceId;
+    }
+
+    @Override
+    public byte getType() {
+      return type;
+    }
+
+    @Override
+    public long getTxWritePointer() {
+      return txWritePointer;
+    }
+
+    @Nullable
+    @Override
+    public byte[] getPayload() {
+      return payload;
+    }
+  }
+}
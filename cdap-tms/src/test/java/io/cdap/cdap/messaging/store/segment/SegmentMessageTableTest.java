@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.MessageTableTest;
+import io.cdap.cdap.messaging.store.MetadataTable;
+import io.cdap.cdap.messaging.store.TableFactory;
+import io.cdap.cdap.messaging.store.TestMessageEntry;
+import io.cdap.cdap.proto.id.TopicId;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link SegmentMessageTable}.
+ */
+public class SegmentMessageTableTest extends MessageTableTest {
+
+  @ClassRule
+  public static TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private static CConfiguration cConf;
+  private static TableFactory tableFactory;
+
+  @BeforeClass
+  public static void init() throws IOException {
+    cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, tmpFolder.newFolder().getAbsolutePath());
+    cConf.setInt(Constants.MessagingSystem.LOCAL_DATA_SEGMENT_SIZE_MB, 1);
+    tableFactory = new SegmentTableFactory(cConf);
+    tableFactory.init();
+  }
+
+  @Override
+  protected MessageTable getMessageTable(TopicMetadata topicMetadata) throws Exception {
+    return tableFactory.createMessageTable(topicMetadata);
+  }
+
+  @Override
+  protected MetadataTable getMetadataTable() throws Exception {
+    return tableFactory.createMetadataTable();
+  }
+
+  @Test
+  public void testReopen() throws Exception {
+    CConfiguration cConf = CConfiguration.copy(SegmentMessageTableTest.cConf);
+    cConf.set(Constants.MessagingSystem.LOCAL_DATA_DIR, tmpFolder.newFolder().getAbsolutePath());
+
+    TopicId topicId = new TopicId("default", "reopen");
+    int generation = 1;
+    TopicMetadata topicMetadata =
+      new TopicMetadata(topicId, Collections.singletonMap(TopicMetadata.GENERATION_KEY, String.valueOf(generation)));
+
+    // Write messages that span multiple segments
+    byte[] payload = new byte[1024];
+    int count = 3000;
+    SegmentTableFactory tableFactory = new SegmentTableFactory(cConf);
+    try (MessageTable table = tableFactory.createMessageTable(topicMetadata)) {
+      List<MessageTable.Entry> writes = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        writes.add(new TestMessageEntry(topicId, generation, 1000L + i, 0, null, payload));
+      }
+      table.store(writes.iterator());
+    }
+    Assert.assertTrue(tableFactory.getLog(topicId, generation).getSegmentCount() > 1);
+    tableFactory.close();
+
+    // Reopen and fetch from the middle
+    tableFactory = new SegmentTableFactory(cConf);
+    try (MessageTable table = tableFactory.createMessageTable(topicMetadata)) {
+      byte[] messageId = new byte[MessageId.RAW_ID_SIZE];
+      MessageId.putRawId(2000L, (short) 0, 0L, (short) 0, messageId, 0);
+      try (CloseableIterator<MessageTable.Entry> iter =
+             table.fetch(topicMetadata, new MessageId(messageId), false, Integer.MAX_VALUE, null)) {
+        long expected = 2001L;
+        while (iter.hasNext()) {
+          Assert.assertEquals(expected++, iter.next().getPublishTimestamp());
+        }
+        Assert.assertEquals(1000L + count, expected);
+      }
+    } finally {
+      tableFactory.close();
+    }
+  }
+}
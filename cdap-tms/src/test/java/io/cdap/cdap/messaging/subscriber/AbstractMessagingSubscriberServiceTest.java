@@ -0,0 +1,271 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.subscriber;
+
+import io.cdap.cdap.api.messaging.Message;
+import io.cdap.cdap.api.messaging.MessagingContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.common.service.RetryStrategies;
+import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.spi.data.StructuredTableContext;
+import io.cdap.cdap.spi.data.transaction.TransactionException;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Tests for the parallel processing of {@link AbstractMessagingSubscriberService}.
+ */
+public class AbstractMessagingSubscriberServiceTest {
+
+  private static final int PARALLELISM = 4;
+  private static final List<String> KEYS = Arrays.asList("a", "b", "c", "d", "e", "f");
+
+  private TestSubscriberService service;
+
+  @Before
+  public void beforeTest() {
+    service = new TestSubscriberService();
+  }
+
+  @After
+  public void afterTest() throws Exception {
+    service.doShutdown();
+  }
+
+  @Test
+  public void testOrderingWithinPartition() throws Exception {
+    List<ImmutablePair<String, String>> batch = createBatch(0, 100);
+    Assert.assertEquals(getMessageId(99), service.processMessages(batch.iterator()));
+
+    // All messages are processed exactly once, in the publishing order of each partition key
+    Assert.assertEquals(getExpectedMessages(batch), service.getProcessed());
+    Assert.assertEquals(getMessageId(99), service.getStoredMessageId());
+  }
+
+  @Test
+  public void testPartitionFailure() throws Exception {
+    List<ImmutablePair<String, String>> batch = createBatch(0, 50);
+    service.failKey("b", 1);
+
+    try {
+      service.processMessages(batch.iterator());
+      Assert.fail("Expected processing of partition of key b to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // The message id is not persisted, while other partitions may have been processed
+    Assert.assertNull(service.getStoredMessageId());
+    Assert.assertFalse(service.getProcessed().containsKey("b"));
+
+    // The whole batch is replayed, which reprocesses partitions that were processed before the failure
+    Assert.assertEquals(getMessageId(49), service.processMessages(batch.iterator()));
+    Assert.assertEquals(getMessageId(49), service.getStoredMessageId());
+
+    Map<String, List<String>> expected = getExpectedMessages(batch);
+    Map<String, List<String>> processed = service.getProcessed();
+    Assert.assertEquals(expected.keySet(), processed.keySet());
+    Assert.assertEquals(expected.get("b"), processed.get("b"));
+    for (String key : expected.keySet()) {
+      // Each partition is either processed once, or twice if it succeeded before the failure
+      List<String> messages = processed.get(key);
+      List<String> expectedMessages = expected.get(key);
+      if (messages.size() == expectedMessages.size()) {
+        Assert.assertEquals(expectedMessages, messages);
+      } else {
+        List<String> twice = new ArrayList<>(expectedMessages);
+        twice.addAll(expectedMessages);
+        Assert.assertEquals(twice, messages);
+      }
+    }
+  }
+
+  @Test
+  public void testOffsetPersistence() throws Exception {
+    // The message id is only persisted after all messages of the batch are processed
+    service.setOnStore(() -> Assert.assertEquals(service.getStoredMessageId() == null ? 30 : 50,
+                                                 service.getProcessedCount()));
+
+    Assert.assertEquals(getMessageId(29), service.processMessages(createBatch(0, 30).iterator()));
+    Assert.assertEquals(getMessageId(29), service.getStoredMessageId());
+
+    Assert.assertEquals(getMessageId(49), service.processMessages(createBatch(30, 20).iterator()));
+    Assert.assertEquals(getMessageId(49), service.getStoredMessageId());
+    Assert.assertEquals(2, service.getStoreCount());
+
+    // An empty batch doesn't change the persisted message id
+    Assert.assertNull(service.processMessages(Collections.emptyIterator()));
+    Assert.assertEquals(getMessageId(49), service.getStoredMessageId());
+    Assert.assertEquals(2, service.getStoreCount());
+  }
+
+  private static List<ImmutablePair<String, String>> createBatch(int start, int size) {
+    List<ImmutablePair<String, String>> batch = new ArrayList<>();
+    for (int i = start; i < start + size; i++) {
+      batch.add(ImmutablePair.of(getMessageId(i), KEYS.get(i % KEYS.size()) + ":" + i));
+    }
+    return batch;
+  }
+
+  private static Map<String, List<String>> getExpectedMessages(List<ImmutablePair<String, String>> batch) {
+    Map<String, List<String>> expected = new HashMap<>();
+    for (ImmutablePair<String, String> message : batch) {
+      expected.computeIfAbsent(getKey(message.getSecond()), k -> new ArrayList<>()).add(message.getSecond());
+    }
+    return expected;
+  }
+
+  private static String getMessageId(int i) {
+    return String.format("%05d", i);
+  }
+
+  private static String getKey(String message) {
+    return message.substring(0, message.indexOf(':'));
+  }
+
+  /**
+   * A {@link AbstractMessagingSubscriberService} that processes messages of the form {@code key:value} in parallel,
+   * partitioned by the key. Messages processed in a transaction are only recorded when the transaction completes.
+   */
+  private static final class TestSubscriberService extends AbstractMessagingSubscriberService<String> {
+
+    private final Map<String, List<String>> processed = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger storeCount = new AtomicInteger();
+    private volatile String storedMessageId;
+    private volatile Runnable onStore = () -> { };
+
+    TestSubscriberService() {
+      super(NamespaceId.SYSTEM.topic("test"), 100, 30, 100L,
+            RetryStrategies.noRetry(), new NoopMetricsContext());
+    }
+
+    void failKey(String key, int times) {
+      failures.put(key, new AtomicInteger(times));
+    }
+
+    void setOnStore(Runnable onStore) {
+      this.onStore = onStore;
+    }
+
+    Map<String, List<String>> getProcessed() {
+      return new HashMap<>(processed);
+    }
+
+    int getProcessedCount() {
+      return processed.values().stream().mapToInt(List::size).sum();
+    }
+
+    int getStoreCount() {
+      return storeCount.get();
+    }
+
+    @Nullable
+    String getStoredMessageId() {
+      return storedMessageId;
+    }
+
+    @Override
+    protected TransactionRunner getTransactionRunner() {
+      return runnable -> {
+        try {
+          runnable.run(null);
+        } catch (Exception e) {
+          throw new TransactionException("Failed to run transaction", e);
+        }
+      };
+    }
+
+    @Nullable
+    @Override
+    protected String loadMessageId(StructuredTableContext context) {
+      return storedMessageId;
+    }
+
+    @Override
+    protected void storeMessageId(StructuredTableContext context, String messageId) {
+      onStore.run();
+      storeCount.incrementAndGet();
+      storedMessageId = messageId;
+    }
+
+    @Override
+    protected void processMessages(StructuredTableContext structuredTableContext,
+                                   Iterator<ImmutablePair<String, String>> messages) throws Exception {
+      Map<String, List<String>> txProcessed = new HashMap<>();
+      while (messages.hasNext()) {
+        String message = messages.next().getSecond();
+        String key = getKey(message);
+
+        // Messages of the same key must never be processed concurrently
+        if (!txProcessed.containsKey(key) && !active.add(key)) {
+          throw new AssertionError("Messages of key " + key + " are processed concurrently");
+        }
+        txProcessed.computeIfAbsent(key, k -> new ArrayList<>()).add(message);
+        TimeUnit.MICROSECONDS.sleep(100);
+
+        AtomicInteger failure = failures.get(key);
+        if (failure != null && failure.getAndDecrement() > 0) {
+          active.removeAll(txProcessed.keySet());
+          throw new IllegalStateException("Failed to process message " + message);
+        }
+      }
+      active.removeAll(txProcessed.keySet());
+
+      // Commit
+      txProcessed.forEach((key, values) -> processed.computeIfAbsent(key, k -> new ArrayList<>()).addAll(values));
+    }
+
+    @Override
+    protected int getProcessingParallelism() {
+      return PARALLELISM;
+    }
+
+    @Override
+    protected Object getPartitionKey(ImmutablePair<String, String> message) {
+      return getKey(message.getSecond());
+    }
+
+    @Override
+    protected MessagingContext getMessagingContext() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected String decodeMessage(Message message) {
+      return message.getPayloadAsString();
+    }
+  }
+}
@@ -16,6 +16,9 @@
 
 package io.cdap.cdap.logging.appender;
 
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.common.service.AbstractRetryableScheduledService;
@@ -28,9 +31,15 @@ import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class that continuously serializes logs from a queue and publishes them.
+ * <p/>
+ * Publish batches are bounded by the queue size and by a byte limit. The byte limit adapts to the publish latency:
+ * it is halved whenever a publish takes longer than the target latency, and doubled, up to the configured maximum,
+ * when publishing is fast again. When the queue is full, adding a message waits for a bounded time before dropping
+ * the oldest message, so that logging threads never stall for long on a slow publisher.
  *
  * @param <MESSAGE> the type of message used in the in-memory buffer, before publishing
  */
@@ -39,17 +48,53 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
   private static final Logger OUTAGE_LOG = Loggers.sampling(
     LOG, LogSamplers.all(LogSamplers.skipFirstN(5), LogSamplers.limitRate(TimeUnit.SECONDS.toMillis(30))));
 
+  private static final long MIN_BATCH_BYTES = 64 * 1024;
+
   private final int queueSize;
+  private final long maxBatchBytes;
+  private final long targetPublishLatencyMillis;
+  private final long offerTimeoutMillis;
   private final BlockingQueue<LogMessage> messageQueue;
   private final List<MESSAGE> buffer;
+  private final AtomicLong droppedCount;
   private volatile boolean failed;
   private volatile Thread publishThread;
+  private volatile MetricsContext metricsContext;
+  private long batchBytes;
 
   public AbstractLogPublisher(int queueSize, RetryStrategy retryStrategy) {
+    this(queueSize, Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.SECONDS.toMillis(1), retryStrategy);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param queueSize the maximum number of messages buffered in memory
+   * @param maxBatchBytes the maximum number of bytes, as returned by {@link #getMessageSize}, to publish in one batch
+   * @param targetPublishLatencyMillis the publish latency above which the batch byte limit is reduced
+   * @param offerTimeoutMillis the maximum time to wait for space in a full queue before dropping the oldest message
+   * @param retryStrategy the {@link RetryStrategy} for publish failures
+   */
+  public AbstractLogPublisher(int queueSize, long maxBatchBytes, long targetPublishLatencyMillis,
+                              long offerTimeoutMillis, RetryStrategy retryStrategy) {
     super(retryStrategy);
     this.queueSize = queueSize;
+    this.maxBatchBytes = maxBatchBytes;
+    this.targetPublishLatencyMillis = targetPublishLatencyMillis;
+    this.offerTimeoutMillis = offerTimeoutMillis;
     this.messageQueue = new ArrayBlockingQueue<>(queueSize);
     this.buffer = new ArrayList<>(queueSize);
+    this.droppedCount = new AtomicLong();
+    this.metricsContext = new NoopMetricsContext();
+    this.batchBytes = maxBatchBytes;
+  }
+
+  /**
+   * Sets the {@link MetricsContext} for emitting the queue size, the number of dropped messages and the
+   * publish latency.
+   */
+  public void setMetricsContext(MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
   }
 
   /**
@@ -68,16 +113,26 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
    */
   protected abstract void publish(List<MESSAGE> logMessages) throws Exception;
 
+  /**
+   * Returns the size in bytes of the given message, which is used to bound the size of a publish batch.
+   * By default it returns {@code 0}, meaning batches are only bounded by the queue size.
+   */
+  protected int getMessageSize(MESSAGE message) {
+    return 0;
+  }
+
   /**
    * Adds a log message for publishing.
    *
    * @param logMessage the log message to add for publishing
    */
   public final void addMessage(LogMessage logMessage) throws InterruptedException {
-    // Try to insert new logs, but don't block for longer then a second
+    // Try to insert new logs, but don't block for longer then the offer timeout
     // If it takes too long, start dropping old logs
-    while (!offerUninterruptibly(messageQueue, logMessage, 1, TimeUnit.SECONDS)) {
-      messageQueue.poll();
+    while (!offerUninterruptibly(messageQueue, logMessage, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+      if (messageQueue.poll() != null) {
+        droppedCount.incrementAndGet();
+      }
     }
   }
 
@@ -169,7 +224,12 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
    * @throws InterruptedException if the thread is interrupted
    */
   private void publishMessages(List<MESSAGE> buffer, boolean blockForMessage) throws Exception {
-    int maxBufferSize = queueSize;
+    // On retry the buffer still has the messages of the failed batch
+    int maxBufferSize = queueSize - buffer.size();
+    long bytes = 0L;
+    for (MESSAGE message : buffer) {
+      bytes += getMessageSize(message);
+    }
 
     if (blockForMessage) {
       publishThread = Thread.currentThread();
@@ -177,7 +237,9 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
         if (isRunning()) {
           LogMessage logMessage = messageQueue.poll(10, TimeUnit.SECONDS);
           if (logMessage != null) {
-            buffer.add(createMessage(logMessage));
+            MESSAGE message = createMessage(logMessage);
+            buffer.add(message);
+            bytes += getMessageSize(message);
             maxBufferSize--;
           }
         }
@@ -189,17 +251,44 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
       }
     }
 
-    while (maxBufferSize > 0) {
+    while (maxBufferSize > 0 && bytes < batchBytes) {
       // Poll for more messages
-      LogMessage message = messageQueue.poll();
-      if (message == null) {
+      LogMessage logMessage = messageQueue.poll();
+      if (logMessage == null) {
         break;
       }
-      buffer.add(createMessage(message));
+      MESSAGE message = createMessage(logMessage);
+      buffer.add(message);
+      bytes += getMessageSize(message);
       maxBufferSize--;
     }
 
     // Publish all messages
+    long startTime = System.nanoTime();
     publish(buffer);
+    long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    adjustBatchBytes(latencyMillis);
+    emitMetrics(latencyMillis);
+  }
+
+  /**
+   * Adjusts the batch byte limit based on the latency of the last publish.
+   */
+  private void adjustBatchBytes(long latencyMillis) {
+    if (latencyMillis > targetPublishLatencyMillis) {
+      batchBytes = Math.max(Math.min(MIN_BATCH_BYTES, maxBatchBytes), batchBytes / 2);
+    } else if (latencyMillis < targetPublishLatencyMillis / 2 && batchBytes < maxBatchBytes) {
+      batchBytes = batchBytes > maxBatchBytes / 2 ? maxBatchBytes : batchBytes * 2;
+    }
+  }
+
+  private void emitMetrics(long latencyMillis) {
+    MetricsContext metricsContext = this.metricsContext;
+    metricsContext.gauge(Constants.Metrics.Name.Log.APPENDER_QUEUE_SIZE, messageQueue.size());
+    metricsContext.gauge(Constants.Metrics.Name.Log.APPENDER_PUBLISH_LATENCY, latencyMillis);
+    long dropped = droppedCount.getAndSet(0L);
+    if (dropped > 0) {
+      metricsContext.increment(Constants.Metrics.Name.Log.APPENDER_DROPPED_COUNT, dropped);
+    }
   }
 }
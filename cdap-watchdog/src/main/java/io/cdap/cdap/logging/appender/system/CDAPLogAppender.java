@@ -31,6 +31,8 @@ import io.cdap.cdap.logging.clean.FileMetadataCleaner;
 import io.cdap.cdap.logging.clean.LogCleaner;
 import io.cdap.cdap.logging.meta.FileMetaDataWriter;
 import io.cdap.cdap.proto.id.NamespaceId;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.file.CodecFactory;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +51,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(CDAPLogAppender.class);
+  private static final String DEFAULT_CODEC = "deflate";
   private static final Set<String> PROGRAM_ID_KEYS = ImmutableSet.of(Constants.Logging.TAG_MAP_REDUCE_JOB_ID,
                                                                      Constants.Logging.TAG_SPARK_JOB_ID,
                                                                      Constants.Logging.TAG_USER_SERVICE_ID,
@@ -59,6 +62,7 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
   private String dirPermissions;
   private String filePermissions;
   private int syncIntervalBytes;
+  private String codec = DEFAULT_CODEC;
   private long maxFileLifetimeMs;
   private long maxFileSizeInBytes;
   private ScheduledExecutorService scheduledExecutorService;
@@ -91,6 +95,13 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
     this.syncIntervalBytes = syncIntervalBytes;
   }
 
+  /**
+   * Sets the avro file compression codec. This is called by the logback framework.
+   */
+  public void setCodec(String codec) {
+    this.codec = codec;
+  }
+
   /**
    * Sets the maximum lifetime of a file. This is called by the logback framework.
    */
@@ -134,6 +145,12 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
     Preconditions.checkState(dirPermissions != null, "Property dirPermissions cannot be null");
     Preconditions.checkState(filePermissions != null, "Property filePermissions cannot be null");
     Preconditions.checkState(syncIntervalBytes > 0, "Property syncIntervalBytes must be > 0.");
+    Preconditions.checkState(codec != null && !codec.isEmpty(), "Property codec cannot be empty");
+    try {
+      CodecFactory.fromString(codec);
+    } catch (AvroRuntimeException e) {
+      throw new IllegalStateException("Unsupported codec " + codec + " for property codec", e);
+    }
     Preconditions.checkState(maxFileLifetimeMs > 0, "Property maxFileLifetimeMs must be > 0");
     Preconditions.checkState(maxFileSizeInBytes > 0, "Property maxFileSizeInBytes must be > 0");
     Preconditions.checkState(fileRetentionDurationDays > 0, "Property fileRetentionDurationDays must be > 0");
@@ -143,7 +160,7 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
     if (context instanceof AppenderContext) {
       AppenderContext context = (AppenderContext) this.context;
       logFileManager = new LogFileManager(dirPermissions, filePermissions, maxFileLifetimeMs, maxFileSizeInBytes,
-                                          syncIntervalBytes,
+                                          syncIntervalBytes, codec,
                                           new FileMetaDataWriter(context.getTransactionRunner()),
                                           context.getLocationFactory());
       if (context.getInstanceId() == 0) {
@@ -219,12 +236,22 @@ public class CDAPLogAppender extends AppenderBase<ILoggingEvent> implements Flus
       if (logFileManager != null) {
         logFileManager.close();
       }
-      scheduledExecutorService.shutdownNow();
+      if (scheduledExecutorService != null) {
+        scheduledExecutorService.shutdownNow();
+      }
     } finally {
       super.stop();
     }
   }
 
+  /**
+   * Returns {@code true} if this appender has scheduled the log clean up, which only happens for instance {@code 0}.
+   */
+  @VisibleForTesting
+  boolean isLogCleanupScheduled() {
+    return scheduledExecutorService != null;
+  }
+
   @VisibleForTesting
   LogPathIdentifier getLoggingPath(Map<String, String> propertyMap) throws IllegalArgumentException {
     // from the property map, get namespace values
@@ -49,6 +49,7 @@ final class LogFileManager implements Flushable, Syncable {
   private final String dirPermissions;
   private final String filePermissions;
   private final int syncIntervalBytes;
+  private final String codec;
   private final long maxLifetimeMillis;
   private final long maxFileSizeInBytes;
   private final Map<LogPathIdentifier, LogFileOutputStream> outputStreamMap;
@@ -56,13 +57,14 @@ final class LogFileManager implements Flushable, Syncable {
   private final FileMetaDataWriter fileMetaDataWriter;
 
   LogFileManager(String dirPermissions, String filePermissions,
-                 long maxFileLifetimeMs, long maxFileSizeInBytes, int syncIntervalBytes,
+                 long maxFileLifetimeMs, long maxFileSizeInBytes, int syncIntervalBytes, String codec,
                  FileMetaDataWriter fileMetaDataWriter, LocationFactory locationFactory) {
     this.dirPermissions = dirPermissions;
     this.filePermissions = filePermissions;
     this.maxLifetimeMillis = maxFileLifetimeMs;
     this.maxFileSizeInBytes = maxFileSizeInBytes;
     this.syncIntervalBytes = syncIntervalBytes;
+    this.codec = codec;
     this.fileMetaDataWriter = fileMetaDataWriter;
     this.logsDirectoryLocation = locationFactory.create("logs");
     this.outputStreamMap = new HashMap<>();
@@ -92,7 +94,7 @@ final class LogFileManager implements Flushable, Syncable {
                                                  long timestamp) throws IOException {
     TimeStampLocation location = createLocation(identifier);
     LogFileOutputStream logFileOutputStream = new LogFileOutputStream(
-      location.getLocation(), filePermissions, syncIntervalBytes, location.getTimeStamp(), new Closeable() {
+      location.getLocation(), filePermissions, syncIntervalBytes, codec, location.getTimeStamp(), new Closeable() {
       @Override
       public void close() throws IOException {
         outputStreamMap.remove(identifier);
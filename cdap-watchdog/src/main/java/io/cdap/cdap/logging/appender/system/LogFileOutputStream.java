@@ -22,14 +22,19 @@ import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.io.Syncable;
 import io.cdap.cdap.logging.serialize.LoggingEvent;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import io.cdap.cdap.logging.write.LogFileIndex;
 import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
@@ -39,6 +44,10 @@ import java.nio.ByteBuffer;
 /**
  * Represents output stream for a log file.
  *
+ * Events are written as Avro blocks of about the sync interval size, compressed with the configured codec.
+ * The position, the first event timestamp and a summary of the events of each block are recorded in a
+ * {@link LogFileIndex}, which is written next to the log file when it is closed.
+ *
  * Since there is no way to check the state of the underlying file on an exception,
  * all methods of this class assume that the file state is bad on any exception and close the file.
  */
@@ -50,27 +59,44 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
+  private final String filePermissions;
+  private final int syncIntervalBytes;
+  private final LogFileIndex.Builder indexBuilder;
+  private final GenericDatumWriter<GenericRecord> datumWriter;
+  private final EncodeBuffer encodeBuffer;
 
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
+  private BinaryEncoder encoder;
   private long fileSize;
+  // Position of the current block and the number of bytes appended to it
+  private long blockPosition;
+  private long blockBytes;
+  private boolean blockIndexed;
 
-  LogFileOutputStream(Location location, String filePermissions,
-                      int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
+  LogFileOutputStream(Location location, String filePermissions, int syncIntervalBytes, String codec,
+                      long createTime, Closeable closeable) throws IOException {
     this.location = location;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
+    this.filePermissions = filePermissions;
+    this.syncIntervalBytes = syncIntervalBytes;
+    this.indexBuilder = LogFileIndex.builder();
+    this.encodeBuffer = new EncodeBuffer();
 
     Schema schema = serializer.getAvroSchema();
+    this.datumWriter = new GenericDatumWriter<>(schema);
     try {
       this.outputStream =
         filePermissions.isEmpty() ? location.getOutputStream() : location.getOutputStream(filePermissions);
       this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+      this.dataFileWriter.setCodec(CodecFactory.fromString(codec));
       this.dataFileWriter.create(schema, outputStream);
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
       this.createTime = createTime;
       this.fileSize = 0;
-    } catch (IOException e) {
+      this.blockPosition = dataFileWriter.sync();
+    } catch (IOException | RuntimeException e) {
       Closeables.closeQuietly(outputStream);
       Closeables.closeQuietly(dataFileWriter);
       throw e;
@@ -82,18 +108,37 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   void append(ILoggingEvent event) throws IOException {
+    if (!blockIndexed) {
+      indexBuilder.addBlock(event.getTimeStamp(), blockPosition);
+      blockIndexed = true;
+    }
+    indexBuilder.addEvent(event);
+
     // If the event is already a LoggingEvent, we don't need to re-encode.
-    if (event instanceof LoggingEvent) {
-      ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
-      if (encoded != null) {
-        // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
-        dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
+    ByteBuffer encoded = event instanceof LoggingEvent ? ((LoggingEvent) event).getEncoded() : null;
+    if (encoded != null) {
+      blockBytes += encoded.remaining();
+      // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
+      dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
+    } else {
+      // Encode the event first to know the size of the block
+      encodeBuffer.reset();
+      encoder = EncoderFactory.get().directBinaryEncoder(encodeBuffer, encoder);
+      if (event instanceof LoggingEvent) {
+        datumWriter.write(((LoggingEvent) event).getRecord(), encoder);
       } else {
-        dataFileWriter.append(((LoggingEvent) event).getRecord());
+        serializer.encode(event, encoder);
       }
-      return;
+      blockBytes += encodeBuffer.size();
+      // The DataFileWriter copies the bytes to the block, hence the encode buffer can be appended without a copy
+      dataFileWriter.appendEncoded(encodeBuffer.toByteBuffer());
+    }
+
+    // End the block explicitly so that the block position is known for the index.
+    // Avro would also end the block at the same size, in which case this call won't write anything.
+    if (blockBytes >= syncIntervalBytes) {
+      startNewBlock(dataFileWriter.sync());
     }
-    dataFileWriter.append(serializer.toGenericRecord(event));
   }
 
   /**
@@ -115,6 +160,9 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void flush() throws IOException {
     fileSize = dataFileWriter.sync();
+    if (fileSize != blockPosition) {
+      startNewBlock(fileSize);
+    }
   }
 
   @Override
@@ -132,8 +180,37 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
     LOG.trace("Closing file {}", location);
     try {
       dataFileWriter.close();
+      writeIndex();
     } finally {
       closeable.close();
     }
   }
+
+  private void startNewBlock(long position) {
+    blockPosition = position;
+    blockBytes = 0;
+    blockIndexed = false;
+  }
+
+  /**
+   * Writes the index file. Failure is only logged, since the log file can still be read without the index.
+   */
+  private void writeIndex() {
+    try {
+      indexBuilder.write(location, filePermissions);
+    } catch (IOException e) {
+      LOG.warn("Failed to write index for log file {}", location, e);
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes its content without copying. The content is only valid until the
+   * next {@link #reset()}, which reuses the same buffer.
+   */
+  private static final class EncodeBuffer extends ByteArrayOutputStream {
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+  }
 }
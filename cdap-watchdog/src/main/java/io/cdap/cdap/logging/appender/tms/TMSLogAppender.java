@@ -17,11 +17,13 @@
 package io.cdap.cdap.logging.appender.tms;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.messaging.MessagePublisher;
 import io.cdap.cdap.api.messaging.MessagingContext;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.security.AccessException;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -45,15 +47,19 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Log appender that publishes log messages to TMS.
+ * Log appender that publishes log messages to TMS. Messages are published in batches sized by bytes and adjusted
+ * to the publish latency, see {@link AbstractLogPublisher}. If a {@link MetricsCollectionService} is available,
+ * the queue size, the number of dropped messages and the publish latency are emitted as system metrics.
  */
 public class TMSLogAppender extends LogAppender {
 
   private static final String APPENDER_NAME = "TMSLogAppender";
+  private static final String METRICS_COMPONENT = "log.appender";
 
   private final CConfiguration cConf;
   private final MessagingService messagingService;
   private final AtomicReference<TMSLogPublisher> tmsLogPublisher;
+  private MetricsCollectionService metricsCollectionService;
 
   @Inject
   TMSLogAppender(CConfiguration cConf, MessagingService messagingService) {
@@ -63,9 +69,22 @@ public class TMSLogAppender extends LogAppender {
     this.tmsLogPublisher = new AtomicReference<>();
   }
 
+  /**
+   * Optional injection of {@link MetricsCollectionService} for emitting metrics about the publishing of logs.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsCollectionService = metricsCollectionService;
+  }
+
   @Override
   public void start() {
     TMSLogPublisher publisher = new TMSLogPublisher(cConf, messagingService);
+    if (metricsCollectionService != null) {
+      publisher.setMetricsContext(metricsCollectionService.getContext(ImmutableMap.of(
+        Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+        Constants.Metrics.Tag.COMPONENT, METRICS_COMPONENT)));
+    }
     Optional.ofNullable(tmsLogPublisher.getAndSet(publisher)).ifPresent(TMSLogPublisher::stopAndWait);
     publisher.startAndWait();
     addInfo("Successfully started " + APPENDER_NAME);
@@ -111,6 +130,9 @@ public class TMSLogAppender extends LogAppender {
 
     private TMSLogPublisher(CConfiguration cConf, MessagingService messagingService) {
       super(cConf.getInt(Constants.Logging.APPENDER_QUEUE_SIZE, 512),
+            cConf.getLong(Constants.Logging.PUBLISH_BATCH_MAX_BYTES, 1024 * 1024),
+            cConf.getLong(Constants.Logging.PUBLISH_TARGET_LATENCY_MS, 500),
+            cConf.getLong(Constants.Logging.APPENDER_QUEUE_OFFER_TIMEOUT_MS, 100L),
             RetryStrategies.fromConfiguration(cConf, "system.log.process."));
       this.topicPrefix = cConf.get(Constants.Logging.TMS_TOPIC_PREFIX);
       this.numPartitions = cConf.getInt(Constants.Logging.NUM_PARTITIONS);
@@ -127,6 +149,11 @@ public class TMSLogAppender extends LogAppender {
       return new AbstractMap.SimpleEntry<>(partition, loggingEventSerializer.toBytes(logMessage));
     }
 
+    @Override
+    protected int getMessageSize(Map.Entry<Integer, byte[]> message) {
+      return message.getValue().length;
+    }
+
     @Override
     protected void publish(List<Map.Entry<Integer, byte[]>> logMessages)
       throws TopicNotFoundException, IOException, AccessException {
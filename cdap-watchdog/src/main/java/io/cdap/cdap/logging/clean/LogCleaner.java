@@ -17,6 +17,8 @@
 package io.cdap.cdap.logging.clean;
 
 import io.cdap.cdap.common.io.Locations;
+import io.cdap.cdap.logging.write.LogFileIndex;
+import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,13 +57,16 @@ public class LogCleaner implements Runnable {
     int failureCount = 0;
     for (FileMetadataCleaner.DeletedEntry deletedEntry : deleteEntries) {
       try {
-        boolean status = Locations.getLocationFromAbsolutePath(locationFactory, deletedEntry.getPath()).delete();
+        Location location = Locations.getLocationFromAbsolutePath(locationFactory, deletedEntry.getPath());
+        boolean status = location.delete();
         if (!status) {
           failureCount++;
           LOG.warn("File {} delete failed", deletedEntry.getPath());
         } else {
           deleteCount++;
           LOG.trace("File {} deleted by log cleanup", deletedEntry.getPath());
+          // Log files written by older versions or not closed properly don't have an index
+          Locations.deleteQuietly(LogFileIndex.getIndexLocation(location));
         }
       } catch (IOException e) {
         LOG.warn("Exception while deleting file {}", deletedEntry.getPath(), e);
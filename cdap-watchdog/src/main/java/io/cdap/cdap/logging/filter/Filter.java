@@ -24,6 +24,14 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 public interface Filter {
   boolean match(ILoggingEvent event);
 
+  /**
+   * Returns {@code false} if none of the log events summarized by the given {@link LogEventSummary} can match
+   * this filter. The default implementation always returns {@code true}.
+   */
+  default boolean mayMatch(LogEventSummary summary) {
+    return true;
+  }
+
   Filter EMPTY_FILTER = new EmptyFilter();
 
   /**
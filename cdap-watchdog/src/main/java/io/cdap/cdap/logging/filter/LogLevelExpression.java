@@ -34,6 +34,11 @@ public class LogLevelExpression implements Filter {
     return event.getLevel().isGreaterOrEqual(getLevel());
   }
 
+  @Override
+  public boolean mayMatch(LogEventSummary summary) {
+    return summary.mayContainLevel(getLevel());
+  }
+
   public Level getLevel() {
     return level;
   }
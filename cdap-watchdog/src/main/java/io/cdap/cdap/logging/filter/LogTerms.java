@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.filter;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * Helper methods to break log events into terms for searching. A term is a lower case sequence of letters or digits,
+ * where each character is converted with {@link Character#toLowerCase(char)}. The terms of a log event come from the
+ * formatted message, and the class names and messages of the throwable and its causes.
+ */
+public final class LogTerms {
+
+  /**
+   * Terms longer than this are not indexed.
+   */
+  public static final int MAX_INDEX_TERM_LENGTH = 64;
+
+  private LogTerms() {
+    // no-op
+  }
+
+  /**
+   * Returns the set of terms of the given log event.
+   */
+  public static Set<String> getTerms(ILoggingEvent event) {
+    Set<String> terms = new HashSet<>();
+    addTerms(event.getFormattedMessage(), terms);
+
+    IThrowableProxy throwable = event.getThrowableProxy();
+    // Limit the depth to guard against cycles in the cause chain
+    for (int depth = 0; throwable != null && depth < 16; depth++) {
+      addTerms(throwable.getClassName(), terms);
+      addTerms(throwable.getMessage(), terms);
+      throwable = throwable.getCause();
+    }
+    return terms;
+  }
+
+  /**
+   * Calls the given consumer with the hash of each indexed term of the given log event, which is the same as the
+   * {@link String#hashCode()} of the term. Unlike {@link #getTerms(ILoggingEvent)}, no object is created for
+   * extracting the terms, hence it is suitable for indexing every log event. A term can be reported more than once.
+   */
+  public static void forEachIndexedTermHash(ILoggingEvent event, IntConsumer consumer) {
+    forEachIndexedTermHash(event.getFormattedMessage(), consumer);
+
+    IThrowableProxy throwable = event.getThrowableProxy();
+    // Limit the depth to guard against cycles in the cause chain
+    for (int depth = 0; throwable != null && depth < 16; depth++) {
+      forEachIndexedTermHash(throwable.getClassName(), consumer);
+      forEachIndexedTermHash(throwable.getMessage(), consumer);
+      throwable = throwable.getCause();
+    }
+  }
+
+  /**
+   * Returns the set of terms in the given text.
+   */
+  public static Set<String> getTerms(@Nullable String text) {
+    Set<String> terms = new HashSet<>();
+    addTerms(text, terms);
+    return terms;
+  }
+
+  /**
+   * Returns {@code true} if the given term should be indexed. Numbers and very long terms are not indexed, since
+   * they are mostly unique and would only inflate the index.
+   */
+  public static boolean isIndexed(String term) {
+    if (term.length() > MAX_INDEX_TERM_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < term.length(); i++) {
+      if (!Character.isDigit(term.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void addTerms(@Nullable String text, Set<String> terms) {
+    if (text == null) {
+      return;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (termChar && start < 0) {
+        start = i;
+      } else if (!termChar && start >= 0) {
+        StringBuilder term = new StringBuilder(i - start);
+        for (int j = start; j < i; j++) {
+          term.append(Character.toLowerCase(text.charAt(j)));
+        }
+        terms.add(term.toString());
+        start = -1;
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #addTerms(String, Set)} and {@link #isIndexed(String)}, but computes the hash of each indexed term
+   * while scanning the text.
+   */
+  private static void forEachIndexedTermHash(@Nullable String text, IntConsumer consumer) {
+    if (text == null) {
+      return;
+    }
+    int length = 0;
+    int hash = 0;
+    boolean digitsOnly = true;
+    for (int i = 0; i <= text.length(); i++) {
+      char c = i < text.length() ? text.charAt(i) : ' ';
+      if (Character.isLetterOrDigit(c)) {
+        c = Character.toLowerCase(c);
+        hash = 31 * hash + c;
+        digitsOnly &= Character.isDigit(c);
+        length++;
+      } else if (length > 0) {
+        if (!digitsOnly && length <= MAX_INDEX_TERM_LENGTH) {
+          consumer.accept(hash);
+        }
+        length = 0;
+        hash = 0;
+        digitsOnly = true;
+      }
+    }
+  }
+}
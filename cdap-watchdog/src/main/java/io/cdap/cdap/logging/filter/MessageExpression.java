@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.filter;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.google.common.base.Objects;
+
+import java.util.Set;
+
+/**
+ * Represents an expression that matches log events containing all the terms of a text, ignoring case.
+ * See {@link LogTerms} for how terms are extracted.
+ */
+public class MessageExpression implements Filter {
+  private final String text;
+  private final Set<String> terms;
+
+  public MessageExpression(String text) {
+    this.text = text;
+    this.terms = LogTerms.getTerms(text);
+  }
+
+  @Override
+  public boolean match(ILoggingEvent event) {
+    return terms.isEmpty() || LogTerms.getTerms(event).containsAll(terms);
+  }
+
+  @Override
+  public boolean mayMatch(LogEventSummary summary) {
+    for (String term : terms) {
+      if (!summary.mayContainTerm(term)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("text", text)
+      .toString();
+  }
+}
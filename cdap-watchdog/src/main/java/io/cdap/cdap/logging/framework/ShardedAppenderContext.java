@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.framework;
+
+import io.cdap.cdap.api.logging.AppenderContext;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import org.apache.twill.filesystem.LocationFactory;
+
+/**
+ * A {@link AppenderContext} for one of the shards of a log framework instance, when each instance runs multiple
+ * copies of the same log pipeline. Each shard is exposed as a separate instance, so that appenders that do work
+ * once per instance, or write to files named by the instance id, don't conflict with the other shards.
+ * Shard {@code 0} of instance {@code 0} has the instance id {@code 0}.
+ */
+public class ShardedAppenderContext extends AppenderContext {
+
+  private final AppenderContext context;
+  private final int shard;
+  private final int numShards;
+
+  /**
+   * Creates a context for the given shard.
+   *
+   * @param context the {@link AppenderContext} of the log framework instance
+   * @param shard the shard id, which is in the range of {@code [0, numShards)}
+   * @param numShards number of shards per log framework instance
+   */
+  public ShardedAppenderContext(AppenderContext context, int shard, int numShards) {
+    if (shard < 0 || shard >= numShards) {
+      throw new IllegalArgumentException("Shard " + shard + " is not in the range of [0, " + numShards + ")");
+    }
+    this.context = context;
+    this.shard = shard;
+    this.numShards = numShards;
+  }
+
+  @Override
+  public int getInstanceId() {
+    return context.getInstanceId() * numShards + shard;
+  }
+
+  @Override
+  public int getInstanceCount() {
+    return context.getInstanceCount() * numShards;
+  }
+
+  @Override
+  public TransactionRunner getTransactionRunner() {
+    return context.getTransactionRunner();
+  }
+
+  @Override
+  public LocationFactory getLocationFactory() {
+    return context.getLocationFactory();
+  }
+
+  @Override
+  public MetricsContext getMetricsContext() {
+    return context.getMetricsContext();
+  }
+}
@@ -21,8 +21,12 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.logging.LoggingContext;
 import io.cdap.cdap.internal.app.store.RunRecordDetail;
 import io.cdap.cdap.logging.LoggingConfiguration;
+import io.cdap.cdap.logging.filter.AndFilter;
 import io.cdap.cdap.logging.filter.Filter;
 import io.cdap.cdap.logging.filter.FilterParser;
+import io.cdap.cdap.logging.filter.LogLevelExpression;
+import io.cdap.cdap.logging.filter.LoggerExpression;
+import io.cdap.cdap.logging.filter.MessageExpression;
 import io.cdap.cdap.logging.read.Callback;
 import io.cdap.cdap.logging.read.LogEvent;
 import io.cdap.cdap.logging.read.LogOffset;
@@ -34,6 +38,7 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -112,17 +117,43 @@ public abstract class AbstractLogHttpHandler extends AbstractHttpHandler {
                         String format, List<String> fieldsToSuppress) {
     try {
       Filter filter = FilterParser.parse(filterStr);
-      Callback logCallback = getNextOrPrevLogsCallback(format, responder, fieldsToSuppress, escape);
-      LogOffset logOffset = FormattedTextLogEvent.parseLogOffset(fromOffsetStr);
-      ReadRange readRange = ReadRange.createFromRange(logOffset);
-      readRange = adjustReadRange(readRange, runRecord, true);
-      try {
-        logReader.getLogNext(loggingContext, readRange, maxEvents, filter, logCallback);
-      } catch (Exception ex) {
-        LOG.debug("Exception while reading logs for logging context {}", loggingContext, ex);
-      } finally {
-        logCallback.close();
+      readNext(logReader, responder, loggingContext, maxEvents, fromOffsetStr, escape, filter, runRecord,
+               format, fieldsToSuppress);
+    } catch (SecurityException e) {
+      responder.sendStatus(HttpResponseStatus.UNAUTHORIZED);
+    } catch (IllegalArgumentException e) {
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  /**
+   * Searches for log events that contain all the terms in the query, have the given minimum log level and are logged
+   * by the given logger, starting from the given offset. Empty criteria are ignored, but at least one of them
+   * must be given. The events are returned with their offsets, the same as the next logs.
+   */
+  protected void doSearch(LogReader logReader, HttpResponder responder, LoggingContext loggingContext, int maxEvents,
+                          String fromOffsetStr, boolean escape, String query, String logLevel, String loggerName,
+                          String filterStr, @Nullable RunRecordDetail runRecord, String format,
+                          List<String> fieldsToSuppress) {
+    try {
+      List<Filter> filters = new ArrayList<>();
+      if (!query.isEmpty()) {
+        filters.add(new MessageExpression(query));
       }
+      if (!logLevel.isEmpty()) {
+        filters.add(new LogLevelExpression(logLevel));
+      }
+      if (!loggerName.isEmpty()) {
+        filters.add(new LoggerExpression(loggerName));
+      }
+      if (filters.isEmpty()) {
+        responder.sendString(HttpResponseStatus.BAD_REQUEST,
+                             "At least one of 'q', 'loglevel' or 'logger' must be specified.");
+        return;
+      }
+      filters.add(FilterParser.parse(filterStr));
+      readNext(logReader, responder, loggingContext, maxEvents, fromOffsetStr, escape, new AndFilter(filters),
+               runRecord, format, fieldsToSuppress);
     } catch (SecurityException e) {
       responder.sendStatus(HttpResponseStatus.UNAUTHORIZED);
     } catch (IllegalArgumentException e) {
@@ -130,6 +161,22 @@ public abstract class AbstractLogHttpHandler extends AbstractHttpHandler {
     }
   }
 
+  private void readNext(LogReader logReader, HttpResponder responder, LoggingContext loggingContext, int maxEvents,
+                        String fromOffsetStr, boolean escape, Filter filter, @Nullable RunRecordDetail runRecord,
+                        String format, List<String> fieldsToSuppress) {
+    Callback logCallback = getNextOrPrevLogsCallback(format, responder, fieldsToSuppress, escape);
+    LogOffset logOffset = FormattedTextLogEvent.parseLogOffset(fromOffsetStr);
+    ReadRange readRange = ReadRange.createFromRange(logOffset);
+    readRange = adjustReadRange(readRange, runRecord, true);
+    try {
+      logReader.getLogNext(loggingContext, readRange, maxEvents, filter, logCallback);
+    } catch (Exception ex) {
+      LOG.debug("Exception while reading logs for logging context {}", loggingContext, ex);
+    } finally {
+      logCallback.close();
+    }
+  }
+
   private Callback getNextOrPrevLogsCallback(String format, HttpResponder responder,
                                              List<String> suppress, boolean escape) {
     LogFormatType formatType = getFormatType(format);
@@ -152,6 +152,52 @@ public class LogHttpHandler extends AbstractLogHttpHandler {
            escape, filterStr, runRecord, format, suppress);
   }
 
+  @GET
+  @Path("/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/logs/search")
+  public void search(HttpRequest request, HttpResponder responder, @PathParam("namespace-id") String namespaceId,
+                     @PathParam("app-id") String appId, @PathParam("program-type") String programType,
+                     @PathParam("program-id") String programId, @QueryParam("max") @DefaultValue("50") int maxEvents,
+                     @QueryParam("fromOffset") @DefaultValue("") String fromOffsetStr,
+                     @QueryParam("q") @DefaultValue("") String query,
+                     @QueryParam("loglevel") @DefaultValue("") String logLevel,
+                     @QueryParam("logger") @DefaultValue("") String loggerName,
+                     @QueryParam("escape") @DefaultValue("true") boolean escape,
+                     @QueryParam("filter") @DefaultValue("") String filterStr,
+                     @QueryParam("format") @DefaultValue("json") String format,
+                     @QueryParam("suppress") List<String> suppress) throws Exception {
+    ensureVisibilityOnProgram(namespaceId, appId, programType, programId);
+    LoggingContext loggingContext =
+      LoggingContextHelper.getLoggingContext(namespaceId, appId, programId,
+                                             ProgramType.valueOfCategoryName(programType));
+    doSearch(logReader, responder, loggingContext, maxEvents, fromOffsetStr, escape, query, logLevel, loggerName,
+             filterStr, null, format, suppress);
+  }
+
+  @GET
+  @Path("/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs/search")
+  public void runIdSearch(HttpRequest request, HttpResponder responder, @PathParam("namespace-id") String namespaceId,
+                          @PathParam("app-id") String appId, @PathParam("program-type") String programType,
+                          @PathParam("program-id") String programId, @PathParam("run-id") String runId,
+                          @QueryParam("max") @DefaultValue("50") int maxEvents,
+                          @QueryParam("fromOffset") @DefaultValue("") String fromOffsetStr,
+                          @QueryParam("q") @DefaultValue("") String query,
+                          @QueryParam("loglevel") @DefaultValue("") String logLevel,
+                          @QueryParam("logger") @DefaultValue("") String loggerName,
+                          @QueryParam("escape") @DefaultValue("true") boolean escape,
+                          @QueryParam("filter") @DefaultValue("") String filterStr,
+                          @QueryParam("format") @DefaultValue("json") String format,
+                          @QueryParam("suppress") List<String> suppress) throws Exception {
+    ensureVisibilityOnProgram(namespaceId, appId, programType, programId);
+    ProgramType type = ProgramType.valueOfCategoryName(programType);
+    ProgramRunId programRunId = new ProgramRunId(namespaceId, appId, type, programId, runId);
+    RunRecordDetail runRecord = getRunRecordMeta(programRunId);
+    LoggingContext loggingContext = LoggingContextHelper.getLoggingContextWithRunId(programRunId,
+                                                                                    runRecord.getSystemArgs());
+
+    doSearch(logReader, responder, loggingContext, maxEvents, fromOffsetStr, escape, query, logLevel, loggerName,
+             filterStr, runRecord, format, suppress);
+  }
+
   @GET
   @Path("/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/logs/prev")
   public void prev(HttpRequest request, HttpResponder responder, @PathParam("namespace-id") String namespaceId,
@@ -164,9 +164,7 @@ public class ConcurrentLogBufferWriter implements Closeable {
         if (!inflightRequests.isEmpty()) {
           // persist logs in append only WAL
           Iterable<LogBufferEvent> events = writer.write(new PendingEventIterator(inflightRequests.iterator()));
-          for (LogBufferProcessorPipeline pipeline : pipelines) {
-            pipeline.processLogEvents(events.iterator());
-          }
+          LogBufferProcessorPipeline.processLogEvents(events, pipelines);
         }
         // after log events have been sent to log buffer pipeline for processing, set the pending requests to complete
         completeAll(null);
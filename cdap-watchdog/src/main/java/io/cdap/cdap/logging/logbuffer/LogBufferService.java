@@ -38,6 +38,7 @@ import io.cdap.cdap.common.service.RetryStrategies;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.logging.framework.LogPipelineLoader;
 import io.cdap.cdap.logging.framework.LogPipelineSpecification;
+import io.cdap.cdap.logging.framework.ShardedAppenderContext;
 import io.cdap.cdap.logging.logbuffer.cleaner.LogBufferCleaner;
 import io.cdap.cdap.logging.logbuffer.handler.LogBufferHandler;
 import io.cdap.cdap.logging.logbuffer.recover.LogBufferRecoveryService;
@@ -51,6 +52,7 @@ import org.apache.twill.common.Cancellable;
 import org.apache.twill.discovery.DiscoveryService;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -160,34 +162,49 @@ public class LogBufferService extends AbstractIdleService {
   }
 
   /**
-   * Load log buffer pipelines.
+   * Load log buffer pipelines. Each pipeline is loaded once per shard, so that every shard has its own appenders.
+   * Each shard uses a {@link ShardedAppenderContext}, hence appenders of different shards see different instance ids.
    */
   @SuppressWarnings("unchecked")
   private List<LogBufferProcessorPipeline> loadLogPipelines() {
-    Map<String, LogPipelineSpecification<AppenderContext>> specs = new LogPipelineLoader(cConf).load(contextProvider);
-    int pipelineCount = specs.size();
+    int numShards = cConf.getInt(Constants.LogBuffer.LOG_BUFFER_PIPELINE_SHARDS, 1);
+    Preconditions.checkArgument(numShards > 0, "Config %s must be a positive integer",
+                                Constants.LogBuffer.LOG_BUFFER_PIPELINE_SHARDS);
+
+    LogPipelineLoader pipelineLoader = new LogPipelineLoader(cConf);
     List<LogBufferProcessorPipeline> bufferPipelines = new ArrayList<>();
-    // Create one LogBufferProcessorPipeline per spec
-    for (LogPipelineSpecification<AppenderContext> pipelineSpec : specs.values()) {
-      CConfiguration cConf = pipelineSpec.getConf();
-      AppenderContext context = pipelineSpec.getContext();
-      long bufferSize = getBufferSize(pipelineCount, cConf);
-      LogBufferPipelineConfig config =
-        new LogBufferPipelineConfig(bufferSize, cConf.getLong(Constants.Logging.PIPELINE_EVENT_DELAY_MS),
-                                    cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS),
-                                    cConf.getLong(Constants.LogBuffer.LOG_BUFFER_PIPELINE_BATCH_SIZE, 1000));
-
-      CheckpointManager checkpointManager = checkpointManagerFactory.create(pipelineSpec.getCheckpointPrefix(),
-                                                                            CheckpointManagerFactory.Type.LOG_BUFFER);
-      LogBufferProcessorPipeline pipeline = new LogBufferProcessorPipeline(
-        new LogProcessorPipelineContext(cConf, context.getName(), context,
-                                        context.getMetricsContext(), context.getInstanceId()), config,
-        checkpointManager, 0);
-      RetryStrategy retryStrategy = RetryStrategies.fromConfiguration(cConf, "system.log.process.");
-      pipelines.add(new RetryOnStartFailureService(() -> pipeline, retryStrategy));
-      bufferPipelines.add(pipeline);
-      checkpointManagers.add(checkpointManager);
+    // All shards of the same pipeline share the same checkpoint manager, with the shard id as the partition
+    Map<String, CheckpointManager<LogBufferFileOffset>> pipelineCheckpointManagers = new HashMap<>();
+
+    for (int shard = 0; shard < numShards; shard++) {
+      int shardId = shard;
+      Map<String, LogPipelineSpecification<AppenderContext>> specs = pipelineLoader.load(
+        () -> new ShardedAppenderContext(contextProvider.get(), shardId, numShards));
+      int pipelineCount = specs.size() * numShards;
+      // Create one LogBufferProcessorPipeline per spec
+      for (LogPipelineSpecification<AppenderContext> pipelineSpec : specs.values()) {
+        CConfiguration cConf = pipelineSpec.getConf();
+        AppenderContext context = pipelineSpec.getContext();
+        long bufferSize = getBufferSize(pipelineCount, cConf);
+        LogBufferPipelineConfig config =
+          new LogBufferPipelineConfig(bufferSize, cConf.getLong(Constants.Logging.PIPELINE_EVENT_DELAY_MS),
+                                      cConf.getLong(Constants.Logging.PIPELINE_CHECKPOINT_INTERVAL_MS),
+                                      cConf.getLong(Constants.LogBuffer.LOG_BUFFER_PIPELINE_BATCH_SIZE, 1000),
+                                      numShards);
+
+        CheckpointManager<LogBufferFileOffset> checkpointManager = pipelineCheckpointManagers.computeIfAbsent(
+          pipelineSpec.getCheckpointPrefix(),
+          prefix -> checkpointManagerFactory.create(prefix, CheckpointManagerFactory.Type.LOG_BUFFER));
+        LogBufferProcessorPipeline pipeline = new LogBufferProcessorPipeline(
+          new LogProcessorPipelineContext(cConf, context.getName(), context,
+                                          context.getMetricsContext(), context.getInstanceId()), config,
+          checkpointManager, shard);
+        RetryStrategy retryStrategy = RetryStrategies.fromConfiguration(cConf, "system.log.process.");
+        pipelines.add(new RetryOnStartFailureService(() -> pipeline, retryStrategy));
+        bufferPipelines.add(pipeline);
+      }
     }
+    checkpointManagers.addAll(pipelineCheckpointManagers.values());
 
     return bufferPipelines;
   }
@@ -20,6 +20,7 @@ import com.google.common.annotations.VisibleForTesting;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.logging.logbuffer.LogBufferFileOffset;
+import io.cdap.cdap.logging.meta.Checkpoint;
 import io.cdap.cdap.logging.meta.CheckpointManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -35,18 +37,21 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class LogBufferCleaner implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(LogBufferCleaner.class);
   private final List<CheckpointManager<LogBufferFileOffset>> checkpointManagers;
+  private final int numShards;
   private final File baseLogDir;
   private final AtomicBoolean shouldCleanup;
 
   public LogBufferCleaner(CConfiguration cConf, List<CheckpointManager<LogBufferFileOffset>> checkpointManagers,
                           AtomicBoolean shouldCleanup) {
-    this(checkpointManagers, cConf.get(Constants.LogBuffer.LOG_BUFFER_BASE_DIR), shouldCleanup);
+    this(checkpointManagers, cConf.getInt(Constants.LogBuffer.LOG_BUFFER_PIPELINE_SHARDS, 1),
+         cConf.get(Constants.LogBuffer.LOG_BUFFER_BASE_DIR), shouldCleanup);
   }
 
   @VisibleForTesting
-  LogBufferCleaner(List<CheckpointManager<LogBufferFileOffset>> checkpointManagers, String baseLogDir,
-                   AtomicBoolean shouldCleanup) {
+  LogBufferCleaner(List<CheckpointManager<LogBufferFileOffset>> checkpointManagers, int numShards,
+                   String baseLogDir, AtomicBoolean shouldCleanup) {
     this.checkpointManagers = checkpointManagers;
+    this.numShards = numShards;
     this.baseLogDir = new File(baseLogDir);
     this.shouldCleanup = shouldCleanup;
   }
@@ -98,16 +103,24 @@ public class LogBufferCleaner implements Runnable {
    */
   private long getLargestFileIdToDelete(List<CheckpointManager<LogBufferFileOffset>> checkpointManagers)
     throws IOException {
-    // there will be atleast one log pipeline
-    LogBufferFileOffset minOffset = checkpointManagers.get(0).getCheckpoint(0).getOffset();
+    LogBufferFileOffset minOffset = null;
 
-    for (int i = 1; i < checkpointManagers.size(); i++) {
-      LogBufferFileOffset offset = checkpointManagers.get(i).getCheckpoint(0).getOffset();
-      // keep track of minimum offset of all the pipeline
-      minOffset = minOffset.compareTo(offset) > 0 ? offset : minOffset;
+    // keep track of minimum offset of all the pipelines and all their shards
+    for (CheckpointManager<LogBufferFileOffset> checkpointManager : checkpointManagers) {
+      for (int shard = 0; shard < numShards; shard++) {
+        LogBufferFileOffset offset = checkpointManager.getCheckpoint(shard).getOffset();
+        minOffset = minOffset == null || minOffset.compareTo(offset) > 0 ? offset : minOffset;
+      }
+      // checkpoints of shards that were removed by lowering the number of shards can still be behind
+      for (Map.Entry<Integer, Checkpoint<LogBufferFileOffset>> entry : checkpointManager.getCheckpoints().entrySet()) {
+        if (entry.getKey() >= numShards) {
+          LogBufferFileOffset offset = entry.getValue().getOffset();
+          minOffset = minOffset == null || minOffset.compareTo(offset) > 0 ? offset : minOffset;
+        }
+      }
     }
 
-    return minOffset.getFileId() - 1;
+    return minOffset == null ? -1L : minOffset.getFileId() - 1;
   }
 
   /**
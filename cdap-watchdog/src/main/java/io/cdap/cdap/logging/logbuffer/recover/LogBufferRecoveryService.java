@@ -24,6 +24,7 @@ import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.logging.logbuffer.LogBufferEvent;
 import io.cdap.cdap.logging.logbuffer.LogBufferFileOffset;
+import io.cdap.cdap.logging.meta.Checkpoint;
 import io.cdap.cdap.logging.meta.CheckpointManager;
 import io.cdap.cdap.logging.pipeline.logbuffer.LogBufferProcessorPipeline;
 import org.slf4j.Logger;
@@ -33,6 +34,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -42,6 +44,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * further processing. This service first scans all the files to figure out max file id till which it should recover.
  * This is because while recovery service is running, new files can be created. Recovery service should not recover
  * those logs.
+ * <p/>
+ * Recovery starts from the smallest checkpoint of all the pipelines and all their shards, so that no shard misses
+ * any log event. Shards that are ahead of that checkpoint may process some log events again.
  */
 public class LogBufferRecoveryService extends AbstractExecutionThreadService {
   private static final Logger LOG = LoggerFactory.getLogger(LogBufferRecoveryService.class);
@@ -52,6 +57,7 @@ public class LogBufferRecoveryService extends AbstractExecutionThreadService {
 
   private final List<LogBufferProcessorPipeline> pipelines;
   private final List<CheckpointManager<LogBufferFileOffset>> checkpointManagers;
+  private final int numShards;
   private final String baseLogDir;
   private final boolean baseDirExists;
   private final int batchSize;
@@ -64,16 +70,18 @@ public class LogBufferRecoveryService extends AbstractExecutionThreadService {
   public LogBufferRecoveryService(CConfiguration cConf, List<LogBufferProcessorPipeline> pipelines,
                                   List<CheckpointManager<LogBufferFileOffset>> checkpointManagers,
                                   AtomicBoolean startCleanup) {
-    this(pipelines, checkpointManagers, cConf.get(Constants.LogBuffer.LOG_BUFFER_BASE_DIR),
+    this(pipelines, checkpointManagers, cConf.getInt(Constants.LogBuffer.LOG_BUFFER_PIPELINE_SHARDS, 1),
+         cConf.get(Constants.LogBuffer.LOG_BUFFER_BASE_DIR),
          cConf.getInt(Constants.LogBuffer.LOG_BUFFER_RECOVERY_BATCH_SIZE), startCleanup);
   }
 
   @VisibleForTesting
   LogBufferRecoveryService(List<LogBufferProcessorPipeline> pipelines,
-                           List<CheckpointManager<LogBufferFileOffset>> checkpointManager,
+                           List<CheckpointManager<LogBufferFileOffset>> checkpointManager, int numShards,
                            String baseLogDir, int batchSize, AtomicBoolean startCleanup) {
     this.pipelines = pipelines;
     this.checkpointManagers = checkpointManager;
+    this.numShards = numShards;
     this.baseLogDir = baseLogDir;
     this.baseDirExists = dirExists(baseLogDir);
     this.batchSize = batchSize;
@@ -134,21 +142,28 @@ public class LogBufferRecoveryService extends AbstractExecutionThreadService {
   private LogBufferFileOffset getSmallestOffset(List<CheckpointManager<LogBufferFileOffset>> checkpointManagers)
     throws IOException {
     // there will be atleast one log pipeline
-    LogBufferFileOffset minOffset = checkpointManagers.get(0).getCheckpoint(0).getOffset();
+    LogBufferFileOffset minOffset = null;
 
-    for (int i = 1; i < checkpointManagers.size(); i++) {
-      LogBufferFileOffset offset = checkpointManagers.get(i).getCheckpoint(0).getOffset();
-      // keep track of minimum offset
-      minOffset = minOffset.compareTo(offset) > 0 ? offset : minOffset;
+    for (CheckpointManager<LogBufferFileOffset> checkpointManager : checkpointManagers) {
+      for (int shard = 0; shard < numShards; shard++) {
+        LogBufferFileOffset offset = checkpointManager.getCheckpoint(shard).getOffset();
+        // keep track of minimum offset
+        minOffset = minOffset == null || minOffset.compareTo(offset) > 0 ? offset : minOffset;
+      }
+      // checkpoints of shards that were removed by lowering the number of shards can still be behind
+      for (Map.Entry<Integer, Checkpoint<LogBufferFileOffset>> entry : checkpointManager.getCheckpoints().entrySet()) {
+        if (entry.getKey() >= numShards) {
+          LogBufferFileOffset offset = entry.getValue().getOffset();
+          minOffset = minOffset == null || minOffset.compareTo(offset) > 0 ? offset : minOffset;
+        }
+      }
     }
 
     return minOffset;
   }
 
   private void recoverLogs(List<LogBufferEvent> logBufferEvents, List<LogBufferProcessorPipeline> pipelines) {
-    for (LogBufferProcessorPipeline pipeline : pipelines) {
-      pipeline.processLogEvents(logBufferEvents.iterator());
-    }
+    LogBufferProcessorPipeline.processLogEvents(logBufferEvents, pipelines);
     logBufferEvents.clear();
   }
 
@@ -16,10 +16,12 @@
 
 package io.cdap.cdap.logging.meta;
 
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.spi.data.StructuredRow;
 import io.cdap.cdap.spi.data.StructuredTable;
 import io.cdap.cdap.spi.data.table.field.Field;
 import io.cdap.cdap.spi.data.table.field.Fields;
+import io.cdap.cdap.spi.data.table.field.Range;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
 import io.cdap.cdap.store.StoreDefinition;
@@ -29,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -106,6 +109,24 @@ public abstract class AbstractCheckpointManager<T> implements CheckpointManager<
     return checkpoint;
   }
 
+  @Override
+  public Map<Integer, Checkpoint<T>> getCheckpoints() throws IOException {
+    return TransactionRunners.run(transactionRunner, context -> {
+      Map<Integer, Checkpoint<T>> checkpoints = new HashMap<>();
+      StructuredTable table = context.getTable(StoreDefinition.LogCheckpointStore.LOG_CHECKPOINT_TABLE);
+      Range range = Range.singleton(Collections.singleton(
+        Fields.stringField(StoreDefinition.LogCheckpointStore.ROW_PREFIX_FIELD, rowKeyPrefix)));
+      try (CloseableIterator<StructuredRow> iterator = table.scan(range, Integer.MAX_VALUE)) {
+        while (iterator.hasNext()) {
+          StructuredRow row = iterator.next();
+          Integer partition = row.getInteger(StoreDefinition.LogCheckpointStore.PARTITION_FIELD);
+          checkpoints.put(partition, fromRow(row));
+        }
+      }
+      return checkpoints;
+    }, IOException.class);
+  }
+
   private Checkpoint<T> fromRow(@Nullable StructuredRow row) throws IOException {
     byte[] offset = null;
     if (row != null) {
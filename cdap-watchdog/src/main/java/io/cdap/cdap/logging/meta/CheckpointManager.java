@@ -40,4 +40,9 @@ public interface CheckpointManager<OFFSET> {
    * Reads the {@link Checkpoint} for the given partition.
    */
   Checkpoint<OFFSET> getCheckpoint(int partition) throws IOException;
+
+  /**
+   * Reads the {@link Checkpoint}s of all the partitions that have a persisted checkpoint.
+   */
+  Map<Integer, Checkpoint<OFFSET>> getCheckpoints() throws IOException;
 }
@@ -28,6 +28,10 @@ import java.io.IOException;
 
 /**
  * Checkpoint manager for {@link LogBufferProcessorPipeline}.
+ * <p/>
+ * Each shard of a pipeline checkpoints under its shard id as the partition. A shard that has no checkpoint yet, for
+ * example after the number of shards is increased, starts from the checkpoint of partition {@code 0}, which is
+ * where all the log events were checkpointed before sharding.
  */
 public class LogBufferCheckpointManager extends AbstractCheckpointManager<LogBufferFileOffset> {
 
@@ -35,6 +39,15 @@ public class LogBufferCheckpointManager extends AbstractCheckpointManager<LogBuf
     super(transactionRunner, prefix);
   }
 
+  @Override
+  public Checkpoint<LogBufferFileOffset> getCheckpoint(int partition) throws IOException {
+    Checkpoint<LogBufferFileOffset> checkpoint = super.getCheckpoint(partition);
+    if (partition != 0 && checkpoint.getOffset().getFileId() < 0) {
+      return super.getCheckpoint(0);
+    }
+    return checkpoint;
+  }
+
   @Override
   protected byte[] serializeCheckpoint(Checkpoint<LogBufferFileOffset> checkpoint) throws IOException {
     LogBufferFileOffset offset = checkpoint.getOffset();
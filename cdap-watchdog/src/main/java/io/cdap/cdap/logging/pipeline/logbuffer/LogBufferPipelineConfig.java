@@ -24,13 +24,20 @@ public class LogBufferPipelineConfig {
   private final long eventDelayMillis;
   private final long checkpointIntervalMillis;
   private final long batchSize;
+  private final int numShards;
 
   public LogBufferPipelineConfig(long maxBufferSize, long eventDelayMillis, long checkpointIntervalMillis,
                                  long batchSize) {
+    this(maxBufferSize, eventDelayMillis, checkpointIntervalMillis, batchSize, 1);
+  }
+
+  public LogBufferPipelineConfig(long maxBufferSize, long eventDelayMillis, long checkpointIntervalMillis,
+                                 long batchSize, int numShards) {
     this.maxBufferSize = maxBufferSize;
     this.eventDelayMillis = eventDelayMillis;
     this.checkpointIntervalMillis = checkpointIntervalMillis;
     this.batchSize = batchSize;
+    this.numShards = numShards;
   }
 
   public long getMaxBufferSize() {
@@ -48,4 +55,23 @@ public class LogBufferPipelineConfig {
   public long getBatchSize() {
     return batchSize;
   }
+
+  /**
+   * Returns the number of shards that log events are divided into. Each shard is processed by its own
+   * {@link LogBufferProcessorPipeline}.
+   */
+  public int getNumShards() {
+    return numShards;
+  }
+
+  @Override
+  public String toString() {
+    return "LogBufferPipelineConfig{" +
+      "maxBufferSize=" + maxBufferSize +
+      ", eventDelayMillis=" + eventDelayMillis +
+      ", checkpointIntervalMillis=" + checkpointIntervalMillis +
+      ", batchSize=" + batchSize +
+      ", numShards=" + numShards +
+      '}';
+  }
 }
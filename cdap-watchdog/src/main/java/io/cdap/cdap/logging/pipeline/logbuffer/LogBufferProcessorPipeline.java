@@ -16,9 +16,11 @@
 
 package io.cdap.cdap.logging.pipeline.logbuffer;
 
+import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.logging.logbuffer.LogBufferEvent;
@@ -33,10 +35,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -45,6 +50,11 @@ import java.util.concurrent.TimeUnit;
 /**
  * Log processing pipeline to process log events from log buffer. Log events are pushed to this pipeline for further
  * processing.
+ * <p/>
+ * Log events can be divided into multiple shards by their logging context, as configured by
+ * {@link LogBufferPipelineConfig#getNumShards()}, with one pipeline per shard. Each pipeline only processes events
+ * of its own shard, and saves its checkpoint under the shard id as the partition, so that shards are processed
+ * and checkpointed independently. Events of the same namespace and application always go to the same shard.
  */
 public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
   private static final Logger LOG = LoggerFactory.getLogger(LogBufferProcessorPipeline.class);
@@ -54,7 +64,8 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
   private static final int INCOMING_EVENT_QUEUE_SIZE = 10000;
 
   private final String name;
-  private final int instanceId;
+  private final int shardId;
+  private final int numShards;
   private final LogBufferPipelineConfig config;
   private final LogProcessorPipelineContext context;
   private final CheckpointManager<LogBufferFileOffset> checkpointManager;
@@ -65,19 +76,31 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
   private final CountDownLatch stopLatch;
 
   private volatile boolean stopped;
+  // Offset of the last event routed to the shards, which this shard may skip to once its own events are processed
+  private volatile LogBufferFileOffset lastSkippedOffset;
   private long lastCheckpointTime;
   private int unSyncedEvents;
 
+  /**
+   * Constructor.
+   *
+   * @param context the {@link LogProcessorPipelineContext} that events are appended to
+   * @param config the pipeline configuration
+   * @param checkpointManager the {@link CheckpointManager} for persisting checkpoints
+   * @param shardId the shard processed by this pipeline, in the range of {@code [0, config.getNumShards())}.
+   *                It is also the partition of the checkpoint of this pipeline
+   */
   public LogBufferProcessorPipeline(LogProcessorPipelineContext context, LogBufferPipelineConfig config,
-                                    CheckpointManager<LogBufferFileOffset> checkpointManager, int instanceId) {
+                                    CheckpointManager<LogBufferFileOffset> checkpointManager, int shardId) {
     this.name = context.getName();
-    this.instanceId = instanceId;
+    this.shardId = shardId;
+    this.numShards = config.getNumShards();
     this.config = config;
     this.context = context;
     this.checkpointManager = checkpointManager;
     this.metricsContext = context;
     this.eventQueueProcessor = new TimeEventQueueProcessor<>(context, config.getMaxBufferSize(),
-                                                             config.getEventDelayMillis(), ImmutableSet.of(instanceId));
+                                                             config.getEventDelayMillis(), ImmutableSet.of(shardId));
     this.incomingEventQueue = new ArrayBlockingQueue<>(INCOMING_EVENT_QUEUE_SIZE);
     this.checkpoints = new HashMap<>();
     this.stopLatch = new CountDownLatch(1);
@@ -86,9 +109,9 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
   @Override
   protected void startUp() throws Exception {
     LOG.debug("Starting log processor pipeline for {} with configurations {}", name, config);
-    Checkpoint<LogBufferFileOffset> checkpoint = checkpointManager.getCheckpoint(instanceId);
+    Checkpoint<LogBufferFileOffset> checkpoint = checkpointManager.getCheckpoint(shardId);
 
-    checkpoints.put(0, new MutableLogBufferCheckpoint(checkpoint.getOffset().getFileId(),
+    checkpoints.put(shardId, new MutableLogBufferCheckpoint(checkpoint.getOffset().getFileId(),
                                                       checkpoint.getOffset().getFilePos(),
                                                       checkpoint.getMaxEventTime()));
     context.start();
@@ -100,6 +123,7 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
     lastCheckpointTime = System.currentTimeMillis();
     while (!stopped) {
       boolean hasEventProcessed = processEvents(incomingEventQueue);
+      advanceCheckpointForSkippedEvents();
       long now = System.currentTimeMillis();
       long nextCheckpointDelay = trySyncAndPersistCheckpoints(now);
 
@@ -138,7 +162,7 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
 
   @Override
   protected String getServiceName() {
-    return "LogPipeline-" + name;
+    return numShards > 1 ? "LogPipeline-" + name + "-" + shardId : "LogPipeline-" + name;
   }
 
   /**
@@ -146,7 +170,7 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
    */
   private boolean processEvents(BlockingQueue<LogBufferEvent> incomingEventQueue) {
     ProcessedEventMetadata<LogBufferFileOffset> metadata
-      = eventQueueProcessor.process(0, new LogFileOffsetTransformIterator(incomingEventQueue));
+      = eventQueueProcessor.process(shardId, new LogFileOffsetTransformIterator(incomingEventQueue));
 
     // none of the events were processed.
     if (metadata.getTotalEventsProcessed() <= 0) {
@@ -155,8 +179,8 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
 
     unSyncedEvents += metadata.getTotalEventsProcessed();
     // events were processed, so update the checkpoints
-    Checkpoint<LogBufferFileOffset> checkpoint = metadata.getCheckpoints().get(instanceId);
-    MutableLogBufferCheckpoint mutableCheckpoint = checkpoints.get(instanceId);
+    Checkpoint<LogBufferFileOffset> checkpoint = metadata.getCheckpoints().get(shardId);
+    MutableLogBufferCheckpoint mutableCheckpoint = checkpoints.get(shardId);
     MutableLogBufferFileOffset offset = mutableCheckpoint.getOffset();
     offset.setFileId(checkpoint.getOffset().getFileId());
     offset.setFilePos(checkpoint.getOffset().getFilePos());
@@ -166,7 +190,30 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
   }
 
   /**
-   * Pushes log events to blocking queue to be processed by processor pipeline.
+   * Moves the checkpoint forward to the offset of the last routed event, which may belong to other shards, if all
+   * the events of this shard have been processed. Without this, a shard that receives no events would hold back the
+   * checkpoint used for recovery and cleanup of the log buffer.
+   */
+  private void advanceCheckpointForSkippedEvents() {
+    // The skipped offset must be read before checking the queues. Events of this shard are added to the incoming
+    // queue before the offsets of later skipped events are set, hence events before the skipped offset are either
+    // still in the queues, or have been processed.
+    LogBufferFileOffset skippedOffset = lastSkippedOffset;
+    if (skippedOffset == null || !incomingEventQueue.isEmpty() || !eventQueueProcessor.isQueueEmpty(shardId)) {
+      return;
+    }
+    MutableLogBufferFileOffset offset = checkpoints.get(shardId).getOffset();
+    if (skippedOffset.compareTo(offset) > 0) {
+      offset.setFileId(skippedOffset.getFileId());
+      offset.setFilePos(skippedOffset.getFilePos());
+      unSyncedEvents++;
+    }
+  }
+
+  /**
+   * Pushes log events to blocking queue to be processed by processor pipeline. All the events must belong to the
+   * shard of this pipeline. Use {@link #processLogEvents(Iterable, List)} to route events to the pipelines of
+   * their shards.
    *
    * @param events log events to be processed
    */
@@ -183,6 +230,60 @@ public class LogBufferProcessorPipeline extends AbstractExecutionThreadService {
     }
   }
 
+  /**
+   * Routes log events to the pipelines of their shards. The shard of each event is computed once, and each pipeline
+   * only receives the events of its own shard. Pipelines are told about the offset of the last event, so that
+   * shards without events in the batch can still move their checkpoints forward.
+   *
+   * @param events log events to be processed
+   * @param pipelines the pipelines to process the events. All of them must have the same number of shards
+   */
+  public static void processLogEvents(Iterable<LogBufferEvent> events, List<LogBufferProcessorPipeline> pipelines) {
+    if (pipelines.isEmpty()) {
+      return;
+    }
+    int numShards = pipelines.get(0).numShards;
+    if (numShards <= 1) {
+      for (LogBufferProcessorPipeline pipeline : pipelines) {
+        pipeline.processLogEvents(events.iterator());
+      }
+      return;
+    }
+
+    List<List<LogBufferEvent>> shardEvents = new ArrayList<>(numShards);
+    for (int i = 0; i < numShards; i++) {
+      shardEvents.add(new ArrayList<>());
+    }
+    LogBufferFileOffset lastOffset = null;
+    for (LogBufferEvent event : events) {
+      shardEvents.get(getShard(event.getLogEvent(), numShards)).add(event);
+      lastOffset = event.getOffset();
+    }
+    if (lastOffset == null) {
+      return;
+    }
+
+    for (LogBufferProcessorPipeline pipeline : pipelines) {
+      pipeline.processLogEvents(shardEvents.get(pipeline.shardId).iterator());
+      // Events of this shard must be in the incoming queue before the skipped offset is set
+      pipeline.lastSkippedOffset = lastOffset;
+    }
+  }
+
+  /**
+   * Returns the shard of the given log event. The shard is determined by the namespace, application and system
+   * service of the logging context, so that log events written to the same log file are always in the same shard.
+   */
+  public static int getShard(ILoggingEvent event, int numShards) {
+    if (numShards <= 1) {
+      return 0;
+    }
+    Map<String, String> mdc = event.getMDCPropertyMap();
+    int hash = Objects.hash(mdc.get(Constants.Logging.TAG_NAMESPACE_ID), mdc.get(Constants.Logging.TAG_APPLICATION_ID),
+                            mdc.get(Constants.Logging.TAG_SERVICE_ID));
+    return (hash & Integer.MAX_VALUE) % numShards;
+  }
+
   /**
    * Persists the checkpoints.
    */
@@ -76,6 +76,10 @@ public class FileLogReader implements LogReader {
       }
 
       for (LogLocation file : sortedFilesInRange) {
+        if (!file.mayMatch(logFilter)) {
+          LOG.trace("Skipping file {} that has no matching event", file);
+          continue;
+        }
         LOG.trace("Reading file {}", file);
         file.readLog(logFilter, fromTimeMs, Long.MAX_VALUE, maxEvents - callback.getCount(), callback);
         if (callback.getCount() >= maxEvents) {
@@ -111,6 +115,10 @@ public class FileLogReader implements LogReader {
       int count = 0;
       for (LogLocation file : Lists.reverse(sortedFilesInRange)) {
         try {
+          if (!file.mayMatch(logFilter)) {
+            LOG.trace("Skipping file {} that has no matching event", file);
+            continue;
+          }
           LOG.trace("Reading file {}", file);
 
           Collection<LogEvent> events = file.readLogPrev(logFilter, fromTimeMs, maxEvents - count);
@@ -145,18 +153,7 @@ public class FileLogReader implements LogReader {
         fileMetadataReader.listFiles(LoggingContextHelper.getLogPathIdentifier(loggingContext), fromTimeMs, toTimeMs);
 
       if (sortedFilesInRange.isEmpty()) {
-        // return empty iterator
-        return new AbstractCloseableIterator<LogEvent>() {
-          @Override
-          protected LogEvent computeNext() {
-            return endOfData();
-          }
-
-          @Override
-          public void close() {
-            // no-op
-          }
-        };
+        return emptyIterator();
       }
 
       final Iterator<LogLocation> filesIter = sortedFilesInRange.iterator();
@@ -183,6 +180,11 @@ public class FileLogReader implements LogReader {
               curr.close();
             }
             LogLocation file = filesIter.next();
+            if (!file.mayMatch(logFilter)) {
+              LOG.trace("Skipping file {} that has no matching event", file);
+              curr = emptyIterator();
+              return curr;
+            }
             LOG.trace("Reading file {}", file);
             curr = file.readLog(logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE);
             return curr;
@@ -201,6 +203,20 @@ public class FileLogReader implements LogReader {
     }
   }
 
+  private static CloseableIterator<LogEvent> emptyIterator() {
+    return new AbstractCloseableIterator<LogEvent>() {
+      @Override
+      protected LogEvent computeNext() {
+        return endOfData();
+      }
+
+      @Override
+      public void close() {
+        // no-op
+      }
+    };
+  }
+
   /**
    * See {@link com.google.common.collect.Iterators#concat(Iterator)}. The difference is that the input types and return
    * type are CloseableIterator, which closes the inputs that it has opened.
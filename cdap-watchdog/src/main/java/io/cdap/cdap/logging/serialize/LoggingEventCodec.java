@@ -0,0 +1,442 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.serialize;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ClassPackagingData;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import io.cdap.cdap.logging.LoggingUtil;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericArray;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Encodes and decodes logging events in the Avro binary format of {@link LogSchema.LoggingEvent#SCHEMA}, without
+ * going through the generic Avro datum writer and reader. Encoding writes directly from the {@link ILoggingEvent}
+ * without creating intermediate records. Decoding creates the same {@link GenericRecord} as the generic datum reader,
+ * except that strings are decoded as {@link String}. Frequently repeated strings, such as logger names, thread names,
+ * MDC entries and stack trace elements, are interned through a small cache to avoid creating new strings for them.
+ *
+ * The fields must be written and read in the order defined in the schema.
+ */
+@NotThreadSafe
+final class LoggingEventCodec {
+
+  // Size of the intern cache, which must be a power of 2
+  private static final int INTERN_CACHE_SIZE = 2048;
+  private static final int MAX_INTERN_LENGTH = 128;
+
+  private final Schema schema;
+  private final Schema markerSchema;
+  private final Schema argumentArraySchema;
+  private final Schema loggerContextSchema;
+  private final Schema throwableSchema;
+  private final Schema stackTraceProxyArraySchema;
+  private final Schema stackTraceProxySchema;
+  private final Schema stackTraceElementSchema;
+  private final Schema classPackagingDataSchema;
+  private final Schema suppressedSchema;
+  private final Schema callerDataSchema;
+
+  private final byte[][] internedBytes = new byte[INTERN_CACHE_SIZE][];
+  private final String[] internedStrings = new String[INTERN_CACHE_SIZE];
+  private Utf8 scratch = new Utf8();
+
+  LoggingEventCodec(Schema schema) {
+    this.schema = schema;
+    this.markerSchema = getUnionType(schema, "marker");
+    this.argumentArraySchema = getUnionType(schema, "argumentArray");
+    this.loggerContextSchema = getUnionType(schema, "loggerContextVO");
+    this.throwableSchema = getUnionType(schema, "throwableProxy");
+    this.stackTraceProxyArraySchema = getUnionType(throwableSchema, "stackTraceElementProxyArray");
+    this.stackTraceProxySchema = stackTraceProxyArraySchema.getElementType();
+    this.stackTraceElementSchema = getUnionType(stackTraceProxySchema, "stackTraceElement");
+    this.classPackagingDataSchema = getUnionType(stackTraceProxySchema, "classPackagingData");
+    this.suppressedSchema = getUnionType(throwableSchema, "suppressed");
+    this.callerDataSchema = getUnionType(schema, "callerData");
+  }
+
+  /**
+   * Encodes the given {@link ILoggingEvent}.
+   */
+  void encode(ILoggingEvent event, Encoder out) throws IOException {
+    out.writeLong(event.getTimeStamp());
+    out.writeInt(event.getLevel() == null ? Level.ERROR_INT : event.getLevel().toInt());
+    writeMap(event.getMDCPropertyMap(), out);
+    // Marker is not serialized
+    out.writeIndex(0);
+    writeString(event.getThreadName(), out);
+    writeString(event.getMessage(), out);
+    writeArguments(event.getArgumentArray(), out);
+    writeString(event.getFormattedMessage(), out);
+    writeString(event.getLoggerName(), out);
+    writeLoggerContext(event.getLoggerContextVO(), out);
+    writeThrowable(event.getThrowableProxy(), out);
+    boolean hasCallerData = event.hasCallerData();
+    out.writeBoolean(hasCallerData);
+    writeCallerData(hasCallerData ? event.getCallerData() : null, out);
+  }
+
+  /**
+   * Decodes a logging event into a {@link GenericRecord}.
+   */
+  GenericRecord decode(Decoder in) throws IOException {
+    GenericRecord record = new GenericData.Record(schema);
+    int pos = 0;
+    record.put(pos++, in.readLong());
+    record.put(pos++, in.readInt());
+    record.put(pos++, readMap(in));
+    record.put(pos++, in.readIndex() == 0 ? null : new GenericData.Record(markerSchema));
+    record.put(pos++, readInternedString(in));
+    record.put(pos++, readString(in));
+    record.put(pos++, readArguments(in));
+    record.put(pos++, readString(in));
+    record.put(pos++, readInternedString(in));
+    record.put(pos++, readLoggerContext(in));
+    record.put(pos++, readThrowable(in));
+    record.put(pos++, in.readBoolean());
+    record.put(pos, readCallerData(in));
+    return record;
+  }
+
+  private void writeString(@Nullable String str, Encoder out) throws IOException {
+    if (str == null) {
+      out.writeIndex(0);
+    } else {
+      out.writeIndex(1);
+      out.writeString(str);
+    }
+  }
+
+  private void writeMap(@Nullable Map<String, String> map, Encoder out) throws IOException {
+    if (map == null) {
+      out.writeIndex(0);
+      return;
+    }
+    out.writeIndex(1);
+    out.writeMapStart();
+    out.setItemCount(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      out.startItem();
+      // Avro doesn't allow null map key
+      out.writeString(entry.getKey() == null ? LoggingUtil.MDC_NULL_KEY : entry.getKey());
+      writeString(entry.getValue(), out);
+    }
+    out.writeMapEnd();
+  }
+
+  private void writeArguments(@Nullable Object[] arguments, Encoder out) throws IOException {
+    if (arguments == null) {
+      out.writeIndex(0);
+      return;
+    }
+    out.writeIndex(1);
+    out.writeArrayStart();
+    out.setItemCount(arguments.length);
+    for (Object argument : arguments) {
+      out.startItem();
+      writeString(argument == null ? null : argument.toString(), out);
+    }
+    out.writeArrayEnd();
+  }
+
+  private void writeLoggerContext(@Nullable LoggerContextVO context, Encoder out) throws IOException {
+    if (context == null) {
+      out.writeIndex(0);
+      return;
+    }
+    out.writeIndex(1);
+    writeString(context.getName(), out);
+    writeMap(context.getPropertyMap(), out);
+    out.writeLong(context.getBirthTime());
+  }
+
+  private void writeThrowable(@Nullable IThrowableProxy throwable, Encoder out) throws IOException {
+    if (throwable == null) {
+      out.writeIndex(0);
+      return;
+    }
+    out.writeIndex(1);
+    writeString(throwable.getClassName(), out);
+    writeString(throwable.getMessage(), out);
+    out.writeInt(throwable.getCommonFrames());
+
+    StackTraceElementProxy[] stackTrace = throwable.getStackTraceElementProxyArray();
+    if (stackTrace == null) {
+      out.writeIndex(0);
+    } else {
+      out.writeIndex(1);
+      out.writeArrayStart();
+      out.setItemCount(stackTrace.length);
+      for (StackTraceElementProxy element : stackTrace) {
+        out.startItem();
+        writeStackTraceElement(element.getStackTraceElement(), out);
+        writeClassPackagingData(element.getClassPackagingData(), out);
+      }
+      out.writeArrayEnd();
+    }
+
+    writeThrowable(throwable.getCause(), out);
+
+    IThrowableProxy[] suppressed = throwable.getSuppressed();
+    if (suppressed == null) {
+      out.writeIndex(0);
+    } else {
+      out.writeIndex(1);
+      out.writeArrayStart();
+      out.setItemCount(suppressed.length);
+      for (IThrowableProxy proxy : suppressed) {
+        out.startItem();
+        writeThrowable(proxy, out);
+      }
+      out.writeArrayEnd();
+    }
+  }
+
+  private void writeStackTraceElement(@Nullable StackTraceElement element, Encoder out) throws IOException {
+    if (element == null) {
+      out.writeIndex(0);
+      return;
+    }
+    out.writeIndex(1);
+    writeString(element.getClassName(), out);
+    writeString(element.getMethodName(), out);
+    writeString(element.getFileName(), out);
+    out.writeInt(element.getLineNumber());
+  }
+
+  private void writeClassPackagingData(@Nullable ClassPackagingData data, Encoder out) throws IOException {
+    if (data == null) {
+      out.writeIndex(0);
+      return;
+    }
+    out.writeIndex(1);
+    writeString(data.getCodeLocation(), out);
+    writeString(data.getVersion(), out);
+    out.writeBoolean(data.isExact());
+  }
+
+  private void writeCallerData(@Nullable StackTraceElement[] callerData, Encoder out) throws IOException {
+    if (callerData == null) {
+      out.writeIndex(0);
+      return;
+    }
+    out.writeIndex(1);
+    out.writeArrayStart();
+    out.setItemCount(callerData.length);
+    for (StackTraceElement element : callerData) {
+      out.startItem();
+      writeStackTraceElement(element, out);
+    }
+    out.writeArrayEnd();
+  }
+
+  @Nullable
+  private String readString(Decoder in) throws IOException {
+    return in.readIndex() == 0 ? null : in.readString();
+  }
+
+  @Nullable
+  private String readInternedString(Decoder in) throws IOException {
+    if (in.readIndex() == 0) {
+      return null;
+    }
+    scratch = in.readString(scratch);
+    return intern(scratch.getBytes(), scratch.getByteLength());
+  }
+
+  @Nullable
+  private Map<String, String> readMap(Decoder in) throws IOException {
+    if (in.readIndex() == 0) {
+      return null;
+    }
+    Map<String, String> map = null;
+    for (long size = in.readMapStart(); size != 0; size = in.mapNext()) {
+      if (map == null) {
+        map = new HashMap<>((int) (size * 4 / 3 + 1));
+      }
+      for (long i = 0; i < size; i++) {
+        scratch = in.readString(scratch);
+        map.put(intern(scratch.getBytes(), scratch.getByteLength()), readInternedString(in));
+      }
+    }
+    return map == null ? new HashMap<>() : map;
+  }
+
+  @Nullable
+  private GenericArray<String> readArguments(Decoder in) throws IOException {
+    if (in.readIndex() == 0) {
+      return null;
+    }
+    GenericArray<String> arguments = null;
+    for (long size = in.readArrayStart(); size != 0; size = in.arrayNext()) {
+      if (arguments == null) {
+        arguments = new GenericData.Array<>((int) size, argumentArraySchema);
+      }
+      for (long i = 0; i < size; i++) {
+        arguments.add(readString(in));
+      }
+    }
+    return arguments == null ? new GenericData.Array<>(0, argumentArraySchema) : arguments;
+  }
+
+  @Nullable
+  private GenericRecord readLoggerContext(Decoder in) throws IOException {
+    if (in.readIndex() == 0) {
+      return null;
+    }
+    GenericRecord record = new GenericData.Record(loggerContextSchema);
+    record.put(0, readInternedString(in));
+    record.put(1, readMap(in));
+    record.put(2, in.readLong());
+    return record;
+  }
+
+  @Nullable
+  private GenericRecord readThrowable(Decoder in) throws IOException {
+    if (in.readIndex() == 0) {
+      return null;
+    }
+    GenericRecord record = new GenericData.Record(throwableSchema);
+    record.put(0, readInternedString(in));
+    record.put(1, readString(in));
+    record.put(2, in.readInt());
+
+    GenericArray<GenericRecord> stackTrace = null;
+    if (in.readIndex() != 0) {
+      stackTrace = new GenericData.Array<>(0, stackTraceProxyArraySchema);
+      for (long size = in.readArrayStart(); size != 0; size = in.arrayNext()) {
+        for (long i = 0; i < size; i++) {
+          GenericRecord element = new GenericData.Record(stackTraceProxySchema);
+          element.put(0, readStackTraceElement(in));
+          element.put(1, readClassPackagingData(in));
+          stackTrace.add(element);
+        }
+      }
+    }
+    record.put(3, stackTrace);
+    record.put(4, readThrowable(in));
+
+    GenericArray<GenericRecord> suppressed = null;
+    if (in.readIndex() != 0) {
+      suppressed = new GenericData.Array<>(0, suppressedSchema);
+      for (long size = in.readArrayStart(); size != 0; size = in.arrayNext()) {
+        for (long i = 0; i < size; i++) {
+          suppressed.add(readThrowable(in));
+        }
+      }
+    }
+    record.put(5, suppressed);
+    return record;
+  }
+
+  @Nullable
+  private GenericRecord readStackTraceElement(Decoder in) throws IOException {
+    if (in.readIndex() == 0) {
+      return null;
+    }
+    GenericRecord record = new GenericData.Record(stackTraceElementSchema);
+    record.put(0, readInternedString(in));
+    record.put(1, readInternedString(in));
+    record.put(2, readInternedString(in));
+    record.put(3, in.readInt());
+    return record;
+  }
+
+  @Nullable
+  private GenericRecord readClassPackagingData(Decoder in) throws IOException {
+    if (in.readIndex() == 0) {
+      return null;
+    }
+    GenericRecord record = new GenericData.Record(classPackagingDataSchema);
+    record.put(0, readInternedString(in));
+    record.put(1, readInternedString(in));
+    record.put(2, in.readBoolean());
+    return record;
+  }
+
+  @Nullable
+  private GenericArray<GenericRecord> readCallerData(Decoder in) throws IOException {
+    if (in.readIndex() == 0) {
+      return null;
+    }
+    GenericArray<GenericRecord> callerData = new GenericData.Array<>(0, callerDataSchema);
+    for (long size = in.readArrayStart(); size != 0; size = in.arrayNext()) {
+      for (long i = 0; i < size; i++) {
+        callerData.add(readStackTraceElement(in));
+      }
+    }
+    return callerData;
+  }
+
+  /**
+   * Returns a {@link String} decoded from the given UTF-8 bytes. If the same bytes were decoded recently,
+   * the same {@link String} instance is returned.
+   */
+  private String intern(byte[] bytes, int length) {
+    if (length > MAX_INTERN_LENGTH) {
+      return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+    int hash = 1;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    int slot = (hash ^ (hash >>> 16)) & (INTERN_CACHE_SIZE - 1);
+
+    byte[] cached = internedBytes[slot];
+    if (cached != null && cached.length == length && equals(cached, bytes, length)) {
+      return internedStrings[slot];
+    }
+
+    String str = new String(bytes, 0, length, StandardCharsets.UTF_8);
+    byte[] copy = new byte[length];
+    System.arraycopy(bytes, 0, copy, 0, length);
+    internedBytes[slot] = copy;
+    internedStrings[slot] = str;
+    return str;
+  }
+
+  private static boolean equals(byte[] cached, byte[] bytes, int length) {
+    for (int i = 0; i < length; i++) {
+      if (cached[i] != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the non-null type of a nullable union field.
+   */
+  private static Schema getUnionType(Schema recordSchema, String fieldName) {
+    return recordSchema.getField(fieldName).schema().getTypes().get(1);
+  }
+}
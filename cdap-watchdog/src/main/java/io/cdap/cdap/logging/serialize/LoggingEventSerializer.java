@@ -24,13 +24,12 @@ import io.cdap.cdap.logging.LoggingUtil;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 
 import java.io.ByteArrayOutputStream;
@@ -40,12 +39,15 @@ import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * Avro serializer for ILoggingEvent.
+ * Encoding and decoding are done by {@link LoggingEventCodec}, which reuses buffers across calls.
  * Method of this class is not thread safe, hence cannot be called from multiple threads concurrently.
  */
 @NotThreadSafe
 public final class LoggingEventSerializer {
 
-  private final GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(getAvroSchema());
+  private final LoggingEventCodec codec = new LoggingEventCodec(getAvroSchema());
+  private final ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream();
+  private BinaryEncoder encoder;
   private BinaryDecoder decoder;
 
   /**
@@ -59,16 +61,27 @@ public final class LoggingEventSerializer {
    * Encodes a {@link ILoggingEvent} to byte array.
    */
   public byte[] toBytes(ILoggingEvent event) {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
-    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(getAvroSchema());
+    encodeBuffer.reset();
+    encoder = EncoderFactory.get().directBinaryEncoder(encodeBuffer, encoder);
     try {
-      writer.write(toGenericRecord(event), encoder);
+      codec.encode(event, encoder);
     } catch (IOException e) {
       // This shouldn't happen since we are writing to byte array output stream.
       throw Throwables.propagate(e);
     }
-    return out.toByteArray();
+    return encodeBuffer.toByteArray();
+  }
+
+  /**
+   * Encodes a {@link ILoggingEvent} with the given {@link Encoder}, based on the schema returned by the
+   * {@link #getAvroSchema()} method.
+   *
+   * @param event the event to encode
+   * @param encoder the {@link Encoder} to write to
+   * @throws IOException if fail to encode
+   */
+  public void encode(ILoggingEvent event, Encoder encoder) throws IOException {
+    codec.encode(event, encoder);
   }
 
   /**
@@ -127,7 +140,7 @@ public final class LoggingEventSerializer {
    * @throws IOException if fail to decode
    */
   private GenericRecord toGenericRecord(ByteBuffer buffer) throws IOException {
-    return datumReader.read(null, getDecoder(buffer));
+    return codec.decode(getDecoder(buffer));
   }
 
   /**
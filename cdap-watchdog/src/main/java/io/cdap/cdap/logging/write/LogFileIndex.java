@@ -0,0 +1,513 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import io.cdap.cdap.common.io.Locations;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.LogEventSummary;
+import io.cdap.cdap.logging.filter.LogTerms;
+import org.apache.twill.filesystem.Location;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * A sparse index of a log file. Each entry maps the timestamp of the first event in an Avro block to the
+ * position of the block, which can be used with {@code DataFileReader.seek(long)}.
+ *
+ * For each block, the index also records the log levels of the events in the block, and an inverted index from
+ * terms and logger names to blocks. They are exposed as {@link LogEventSummary} so that readers can skip blocks
+ * that cannot match a {@link Filter}. Terms and logger names are stored as hashes, hence may give false positives.
+ * If a block has too many distinct terms, the terms of the block are not indexed, and the block is assumed to contain
+ * every term and logger name.
+ *
+ * The index is stored in a separate file next to the log file, with the name of the log file
+ * plus the {@link #INDEX_FILE_SUFFIX}. It is written when the log file is closed, hence log files that are still open
+ * or were written by older versions don't have an index.
+ */
+public final class LogFileIndex {
+
+  public static final String INDEX_FILE_SUFFIX = ".idx";
+
+  /**
+   * Maximum number of distinct terms to index for a block.
+   */
+  private static final int MAX_BLOCK_TERMS = 4096;
+
+  private static final int MAGIC = 0x4C494458;
+  private static final int VERSION_1 = 1;
+  private static final int VERSION_2 = 2;
+  private static final int VERSION_3 = 3;
+  private static final int ALL_LEVELS = -1;
+
+  private final long[] timestamps;
+  private final long[] positions;
+  private final int[] levelMasks;
+  private final int size;
+  // Map from term hash to the blocks containing the term
+  private final TermMap terms;
+  // Blocks with terms not indexed
+  private final BitSet unindexedBlocks;
+
+  private LogFileIndex(long[] timestamps, long[] positions, int[] levelMasks, int size,
+                       TermMap terms, BitSet unindexedBlocks) {
+    this.timestamps = timestamps;
+    this.positions = positions;
+    this.levelMasks = levelMasks;
+    this.size = size;
+    this.terms = terms;
+    this.unindexedBlocks = unindexedBlocks;
+  }
+
+  /**
+   * Returns the number of blocks in the index.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the position of the given block.
+   */
+  public long getPosition(int block) {
+    return positions[block];
+  }
+
+  /**
+   * Returns the timestamp of the first event in the given block.
+   */
+  public long getTimestamp(int block) {
+    return timestamps[block];
+  }
+
+  /**
+   * Returns the {@link LogEventSummary} of the events in the given block.
+   */
+  public LogEventSummary getSummary(int block) {
+    return new BlockSummary(block);
+  }
+
+  /**
+   * Returns {@code true} if any block in the log file may have events matching the given filter.
+   */
+  public boolean mayMatch(Filter filter) {
+    for (int i = 0; i < size; i++) {
+      if (filter.mayMatch(getSummary(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the first block at or after the given block that may have events matching the given filter.
+   *
+   * @return the block number or {@link #size()} if there is no such block
+   */
+  public int nextBlock(int block, Filter filter) {
+    while (block < size && !filter.mayMatch(getSummary(block))) {
+      block++;
+    }
+    return block;
+  }
+
+  /**
+   * Finds the last block that has the first event timestamp smaller than or equal to the given timestamp.
+   * Events are only roughly sorted by timestamp, hence the search is done from the end instead of a binary search.
+   *
+   * @return the block number or {@code 0} if all blocks start after the given timestamp
+   */
+  public int findBlock(long timestamp) {
+    for (int i = size - 1; i > 0; i--) {
+      if (timestamps[i] <= timestamp) {
+        return i;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the {@link Location} of the index file for the given log file.
+   */
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    Location parent = Locations.getParent(logLocation);
+    if (parent == null) {
+      throw new IOException("Log file location has no parent: " + logLocation);
+    }
+    return parent.append(logLocation.getName() + INDEX_FILE_SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @param logLocation the location of the log file
+   * @return the {@link LogFileIndex} or {@code null} if the log file has no index
+   * @throws IOException if failed to read the index file or the index file is corrupted
+   */
+  @Nullable
+  public static LogFileIndex read(Location logLocation) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+    try (DataInputStream is = new DataInputStream(new BufferedInputStream(indexLocation.getInputStream()))) {
+      if (is.readInt() != MAGIC) {
+        throw new IOException("Invalid log file index " + indexLocation);
+      }
+      int version = is.readInt();
+      if (version != VERSION_1 && version != VERSION_2 && version != VERSION_3) {
+        throw new IOException("Unsupported version " + version + " of log file index " + indexLocation);
+      }
+      int size = is.readInt();
+      if (size <= 0) {
+        throw new IOException("Invalid size " + size + " of log file index " + indexLocation);
+      }
+      long[] timestamps = new long[size];
+      long[] positions = new long[size];
+      int[] levelMasks = new int[size];
+      for (int i = 0; i < size; i++) {
+        timestamps[i] = is.readLong();
+        positions[i] = is.readLong();
+        levelMasks[i] = version == VERSION_1 ? ALL_LEVELS : is.readInt();
+      }
+
+      // Version 1 doesn't have terms, and version 2 either has terms for all blocks or none of them
+      TermMap terms = new TermMap(0);
+      BitSet unindexedBlocks = new BitSet();
+      if (version == VERSION_3 || (version == VERSION_2 && is.readBoolean())) {
+        int termCount = is.readInt();
+        terms = new TermMap(termCount);
+        for (int i = 0; i < termCount; i++) {
+          terms.put(is.readInt(), readBitSet(is));
+        }
+        if (version == VERSION_3) {
+          unindexedBlocks = readBitSet(is);
+        }
+      } else {
+        unindexedBlocks.set(0, size);
+      }
+      return new LogFileIndex(timestamps, positions, levelMasks, size, terms, unindexedBlocks);
+    }
+  }
+
+  /**
+   * Creates a {@link Builder} for building the index of a log file while it is being written.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private static BitSet readBitSet(DataInputStream is) throws IOException {
+    long[] words = new long[is.readInt()];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = is.readLong();
+    }
+    return BitSet.valueOf(words);
+  }
+
+  private static void writeBitSet(DataOutputStream out, BitSet bitSet) throws IOException {
+    long[] words = bitSet.toLongArray();
+    out.writeInt(words.length);
+    for (long word : words) {
+      out.writeLong(word);
+    }
+  }
+
+  private static int getLevelBit(Level level) {
+    // Standard levels are multiples of 10000, with TRACE at 5000
+    return 1 << Math.min(Math.max(level.toInt(), 0) / Level.DEBUG_INT, 30);
+  }
+
+  private static int getTermKey(String term) {
+    // Same as the hash given by LogTerms.forEachIndexedTermHash
+    return term.hashCode();
+  }
+
+  private static int getLoggerKey(String loggerName) {
+    // Terms only contain letters and digits, hence the prefix ensures a logger name is not mistaken as a term
+    return ("logger=" + loggerName).hashCode();
+  }
+
+  /**
+   * A {@link LogEventSummary} of a block.
+   */
+  private final class BlockSummary implements LogEventSummary {
+
+    private final int block;
+
+    private BlockSummary(int block) {
+      this.block = block;
+    }
+
+    @Override
+    public boolean mayContainLevel(Level level) {
+      // True if there is any event with level greater than or equal to the given one
+      return (levelMasks[block] & -getLevelBit(level)) != 0;
+    }
+
+    @Override
+    public boolean mayContainLogger(String loggerName) {
+      return contains(getLoggerKey(loggerName));
+    }
+
+    @Override
+    public boolean mayContainTerm(String term) {
+      return !LogTerms.isIndexed(term) || contains(getTermKey(term));
+    }
+
+    private boolean contains(int key) {
+      if (unindexedBlocks.get(block)) {
+        return true;
+      }
+      BitSet blocks = terms.get(key);
+      return blocks != null && blocks.get(block);
+    }
+  }
+
+  /**
+   * Builder for {@link LogFileIndex}. Blocks must be added in the order of positions.
+   */
+  public static final class Builder {
+    private long[] timestamps = new long[16];
+    private long[] positions = new long[16];
+    private int[] levelMasks = new int[16];
+    private int size;
+    private final TermMap terms = new TermMap(0);
+    private final BitSet unindexedBlocks = new BitSet();
+    private final IntConsumer termConsumer = this::addTerm;
+    // Number of distinct terms in the last block
+    private int blockTermCount;
+
+    private Builder() {
+    }
+
+    /**
+     * Adds a block to the index.
+     *
+     * @param timestamp the timestamp of the first event in the block
+     * @param position the position of the block
+     */
+    public Builder addBlock(long timestamp, long position) {
+      if (size == timestamps.length) {
+        timestamps = Arrays.copyOf(timestamps, size * 2);
+        positions = Arrays.copyOf(positions, size * 2);
+        levelMasks = Arrays.copyOf(levelMasks, size * 2);
+      }
+      timestamps[size] = timestamp;
+      positions[size] = position;
+      levelMasks[size] = 0;
+      size++;
+      blockTermCount = 0;
+      return this;
+    }
+
+    /**
+     * Adds an event to the last block added by {@link #addBlock(long, long)}.
+     */
+    public Builder addEvent(ILoggingEvent event) {
+      if (size == 0) {
+        throw new IllegalStateException("No block was added to the index");
+      }
+      int block = size - 1;
+      levelMasks[block] |= getLevelBit(event.getLevel());
+      if (unindexedBlocks.get(block)) {
+        return this;
+      }
+
+      if (event.getLoggerName() != null) {
+        addTerm(getLoggerKey(event.getLoggerName()));
+      }
+      LogTerms.forEachIndexedTermHash(event, termConsumer);
+      return this;
+    }
+
+    /**
+     * Returns {@code true} if no block has been added.
+     */
+    public boolean isEmpty() {
+      return size == 0;
+    }
+
+    public LogFileIndex build() {
+      return new LogFileIndex(timestamps, positions, levelMasks, size, terms, unindexedBlocks);
+    }
+
+    /**
+     * Writes the index to the index file of the given log file. Nothing is written if the index is empty.
+     *
+     * @param logLocation the location of the log file
+     * @param filePermissions permissions for the index file, or an empty string to use the default permissions
+     * @throws IOException if failed to write the index file
+     */
+    public void write(Location logLocation, String filePermissions) throws IOException {
+      if (isEmpty()) {
+        return;
+      }
+      Location indexLocation = getIndexLocation(logLocation);
+      OutputStream os = filePermissions.isEmpty()
+        ? indexLocation.getOutputStream() : indexLocation.getOutputStream(filePermissions);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION_3);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+          out.writeLong(timestamps[i]);
+          out.writeLong(positions[i]);
+          out.writeInt(levelMasks[i]);
+        }
+        out.writeInt(terms.size());
+        for (int i = 0; i < terms.capacity(); i++) {
+          BitSet blocks = terms.getValueAt(i);
+          if (blocks != null) {
+            out.writeInt(terms.getKeyAt(i));
+            writeBitSet(out, blocks);
+          }
+        }
+        writeBitSet(out, unindexedBlocks);
+      } catch (IOException e) {
+        Locations.deleteQuietly(indexLocation);
+        throw e;
+      }
+    }
+
+    /**
+     * Adds a term to the last block. Terms of the block are no longer indexed if it has too many distinct terms.
+     */
+    private void addTerm(int key) {
+      int block = size - 1;
+      if (unindexedBlocks.get(block)) {
+        return;
+      }
+      BitSet blocks = terms.getOrCreate(key);
+      if (!blocks.get(block)) {
+        blocks.set(block);
+        if (++blockTermCount > MAX_BLOCK_TERMS) {
+          unindexedBlocks.set(block);
+        }
+      }
+    }
+  }
+
+  /**
+   * A map from term hash to the blocks containing the term. It uses open addressing on primitive int keys, so that
+   * indexing the terms of every log event doesn't box the hashes.
+   */
+  private static final class TermMap {
+    private int[] keys;
+    // A null value marks an empty slot
+    private BitSet[] values;
+    private int size;
+
+    TermMap(int expectedSize) {
+      int capacity = 16;
+      while (capacity < expectedSize * 2) {
+        capacity <<= 1;
+      }
+      this.keys = new int[capacity];
+      this.values = new BitSet[capacity];
+    }
+
+    int size() {
+      return size;
+    }
+
+    /**
+     * Returns the number of slots, which are accessed with {@link #getKeyAt(int)} and {@link #getValueAt(int)}.
+     */
+    int capacity() {
+      return keys.length;
+    }
+
+    int getKeyAt(int slot) {
+      return keys[slot];
+    }
+
+    @Nullable
+    BitSet getValueAt(int slot) {
+      return values[slot];
+    }
+
+    @Nullable
+    BitSet get(int key) {
+      return values[findSlot(key)];
+    }
+
+    /**
+     * Returns the blocks of the given term, adding an empty {@link BitSet} for it if the term is not in the map.
+     */
+    BitSet getOrCreate(int key) {
+      int slot = findSlot(key);
+      BitSet value = values[slot];
+      if (value == null) {
+        value = new BitSet();
+        insert(slot, key, value);
+      }
+      return value;
+    }
+
+    void put(int key, BitSet value) {
+      int slot = findSlot(key);
+      if (values[slot] == null) {
+        insert(slot, key, value);
+      } else {
+        values[slot] = value;
+      }
+    }
+
+    /**
+     * Returns the slot of the given key, or the empty slot where it should be inserted.
+     */
+    private int findSlot(int key) {
+      int mask = keys.length - 1;
+      int hash = key * 0x9E3779B9;
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      while (values[slot] != null && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private void insert(int slot, int key, BitSet value) {
+      keys[slot] = key;
+      values[slot] = value;
+      // Keep the load factor at most one half
+      if (++size * 2 > keys.length) {
+        int[] oldKeys = keys;
+        BitSet[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new BitSet[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+          if (oldValues[i] != null) {
+            int newSlot = findSlot(oldKeys[i]);
+            keys[newSlot] = oldKeys[i];
+            values[newSlot] = oldValues[i];
+          }
+        }
+      }
+    }
+  }
+}
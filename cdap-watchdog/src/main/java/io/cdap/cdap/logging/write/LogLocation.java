@@ -50,6 +50,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -70,6 +71,9 @@ public class LogLocation {
   private final NamespaceId namespaceId;
   private final Impersonator impersonator;
 
+  private LogFileIndex index;
+  private boolean indexLoaded;
+
   public LogLocation(String frameworkVersion, long eventTimeMs, long fileCreationTimeMs, Location location,
                      String namespaceId, Impersonator impersonator) {
     this.frameworkVersion = frameworkVersion;
@@ -112,6 +116,16 @@ public class LogLocation {
     return fileCreationTimeMs;
   }
 
+  /**
+   * Checks if the log file may contain events matching the given filter, based on the index of the file.
+   * @param logFilter filter for filtering log events
+   * @return false if the index shows that no event in the file can match the filter, true otherwise
+   */
+  public boolean mayMatch(Filter logFilter) {
+    LogFileIndex index = getIndex();
+    return index == null || index.mayMatch(logFilter);
+  }
+
   /**
    * Return closeable iterator of {@link LogEvent}
    * @param logFilter filter for filtering log events
@@ -159,43 +173,49 @@ public class LogLocation {
           return ImmutableList.of();
         }
 
-        // Calculate skipLen based on fileLength
-        long length = location.length();
-        LOG.trace("File length {} {}", location, length);
-        long skipLen = length / 10;
-        if (skipLen > DEFAULT_SKIP_LEN || skipLen <= 0) {
-          skipLen = DEFAULT_SKIP_LEN;
-        }
-
-        // For open file, endPosition sync marker is unknown so start from file length and read up to the actual EOF
-        dataFileReader.sync(length);
-        long finalSync = dataFileReader.previousSync();
-        List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, -1);
-
-        if (!logSegment.isEmpty()) {
-          logSegments.addFirst(logSegment);
-          count = count + logSegment.size();
-        }
-
-        LOG.trace("Read log events {} from position {}", count, finalSync);
-
-        long startPosition = finalSync;
-        long endPosition = startPosition;
-        long currentSync;
+        LogFileIndex index = getIndex();
+        if (index != null) {
+          count = readLogPrev(dataFileReader, index, logFilter, fromTimeMs, maxEvents, logSegments);
+        } else {
+          // Calculate skipLen based on fileLength
+          long length = location.length();
+          LOG.trace("File length {} {}", location, length);
+          long skipLen = length / 10;
+          if (skipLen > DEFAULT_SKIP_LEN || skipLen <= 0) {
+            skipLen = DEFAULT_SKIP_LEN;
+          }
 
-        while (startPosition > 0 && count < maxEvents) {
-          // Skip to sync position less than current sync position
-          startPosition = skipToPosition(dataFileReader, startPosition, endPosition, skipLen);
-          currentSync = dataFileReader.previousSync();
-          logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+          // For open file, endPosition sync marker is unknown so start from file length and read up to
+          // the actual EOF
+          dataFileReader.sync(length);
+          long finalSync = dataFileReader.previousSync();
+          List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, -1);
 
           if (!logSegment.isEmpty()) {
             logSegments.addFirst(logSegment);
             count = count + logSegment.size();
           }
-          LOG.trace("Read log events {} from position {} to endPosition {}", count, currentSync, endPosition);
 
-          endPosition = currentSync;
+          LOG.trace("Read log events {} from position {}", count, finalSync);
+
+          long startPosition = finalSync;
+          long endPosition = startPosition;
+          long currentSync;
+
+          while (startPosition > 0 && count < maxEvents) {
+            // Skip to sync position less than current sync position
+            startPosition = skipToPosition(dataFileReader, startPosition, endPosition, skipLen);
+            currentSync = dataFileReader.previousSync();
+            logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+
+            if (!logSegment.isEmpty()) {
+              logSegments.addFirst(logSegment);
+              count = count + logSegment.size();
+            }
+            LOG.trace("Read log events {} from position {} to endPosition {}", count, currentSync, endPosition);
+
+            endPosition = currentSync;
+          }
         }
       }
     } catch (IOException e) {
@@ -206,6 +226,34 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads events backward block by block, starting from the block containing fromTimeMs based on the index.
+   * Blocks that cannot match the filter are skipped.
+   *
+   * @return the number of events read
+   */
+  private int readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index, Filter logFilter,
+                          long fromTimeMs, int maxEvents, Deque<Collection<LogEvent>> logSegments) throws IOException {
+    int count = 0;
+    // Start from the block after the one found, since events are only roughly sorted by time
+    int block = Math.min(index.findBlock(fromTimeMs) + 1, index.size() - 1);
+    for (; block >= 0 && count < maxEvents; block--) {
+      if (!logFilter.mayMatch(index.getSummary(block))) {
+        continue;
+      }
+      dataFileReader.seek(index.getPosition(block));
+      long endPosition = block + 1 < index.size() ? index.getPosition(block + 1) : -1;
+      List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+
+      if (!logSegment.isEmpty()) {
+        logSegments.addFirst(logSegment);
+        count = count + logSegment.size();
+      }
+      LOG.trace("Read log events {} from block {} of {}", count, block, location);
+    }
+    return count;
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -257,8 +305,11 @@ public class LogLocation {
     private final long fromTimeMs;
     private final long toTimeMs;
     private final long maxEvents;
+    private final LogFileIndex index;
 
     private DataFileReader<GenericRecord> dataFileReader;
+    // The block being read, only used if the file has an index
+    private int block;
 
     private ILoggingEvent loggingEvent;
     private GenericRecord datum;
@@ -273,10 +324,18 @@ public class LogLocation {
       this.fromTimeMs = fromTimeMs;
       this.toTimeMs = toTimeMs;
       this.maxEvents = maxEvents;
+      this.index = getIndex();
 
       try {
         dataFileReader = createReader();
-        if (dataFileReader.hasNext()) {
+        if (index != null) {
+          // Seek to the block before the one found, since events are only roughly sorted by time
+          block = index.nextBlock(Math.max(0, index.findBlock(fromTimeMs) - 1), logFilter);
+          if (block < index.size()) {
+            LOG.trace("Seek to block {} at pos {} based on the index", block, index.getPosition(block));
+            dataFileReader.seek(index.getPosition(block));
+          }
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
           loggingEvent.prepareForDeferredProcessing();
@@ -315,7 +374,7 @@ public class LogLocation {
     private void computeNext() {
       try {
         // read events from file
-        while (next == null && dataFileReader.hasNext()) {
+        while (next == null && hasNextEvent()) {
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
           loggingEvent.prepareForDeferredProcessing();
 
@@ -338,6 +397,32 @@ public class LogLocation {
       }
     }
 
+    /**
+     * Returns whether there are more events to read. If the file has an index, blocks that cannot match the filter
+     * are skipped.
+     */
+    private boolean hasNextEvent() throws IOException {
+      if (index != null) {
+        if (block >= index.size()) {
+          return false;
+        }
+        // Reading the last event of a block moves the sync position to the start of the next block
+        if (dataFileReader.previousSync() != index.getPosition(block)) {
+          int nextBlock = index.nextBlock(block + 1, logFilter);
+          if (nextBlock >= index.size()) {
+            block = nextBlock;
+            return false;
+          }
+          if (nextBlock != block + 1) {
+            LOG.trace("Skip to block {} at pos {} based on the index", nextBlock, index.getPosition(nextBlock));
+            dataFileReader.seek(index.getPosition(nextBlock));
+          }
+          block = nextBlock;
+        }
+      }
+      return dataFileReader.hasNext();
+    }
+
     @Override
     public void close() {
       try {
@@ -371,6 +456,25 @@ public class LogLocation {
     }
   }
 
+  /**
+   * Returns the {@link LogFileIndex} of the log file, or {@code null} if there is no index.
+   * Only files written by the current framework version can have an index.
+   */
+  @Nullable
+  private synchronized LogFileIndex getIndex() {
+    if (!indexLoaded) {
+      indexLoaded = true;
+      if (VERSION_1.equals(frameworkVersion)) {
+        try {
+          index = LogFileIndex.read(location);
+        } catch (IOException e) {
+          READ_FAILURE_LOG.warn("Failed to read index of log file {}. Reading without the index.", location, e);
+        }
+      }
+    }
+    return index;
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
@@ -15,11 +15,9 @@
  */
 package io.cdap.cdap.metrics.collect;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
@@ -33,9 +31,17 @@ import io.cdap.cdap.common.conf.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -43,6 +49,13 @@ import java.util.concurrent.TimeUnit;
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
  * {@link AggregatedMetricsEmitter}.
+ * <p/>
+ * Each {@link MetricsContext} keeps its own emitters by metric name, so that {@link MetricsContext#increment} and
+ * {@link MetricsContext#gauge} only do a single map lookup and don't allocate. Contexts that have not emitted any
+ * metric for a minute are discarded when metrics are published, so that {@link #getContext(Map)} returns a new
+ * context for the same tags. Since a discarded context may still be referenced and updated, it is published until
+ * it is garbage collected. A context that has been garbage collected can no longer be updated, so publishing it
+ * one last time after that never misses an update.
  */
 public abstract class AggregatedMetricsCollectionService extends AbstractExecutionThreadService
                                                          implements MetricsCollectionService {
@@ -50,8 +63,11 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsCollectionService.class);
   private static final long CACHE_EXPIRE_MINUTES = 1;
 
-  private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  private final ConcurrentMap<Map<String, String>, MetricsContextImpl> contexts;
+  // contexts discarded from the contexts map, which are published until they are garbage collected.
+  // Only accessed by the publishing thread
+  private final Set<ExpiredContext> expiredContexts;
+  private final ReferenceQueue<MetricsContextImpl> collectedContexts;
   // maximum number of milliseconds to sleep between each publish
   private final long publishIntervalInMillis;
   private final CountDownLatch shutdownLatch;
@@ -60,28 +76,9 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     // the longest sleep time will be 1 min
     this.publishIntervalInMillis = Math.min(publishIntervalInMillis, Constants.Metrics.PROCESS_INTERVAL_MILLIS);
     this.shutdownLatch = new CountDownLatch(1);
-    this.collectors = CacheBuilder.newBuilder()
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(createCollectorLoader());
-
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this.contexts = new ConcurrentHashMap<>();
+    this.expiredContexts = new HashSet<>();
+    this.collectedContexts = new ReferenceQueue<>();
   }
 
   /**
@@ -157,7 +154,8 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
 
   @Override
   public final MetricsContext getContext(final Map<String, String> tags) {
-    return collectors.getUnchecked(tags);
+    MetricsContextImpl context = contexts.get(tags);
+    return context == null ? contexts.computeIfAbsent(ImmutableMap.copyOf(tags), MetricsContextImpl::new) : context;
   }
 
   @Override
@@ -172,75 +170,127 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
   }
 
   private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+    final long expireMillis = TimeUnit.SECONDS.toMillis(timestamp) - TimeUnit.MINUTES.toMillis(CACHE_EXPIRE_MINUTES);
+    final List<ExpiredContext> newlyExpired = new ArrayList<>();
+    // Expired contexts that have been garbage collected are published for the last time. They must be polled before
+    // publishing, so that no update can happen after they are published.
+    final List<ExpiredContext> collected = new ArrayList<>();
+    Reference<? extends MetricsContextImpl> reference = collectedContexts.poll();
+    while (reference != null) {
+      expiredContexts.remove(reference);
+      collected.add((ExpiredContext) reference);
+      reference = collectedContexts.poll();
+    }
+    final Iterator<MetricsContextImpl> iterator = contexts.values().iterator();
+    final Iterator<ExpiredContext> expiredIterator = Iterators.concat(expiredContexts.iterator(),
+                                                                      collected.iterator());
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
-          // +1 because we add extra metric about how many metric values did we emit in this context (see below)
-          List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
-          for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
-            // skip increment by 0
-            if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
-              continue;
-            }
-            metricValues.add(metricValue);
-          }
+          MetricsContextImpl context = iterator.next();
+          List<MetricValue> metricValues = emit(context.emitters);
 
           if (metricValues.isEmpty()) {
+            // discard the context if it has been idle for long enough
+            if (context.idleSinceMillis == 0) {
+              context.idleSinceMillis = TimeUnit.SECONDS.toMillis(timestamp);
+            } else if (context.idleSinceMillis <= expireMillis && contexts.remove(context.tags, context)) {
+              newlyExpired.add(new ExpiredContext(context, collectedContexts));
+            }
             // skip if there are no metric values to send
             continue;
           }
-
-          // number of emitted metrics
-          metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
-
-          LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          context.idleSinceMillis = 0;
+          return createMetricValues(context.tags, timestamp, metricValues);
         }
+        while (expiredIterator.hasNext()) {
+          ExpiredContext expiredContext = expiredIterator.next();
+          List<MetricValue> metricValues = emit(expiredContext.emitters);
+          if (!metricValues.isEmpty()) {
+            return createMetricValues(expiredContext.tags, timestamp, metricValues);
+          }
+        }
+        expiredContexts.addAll(newlyExpired);
         return endOfData();
       }
     };
   }
 
-  private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
-    return new CacheLoader<Map<String, String>, MetricsContext>() {
-      @Override
-      public MetricsContext load(final Map<String, String> collectorKey) throws Exception {
-        return new MetricsContextImpl(collectorKey);
+  /**
+   * Emits the values of the given emitters, skipping counters that have not been incremented.
+   */
+  private List<MetricValue> emit(Map<String, AggregatedMetricsEmitter> metricEmitters) {
+    // +1 because we add extra metric about how many metric values did we emit in this context (see below)
+    List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
+    for (AggregatedMetricsEmitter emitter : metricEmitters.values()) {
+      MetricValue metricValue = emitter.emit();
+      // skip increment by 0
+      if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
+        continue;
       }
-    };
+      metricValues.add(metricValue);
+    }
+    return metricValues;
+  }
+
+  private MetricValues createMetricValues(Map<String, String> tags, long timestamp, List<MetricValue> metricValues) {
+    // number of emitted metrics
+    metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
+
+    LOG.trace("Emit metric {}", metricValues);
+    return new MetricValues(tags, timestamp, metricValues);
+  }
+
+  /**
+   * A discarded {@link MetricsContextImpl}, which keeps the tags and emitters of the context, so that they can be
+   * published after the context is garbage collected.
+   */
+  private static final class ExpiredContext extends WeakReference<MetricsContextImpl> {
+
+    private final Map<String, String> tags;
+    private final Map<String, AggregatedMetricsEmitter> emitters;
+
+    private ExpiredContext(MetricsContextImpl context, ReferenceQueue<MetricsContextImpl> queue) {
+      super(context, queue);
+      this.tags = context.tags;
+      this.emitters = context.emitters;
+    }
   }
 
   private final class MetricsContextImpl implements MetricsContext {
 
     private final Map<String, String> tags;
+    private final ConcurrentMap<String, AggregatedMetricsEmitter> emitters;
+    // time since when no metric was emitted, 0 if metrics were emitted in the last publish.
+    // Only accessed by the publishing thread
+    private long idleSinceMillis;
 
     private MetricsContextImpl(final Map<String, String> tags) {
       this.tags = ImmutableMap.copyOf(tags);
+      this.emitters = new ConcurrentHashMap<>();
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      getEmitter(metricName).increment(value);
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      getEmitter(metricName).gauge(value);
+    }
+
+    private AggregatedMetricsEmitter getEmitter(String metricName) {
+      AggregatedMetricsEmitter emitter = emitters.get(metricName);
+      return emitter == null ? emitters.computeIfAbsent(metricName, AggregatedMetricsEmitter::new) : emitter;
     }
 
     @Override
     public MetricsContext childContext(String tagName, String tagValue) {
       ImmutableMap<String, String> allTags = ImmutableMap.<String, String>builder()
         .putAll(tags).put(tagName, tagValue).build();
-      return collectors.getUnchecked(allTags);
+      return getContext(allTags);
     }
 
     @Override
@@ -257,7 +307,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       Map<String, String> allTags = Maps.newHashMap();
       allTags.putAll(this.tags);
       allTags.putAll(tags);
-      return collectors.getUnchecked(allTags);
+      return getContext(allTags);
     }
   }
 }
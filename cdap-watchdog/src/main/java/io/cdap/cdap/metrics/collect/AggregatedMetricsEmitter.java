@@ -22,17 +22,23 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ * Increments are kept in a {@link LongAdder}, so that concurrent increments from many threads don't contend.
+ * A gauge replaces the increments made before it. It is kept in a separate {@link AtomicLong}, as an offset
+ * to the increment sum at the time of the gauge, so that only the increments made after the gauge are added to it.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
+  // sum of increments since the last emit
+  private final LongAdder increments;
+  // latest gauge value, minus the sum of increments at the time of the gauge
+  private final AtomicLong gaugeValue;
   // specifies if the metric type is gauge or counter
   private final AtomicBoolean gaugeUsed;
 
@@ -42,25 +48,31 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
+    this.increments = new LongAdder();
+    this.gaugeValue = new AtomicLong();
     this.gaugeUsed = new AtomicBoolean(false);
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    increments.add(value);
   }
 
 
   @Override
   public MetricValue emit() {
-    // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+    // Only subtract what is emitted, so that increments racing with the emit are kept for the next emit
+    long value = increments.sum();
+    increments.add(-value);
+    if (gaugeUsed.getAndSet(false)) {
+      return new MetricValue(name, MetricType.GAUGE, gaugeValue.getAndSet(0) + value);
+    }
+    return new MetricValue(name, MetricType.COUNTER, value);
   }
 
   public void gauge(long value) {
-    this.value.set(value);
-    this.gaugeUsed.set(true);
+    // Offset the increments not yet emitted, so that they are replaced by the gauge value.
+    // The gauge value must be set before the flag, so that an emit that sees the flag also sees the value
+    gaugeValue.set(value - increments.sum());
+    gaugeUsed.set(true);
   }
 }
@@ -46,41 +46,55 @@ import io.cdap.cdap.messaging.data.RawMessage;
 import io.cdap.cdap.metrics.store.MetricDatasetFactory;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 /**
  * Process metrics by consuming metrics being published to TMS.
+ * <p/>
+ * Processing is pipelined. One thread per topic fetches messages, which are decoded in batches on a shared pool of
+ * {@link Constants.Metrics#PROCESSOR_DECODE_THREADS} threads and queued. Whichever thread is free then drains the
+ * queue, aggregates identical points with {@link MetricValuesAggregator} and writes them with a single call to the
+ * {@link MetricsWriter}. Besides the per topic delays, the time spent in each stage is emitted as metrics of the
+ * processor.
  */
 public class MessagingMetricsProcessorService extends AbstractExecutionThreadService {
 
   private static final Logger LOG = LoggerFactory.getLogger(MessagingMetricsProcessorManagerService.class);
   // Log the metrics processing progress no more than once per minute.
   private static final Logger PROGRESS_LOG = Loggers.sampling(LOG, LogSamplers.limitRate(60000));
+  // Number of fetched messages decoded by one task of the decoding pool
+  private static final int DECODE_BATCH_SIZE = 250;
 
   private final MetricDatasetFactory metricDatasetFactory;
   private final List<TopicId> metricsTopics;
   private final MessagingService messagingService;
-  private final DatumReader<MetricValues> metricReader;
+  // The reflection based reader is not thread safe, hence each fetching or decoding thread has its own decoder
+  private final ThreadLocal<MetricValuesDecoder> metricDecoders;
   private final Schema metricSchema;
   private final MetricsWriter metricsWriter;
   private final Map<String, String> metricsContextMap;
@@ -96,7 +110,19 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final List<ProcessMetricsThread> processMetricsThreads;
   private final String processMetricName;
   private final String metricsPrefixForDelayMetrics;
+  private final String decodeTimeMetricName;
+  private final String writeTimeMetricName;
+  private final String persistDelayMetricName;
+  private final String aggregatedMetricName;
+  private final int decodeThreads;
+  private final AtomicLong decodeNanos;
   private long metricsProcessedCount;
+  // Duration of the last write to the metrics writer. Only accessed by the persisting thread
+  private long lastWriteMillis;
+
+  // Pool for decoding fetched messages, null if messages are decoded by the fetching threads
+  @Nullable
+  private ExecutorService decodeExecutor;
 
   private MetricsConsumerMetaTable metaTable;
 
@@ -137,8 +163,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       .collect(Collectors.toList());
     this.messagingService = messagingService;
     try {
-      this.metricSchema = schemaGenerator.generate(MetricValues.class);
-      this.metricReader = readerFactory.create(TypeToken.of(MetricValues.class), metricSchema);
+      Schema schema = schemaGenerator.generate(MetricValues.class);
+      this.metricSchema = schema;
+      this.metricDecoders = ThreadLocal.withInitial(
+        () -> new MetricValuesDecoder(readerFactory.create(TypeToken.of(MetricValues.class), schema)));
     } catch (UnsupportedTypeException e) {
       // This should never happen
       throw Throwables.propagate(e);
@@ -156,6 +184,12 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis < Constants.Metrics.PROCESS_INTERVAL_MILLIS ?
       metricsProcessIntervalMillis : Constants.Metrics.PROCESS_INTERVAL_MILLIS;
     this.processMetricName = String.format("metrics.%s.process.count", instanceId);
+    this.decodeTimeMetricName = metricsPrefixForDelayMetrics + ".decode.time.ms";
+    this.writeTimeMetricName = metricsPrefixForDelayMetrics + ".write.time.ms";
+    this.persistDelayMetricName = metricsPrefixForDelayMetrics + ".persist.delay.ms";
+    this.aggregatedMetricName = metricsPrefixForDelayMetrics + ".aggregated.count";
+    this.decodeThreads = cConf.getInt(Constants.Metrics.PROCESSOR_DECODE_THREADS);
+    this.decodeNanos = new AtomicLong();
   }
 
   private MetricsConsumerMetaTable getMetaTable() {
@@ -203,6 +237,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       return;
     }
 
+    if (decodeThreads > 0) {
+      decodeExecutor = Executors.newFixedThreadPool(decodeThreads,
+                                                    Threads.createDaemonThreadFactory("metrics-decoder-%d"));
+    }
     for (ProcessMetricsThread thread : processMetricsThreads) {
       thread.start();
     }
@@ -215,6 +253,9 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         Thread.currentThread().interrupt();
       }
     }
+    if (decodeExecutor != null) {
+      decodeExecutor.shutdownNow();
+    }
 
     // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
     // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
@@ -272,6 +313,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                               Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
     long now = System.currentTimeMillis();
     long lastMetricTime = metricValues.peekLast().getTimestamp();
+    int processedCount = metricValues.size();
+    List<MetricValues> aggregatedValues = MetricValuesAggregator.aggregate(metricValues);
+    int aggregatedCount = MetricValuesAggregator.countMetrics(metricValues)
+      - MetricValuesAggregator.countMetrics(aggregatedValues);
     List<MetricValue> topicLevelDelays = new ArrayList<>();
 
     //write topic level delay metrics
@@ -285,11 +330,22 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                                            MetricType.GAUGE, delay));
     }
     List<MetricValue> processorMetrics = new ArrayList<>(topicLevelDelays);
-    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValues.size()));
-
-    metricValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
-    metricsWriter.write(metricValues);
-    metricsProcessedCount += metricValues.size();
+    processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, processedCount));
+
+    // delays and durations of the processing stages
+    processorMetrics.add(new MetricValue(persistDelayMetricName, MetricType.GAUGE,
+                                         now - TimeUnit.SECONDS.toMillis(lastMetricTime)));
+    // keep the sub-millisecond remainder of the decoding time for the next persist
+    long decodeMillis = TimeUnit.NANOSECONDS.toMillis(decodeNanos.get());
+    decodeNanos.addAndGet(-TimeUnit.MILLISECONDS.toNanos(decodeMillis));
+    processorMetrics.add(new MetricValue(decodeTimeMetricName, MetricType.COUNTER, decodeMillis));
+    processorMetrics.add(new MetricValue(writeTimeMetricName, MetricType.GAUGE, lastWriteMillis));
+    processorMetrics.add(new MetricValue(aggregatedMetricName, MetricType.COUNTER, aggregatedCount));
+
+    aggregatedValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
+    metricsWriter.write(aggregatedValues);
+    lastWriteMillis = System.currentTimeMillis() - now;
+    metricsProcessedCount += processedCount + 1;
     PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}",
                        metricsProcessedCount, lastMetricTime);
   }
@@ -297,8 +353,6 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private class ProcessMetricsThread extends Thread {
 
     private final TopicIdMetaKey topicIdMetaKey;
-    private final PayloadInputStream payloadInput;
-    private final BinaryDecoder decoder;
     private final String oldestTsMetricName;
     private final String latestTsMetricName;
     private long lastMetricTimeSecs;
@@ -322,8 +376,6 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                                                      oldestTsMetricName, latestTsMetricName));
       }
       this.topicIdMetaKey = topicIdMetaKey;
-      this.payloadInput = new PayloadInputStream();
-      this.decoder = new BinaryDecoder(payloadInput);
     }
 
     @Override
@@ -372,27 +424,31 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
           new TopicProcessMeta(lastMessageId, Long.MAX_VALUE, Long.MIN_VALUE, 0,
                                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
                                oldestTsMetricName, latestTsMetricName);
+        List<RawMessage> messages = new ArrayList<>();
         try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
           while (iterator.hasNext() && isRunning()) {
-            RawMessage input = iterator.next();
-            try {
-              payloadInput.reset(input.getPayload());
-              MetricValues metricValues = metricReader.read(decoder, metricSchema);
-              if (!metricsFromAllTopics.offer(metricValues)) {
-                break;
-              }
-              lastMetricTimeSecs = metricValues.getTimestamp();
-              currentMessageId = input.getId();
-              if (LOG.isTraceEnabled()) {
-                LOG.trace("Received message {} with metrics: {}", Bytes.toStringBinary(currentMessageId), metricValues);
-              }
-              localTopicProcessMeta.updateTopicProcessingStats(currentMessageId, lastMetricTimeSecs);
-            } catch (IOException e) {
-              LOG.warn("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
-            }
+            messages.add(iterator.next());
           }
         }
 
+        List<MetricValues> decoded = decode(messages);
+        for (int i = 0; i < messages.size(); i++) {
+          MetricValues metricValues = decoded.get(i);
+          if (metricValues == null) {
+            // Failed to decode, the message is skipped
+            continue;
+          }
+          if (!metricsFromAllTopics.offer(metricValues)) {
+            break;
+          }
+          lastMetricTimeSecs = metricValues.getTimestamp();
+          currentMessageId = messages.get(i).getId();
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("Received message {} with metrics: {}", Bytes.toStringBinary(currentMessageId), metricValues);
+          }
+          localTopicProcessMeta.updateTopicProcessingStats(currentMessageId, lastMetricTimeSecs);
+        }
+
         if (currentMessageId != null) {
           // update the last processed timestamp in local topic meta and update the topicProcessMetaMap with this
           // local topic meta for the topic
@@ -414,12 +470,57 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         }
       } catch (ServiceUnavailableException e) {
         LOG.trace("Could not fetch metrics. Will be retried in next iteration.", e);
+      } catch (InterruptedException e) {
+        // It's triggered by stop
+        Thread.currentThread().interrupt();
       } catch (Exception e) {
         LOG.warn("Failed to process metrics. Will be retried in next iteration.", e);
       }
       return metricsProcessIntervalMillis;
     }
 
+    /**
+     * Decodes the given messages, in batches on the decoding pool if there is more than one batch.
+     *
+     * @return a list of {@link MetricValues} in the same order as the messages, with {@code null} for messages that
+     *         failed to decode
+     */
+    private List<MetricValues> decode(List<RawMessage> messages) throws InterruptedException, ExecutionException {
+      long startNanos = System.nanoTime();
+      try {
+        ExecutorService executor = decodeExecutor;
+        if (executor == null || messages.size() <= DECODE_BATCH_SIZE) {
+          return decodeBatch(messages);
+        }
+        List<Future<List<MetricValues>>> futures = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i += DECODE_BATCH_SIZE) {
+          List<RawMessage> batch = messages.subList(i, Math.min(messages.size(), i + DECODE_BATCH_SIZE));
+          futures.add(executor.submit(() -> decodeBatch(batch)));
+        }
+        List<MetricValues> result = new ArrayList<>(messages.size());
+        for (Future<List<MetricValues>> future : futures) {
+          result.addAll(future.get());
+        }
+        return result;
+      } finally {
+        decodeNanos.addAndGet(System.nanoTime() - startNanos);
+      }
+    }
+
+    private List<MetricValues> decodeBatch(List<RawMessage> messages) {
+      MetricValuesDecoder decoder = metricDecoders.get();
+      List<MetricValues> result = new ArrayList<>(messages.size());
+      for (RawMessage message : messages) {
+        try {
+          result.add(decoder.decode(message.getPayload()));
+        } catch (IOException e) {
+          LOG.warn("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
+          result.add(null);
+        }
+      }
+      return result;
+    }
+
     /**
      * Persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
      */
@@ -438,17 +539,13 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
         Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMapCopy = new HashMap<>(topicProcessMetaMap);
         // Remove at most queueSize of metrics from metricsFromAllTopics and put into metricsCopy to limit
         // the number of metrics being persisted each time
-        Deque<MetricValues> metricsCopy = new LinkedList<>();
-        Iterator<MetricValues> iterator = metricsFromAllTopics.iterator();
+        Deque<MetricValues> metricsCopy = new ArrayDeque<>();
         // Though the blocking queue(metricsFromAllTopics) has upper bound on its size (which is the "queueSize")
         // there can be a scenario, as the current thread is removing entries from blocking queue
         // and adding it to a copy list, other threads are simultaneously adding entries to the queue and
         // the current list might become very big causing out of memory issues, we avoid this
         // by making the copy list size also to be limited by the max queue size.
-        while (iterator.hasNext() && metricsCopy.size() < queueSize) {
-          metricsCopy.add(iterator.next());
-          iterator.remove();
-        }
+        metricsFromAllTopics.drainTo(metricsCopy, queueSize);
         // Persist the copy of metrics and MessageId's
 
         persistMetricsAndTopicProcessMeta(metricsCopy, topicProcessMetaMapCopy);
@@ -461,6 +558,27 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     }
   }
 
+  /**
+   * Decodes {@link MetricValues} from message payloads, reusing the same input stream and decoder.
+   */
+  private final class MetricValuesDecoder {
+
+    private final DatumReader<MetricValues> metricReader;
+    private final PayloadInputStream payloadInput;
+    private final BinaryDecoder decoder;
+
+    MetricValuesDecoder(DatumReader<MetricValues> metricReader) {
+      this.metricReader = metricReader;
+      this.payloadInput = new PayloadInputStream();
+      this.decoder = new BinaryDecoder(payloadInput);
+    }
+
+    MetricValues decode(byte[] payload) throws IOException {
+      payloadInput.reset(payload);
+      return metricReader.read(decoder, metricSchema);
+    }
+  }
+
   private class PayloadInputStream extends ByteArrayInputStream {
 
     PayloadInputStream() {
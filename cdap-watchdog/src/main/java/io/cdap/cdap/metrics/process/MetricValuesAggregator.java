@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.process;
+
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import io.cdap.cdap.api.metrics.MetricValues;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Merges {@link MetricValues} with the same tags and timestamp before they are written to the metric store, so that
+ * every (tags, metric name, timestamp) point is only written once per batch. The result is the same as writing the
+ * metric values one by one: counters are summed up, a gauge replaces everything before it, and counters following
+ * a gauge are added to the gauge value.
+ */
+final class MetricValuesAggregator {
+
+  private MetricValuesAggregator() {
+    // no-op
+  }
+
+  /**
+   * Aggregates the given metric values.
+   *
+   * @param metricValues the {@link MetricValues} to aggregate, in the order they were emitted
+   * @return a list of {@link MetricValues}, with at most one entry per tags and timestamp
+   */
+  static List<MetricValues> aggregate(Collection<MetricValues> metricValues) {
+    Map<AggregationKey, Map<String, MetricValue>> aggregates = new LinkedHashMap<>();
+    for (MetricValues values : metricValues) {
+      Map<String, MetricValue> metrics = aggregates.computeIfAbsent(
+        new AggregationKey(values.getTags(), values.getTimestamp()), k -> new LinkedHashMap<>());
+      for (MetricValue metric : values.getMetrics()) {
+        metrics.merge(metric.getName(), metric, MetricValuesAggregator::merge);
+      }
+    }
+
+    // Nothing got merged
+    if (aggregates.size() == metricValues.size()) {
+      return new ArrayList<>(metricValues);
+    }
+
+    List<MetricValues> result = new ArrayList<>(aggregates.size());
+    for (Map.Entry<AggregationKey, Map<String, MetricValue>> entry : aggregates.entrySet()) {
+      AggregationKey key = entry.getKey();
+      result.add(new MetricValues(key.tags, key.timestamp, new ArrayList<>(entry.getValue().values())));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the total number of {@link MetricValue} in the given collection of {@link MetricValues}.
+   */
+  static int countMetrics(Collection<MetricValues> metricValues) {
+    int count = 0;
+    for (MetricValues values : metricValues) {
+      count += values.getMetrics().size();
+    }
+    return count;
+  }
+
+  private static MetricValue merge(MetricValue previous, MetricValue current) {
+    if (current.getType() == MetricType.GAUGE) {
+      return current;
+    }
+    // a counter increments whatever the previous value is, and a gauge followed by a counter stays a gauge
+    return new MetricValue(current.getName(), previous.getType(), previous.getValue() + current.getValue());
+  }
+
+  /**
+   * Key for {@link MetricValues} that are merged together.
+   */
+  private static final class AggregationKey {
+    private final Map<String, String> tags;
+    private final long timestamp;
+    private final int hashCode;
+
+    AggregationKey(Map<String, String> tags, long timestamp) {
+      this.tags = tags;
+      this.timestamp = timestamp;
+      this.hashCode = Objects.hash(tags, timestamp);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      AggregationKey other = (AggregationKey) o;
+      return timestamp == other.timestamp && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.ImmutablePair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of {@link MetricDataQuery} results in front of a {@link MetricStore}, for the sliding window queries
+ * repeatedly made by dashboards.
+ * <p/>
+ * Results are cached by the query without its time range. When the same query is made with a time range that
+ * starts within and ends after the cached one, only the interval after the cached end time is queried from the
+ * {@link MetricStore} and merged with the cached result. Since metrics can arrive late, the last
+ * {@code refreshOverlapSeconds} of the cached result are always queried again. The whole time range is queried
+ * again once {@code expireSeconds} have passed since it was last fully queried, so that late data older than the
+ * overlap is eventually picked up, no matter how often the cached result is refreshed.
+ * <p/>
+ * Late metrics only add or update points, while deleting metrics removes them. If a point of the cached result is
+ * missing from the refreshed time range, the metrics have been deleted and the whole time range is queried again.
+ * Deletes that only remove points before the refreshed time range are picked up after {@code expireSeconds}.
+ * <p/>
+ * Only queries which result is not truncated nor partitioned by the query limit and which don't use interpolation
+ * are cached, since only those have results that can be merged point by point.
+ */
+final class MetricsQueryCache {
+
+  private final MetricStore metricStore;
+  private final long expireNanos;
+  private final long refreshOverlapSeconds;
+  private final Ticker ticker;
+  private final Cache<CacheKey, CachedResult> cache;
+
+  @Nullable
+  private volatile MetricsContext metricsContext;
+
+  /**
+   * Creates an instance.
+   *
+   * @param metricStore the {@link MetricStore} to query
+   * @param maxEntries maximum number of queries to cache
+   * @param expireSeconds number of seconds after which a cached result is discarded
+   * @param refreshOverlapSeconds number of seconds before the cached end time that are always queried again
+   */
+  MetricsQueryCache(MetricStore metricStore, int maxEntries, long expireSeconds, long refreshOverlapSeconds) {
+    this(metricStore, maxEntries, expireSeconds, refreshOverlapSeconds, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  MetricsQueryCache(MetricStore metricStore, int maxEntries, long expireSeconds, long refreshOverlapSeconds,
+                    Ticker ticker) {
+    this.metricStore = metricStore;
+    this.expireNanos = TimeUnit.SECONDS.toNanos(expireSeconds);
+    this.refreshOverlapSeconds = refreshOverlapSeconds;
+    this.ticker = ticker;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maxEntries)
+      .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+      .ticker(ticker)
+      .build();
+  }
+
+  /**
+   * Sets the {@link MetricsContext} for emitting metrics about the cache.
+   */
+  void setMetricsContext(MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Executes the given query, using the cached result of the same query if possible.
+   */
+  Collection<MetricTimeSeries> query(MetricDataQuery query) {
+    if (!isCacheable(query)) {
+      return metricStore.query(query);
+    }
+
+    CacheKey key = new CacheKey(query);
+    CachedResult cached = cache.getIfPresent(key);
+    // cache.put resets the expiry of the cache entry, hence the time of the last full query is kept in the entry
+    long now = ticker.read();
+
+    Collection<MetricTimeSeries> result = null;
+    long fullQueryTime = now;
+    if (cached != null && now - cached.fullQueryTime < expireNanos && cached.startTs <= query.getStartTs()
+      && query.getStartTs() <= cached.endTs && cached.endTs <= query.getEndTs()) {
+      long refreshStartTs = Math.max(query.getStartTs(), cached.endTs - refreshOverlapSeconds);
+      MetricDataQuery deltaQuery = new MetricDataQuery(refreshStartTs, query.getEndTs(), query.getResolution(),
+                                                       query.getLimit(), query.getMetrics(), query.getSliceByTags(),
+                                                       query.getGroupByTags(), query.getAggregationOption(), null);
+      result = merge(cached, metricStore.query(deltaQuery), query.getStartTs(), refreshStartTs);
+      if (result != null) {
+        fullQueryTime = cached.fullQueryTime;
+        increment(Constants.Metrics.Name.Query.CACHE_HIT_COUNT, 1);
+        increment(Constants.Metrics.Name.Query.CACHE_SAVED_INTERVALS,
+                  (refreshStartTs - query.getStartTs()) / query.getResolution());
+      }
+    }
+    if (result == null) {
+      result = metricStore.query(query);
+      increment(Constants.Metrics.Name.Query.CACHE_MISS_COUNT, 1);
+    }
+
+    cache.put(key, new CachedResult(query.getStartTs(), query.getEndTs(), fullQueryTime, result));
+    MetricsContext context = metricsContext;
+    if (context != null) {
+      context.gauge(Constants.Metrics.Name.Query.CACHE_SIZE, cache.size());
+    }
+    return result;
+  }
+
+  /**
+   * Returns {@code true} if the result of the given query can be cached.
+   */
+  private boolean isCacheable(MetricDataQuery query) {
+    int resolution = query.getResolution();
+    if (resolution == Integer.MAX_VALUE || query.getInterpolator() != null || query.getEndTs() < query.getStartTs()) {
+      return false;
+    }
+    // the result is neither truncated nor partitioned if the limit is not smaller than the number of intervals
+    long intervals = query.getEndTs() / resolution - query.getStartTs() / resolution + 1;
+    return query.getLimit() >= intervals;
+  }
+
+  /**
+   * Merges the cached time series with the ones from the delta query. Cached points in {@code [startTs, refreshTs)}
+   * are kept and the delta query provides the points from {@code refreshTs} onward.
+   *
+   * @return the merged time series, or {@code null} if cached points from {@code refreshTs} onward are missing from
+   *         the delta query, which means that the metrics have been deleted
+   */
+  @Nullable
+  private Collection<MetricTimeSeries> merge(CachedResult cached, Collection<MetricTimeSeries> delta,
+                                             long startTs, long refreshTs) {
+    Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> merged = new LinkedHashMap<>();
+    Map<ImmutablePair<String, Map<String, String>>, Set<Long>> refreshed = new HashMap<>();
+    for (MetricTimeSeries timeSeries : cached.timeSeries) {
+      ImmutablePair<String, Map<String, String>> seriesKey = ImmutablePair.of(timeSeries.getMetricName(),
+                                                                              timeSeries.getTagValues());
+      List<TimeValue> timeValues = new ArrayList<>();
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        if (timeValue.getTimestamp() < startTs) {
+          continue;
+        }
+        if (timeValue.getTimestamp() < refreshTs) {
+          timeValues.add(timeValue);
+        } else {
+          refreshed.computeIfAbsent(seriesKey, k -> new HashSet<>()).add(timeValue.getTimestamp());
+        }
+      }
+      merged.put(seriesKey, timeValues);
+    }
+    for (MetricTimeSeries timeSeries : delta) {
+      ImmutablePair<String, Map<String, String>> seriesKey = ImmutablePair.of(timeSeries.getMetricName(),
+                                                                              timeSeries.getTagValues());
+      Set<Long> timestamps = refreshed.get(seriesKey);
+      for (TimeValue timeValue : timeSeries.getTimeValues()) {
+        if (timestamps != null) {
+          timestamps.remove(timeValue.getTimestamp());
+        }
+      }
+      merged.computeIfAbsent(seriesKey, k -> new ArrayList<>()).addAll(timeSeries.getTimeValues());
+    }
+    for (Set<Long> timestamps : refreshed.values()) {
+      if (!timestamps.isEmpty()) {
+        return null;
+      }
+    }
+
+    List<MetricTimeSeries> result = new ArrayList<>(merged.size());
+    for (Map.Entry<ImmutablePair<String, Map<String, String>>, List<TimeValue>> entry : merged.entrySet()) {
+      // same as the store, series without any point in the time range are not returned
+      if (!entry.getValue().isEmpty()) {
+        result.add(new MetricTimeSeries(entry.getKey().getFirst(), entry.getKey().getSecond(), entry.getValue()));
+      }
+    }
+    return result;
+  }
+
+  private void increment(String metricName, long value) {
+    MetricsContext context = metricsContext;
+    if (context != null) {
+      context.increment(metricName, value);
+    }
+  }
+
+  /**
+   * Key of the cache, which is the query without its time range.
+   */
+  private static final class CacheKey {
+    private final int resolution;
+    private final Map<String, AggregationFunction> metrics;
+    private final Map<String, String> sliceByTags;
+    private final List<String> groupByTags;
+    private final AggregationOption aggregationOption;
+    private final int hashCode;
+
+    CacheKey(MetricDataQuery query) {
+      // the limit is not part of the key, since it does not affect the result of cacheable queries
+      this.resolution = query.getResolution();
+      this.metrics = new HashMap<>(query.getMetrics());
+      this.sliceByTags = new HashMap<>(query.getSliceByTags());
+      this.groupByTags = new ArrayList<>(query.getGroupByTags());
+      this.aggregationOption = query.getAggregationOption();
+      this.hashCode = Objects.hash(resolution, metrics, sliceByTags, groupByTags, aggregationOption);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return resolution == other.resolution
+        && metrics.equals(other.metrics)
+        && sliceByTags.equals(other.sliceByTags)
+        && groupByTags.equals(other.groupByTags)
+        && aggregationOption == other.aggregationOption;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * A cached query result, its time range, and the {@link Ticker} time when the whole time range was last queried.
+   */
+  private static final class CachedResult {
+    private final long startTs;
+    private final long endTs;
+    private final long fullQueryTime;
+    private final Collection<MetricTimeSeries> timeSeries;
+
+    CachedResult(long startTs, long endTs, long fullQueryTime, Collection<MetricTimeSeries> timeSeries) {
+      this.startTs = startTs;
+      this.endTs = endTs;
+      this.fullQueryTime = fullQueryTime;
+      this.timeSeries = timeSeries;
+    }
+  }
+}
@@ -35,6 +35,7 @@ import io.cdap.cdap.api.metrics.MetricDataQuery;
 import io.cdap.cdap.api.metrics.MetricSearchQuery;
 import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.metrics.TagValue;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -42,6 +43,7 @@ import io.cdap.cdap.common.utils.TimeMathParser;
 import io.cdap.cdap.proto.MetricQueryRequest;
 import io.cdap.cdap.proto.MetricQueryResult;
 import io.cdap.cdap.proto.MetricTagValue;
+import io.cdap.cdap.proto.id.NamespaceId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,6 +78,8 @@ public class MetricsQueryHelper {
 
   private final MetricStore metricStore;
   private final int minResolution;
+  @Nullable
+  private final MetricsQueryCache queryCache;
 
   private static final Map<String, String> tagNameToHuman;
   private static final Map<String, String> humanToTagName;
@@ -132,6 +136,22 @@ public class MetricsQueryHelper {
     this.metricStore = metricStore;
     int minimumResolution = cConf.getInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS);
     this.minResolution = minimumResolution < 60 ? minimumResolution : 60;
+    int cacheMaxEntries = cConf.getInt(Constants.Metrics.QUERY_CACHE_MAX_ENTRIES);
+    this.queryCache = cacheMaxEntries <= 0 ? null :
+      new MetricsQueryCache(metricStore, cacheMaxEntries, cConf.getLong(Constants.Metrics.QUERY_CACHE_EXPIRE_SECONDS),
+                            cConf.getLong(Constants.Metrics.QUERY_CACHE_REFRESH_OVERLAP_SECONDS));
+  }
+
+  /**
+   * Optional injection of {@link MetricsCollectionService} for emitting metrics about the query cache.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    if (queryCache != null) {
+      queryCache.setMetricsContext(metricsCollectionService.getContext(ImmutableMap.of(
+        Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+        Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS)));
+    }
   }
 
   public List<MetricTagValue> searchTags(List<String> tags) {
@@ -372,7 +392,7 @@ public class MetricsQueryHelper {
                                                 timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
                                                 tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
                                                 aggregation, timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+    Collection<MetricTimeSeries> queryResult = queryCache == null ? metricStore.query(query) : queryCache.query(query);
 
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
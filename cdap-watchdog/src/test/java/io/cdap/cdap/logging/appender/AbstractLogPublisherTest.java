@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.appender;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.logging.logback.TestLoggingContext;
+import io.cdap.cdap.common.service.RetryStrategies;
+import io.cdap.cdap.common.utils.Tasks;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link AbstractLogPublisher}.
+ */
+public class AbstractLogPublisherTest {
+
+  @Test (timeout = 10000L)
+  public void testBatchBytes() throws Exception {
+    // Each message is 100 bytes, hence each batch should have at most 3 messages
+    TestLogPublisher publisher = new TestLogPublisher(100, 250, 1000);
+    for (int i = 0; i < 10; i++) {
+      publisher.addMessage(createLogMessage("message " + i));
+    }
+
+    publisher.startAndWait();
+    try {
+      Tasks.waitFor(10, () -> publisher.getPublished().size(), 5, TimeUnit.SECONDS);
+    } finally {
+      publisher.stopAndWait();
+    }
+
+    for (List<String> batch : publisher.getBatches()) {
+      Assert.assertTrue(batch.size() <= 3);
+    }
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      expected.add("message " + i);
+    }
+    Assert.assertEquals(expected, publisher.getPublished());
+  }
+
+  @Test (timeout = 10000L)
+  public void testDropMetrics() throws Exception {
+    // With a queue size of 2, adding 5 messages should drop the 3 oldest ones without blocking for long
+    TestLogPublisher publisher = new TestLogPublisher(2, Long.MAX_VALUE, 10);
+    Map<String, Long> metrics = new ConcurrentHashMap<>();
+    publisher.setMetricsContext(new TestMetricsContext(metrics));
+    for (int i = 0; i < 5; i++) {
+      publisher.addMessage(createLogMessage("message " + i));
+    }
+
+    publisher.startAndWait();
+    try {
+      Tasks.waitFor(3L, () -> metrics.getOrDefault(Constants.Metrics.Name.Log.APPENDER_DROPPED_COUNT, 0L),
+                    5, TimeUnit.SECONDS);
+    } finally {
+      publisher.stopAndWait();
+    }
+
+    Assert.assertEquals(0L, (long) metrics.get(Constants.Metrics.Name.Log.APPENDER_QUEUE_SIZE));
+    Assert.assertTrue(metrics.containsKey(Constants.Metrics.Name.Log.APPENDER_PUBLISH_LATENCY));
+    Assert.assertEquals(Arrays.asList("message 3", "message 4"), publisher.getPublished());
+  }
+
+  private LogMessage createLogMessage(String message) {
+    LoggingEvent event = new LoggingEvent();
+    event.setMessage(message);
+    event.setMDCPropertyMap(Collections.emptyMap());
+    return new LogMessage(event, new TestLoggingContext("ns", "app", "run", "instance"));
+  }
+
+  /**
+   * A {@link AbstractLogPublisher} that records the published batches.
+   */
+  private static final class TestLogPublisher extends AbstractLogPublisher<String> {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    TestLogPublisher(int queueSize, long maxBatchBytes, long offerTimeoutMillis) {
+      super(queueSize, maxBatchBytes, Long.MAX_VALUE, offerTimeoutMillis, RetryStrategies.noRetry());
+    }
+
+    @Override
+    protected String createMessage(LogMessage logMessage) {
+      return logMessage.getFormattedMessage();
+    }
+
+    @Override
+    protected int getMessageSize(String message) {
+      return 100;
+    }
+
+    @Override
+    protected void publish(List<String> logMessages) {
+      if (!logMessages.isEmpty()) {
+        batches.add(new ArrayList<>(logMessages));
+      }
+    }
+
+    List<List<String>> getBatches() {
+      return batches;
+    }
+
+    List<String> getPublished() {
+      List<String> published = new ArrayList<>();
+      batches.forEach(published::addAll);
+      return published;
+    }
+  }
+
+  /**
+   * A {@link MetricsContext} that keeps the sum of increments and the last gauge value of each metric.
+   */
+  private static final class TestMetricsContext implements MetricsContext {
+
+    private final Map<String, Long> metrics;
+
+    TestMetricsContext(Map<String, Long> metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public void increment(String metricName, long value) {
+      metrics.merge(metricName, value, Long::sum);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      metrics.put(metricName, value);
+    }
+  }
+}
@@ -41,6 +41,7 @@ import io.cdap.cdap.logging.context.ApplicationLoggingContext;
 import io.cdap.cdap.logging.context.UserServiceLoggingContext;
 import io.cdap.cdap.logging.filter.Filter;
 import io.cdap.cdap.logging.framework.LocalAppenderContext;
+import io.cdap.cdap.logging.framework.ShardedAppenderContext;
 import io.cdap.cdap.logging.guice.LocalLogAppenderModule;
 import io.cdap.cdap.logging.meta.FileMetaDataReader;
 import io.cdap.cdap.logging.read.LogEvent;
@@ -71,8 +72,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 public class CDAPLogAppenderTest {
@@ -186,6 +189,44 @@ public class CDAPLogAppenderTest {
     }
   }
 
+  @Test
+  public void testSingleLogCleanerWithShards() {
+    AppenderContext instanceContext = new LocalAppenderContext(injector.getInstance(TransactionRunner.class),
+                                                               injector.getInstance(LocationFactory.class),
+                                                               new NoOpMetricsCollectionService());
+    int numShards = 3;
+    int cleanupScheduled = 0;
+    Set<Integer> instanceIds = new HashSet<>();
+    for (int shard = 0; shard < numShards; shard++) {
+      // Each shard of the log buffer loads its own copy of the appender, with a sharded context
+      AppenderContext context = new ShardedAppenderContext(instanceContext, shard, numShards);
+      context.start();
+      instanceIds.add(context.getInstanceId());
+      Assert.assertEquals(numShards, context.getInstanceCount());
+
+      CDAPLogAppender cdapLogAppender = new CDAPLogAppender();
+      cdapLogAppender.setSyncIntervalBytes(1024 * 1024);
+      cdapLogAppender.setMaxFileLifetimeMs(TimeUnit.DAYS.toMillis(1));
+      cdapLogAppender.setMaxFileSizeInBytes(104857600);
+      cdapLogAppender.setDirPermissions("700");
+      cdapLogAppender.setFilePermissions("600");
+      cdapLogAppender.setFileRetentionDurationDays(1);
+      cdapLogAppender.setLogCleanupIntervalMins(10);
+      cdapLogAppender.setFileCleanupBatchSize(100);
+      cdapLogAppender.setContext(context);
+      cdapLogAppender.start();
+      if (cdapLogAppender.isLogCleanupScheduled()) {
+        cleanupScheduled++;
+      }
+      cdapLogAppender.stop();
+      context.stop();
+    }
+
+    // Only one log cleaner should be scheduled across all shards
+    Assert.assertEquals(1, cleanupScheduled);
+    Assert.assertEquals(numShards, instanceIds.size());
+  }
+
   @Test
   public void testCDAPLogAppenderRotation() throws Exception {
     int syncInterval = 1024 * 1024;
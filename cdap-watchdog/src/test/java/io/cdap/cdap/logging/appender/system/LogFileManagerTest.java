@@ -115,7 +115,7 @@ public class LogFileManagerTest {
     long maxFileSizeInBytes = 104857600;
     FileMetaDataWriter fileMetaDataWriter = new FileMetaDataWriter(injector.getInstance(TransactionRunner.class));
     LogFileManager logFileManager = new LogFileManager("700", "600", maxLifeTimeMs, maxFileSizeInBytes, syncInterval,
-                                                       fileMetaDataWriter,
+                                                       "deflate", fileMetaDataWriter,
                                                        injector.getInstance(LocationFactory.class));
     LogPathIdentifier logPathIdentifier = new LogPathIdentifier("test", "testApp", "testFlow");
     long timestamp = System.currentTimeMillis();
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.appender.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.FilterParser;
+import io.cdap.cdap.logging.filter.LogLevelExpression;
+import io.cdap.cdap.logging.filter.LoggerExpression;
+import io.cdap.cdap.logging.filter.MessageExpression;
+import io.cdap.cdap.logging.read.LogEvent;
+import io.cdap.cdap.logging.write.LogFileIndex;
+import io.cdap.cdap.logging.write.LogLocation;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for {@link LogFileOutputStream} and reading the file it writes with {@link LogLocation}.
+ */
+public class LogFileOutputStreamTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testIndexedRead() throws IOException {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("test.avro");
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    try (LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024, "deflate",
+                                                                    System.currentTimeMillis(), () -> { })) {
+      outputStream.flush();
+      for (int i = 0; i < 1000; i++) {
+        LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, Level.INFO, "message " + i, null, null);
+        event.setTimeStamp(1000L + i);
+        outputStream.append(event);
+        if (i % 300 == 0) {
+          outputStream.flush();
+        }
+      }
+    }
+
+    LogFileIndex index = LogFileIndex.read(location);
+    Assert.assertNotNull(index);
+    Assert.assertTrue(index.size() > 10);
+    Assert.assertEquals(1000L, index.getTimestamp(0));
+
+    // Reads with the index
+    assertRead(new LogLocation(LogLocation.VERSION_1, 1000L, 1000L, location, "default", null));
+
+    // Reads without the index should give the same result
+    Assert.assertTrue(LogFileIndex.getIndexLocation(location).delete());
+    Assert.assertNull(LogFileIndex.read(location));
+    assertRead(new LogLocation(LogLocation.VERSION_1, 1000L, 1000L, location, "default", null));
+  }
+
+  @Test
+  public void testFilteredRead() throws IOException {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("test.avro");
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    Logger errorLogger = (Logger) LoggerFactory.getLogger("io.cdap.ErrorLogger");
+
+    // Every 100th event is an error with a different logger and message
+    try (LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024, "deflate",
+                                                                    System.currentTimeMillis(), () -> { })) {
+      for (int i = 0; i < 1000; i++) {
+        LoggingEvent event = i % 100 == 0
+          ? new LoggingEvent("io.cdap.Test", errorLogger, Level.ERROR, "Failure " + i, null, null)
+          : new LoggingEvent("io.cdap.Test", logger, Level.INFO, "message " + i, null, null);
+        event.setTimeStamp(1000L + i);
+        outputStream.append(event);
+      }
+    }
+
+    LogFileIndex index = LogFileIndex.read(location);
+    Assert.assertNotNull(index);
+    Filter errorFilter = new LogLevelExpression("ERROR");
+    int errorBlocks = 0;
+    for (int i = 0; i < index.size(); i++) {
+      if (errorFilter.mayMatch(index.getSummary(i))) {
+        errorBlocks++;
+      }
+    }
+    Assert.assertEquals(10, errorBlocks);
+    Assert.assertFalse(index.mayMatch(new MessageExpression("nothing")));
+    Assert.assertFalse(index.mayMatch(new LoggerExpression("io.cdap.NoLogger")));
+    Assert.assertTrue(index.mayMatch(new MessageExpression("FAILURE")));
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, 1000L, 1000L, location, "default", null);
+    Assert.assertFalse(logLocation.mayMatch(new MessageExpression("nothing")));
+
+    List<String> expected = IntStream.range(0, 10).mapToObj(i -> "Failure " + i * 100).collect(Collectors.toList());
+    for (Filter filter : new Filter[] {
+      errorFilter, new MessageExpression("failure"), new LoggerExpression("io.cdap.ErrorLogger"),
+      FilterParser.parse("message=Failure AND loglevel=WARN")
+    }) {
+      List<String> messages = new ArrayList<>();
+      try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, 0L, Long.MAX_VALUE, 1000)) {
+        iterator.forEachRemaining(event -> messages.add(event.getLoggingEvent().getFormattedMessage()));
+      }
+      Assert.assertEquals(expected, messages);
+
+      Collection<LogEvent> events = logLocation.readLogPrev(filter, 1850L, 3);
+      Assert.assertEquals(expected.subList(6, 9), events.stream()
+        .map(event -> event.getLoggingEvent().getFormattedMessage())
+        .collect(Collectors.toList()));
+    }
+
+    // Terms must match as whole words
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(new MessageExpression("fail"), 0L,
+                                                                    Long.MAX_VALUE, 1000)) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+  }
+
+  @Test
+  public void testHighCardinalityTerms() throws IOException {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("test.avro");
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    // Every event has a distinct term, which gives more distinct terms in the file than in any block
+    try (LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024, "deflate",
+                                                                    System.currentTimeMillis(), () -> { })) {
+      for (int i = 0; i < 50000; i++) {
+        LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, Level.INFO, "request r" + i + "x", null, null);
+        event.setTimeStamp(1000L + i);
+        outputStream.append(event);
+      }
+    }
+
+    // Terms should still be indexed for every block
+    LogFileIndex index = LogFileIndex.read(location);
+    Assert.assertNotNull(index);
+    Assert.assertFalse(index.mayMatch(new MessageExpression("nothing")));
+    Filter filter = new MessageExpression("r25000x");
+    int matchedBlocks = 0;
+    for (int i = 0; i < index.size(); i++) {
+      if (filter.mayMatch(index.getSummary(i))) {
+        matchedBlocks++;
+      }
+    }
+    Assert.assertEquals(1, matchedBlocks);
+  }
+
+  private void assertRead(LogLocation logLocation) throws IOException {
+    List<String> messages = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(Filter.EMPTY_FILTER, 1500L, 1600L, 1000)) {
+      iterator.forEachRemaining(event -> messages.add(event.getLoggingEvent().getFormattedMessage()));
+    }
+    Assert.assertEquals(getMessages(500, 600), messages);
+
+    // Reads from the start of the file
+    messages.clear();
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(Filter.EMPTY_FILTER, 0L, 1010L, 1000)) {
+      iterator.forEachRemaining(event -> messages.add(event.getLoggingEvent().getFormattedMessage()));
+    }
+    Assert.assertEquals(getMessages(0, 10), messages);
+
+    Collection<LogEvent> events = logLocation.readLogPrev(Filter.EMPTY_FILTER, 1799L, 50);
+    Assert.assertEquals(getMessages(750, 800), events.stream()
+      .map(event -> event.getLoggingEvent().getFormattedMessage())
+      .collect(Collectors.toList()));
+
+    // Reads to the end of the file
+    events = logLocation.readLogPrev(Filter.EMPTY_FILTER, Long.MAX_VALUE, 20);
+    Assert.assertEquals(getMessages(980, 1000), events.stream()
+      .map(event -> event.getLoggingEvent().getFormattedMessage())
+      .collect(Collectors.toList()));
+  }
+
+  private List<String> getMessages(int start, int end) {
+    return IntStream.range(start, end).mapToObj(i -> "message " + i).collect(Collectors.toList());
+  }
+}
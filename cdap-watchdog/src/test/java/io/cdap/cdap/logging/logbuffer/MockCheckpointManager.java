@@ -51,4 +51,9 @@ public class MockCheckpointManager implements CheckpointManager<LogBufferFileOff
 
     return map.get(partition);
   }
+
+  @Override
+  public Map<Integer, Checkpoint<LogBufferFileOffset>> getCheckpoints() throws IOException {
+    return new HashMap<>(map);
+  }
 }
@@ -30,6 +30,7 @@ import io.cdap.cdap.logging.logbuffer.LogBufferWriter;
 import io.cdap.cdap.logging.logbuffer.MockCheckpointManager;
 import io.cdap.cdap.logging.meta.Checkpoint;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -59,7 +60,7 @@ public class LogBufferCleanerTest {
 
     // write directly to log buffer, keep file size 10 bytes so that more files are created
     LogBufferWriter writer = new LogBufferWriter(absolutePath, 10,
-                                                 new LogBufferCleaner(ImmutableList.of(checkpointManager),
+                                                 new LogBufferCleaner(ImmutableList.of(checkpointManager), 1,
                                                                       absolutePath, new AtomicBoolean(true)));
     ImmutableList<byte[]> events = getLoggingEvents();
     List<byte[]> subset = new ArrayList<>();
@@ -91,6 +92,27 @@ public class LogBufferCleanerTest {
 
   }
 
+  @Test
+  public void testStaleShardCheckpoint() throws Exception {
+    File baseDir = TMP_FOLDER.newFolder();
+    for (int fileId = 0; fileId < 5; fileId++) {
+      Assert.assertTrue(new File(baseDir, fileId + ".buff").createNewFile());
+    }
+
+    // shard 1 was checkpointed before the number of shards was lowered to 1 and is behind shard 0
+    MockCheckpointManager checkpointManager = new MockCheckpointManager();
+    checkpointManager.saveCheckpoints(ImmutableMap.of(0, new TestCheckpoint(4L, 0L, 1L),
+                                                      1, new TestCheckpoint(2L, 0L, 1L)));
+    new LogBufferCleaner(ImmutableList.of(checkpointManager), 1, baseDir.getAbsolutePath(),
+                         new AtomicBoolean(true)).run();
+
+    // only the files before the stale checkpoint of shard 1 can be deleted
+    Assert.assertFalse(new File(baseDir, "0.buff").exists());
+    Assert.assertFalse(new File(baseDir, "1.buff").exists());
+    Assert.assertTrue(new File(baseDir, "2.buff").exists());
+    Assert.assertTrue(new File(baseDir, "3.buff").exists());
+  }
+
   private ImmutableList<byte[]> getLoggingEvents() {
     WorkerLoggingContext loggingContext =
       new WorkerLoggingContext("default", "app1", "worker1", "run1", "instance1");
@@ -84,7 +84,7 @@ public class LogBufferRecoveryServiceTest {
     // start log buffer reader to read log events from files. keep the batch size as 2 so that there are more than 1
     // iterations
     LogBufferRecoveryService service = new LogBufferRecoveryService(ImmutableList.of(pipeline),
-                                                                    ImmutableList.of(checkpointManager),
+                                                                    ImmutableList.of(checkpointManager), 1,
                                                                     absolutePath, 2, new AtomicBoolean(true));
     service.startAndWait();
 
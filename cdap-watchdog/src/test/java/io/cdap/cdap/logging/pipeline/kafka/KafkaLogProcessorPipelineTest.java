@@ -478,5 +478,10 @@ public class KafkaLogProcessorPipelineTest {
     public Checkpoint<KafkaOffset> getCheckpoint(int partition) throws IOException {
       return new Checkpoint<>(new KafkaOffset(-1, -1), -1);
     }
+
+    @Override
+    public Map<Integer, Checkpoint<KafkaOffset>> getCheckpoints() throws IOException {
+      return Collections.emptyMap();
+    }
   }
 }
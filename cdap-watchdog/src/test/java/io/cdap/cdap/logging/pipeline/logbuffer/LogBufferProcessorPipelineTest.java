@@ -20,11 +20,13 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.logging.logbuffer.LogBufferEvent;
 import io.cdap.cdap.logging.logbuffer.LogBufferFileOffset;
@@ -34,13 +36,17 @@ import io.cdap.cdap.logging.pipeline.LogPipelineTestUtil;
 import io.cdap.cdap.logging.pipeline.LogProcessorPipelineContext;
 import io.cdap.cdap.logging.pipeline.MockAppender;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -100,6 +106,68 @@ public class LogBufferProcessorPipelineTest {
     loggerContext.stop();
   }
 
+  @Test
+  public void testShards() throws Exception {
+    LogBufferPipelineConfig config = new LogBufferPipelineConfig(1024L, 300L, 500L, 4, 2);
+    MockCheckpointManager checkpointManager = new MockCheckpointManager();
+    List<LoggerContext> loggerContexts = new ArrayList<>();
+    List<MockAppender> appenders = new ArrayList<>();
+    List<LogBufferProcessorPipeline> pipelines = new ArrayList<>();
+    for (int shard = 0; shard < 2; shard++) {
+      LoggerContext loggerContext = LogPipelineTestUtil.createLoggerContext("WARN",
+                                                                            ImmutableMap.of("test.logger", "INFO"),
+                                                                            MockAppender.class.getName());
+      loggerContext.start();
+      loggerContexts.add(loggerContext);
+      appenders.add(LogPipelineTestUtil.getAppender(loggerContext.getLogger(Logger.ROOT_LOGGER_NAME),
+                                                    "Test", MockAppender.class));
+      LogBufferProcessorPipeline pipeline = new LogBufferProcessorPipeline(
+        new LogProcessorPipelineContext(CConfiguration.create(), "test", loggerContext, NO_OP_METRICS_CONTEXT, 0),
+        config, checkpointManager, shard);
+      pipeline.startAndWait();
+      pipelines.add(pipeline);
+    }
+
+    // Find a namespace that belongs to shard 0, and routes only events of that namespace to the pipelines
+    String namespace = "ns";
+    int suffix = 0;
+    while (LogBufferProcessorPipeline.getShard(createNamespaceEvent(namespace, 0L), 2) != 0) {
+      namespace = "ns" + suffix++;
+    }
+    List<ILoggingEvent> events = getLoggingEvents();
+    List<LogBufferEvent> bufferEvents = new ArrayList<>();
+    for (int i = 0; i < events.size(); i++) {
+      ILoggingEvent event = events.get(i);
+      LoggingEvent namespaceEvent = createNamespaceEvent(namespace, event.getTimeStamp());
+      namespaceEvent.setLevel(event.getLevel());
+      namespaceEvent.setMessage(event.getMessage());
+      bufferEvents.add(new LogBufferEvent(namespaceEvent, serializer.toBytes(namespaceEvent).length,
+                                          new LogBufferFileOffset(0, i)));
+    }
+    LogBufferProcessorPipeline.processLogEvents(bufferEvents, pipelines);
+
+    // The DEBUG message should get filtered out by shard 0. The checkpoint of shard 1 should move forward even it
+    // has no event to process.
+    Tasks.waitFor(5, () -> appenders.get(0).getEvents().size(), 60, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+    Tasks.waitFor(new LogBufferFileOffset(0, 5), () -> checkpointManager.getCheckpoint(1).getOffset(),
+                  60, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(appenders.get(1).getEvents().isEmpty());
+
+    for (LogBufferProcessorPipeline pipeline : pipelines) {
+      pipeline.stopAndWait();
+    }
+    loggerContexts.forEach(LoggerContext::stop);
+  }
+
+  private LoggingEvent createNamespaceEvent(String namespace, long timestamp) {
+    LoggingEvent event = (LoggingEvent) LogPipelineTestUtil.createLoggingEvent("test.logger", Level.INFO, "",
+                                                                               timestamp);
+    Map<String, String> mdc = new HashMap<>();
+    mdc.put(Constants.Logging.TAG_NAMESPACE_ID, namespace);
+    event.setMDCPropertyMap(mdc);
+    return event;
+  }
+
   private ImmutableList<ILoggingEvent> getLoggingEvents() {
     long now = System.currentTimeMillis();
     return ImmutableList.of(
@@ -115,10 +183,17 @@ public class LogBufferProcessorPipelineTest {
    * Checkpoint manager for unit tests.
    */
   private static final class MockCheckpointManager implements CheckpointManager<LogBufferFileOffset> {
+    private final Map<Integer, Checkpoint<LogBufferFileOffset>> checkpoints = new ConcurrentHashMap<>();
+
     @Override
     public void saveCheckpoints(Map<Integer, ? extends Checkpoint<LogBufferFileOffset>> checkpoints)
       throws IOException {
-
+      for (Map.Entry<Integer, ? extends Checkpoint<LogBufferFileOffset>> entry : checkpoints.entrySet()) {
+        Checkpoint<LogBufferFileOffset> checkpoint = entry.getValue();
+        this.checkpoints.put(entry.getKey(), new Checkpoint<>(
+          new LogBufferFileOffset(checkpoint.getOffset().getFileId(), checkpoint.getOffset().getFilePos()),
+          checkpoint.getMaxEventTime()));
+      }
     }
 
     @Override
@@ -128,7 +203,12 @@ public class LogBufferProcessorPipelineTest {
 
     @Override
     public Checkpoint<LogBufferFileOffset> getCheckpoint(int partition) throws IOException {
-      return new Checkpoint<>(new LogBufferFileOffset(-1, -1), -1);
+      return checkpoints.getOrDefault(partition, new Checkpoint<>(new LogBufferFileOffset(-1, -1), -1));
+    }
+
+    @Override
+    public Map<Integer, Checkpoint<LogBufferFileOffset>> getCheckpoints() throws IOException {
+      return new HashMap<>(checkpoints);
     }
   }
 }
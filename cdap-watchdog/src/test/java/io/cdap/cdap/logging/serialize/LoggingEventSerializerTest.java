@@ -29,12 +29,20 @@ import io.cdap.cdap.common.logging.ServiceLoggingContext;
 import io.cdap.cdap.common.logging.logback.TestLoggingContext;
 import io.cdap.cdap.logging.appender.LogMessage;
 import io.cdap.cdap.logging.context.LoggingContextHelper;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
@@ -182,6 +190,59 @@ public class LoggingEventSerializerTest {
     Assert.assertEquals(timestamp, serializer.decodeEventTimestamp(ByteBuffer.wrap(bytes)));
   }
 
+  @Test
+  public void testGenericCompatibility() throws IOException {
+    Map<String, String> mdcMap = new HashMap<>();
+    mdcMap.put("mdc1", "mdc-val1");
+    mdcMap.put("mdc2", null);
+    mdcMap.put(null, "null-key");
+
+    ch.qos.logback.classic.spi.LoggingEvent iLoggingEvent = new ch.qos.logback.classic.spi.LoggingEvent();
+    iLoggingEvent.setThreadName("thread");
+    iLoggingEvent.setLevel(Level.WARN);
+    iLoggingEvent.setMessage("Message {} {}");
+    iLoggingEvent.setArgumentArray(new Object[] { null, 10 });
+    iLoggingEvent.setLoggerName("test.logger");
+    iLoggingEvent.setLoggerContextRemoteView(new LoggerContextVO("context", new HashMap<>(), 1234L));
+
+    Exception exception = new Exception("Failure", new IllegalStateException("Cause"));
+    exception.addSuppressed(new IOException("Suppressed"));
+    iLoggingEvent.setThrowableProxy(new ThrowableProxy(exception));
+    iLoggingEvent.setCallerData(new StackTraceElement[] {
+      new StackTraceElement("com.Class1", "method1", "File1", 10), null
+    });
+    iLoggingEvent.setMDCPropertyMap(mdcMap);
+    iLoggingEvent.setTimeStamp(1234567890L);
+    iLoggingEvent.prepareForDeferredProcessing();
+    ((ThrowableProxy) iLoggingEvent.getThrowableProxy()).calculatePackagingData();
+
+    // Encode with the generic Avro writer
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    Schema schema = serializer.getAvroSchema();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    new GenericDatumWriter<GenericRecord>(schema).write(serializer.toGenericRecord(iLoggingEvent), encoder);
+    byte[] genericBytes = os.toByteArray();
+    byte[] bytes = serializer.toBytes(iLoggingEvent);
+
+    // Both encodings should be decoded to the same record by the generic reader and by the serializer
+    GenericDatumReader<GenericRecord> reader = new GenericDatumReader<>(schema);
+    GenericRecord expected = reader.read(null, DecoderFactory.get().binaryDecoder(genericBytes, null));
+    Assert.assertEquals(expected, reader.read(null, DecoderFactory.get().binaryDecoder(bytes, null)));
+
+    LoggingEvent event = (LoggingEvent) serializer.fromBytes(ByteBuffer.wrap(genericBytes));
+    Assert.assertEquals(expected, event.getRecord());
+    Assert.assertEquals(iLoggingEvent.getFormattedMessage(), event.getFormattedMessage());
+    Assert.assertEquals(mdcMap, event.getMDCPropertyMap());
+    Assert.assertEquals("Suppressed", event.getThrowableProxy().getSuppressed()[0].getMessage());
+
+    // Repeated strings should be interned
+    LoggingEvent event2 = (LoggingEvent) serializer.fromBytes(ByteBuffer.wrap(bytes));
+    Assert.assertEquals(expected, event2.getRecord());
+    Assert.assertSame(event.getLoggerName(), event2.getLoggerName());
+    Assert.assertSame(event.getThreadName(), event2.getThreadName());
+  }
+
   static void assertLoggingEventEquals(ILoggingEvent expected, ILoggingEvent actual) {
     expected.getMDCPropertyMap().putAll(
       ImmutableMap.of(".namespaceId", "TEST_ACCT_ID1", ".applicationId", "TEST_APP_ID1", ".runId", "RUN1",
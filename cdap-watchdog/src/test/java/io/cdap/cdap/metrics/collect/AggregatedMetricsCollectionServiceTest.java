@@ -26,11 +26,17 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -139,6 +145,51 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Category(SlowTests.class)
+  @Test
+  public void testConcurrentIncrement() throws Exception {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(100L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    service.startAndWait();
+    try {
+      int threads = 8;
+      int increments = 10000;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      CyclicBarrier barrier = new CyclicBarrier(threads);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          barrier.await();
+          // increments both through a retained context and through a context looked up on every call
+          MetricsContext context = service.getContext(EMPTY_TAGS);
+          for (int j = 0; j < increments; j++) {
+            context.increment(METRIC, 1);
+            service.getContext(EMPTY_TAGS).childContext(Constants.Metrics.Tag.NAMESPACE, NAMESPACE)
+              .increment(METRIC, 2);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      executor.shutdown();
+
+      // no increment is lost while metrics are being published concurrently
+      verifyCounterMetricsValue(published, ImmutableMap.of(0, ImmutableMap.of(METRIC, (long) threads * increments),
+                                                           1, ImmutableMap.of(METRIC, 2L * threads * increments)));
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
   private void verifyCounterMetricsValue(BlockingQueue<MetricValues> published,
                                          Map<Integer, Map<String, Long>> expected) throws InterruptedException {
     Map<Integer, Map<String, Long>> received = new HashMap<>();
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.metrics.collect;
+
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link AggregatedMetricsEmitter}.
+ */
+public class AggregatedMetricsEmitterTest {
+
+  @Test
+  public void testGauge() {
+    AggregatedMetricsEmitter emitter = new AggregatedMetricsEmitter("gauge");
+    emitter.gauge(5);
+    emitter.gauge(3);
+
+    MetricValue value = emitter.emit();
+    Assert.assertEquals(MetricType.GAUGE, value.getType());
+    Assert.assertEquals(3L, value.getValue());
+
+    value = emitter.emit();
+    Assert.assertEquals(MetricType.COUNTER, value.getType());
+    Assert.assertEquals(0L, value.getValue());
+
+    // Increments before the gauge are replaced by the gauge value, while increments after it are added
+    emitter.increment(5);
+    emitter.gauge(10);
+    value = emitter.emit();
+    Assert.assertEquals(MetricType.GAUGE, value.getType());
+    Assert.assertEquals(10L, value.getValue());
+
+    emitter.increment(5);
+    emitter.gauge(10);
+    emitter.increment(2);
+    value = emitter.emit();
+    Assert.assertEquals(MetricType.GAUGE, value.getType());
+    Assert.assertEquals(12L, value.getValue());
+  }
+
+  @Test
+  public void testIncrementDuringEmit() throws Exception {
+    AggregatedMetricsEmitter emitter = new AggregatedMetricsEmitter("counter");
+    int threads = 4;
+    int increments = 100000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < increments; j++) {
+            emitter.increment(1);
+          }
+        }));
+      }
+
+      // emit concurrently with the increments, no increment should be lost
+      long total = 0;
+      boolean done = false;
+      while (!done) {
+        done = futures.stream().allMatch(Future::isDone);
+        total += emitter.emit().getValue();
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+      Assert.assertEquals((long) threads * increments, total);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
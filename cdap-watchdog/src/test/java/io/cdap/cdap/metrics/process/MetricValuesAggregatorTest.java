@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.process;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.metrics.MetricType;
+import io.cdap.cdap.api.metrics.MetricValue;
+import io.cdap.cdap.api.metrics.MetricValues;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for {@link MetricValuesAggregator}.
+ */
+public class MetricValuesAggregatorTest {
+
+  private static final Map<String, String> TAGS1 = ImmutableMap.of("app", "app1");
+  private static final Map<String, String> TAGS2 = ImmutableMap.of("app", "app2");
+
+  @Test
+  public void testAggregate() {
+    List<MetricValues> metricValues = ImmutableList.of(
+      new MetricValues(TAGS1, "count", 10, 1, MetricType.COUNTER),
+      new MetricValues(TAGS1, "gauge", 10, 5, MetricType.GAUGE),
+      new MetricValues(TAGS2, "count", 10, 7, MetricType.COUNTER),
+      new MetricValues(TAGS1, 10, ImmutableList.of(new MetricValue("count", MetricType.COUNTER, 2),
+                                                   new MetricValue("gauge", MetricType.COUNTER, 3))),
+      new MetricValues(TAGS1, "count", 11, 4, MetricType.COUNTER),
+      new MetricValues(new HashMap<>(TAGS2), "count", 10, 8, MetricType.GAUGE)
+    );
+
+    List<MetricValues> aggregated = MetricValuesAggregator.aggregate(metricValues);
+    Assert.assertEquals(3, aggregated.size());
+    Assert.assertEquals(7, MetricValuesAggregator.countMetrics(metricValues));
+    Assert.assertEquals(4, MetricValuesAggregator.countMetrics(aggregated));
+
+    // counters are summed, and a counter following a gauge is added to the gauge
+    assertMetricValues(aggregated.get(0), TAGS1, 10,
+                       ImmutableMap.of("count", new MetricValue("count", MetricType.COUNTER, 3),
+                                       "gauge", new MetricValue("gauge", MetricType.GAUGE, 8)));
+    // a gauge replaces the previous value
+    assertMetricValues(aggregated.get(1), TAGS2, 10,
+                       ImmutableMap.of("count", new MetricValue("count", MetricType.GAUGE, 8)));
+    // different timestamps are not merged
+    assertMetricValues(aggregated.get(2), TAGS1, 11,
+                       ImmutableMap.of("count", new MetricValue("count", MetricType.COUNTER, 4)));
+
+    // nothing to merge
+    List<MetricValues> distinct = metricValues.subList(1, 3);
+    Assert.assertEquals(distinct, MetricValuesAggregator.aggregate(distinct));
+  }
+
+  private void assertMetricValues(MetricValues metricValues, Map<String, String> tags, long timestamp,
+                                  Map<String, MetricValue> expected) {
+    Assert.assertEquals(tags, metricValues.getTags());
+    Assert.assertEquals(timestamp, metricValues.getTimestamp());
+    Assert.assertEquals(expected.size(), metricValues.getMetrics().size());
+    for (MetricValue metricValue : metricValues.getMetrics()) {
+      MetricValue expectedValue = expected.get(metricValue.getName());
+      Assert.assertNotNull(expectedValue);
+      Assert.assertEquals(expectedValue.getType(), metricValue.getType());
+      Assert.assertEquals(expectedValue.getValue(), metricValue.getValue());
+    }
+  }
+}
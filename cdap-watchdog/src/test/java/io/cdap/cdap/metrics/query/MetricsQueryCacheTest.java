@@ -0,0 +1,299 @@
+/*
+ * Copyright © 2021 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricDeleteQuery;
+import io.cdap.cdap.api.metrics.MetricSearchQuery;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricValues;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.MetricsProcessorStatus;
+import io.cdap.cdap.api.metrics.TagValue;
+import io.cdap.cdap.common.conf.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for {@link MetricsQueryCache}.
+ */
+public class MetricsQueryCacheTest {
+
+  private static final Map<String, String> TAGS1 = ImmutableMap.of("app", "app1");
+  private static final Map<String, String> TAGS2 = ImmutableMap.of("app", "app2");
+
+  @Test
+  public void testSlidingWindow() {
+    TestMetricStore store = new TestMetricStore();
+    for (long ts = 100; ts <= 200; ts++) {
+      store.put(TAGS1, ts, ts);
+    }
+
+    MetricsQueryCache cache = new MetricsQueryCache(store, 10, 300, 10);
+    Map<String, Long> metrics = new HashMap<>();
+    cache.setMetricsContext(new TestMetricsContext(metrics));
+
+    // first query is a miss
+    assertResult(store, cache.query(createQuery(100, 200)), 100, 200);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of(100L, 200L)), store.getQueriedRanges());
+    Assert.assertEquals(1L, (long) metrics.get(Constants.Metrics.Name.Query.CACHE_MISS_COUNT));
+    Assert.assertEquals(1L, (long) metrics.get(Constants.Metrics.Name.Query.CACHE_SIZE));
+
+    // new data, including a late value within the refresh overlap, and a new series
+    store.put(TAGS1, 195, 1000);
+    for (long ts = 201; ts <= 210; ts++) {
+      store.put(TAGS1, ts, ts);
+    }
+    store.put(TAGS2, 205, 5);
+
+    // sliding the window only queries the time range after the cached end time minus the overlap
+    store.getQueriedRanges().clear();
+    assertResult(store, cache.query(createQuery(110, 210)), 110, 210);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of(190L, 210L)), store.getQueriedRanges());
+    Assert.assertEquals(1L, (long) metrics.get(Constants.Metrics.Name.Query.CACHE_HIT_COUNT));
+    Assert.assertEquals(80L, (long) metrics.get(Constants.Metrics.Name.Query.CACHE_SAVED_INTERVALS));
+
+    // a query starting before the cached time range is a miss
+    store.getQueriedRanges().clear();
+    assertResult(store, cache.query(createQuery(90, 210)), 90, 210);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of(90L, 210L)), store.getQueriedRanges());
+    Assert.assertEquals(2L, (long) metrics.get(Constants.Metrics.Name.Query.CACHE_MISS_COUNT));
+
+    // a query which result is truncated by the limit is not cached
+    store.getQueriedRanges().clear();
+    MetricDataQuery query = new MetricDataQuery(100, 210, 1, 10, ImmutableMap.of("m", AggregationFunction.SUM),
+                                                Collections.emptyMap(), ImmutableList.of("app"), null);
+    cache.query(query);
+    cache.query(query);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of(100L, 210L), ImmutableList.of(100L, 210L)),
+                        store.getQueriedRanges());
+  }
+
+  @Test
+  public void testExpire() {
+    TestMetricStore store = new TestMetricStore();
+    for (long ts = 100; ts <= 200; ts++) {
+      store.put(TAGS1, ts, ts);
+    }
+
+    AtomicLong time = new AtomicLong();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 10, 300, 10, new Ticker() {
+      @Override
+      public long read() {
+        return time.get();
+      }
+    });
+    cache.query(createQuery(100, 200));
+
+    // refresh the cached result every minute, with a late value outside of the refresh overlap
+    store.put(TAGS1, 150, 1000);
+    for (int i = 1; i < 5; i++) {
+      time.addAndGet(TimeUnit.MINUTES.toNanos(1));
+      store.getQueriedRanges().clear();
+      cache.query(createQuery(100, 200 + i));
+      Assert.assertEquals(ImmutableList.of(ImmutableList.of(189L + i, 200L + i)), store.getQueriedRanges());
+    }
+
+    // even though the cached result is refreshed, the whole time range is queried again after it expires
+    time.addAndGet(TimeUnit.MINUTES.toNanos(1));
+    store.getQueriedRanges().clear();
+    assertResult(store, cache.query(createQuery(100, 205)), 100, 205);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of(100L, 205L)), store.getQueriedRanges());
+  }
+
+  @Test
+  public void testDelete() {
+    TestMetricStore store = new TestMetricStore();
+    for (long ts = 100; ts <= 200; ts++) {
+      store.put(TAGS1, ts, ts);
+      store.put(TAGS2, ts, ts);
+    }
+
+    MetricsQueryCache cache = new MetricsQueryCache(store, 10, 300, 10);
+    Map<String, Long> metrics = new HashMap<>();
+    cache.setMetricsContext(new TestMetricsContext(metrics));
+    cache.query(createQuery(100, 200));
+
+    // delete the metrics of one of the series, the whole time range should be queried again
+    for (long ts = 100; ts <= 200; ts++) {
+      store.remove(TAGS2, ts);
+    }
+    store.getQueriedRanges().clear();
+    assertResult(store, cache.query(createQuery(110, 210)), 110, 210);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of(190L, 210L), ImmutableList.of(110L, 210L)),
+                        store.getQueriedRanges());
+    Assert.assertEquals(2L, (long) metrics.get(Constants.Metrics.Name.Query.CACHE_MISS_COUNT));
+    Assert.assertNull(metrics.get(Constants.Metrics.Name.Query.CACHE_HIT_COUNT));
+  }
+
+  private MetricDataQuery createQuery(long startTs, long endTs) {
+    return new MetricDataQuery(startTs, endTs, 1, (int) (endTs - startTs + 1),
+                               ImmutableMap.of("m", AggregationFunction.SUM), Collections.emptyMap(),
+                               ImmutableList.of("app"), null);
+  }
+
+  private void assertResult(TestMetricStore store, Collection<MetricTimeSeries> result, long startTs, long endTs) {
+    Collection<MetricTimeSeries> expected = store.compute(startTs, endTs);
+    Assert.assertEquals(new HashSet<>(expected), new HashSet<>(result));
+    Assert.assertEquals(expected.size(), result.size());
+  }
+
+  /**
+   * A {@link MetricStore} that only supports querying a single metric, grouped by tags.
+   */
+  private static final class TestMetricStore implements MetricStore {
+
+    private final Map<Map<String, String>, NavigableMap<Long, Long>> data = new HashMap<>();
+    private final List<List<Long>> queriedRanges = new ArrayList<>();
+
+    void put(Map<String, String> tags, long ts, long value) {
+      data.computeIfAbsent(tags, k -> new TreeMap<>()).put(ts, value);
+    }
+
+    void remove(Map<String, String> tags, long ts) {
+      data.get(tags).remove(ts);
+    }
+
+    List<List<Long>> getQueriedRanges() {
+      return queriedRanges;
+    }
+
+    Collection<MetricTimeSeries> compute(long startTs, long endTs) {
+      List<MetricTimeSeries> result = new ArrayList<>();
+      for (Map.Entry<Map<String, String>, NavigableMap<Long, Long>> entry : data.entrySet()) {
+        List<TimeValue> timeValues = new ArrayList<>();
+        entry.getValue().subMap(startTs, true, endTs, true).forEach((ts, value) -> timeValues.add(
+          new TimeValue(ts, value)));
+        if (!timeValues.isEmpty()) {
+          result.add(new MetricTimeSeries("m", entry.getKey(), timeValues));
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      queriedRanges.add(ImmutableList.of(query.getStartTs(), query.getEndTs()));
+      return compute(query.getStartTs(), query.getEndTs());
+    }
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteTTLExpired() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, MetricsProcessorStatus> getMetricsProcessorStats() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * A {@link MetricsContext} that keeps the sum of increments and the last gauge value of each metric.
+   */
+  private static final class TestMetricsContext implements MetricsContext {
+
+    private final Map<String, Long> metrics;
+
+    TestMetricsContext(Map<String, Long> metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public void increment(String metricName, long value) {
+      metrics.merge(metricName, value, Long::sum);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      metrics.put(metricName, value);
+    }
+  }
+}